@@ -0,0 +1,120 @@
+package jmh.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark de comparação entre os acessores que copiam as listas da sessão em arranjos e as
+ * vistas somente leitura. Para ver a diferença de alocação, executar com o profiler de GC do JMH
+ * ({@code -prof gc}).
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessorBenchmark {
+
+  /**
+   * Quantidade de participantes e de ideias da sessão.
+   */
+  @Param({"100", "10000"})
+  public int size;
+
+  /**
+   * Sessão em fase de votação usada pelas medições.
+   */
+  private Session session;
+
+  /**
+   * Método de pré-configuração, que cria a sessão com os participantes e ideias.
+   */
+  @Setup
+  public void setUp() {
+    User owner = new User("Owner");
+    session = new Session(owner, "Benchmark", 3);
+    session.addParticipant(owner);
+    for (int i = 0; i < size; i++) {
+      session.addParticipant(new User("User" + i));
+    }
+    session.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < size; i++) {
+      session.addIdea(new Idea(owner, "Idea " + i));
+    }
+    session.nextPhase(); // VOTING
+  }
+
+  @Benchmark
+  public void ideasArray(Blackhole blackhole) {
+    for (Idea idea : session.getIdeas()) {
+      blackhole.consume(idea);
+    }
+  }
+
+  @Benchmark
+  public void ideasView(Blackhole blackhole) {
+    for (Idea idea : session.getIdeasView()) {
+      blackhole.consume(idea);
+    }
+  }
+
+  @Benchmark
+  public void ideasIndexed(Blackhole blackhole) {
+    int count = session.getIdeaCount();
+    for (int i = 0; i < count; i++) {
+      blackhole.consume(session.getIdea(i));
+    }
+  }
+
+  @Benchmark
+  public int ideaCountArray() {
+    return session.getIdeas().length;
+  }
+
+  @Benchmark
+  public int ideaCountView() {
+    return session.getIdeaCount();
+  }
+
+  @Benchmark
+  public void participantsArray(Blackhole blackhole) {
+    for (User user : session.getParticipants()) {
+      blackhole.consume(user);
+    }
+  }
+
+  @Benchmark
+  public void participantsView(Blackhole blackhole) {
+    for (User user : session.getParticipantsView()) {
+      blackhole.consume(user);
+    }
+  }
+
+  @Benchmark
+  public int participantCountArray() {
+    return session.getParticipants().length;
+  }
+
+  @Benchmark
+  public int participantCountView() {
+    return session.getParticipantCount();
+  }
+}
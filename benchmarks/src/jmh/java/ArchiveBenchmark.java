@@ -0,0 +1,129 @@
+package jmh.java;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do heap retido por uma sessão encerrada antes e depois do arquivamento, que leva o
+ * texto das ideias e a apuração para fora do heap. Cada medição monta uma sessão no ranqueamento,
+ * com textos de tamanho realista e todos os votos, mede o heap ocupado por ideia
+ * ({@code heapBytesPerIdea}), arquiva a sessão e mede de novo ({@code archivedBytesPerIdea}). O
+ * tempo medido inclui as coletas forçadas, e o contador {@code readNanosPerIdea} dá o custo da
+ * leitura de um texto arquivado.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g", "-XX:+UseSerialGC"})
+public class ArchiveBenchmark {
+
+  /**
+   * Quantidade de ideias da sessão.
+   */
+  @Param({"100000", "1000000"})
+  public int ideas;
+
+  /**
+   * Participantes da sessão.
+   */
+  private User[] users;
+
+  /**
+   * Método de pré-configuração, que cria os participantes.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(1000);
+  }
+
+  /**
+   * Contadores auxiliares reportados pela medição.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    /**
+     * Bytes retidos no heap por ideia, antes do arquivamento.
+     */
+    public double heapBytesPerIdea;
+    /**
+     * Bytes retidos no heap por ideia, depois do arquivamento.
+     */
+    public double archivedBytesPerIdea;
+    /**
+     * Tempo de leitura do texto de uma ideia arquivada.
+     */
+    public double readNanosPerIdea;
+  }
+
+  @Benchmark
+  public Session archive(Footprint footprint) {
+    long base = usedHeap();
+    Session session = new Session(users[0], "Benchmark", 10);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    Idea[] batch = new Idea[ideas];
+    for (int i = 0; i < ideas; i++) {
+      batch[i] = new Idea(users[i % users.length],
+          "Ideia " + i + ": reduzir o tempo de espera no atendimento com a triagem por aplicativo");
+    }
+    session.addIdeas(batch);
+    batch = null;
+    session.nextPhase(); // VOTING
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    session.nextPhase(); // RANKING
+    long before = usedHeap();
+    session.archive();
+    long after = usedHeap();
+
+    long start = System.nanoTime();
+    long length = 0;
+    for (Idea idea : session.getIdeasView()) {
+      length += idea.getDescription().length();
+    }
+    footprint.readNanosPerIdea = (double) (System.nanoTime() - start) / ideas;
+    footprint.heapBytesPerIdea = (double) (before - base) / ideas;
+    footprint.archivedBytesPerIdea = (double) (after - base) / ideas;
+    if (length == 0) {
+      throw new IllegalStateException();
+    }
+    Reference.reachabilityFence(session);
+    return session;
+  }
+
+  /**
+   * Método para a medição do heap ocupado após coletas forçadas.
+   *
+   * @return Bytes ocupados no heap.
+   */
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,87 @@
+package jmh.java;
+
+import java.util.Random;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+import main.java.VotingStrategy;
+
+/**
+ * Classe utilitária para a montagem das sessões usadas pelos benchmarks.
+ * @author hugo
+ */
+final class BenchmarkSessions {
+
+  private BenchmarkSessions() {
+  }
+
+  /**
+   * Método para a criação dos participantes de uma sessão.
+   * 
+   * @param count Quantidade de participantes.
+   * @return Arranjo com os participantes.
+   */
+  static User[] users(int count) {
+    User[] users = new User[count];
+    for (int i = 0; i < count; i++) {
+      users[i] = new User("User" + i);
+    }
+    return users;
+  }
+
+  /**
+   * Método para a criação de uma sessão em fase de votação, com todos os participantes e com as
+   * ideias distribuídas entre os autores.
+   * 
+   * @param users Participantes, o primeiro é o anfitrião.
+   * @param ideas Quantidade de ideias.
+   * @param votingLimit Limite de votos por participante.
+   * @return Sessão na fase de votação.
+   */
+  static Session voting(User[] users, int ideas, int votingLimit) {
+    return voting(users, ideas, votingLimit, VotingStrategy.APPROVAL);
+  }
+
+  /**
+   * Método para a criação de uma sessão em fase de votação com um sistema de votação, com todos os
+   * participantes e com as ideias distribuídas entre os autores.
+   * 
+   * @param users Participantes, o primeiro é o anfitrião.
+   * @param ideas Quantidade de ideias.
+   * @param votingLimit Limite de votos por participante.
+   * @param strategy Sistema de votação.
+   * @return Sessão na fase de votação.
+   */
+  static Session voting(User[] users, int ideas, int votingLimit, VotingStrategy strategy) {
+    Session session = new Session(users[0], "Benchmark", votingLimit);
+    session.setVotingStrategy(strategy);
+    for (User user : users) {
+      session.addParticipant(user);
+    }
+    session.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < ideas; i++) {
+      session.addIdea(new Idea(users[i % users.length], "Idea " + i));
+    }
+    session.nextPhase(); // VOTING
+    return session;
+  }
+
+  /**
+   * Método para o preenchimento dos votos de uma sessão em votação, cada participante tenta usar
+   * todos os seus votos em ideias aleatórias.
+   * 
+   * @param session Sessão na fase de votação.
+   * @param users Participantes.
+   * @param seed Semente para a escolha das ideias.
+   */
+  static void castAllVotes(Session session, User[] users, long seed) {
+    Random random = new Random(seed);
+    int ideas = session.getIdeaCount();
+    for (User user : users) {
+      for (int v = 0; v < session.getVotingLimit(); v++) {
+        session.getIdea(random.nextInt(ideas)).registerVote(user);
+      }
+    }
+  }
+}
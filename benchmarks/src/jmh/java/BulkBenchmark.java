@@ -0,0 +1,146 @@
+package jmh.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark de comparação entre as operações individuais e em lote da sessão: entrada de
+ * participantes, adição de ideias e registro de cédulas.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkBenchmark {
+
+  @Param({"100", "1000"})
+  public int participants;
+
+  @Param({"1000", "10000"})
+  public int ideas;
+
+  @Param({"10"})
+  public int votingLimit;
+
+  /**
+   * Participantes, criados uma única vez.
+   */
+  private User[] users;
+  /**
+   * Sessão em votação, usada pelas medições de cédulas.
+   */
+  private Session voting;
+  /**
+   * Cédula de cada participante, com o dobro do limite de votos.
+   */
+  private Idea[][] ballots;
+
+  /**
+   * Método de pré-configuração, que cria os participantes, a sessão em votação e as cédulas.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(participants);
+    voting = BenchmarkSessions.voting(users, ideas, votingLimit);
+    ballots = new Idea[participants][votingLimit * 2];
+    for (int u = 0; u < participants; u++) {
+      for (int v = 0; v < ballots[u].length; v++) {
+        ballots[u][v] = voting.getIdea((u * 31 + v * 7) % ideas);
+      }
+    }
+  }
+
+  @Benchmark
+  public Session addParticipantsSingle() {
+    Session session = new Session(users[0], "Benchmark", votingLimit);
+    for (User user : users) {
+      session.addParticipant(user);
+    }
+    return session;
+  }
+
+  @Benchmark
+  public Session addParticipantsBatch() {
+    Session session = new Session(users[0], "Benchmark", votingLimit);
+    session.addParticipants(users);
+    return session;
+  }
+
+  @Benchmark
+  public Session addIdeasSingle() {
+    Session session = brainstorm();
+    for (int i = 0; i < ideas; i++) {
+      session.addIdea(new Idea(users[i % participants], "Idea"));
+    }
+    return session;
+  }
+
+  @Benchmark
+  public Session addIdeasBatch() {
+    Session session = brainstorm();
+    Idea[] batch = new Idea[ideas];
+    for (int i = 0; i < ideas; i++) {
+      batch[i] = new Idea(users[i % participants], "Idea");
+    }
+    session.addIdeas(batch);
+    return session;
+  }
+
+  @Benchmark
+  public Session ballotsSingle() {
+    for (int u = 0; u < participants; u++) {
+      for (Idea idea : ballots[u]) {
+        idea.registerVote(users[u]);
+      }
+    }
+    return withdrawAll();
+  }
+
+  @Benchmark
+  public Session ballotsBatch() {
+    for (int u = 0; u < participants; u++) {
+      voting.registerVotes(users[u], ballots[u]);
+    }
+    return withdrawAll();
+  }
+
+  /**
+   * Método para a criação de uma sessão em brainstorm com todos os participantes.
+   */
+  private Session brainstorm() {
+    Session session = new Session(users[0], "Benchmark", votingLimit);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    return session;
+  }
+
+  /**
+   * Método que retira todos os votos das cédulas, devolvendo a sessão ao estado inicial.
+   */
+  private Session withdrawAll() {
+    for (int u = 0; u < participants; u++) {
+      for (Idea idea : ballots[u]) {
+        idea.removeVote(users[u]);
+      }
+    }
+    return voting;
+  }
+}
@@ -0,0 +1,90 @@
+package jmh.java;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Session;
+import main.java.SessionCodec;
+import main.java.User;
+
+/**
+ * Benchmark da gravação e leitura de sessões no formato binário compacto. O tamanho gravado de
+ * cada configuração é impresso na preparação, em bytes no total e por voto.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({"100", "1000"})
+  public int participants;
+
+  @Param({"1000", "10000"})
+  public int ideas;
+
+  @Param({"10"})
+  public int votingLimit;
+
+  /**
+   * Sessão com todos os votos registrados.
+   */
+  private Session session;
+  /**
+   * Sessão já gravada, para a medição da leitura.
+   */
+  private byte[] encoded;
+  /**
+   * Saída reaproveitada entre as gravações.
+   */
+  private ByteArrayOutputStream out;
+
+  /**
+   * Método de pré-configuração, que monta a sessão, grava-a e imprime o tamanho gravado.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    User[] users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, votingLimit);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    out = new ByteArrayOutputStream(1 << 20);
+    SessionCodec.encode(session, out);
+    encoded = out.toByteArray();
+
+    long votes = 0;
+    for (int i = 0; i < ideas; i++) {
+      votes += session.getIdea(i).countVotes();
+    }
+    System.out.printf("%nTamanho gravado: %d bytes, %d votos, %.2f bytes por voto%n",
+        encoded.length, votes, (double) encoded.length / Math.max(1, votes));
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    out.reset();
+    SessionCodec.encode(session, out);
+    return out.size();
+  }
+
+  @Benchmark
+  public Session decode() throws IOException {
+    return SessionCodec.decode(new ByteArrayInputStream(encoded));
+  }
+}
@@ -0,0 +1,128 @@
+package jmh.java;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark da detecção de ideias repetidas em sessões grandes: o tempo de adição de uma ideia,
+ * com e sem a detecção, e o tempo de busca das ideias semelhantes a um texto. Os textos são
+ * frases sorteadas de um vocabulário fixo, e uma em cada dez reescreve uma frase anterior.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DuplicateIndexBenchmark {
+
+  @Param({"10000", "100000"})
+  public int ideas;
+
+  @Param({"false", "true"})
+  public boolean detection;
+
+  private static final int PARTICIPANTS = 100;
+  private static final int WORDS = 5000;
+  private static final String[] SYLLABLES = {"ca", "ro", "na", "de", "pla", "ta", "for", "ma",
+      "sis", "te", "mi", "co", "lu", "ge", "rar", "ver", "pre", "dor", "tu", "ses"};
+
+  private User[] users;
+  private String[] vocabulary;
+  /**
+   * Textos das ideias adicionadas na configuração e, depois destes, das adicionadas nas medições.
+   */
+  private String[] texts;
+  private Session session;
+  private int next;
+
+  /**
+   * Método de pré-configuração, que sorteia o vocabulário e os textos.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(PARTICIPANTS);
+    Random random = new Random(42);
+    vocabulary = new String[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      StringBuilder word = new StringBuilder();
+      for (int s = 2 + random.nextInt(3); s > 0; s--) {
+        word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+      }
+      vocabulary[i] = word.toString();
+    }
+    texts = new String[ideas * 3];
+    for (int i = 0; i < texts.length; i++) {
+      texts[i] = i > 0 && random.nextInt(10) == 0 ? restate(texts[random.nextInt(i)], random)
+          : sentence(random);
+    }
+  }
+
+  /**
+   * Método de configuração de cada iteração, que monta uma sessão nova em brainstorm com a
+   * quantidade de ideias do parâmetro.
+   */
+  @Setup(Level.Iteration)
+  public void fillSession() {
+    session = new Session(users[0], "Benchmark", 10);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    if (detection) {
+      session.setDuplicateThreshold(0.7);
+    }
+    Idea[] batch = new Idea[ideas];
+    for (int i = 0; i < ideas; i++) {
+      batch[i] = new Idea(users[i % PARTICIPANTS], texts[i]);
+    }
+    session.addIdeas(batch);
+    next = ideas;
+  }
+
+  @Benchmark
+  public Idea addIdea() {
+    Idea idea = new Idea(users[next % PARTICIPANTS], texts[next++ % texts.length]);
+    session.addIdea(idea);
+    return idea.getDuplicateOf();
+  }
+
+  @Benchmark
+  public Idea[] findDuplicates() {
+    Idea probe = new Idea(users[0], texts[ideas + next++ % ideas]);
+    return session.findDuplicates(probe);
+  }
+
+  private String sentence(Random random) {
+    StringBuilder sentence = new StringBuilder();
+    for (int w = 5 + random.nextInt(6); w > 0; w--) {
+      sentence.append(vocabulary[random.nextInt(WORDS)]).append(' ');
+    }
+    return sentence.toString().trim();
+  }
+
+  /**
+   * Método para a reescrita de uma frase, trocando uma das suas palavras.
+   */
+  private String restate(String text, Random random) {
+    String[] words = text.split(" ");
+    words[random.nextInt(words.length)] = vocabulary[random.nextInt(WORDS)];
+    return String.join(" ", words);
+  }
+}
@@ -0,0 +1,117 @@
+package jmh.java;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark da memória retida por uma sessão grande. Cada medição mede o heap ocupado antes de
+ * montar a sessão em votação, depois de montá-la e depois de preencher todos os votos. As
+ * diferenças aparecem como os contadores auxiliares {@code bytesPerIdea}, que inclui a ideia e a
+ * sua estrutura de votos vazia, e {@code bytesPerVote}. O tempo medido não é relevante, pois
+ * inclui as coletas forçadas.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g", "-XX:+UseSerialGC"})
+public class FootprintBenchmark {
+
+  /**
+   * Quantidade de ideias da sessão.
+   */
+  @Param({"500", "50000"})
+  public int ideas;
+
+  /**
+   * Quantidade de votantes da sessão.
+   */
+  @Param({"2000"})
+  public int voters;
+
+  /**
+   * Limite de votos por participante.
+   */
+  @Param({"10", "100"})
+  public int votingLimit;
+
+  /**
+   * Participantes da sessão.
+   */
+  private User[] users;
+
+  /**
+   * Método de pré-configuração, que cria os participantes.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(voters);
+  }
+
+  /**
+   * Contadores auxiliares reportados pela medição.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    /**
+     * Bytes retidos por ideia, antes dos votos.
+     */
+    public double bytesPerIdea;
+    /**
+     * Bytes retidos por voto aceito.
+     */
+    public double bytesPerVote;
+  }
+
+  @Benchmark
+  public Session fill(Footprint footprint) {
+    long base = usedHeap();
+    Session session = BenchmarkSessions.voting(users, ideas, votingLimit);
+    long before = usedHeap();
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    long after = usedHeap();
+    long votes = 0;
+    for (int i = 0; i < session.getIdeaCount(); i++) {
+      votes += session.getIdea(i).countVotes();
+    }
+    footprint.bytesPerIdea = (double) (before - base) / ideas;
+    footprint.bytesPerVote = (double) (after - before) / votes;
+    Reference.reachabilityFence(session);
+    return session;
+  }
+
+  /**
+   * Método para a medição do heap ocupado após coletas forçadas.
+   *
+   * @return Bytes ocupados no heap.
+   */
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
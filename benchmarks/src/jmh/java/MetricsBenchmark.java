@@ -0,0 +1,96 @@
+package jmh.java;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.MetricsRegistry;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do custo das métricas nos votos, com a sessão desligada e ligada a um registro de
+ * métricas. Cada operação registra um voto e o remove em seguida, como no
+ * {@link VotingBenchmark}; o voto recusado mede o caminho que classifica o motivo da recusa.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+  @Param({"false", "true"})
+  public boolean metrics;
+
+  private static final int PARTICIPANTS = 1000;
+  private static final int IDEAS = 1000;
+  private static final int VOTING_LIMIT = 10;
+
+  private User[] users;
+  private Session session;
+  /**
+   * Participante que já usou todos os seus votos.
+   */
+  private User exhausted;
+
+  /**
+   * Método de pré-configuração, que monta a sessão, liga as métricas se for o caso e esgota os
+   * votos de um participante.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(PARTICIPANTS);
+    session = BenchmarkSessions.voting(users, IDEAS, VOTING_LIMIT);
+    if (metrics) {
+      new MetricsRegistry().attach("benchmark", session);
+    }
+    exhausted = users[PARTICIPANTS - 1];
+    for (int i = 0; i < VOTING_LIMIT * 2; i++) {
+      session.getIdea(i).registerVote(exhausted);
+    }
+  }
+
+  @Benchmark
+  public boolean voteAndWithdraw() {
+    return castAndWithdraw();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean voteAndWithdrawContended() {
+    return castAndWithdraw();
+  }
+
+  @Benchmark
+  public Integer rejectedVote() {
+    Idea idea = session.getIdea(ThreadLocalRandom.current().nextInt(IDEAS));
+    idea.registerVote(exhausted);
+    return idea.countVotes();
+  }
+
+  private boolean castAndWithdraw() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    User voter = users[random.nextInt(PARTICIPANTS - 1)];
+    Idea idea = session.getIdea(random.nextInt(IDEAS));
+    idea.registerVote(voter);
+    boolean voted = idea.countVotes() > 0;
+    idea.removeVote(voter);
+    return voted;
+  }
+}
@@ -0,0 +1,89 @@
+package jmh.java;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark de escalabilidade do ranqueamento com apuração paralela, parametrizado pela quantidade
+ * de threads do pool. O ranqueamento sequencial pelo placar serve de referência.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ParallelRankingBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int ideas;
+
+  @Param({"10000"})
+  public int participants;
+
+  @Param({"10"})
+  public int votingLimit;
+
+  /**
+   * Quantidade de threads do pool.
+   */
+  @Param({"1", "2", "4", "8", "16", "32"})
+  public int threads;
+
+  /**
+   * Sessão na fase de ranqueamento.
+   */
+  private Session session;
+  /**
+   * Pool onde a apuração é executada.
+   */
+  private ForkJoinPool pool;
+
+  /**
+   * Método de pré-configuração, que monta a sessão, registra os votos e passa ao ranqueamento.
+   */
+  @Setup
+  public void setUp() {
+    User[] users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, votingLimit);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    session.nextPhase(); // RANKING
+    pool = new ForkJoinPool(threads);
+  }
+
+  /**
+   * Método de finalização, que encerra o pool.
+   */
+  @TearDown
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Idea[] sequential() {
+    return session.rankIdeas();
+  }
+
+  @Benchmark
+  public Idea[] parallel() {
+    return session.rankIdeas(pool);
+  }
+}
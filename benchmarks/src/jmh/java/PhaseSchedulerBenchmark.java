@@ -0,0 +1,94 @@
+package jmh.java;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.PhaseScheduler;
+import main.java.PhaseTimer;
+import main.java.SessionPhase;
+import main.java.SessionRegistry;
+import main.java.User;
+
+/**
+ * Benchmark do agendamento e do cancelamento de uma passagem de fase com muitos temporizadores
+ * pendentes, na roda de tempo do {@link PhaseScheduler} ({@code wheel}) e em um
+ * {@link ScheduledThreadPoolExecutor} que remove as tarefas canceladas ({@code executor}), cuja
+ * fila é um heap. O relógio da roda fica parado, de forma que nenhum prazo vence.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseSchedulerBenchmark {
+
+  @Param({"10000", "100000"})
+  public int pending;
+
+  @Param({"wheel", "executor"})
+  public String scheduler;
+
+  private PhaseScheduler wheel;
+  private ScheduledThreadPoolExecutor executor;
+  private Map<SessionPhase, Long> durations;
+  private long id;
+  private int next;
+
+  /**
+   * Método de pré-configuração, que agenda os temporizadores pendentes com prazos de até 10 horas.
+   */
+  @Setup
+  public void setUp() {
+    SessionRegistry registry = new SessionRegistry(null, Integer.MAX_VALUE, () -> 0L);
+    id = registry.create(new User("Ana"), "Sessão cronometrada", 3);
+    registry.nextPhase(id);
+    wheel = new PhaseScheduler(registry, 100, () -> 0L);
+    executor = new ScheduledThreadPoolExecutor(1);
+    executor.setRemoveOnCancelPolicy(true);
+    durations = new EnumMap<>(SessionPhase.class);
+    for (int i = 0; i < pending; i++) {
+      long delay = TimeUnit.HOURS.toMillis(1) + (i * 7919L) % TimeUnit.HOURS.toMillis(9);
+      if (scheduler.equals("wheel")) {
+        durations.put(SessionPhase.BRAINSTORM, delay);
+        wheel.schedule(id, durations);
+      } else {
+        executor.schedule(() -> { }, delay, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public boolean scheduleAndCancel() {
+    long delay = TimeUnit.MINUTES.toMillis(10) + (next++ & 0xFFFF) * 100L;
+    if (scheduler.equals("wheel")) {
+      durations.put(SessionPhase.BRAINSTORM, delay);
+      PhaseTimer timer = wheel.schedule(id, durations);
+      return timer.cancel();
+    }
+    ScheduledFuture<?> future = executor.schedule(() -> { }, delay, TimeUnit.MILLISECONDS);
+    return future.cancel(false);
+  }
+}
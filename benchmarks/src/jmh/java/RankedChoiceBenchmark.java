@@ -0,0 +1,159 @@
+package jmh.java;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+import main.java.VotingStrategy;
+
+/**
+ * Benchmark da apuração por segundo turno instantâneo com cédulas grandes, parametrizado pela
+ * quantidade de ideias e pelo tamanho das cédulas. A passagem ao ranqueamento, que calcula a
+ * eliminação, é comparada com a eliminação que reconta todas as cédulas a cada rodada.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class RankedChoiceBenchmark {
+
+  @Param({"1000", "10000"})
+  public int ideas;
+
+  @Param({"10000"})
+  public int participants;
+
+  /**
+   * Limite de votos, que é o tamanho de cada cédula.
+   */
+  @Param({"10", "100"})
+  public int votingLimit;
+
+  /**
+   * Participantes da sessão.
+   */
+  private User[] users;
+  /**
+   * Cédula de cada participante, com os índices das ideias em ordem de preferência.
+   */
+  private int[][] ballots;
+  /**
+   * Sessão na fase de votação, com todas as cédulas.
+   */
+  private Session session;
+
+  /**
+   * Método de pré-configuração, que sorteia as cédulas. As preferências seguem uma distribuição
+   * enviesada, de forma que as contagens variam entre as ideias.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    users = BenchmarkSessions.users(participants);
+    Random random = new Random(42);
+    ballots = new int[participants][];
+    for (int v = 0; v < participants; v++) {
+      int[] ballot = new int[votingLimit];
+      int length = 0;
+      while (length < votingLimit) {
+        double skew = random.nextDouble();
+        int index = (int) (skew * skew * ideas);
+        if (index % participants != v && !contains(ballot, length, index)) {
+          ballot[length++] = index;
+        }
+      }
+      ballots[v] = ballot;
+    }
+  }
+
+  /**
+   * Método de pré-configuração de cada medição, que monta a sessão e registra as cédulas.
+   */
+  @Setup(Level.Invocation)
+  public void castBallots() {
+    session = BenchmarkSessions.voting(users, ideas, votingLimit, VotingStrategy.RANKED_CHOICE);
+    Idea[] all = session.getIdeas();
+    for (int v = 0; v < participants; v++) {
+      Idea[] ranking = new Idea[ballots[v].length];
+      for (int p = 0; p < ranking.length; p++) {
+        ranking[p] = all[ballots[v][p]];
+      }
+      session.castBallot(users[v], ranking);
+    }
+  }
+
+  @Benchmark
+  public Idea[] eliminate() {
+    session.nextPhase(); // RANKING
+    return session.rankIdeas();
+  }
+
+  /**
+   * Eliminação de referência, que reconta as primeiras preferências restantes de todas as cédulas
+   * a cada rodada e procura a ideia com menos cédulas percorrendo todas as ideias.
+   */
+  @Benchmark
+  public int[] recountRounds() {
+    boolean[] eliminated = new boolean[ideas];
+    int[] rounds = new int[ideas];
+    int[] count = new int[ideas];
+    boolean[] candidate = new boolean[ideas];
+    int remaining = 0;
+    for (int[] ballot : ballots) {
+      for (int index : ballot) {
+        if (!candidate[index]) {
+          candidate[index] = true;
+          remaining++;
+        }
+      }
+    }
+    for (int round = 1; round <= remaining; round++) {
+      Arrays.fill(count, 0);
+      for (int[] ballot : ballots) {
+        for (int index : ballot) {
+          if (!eliminated[index]) {
+            count[index]++;
+            break;
+          }
+        }
+      }
+      int loser = -1;
+      for (int index = 0; index < ideas; index++) {
+        if (candidate[index] && !eliminated[index]
+            && (loser < 0 || count[index] <= count[loser])) {
+          loser = index;
+        }
+      }
+      eliminated[loser] = true;
+      rounds[loser] = round;
+    }
+    return rounds;
+  }
+
+  private static boolean contains(int[] ballot, int length, int index) {
+    for (int i = 0; i < length; i++) {
+      if (ballot[i] == index) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,67 @@
+package jmh.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do ranqueamento das ideias de uma sessão com todos os votos registrados.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+
+  @Param({"100", "1000"})
+  public int participants;
+
+  @Param({"1000", "10000"})
+  public int ideas;
+
+  @Param({"3", "10"})
+  public int votingLimit;
+
+  /**
+   * Sessão na fase de ranqueamento.
+   */
+  private Session session;
+
+  /**
+   * Método de pré-configuração, que monta a sessão, registra os votos e passa ao ranqueamento.
+   */
+  @Setup
+  public void setUp() {
+    User[] users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, votingLimit);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    session.nextPhase(); // RANKING
+  }
+
+  @Benchmark
+  public Idea[] rankIdeas() {
+    return session.rankIdeas();
+  }
+
+  @Benchmark
+  public Idea[] topIdeas() {
+    return session.topIdeas(20);
+  }
+}
@@ -0,0 +1,82 @@
+package jmh.java;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Session;
+import main.java.SessionRegistry;
+import main.java.User;
+
+/**
+ * Benchmark da consulta concorrente de sessões no registro, com todas as threads disponíveis
+ * consultando identificadores aleatórios.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class RegistryBenchmark {
+
+  /**
+   * Quantidade de sessões registradas.
+   */
+  @Param({"1000", "100000"})
+  public int sessions;
+
+  /**
+   * Registro usado pelas medições.
+   */
+  private SessionRegistry registry;
+  /**
+   * Identificadores das sessões registradas.
+   */
+  private long[] ids;
+  /**
+   * Participante de todas as sessões.
+   */
+  private User member;
+
+  /**
+   * Método de pré-configuração, que cria as sessões no registro.
+   */
+  @Setup
+  public void setUp() {
+    registry = new SessionRegistry();
+    User[] owners = BenchmarkSessions.users(64);
+    member = new User("Member");
+    ids = new long[sessions];
+    for (int i = 0; i < sessions; i++) {
+      ids[i] = registry.create(owners[i % owners.length], "Benchmark", 3);
+      if (i % 100 == 0) {
+        registry.get(ids[i]).addParticipant(member);
+      }
+    }
+  }
+
+  @Benchmark
+  public Session get() {
+    return registry.get(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+  }
+
+  @Benchmark
+  public long[] sessionsOf() {
+    return registry.sessionsOf(member);
+  }
+}
@@ -0,0 +1,74 @@
+package jmh.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark da saída de participantes durante a votação: a remoção com a retirada dos votos pelo
+ * índice inverso do livro de votos ({@code cascade}), com a retirada também das ideias do
+ * participante ({@code ideas}), e a limpeza à mão dos votos, percorrendo todas as ideias, antes
+ * da remoção ({@code scan}). Cada medição remove {@value #BATCH} participantes de uma sessão
+ * montada a cada iteração, em que todos usaram os seus votos.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = RemovalBenchmark.BATCH)
+@Measurement(iterations = 5, batchSize = RemovalBenchmark.BATCH)
+@Fork(1)
+public class RemovalBenchmark {
+
+  static final int BATCH = 1000;
+
+  @Param({"1000", "100000"})
+  public int ideas;
+
+  @Param({"cascade", "ideas", "scan"})
+  public String removal;
+
+  private static final int PARTICIPANTS = BATCH + 1;
+
+  private User[] users;
+  private Session session;
+  private int next;
+
+  /**
+   * Método de configuração de cada iteração, que monta a sessão em votação com todos os votos.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    users = BenchmarkSessions.users(PARTICIPANTS);
+    session = BenchmarkSessions.voting(users, ideas, 10);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    next = 1;
+  }
+
+  @Benchmark
+  public int removeParticipant() {
+    User user = users[next++];
+    if (removal.equals("scan")) {
+      for (Idea idea : session.getIdeasView()) {
+        idea.removeVote(user);
+      }
+    }
+    session.removeParticipant(user, removal.equals("ideas"));
+    return session.getParticipantCount();
+  }
+}
@@ -0,0 +1,106 @@
+package jmh.java;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.SearchIndex;
+import main.java.User;
+
+/**
+ * Benchmark da busca de ideias em um arquivo de sessões: a consulta ao índice invertido, por
+ * palavra e por prefixo, comparada à varredura das descrições de todas as ideias, que era o único
+ * caminho antes do índice.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int ideas;
+
+  private static final int IDEAS_PER_SESSION = 100;
+  private static final int WORDS = 20000;
+  private static final String[] SYLLABLES = {"ca", "ro", "na", "de", "pla", "ta", "for", "ma",
+      "sis", "te", "mi", "co", "lu", "ge", "rar", "ver", "pre", "dor", "tu", "ses"};
+
+  private String[] vocabulary;
+  private Idea[] archive;
+  private SearchIndex index;
+  private int next;
+
+  /**
+   * Método de pré-configuração, que sorteia as ideias do arquivo e monta o índice.
+   */
+  @Setup
+  public void setUp() {
+    User[] users = BenchmarkSessions.users(100);
+    Random random = new Random(42);
+    vocabulary = new String[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      StringBuilder word = new StringBuilder();
+      for (int s = 3 + random.nextInt(3); s > 0; s--) {
+        word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+      }
+      vocabulary[i] = word.toString();
+    }
+    archive = new Idea[ideas];
+    index = new SearchIndex();
+    for (int i = 0; i < ideas; i++) {
+      StringBuilder text = new StringBuilder();
+      for (int w = 5 + random.nextInt(6); w > 0; w--) {
+        text.append(vocabulary[random.nextInt(WORDS)]).append(' ');
+      }
+      archive[i] = new Idea(users[i % users.length], text.toString().trim());
+      index.add(i / IDEAS_PER_SESSION, archive[i]);
+    }
+  }
+
+  @Benchmark
+  public SearchIndex.Hit[] searchTerm() {
+    return index.search(vocabulary[next++ % WORDS], 10, SearchIndex.Order.RELEVANCE);
+  }
+
+  @Benchmark
+  public SearchIndex.Hit[] searchPrefix() {
+    return index.search(vocabulary[next++ % WORDS].substring(0, 4) + "*", 10,
+        SearchIndex.Order.VOTES);
+  }
+
+  /**
+   * Varredura de referência, que normaliza cada descrição e procura a palavra nela, como se fazia
+   * percorrendo as ideias de cada sessão.
+   */
+  @Benchmark
+  public int scan() {
+    String term = vocabulary[next++ % WORDS];
+    int found = 0;
+    for (Idea idea : archive) {
+      String text = Normalizer.normalize(idea.getDescription(), Normalizer.Form.NFD)
+          .toLowerCase(Locale.ROOT);
+      if (text.contains(term)) {
+        found++;
+      }
+    }
+    return found;
+  }
+}
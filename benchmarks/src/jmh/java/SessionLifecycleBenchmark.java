@@ -0,0 +1,91 @@
+package jmh.java;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do ciclo de vida de uma sessão: entrada dos participantes, adição das ideias e
+ * passagem pelas fases até o ranqueamento. Cada operação monta uma sessão completa.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionLifecycleBenchmark {
+
+  @Param({"100", "1000"})
+  public int participants;
+
+  @Param({"1000", "10000"})
+  public int ideas;
+
+  /**
+   * Participantes, criados uma única vez.
+   */
+  private User[] users;
+  /**
+   * Ideias de cada rodada, recriadas a cada operação por guardarem a sessão.
+   */
+  private String[] descriptions;
+
+  /**
+   * Método de pré-configuração, que cria os participantes e os textos das ideias.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(participants);
+    descriptions = new String[ideas];
+    for (int i = 0; i < ideas; i++) {
+      descriptions[i] = "Idea " + i;
+    }
+  }
+
+  @Benchmark
+  public Session addParticipants() {
+    Session session = new Session(users[0], "Benchmark", 3);
+    for (User user : users) {
+      session.addParticipant(user);
+    }
+    return session;
+  }
+
+  @Benchmark
+  public Session addIdeas() {
+    Session session = new Session(users[0], "Benchmark", 3);
+    for (User user : users) {
+      session.addParticipant(user);
+    }
+    session.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < ideas; i++) {
+      session.addIdea(new Idea(users[i % participants], descriptions[i]));
+    }
+    return session;
+  }
+
+  @Benchmark
+  public Session phaseTransitions() {
+    Session session = new Session(users[0], "Benchmark", 3);
+    session.nextPhase(); // BRAINSTORM
+    session.nextPhase(); // VOTING
+    session.nextPhase(); // RANKING
+    return session;
+  }
+}
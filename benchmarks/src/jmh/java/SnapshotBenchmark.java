@@ -0,0 +1,99 @@
+package jmh.java;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.SessionSnapshot;
+import main.java.User;
+
+/**
+ * Benchmark da disputa entre votantes e leitores de uma sessão em votação: três threads votam e
+ * retiram votos enquanto uma thread lê, como um painel, os participantes, as ideias com as suas
+ * pontuações e as dez mais votadas. Na leitura direta ({@code snapshots = -1}) as consultas passam
+ * pelos bloqueios da sessão e do placar; nas demais, o painel lê os retratos publicados a cada
+ * voto ({@code 0}) ou a cada intervalo em milissegundos.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+  @Param({"1000"})
+  public int participants;
+
+  @Param({"10000"})
+  public int ideas;
+
+  @Param({"-1", "0", "10"})
+  public long snapshots;
+
+  private User[] users;
+  private Session session;
+
+  /**
+   * Método de pré-configuração, que monta a sessão e liga a publicação dos retratos.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, 10);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    session.setSnapshotInterval(snapshots);
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(3)
+  public boolean vote() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    User voter = users[random.nextInt(participants)];
+    Idea idea = session.getIdea(random.nextInt(ideas));
+    idea.registerVote(voter);
+    boolean voted = idea.countVotes() > 0;
+    idea.removeVote(voter);
+    return voted;
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(1)
+  public void read(Blackhole blackhole) {
+    if (snapshots < 0) {
+      blackhole.consume(session.getParticipants());
+      for (Idea idea : session.getIdeas()) {
+        blackhole.consume(session.scoreOf(idea));
+      }
+      blackhole.consume(session.topIdeas(10));
+      return;
+    }
+    SessionSnapshot snapshot = session.snapshot();
+    blackhole.consume(snapshot.getParticipants());
+    List<Idea> all = snapshot.getIdeas();
+    for (int i = 0; i < all.size(); i++) {
+      blackhole.consume(snapshot.scoreOf(all.get(i)));
+    }
+    blackhole.consume(snapshot.rankTop(10));
+  }
+}
@@ -0,0 +1,89 @@
+package jmh.java;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.SessionCodec;
+import main.java.StoredSession;
+import main.java.User;
+
+/**
+ * Benchmark da abertura de uma sessão encerrada gravada em disco até a primeira página do
+ * ranqueamento, como em um relatório: a leitura completa do formato de {@link SessionCodec}
+ * ({@code decode}), que monta todas as ideias e votos, e a abertura da sessão gravada por
+ * {@link StoredSession} ({@code lazy}), que monta apenas as páginas das ideias da página.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class StoredSessionBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int ideas;
+
+  @Param({"decode", "lazy"})
+  public String loading;
+
+  private Path directory;
+  private Path file;
+
+  /**
+   * Método de pré-configuração, que grava a sessão encerrada no formato medido.
+   */
+  @Setup
+  public void setUp() throws IOException {
+    User[] users = BenchmarkSessions.users(1000);
+    Session session = BenchmarkSessions.voting(users, ideas, 10);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    session.nextPhase(); // RANKING
+    directory = Files.createTempDirectory("stored-session");
+    file = directory.resolve("session.bin");
+    if (loading.equals("decode")) {
+      try (OutputStream out = Files.newOutputStream(file)) {
+        SessionCodec.encode(session, out);
+      }
+    } else {
+      StoredSession.write(session, file);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public Idea[] firstPage() throws IOException {
+    if (loading.equals("decode")) {
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+        return SessionCodec.decode(in).rankPage(0, 20);
+      }
+    }
+    return StoredSession.open(file).rankPage(0, 20);
+  }
+}
@@ -0,0 +1,125 @@
+package jmh.java;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do registro de votos com assinantes, parametrizado pela quantidade de assinaturas e
+ * pelo agrupamento dos votos. A quantidade de eventos entregues é reportada no contador
+ * {@code delivered}, por operação.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionBenchmark {
+
+  @Param({"1000"})
+  public int participants;
+
+  @Param({"10000"})
+  public int ideas;
+
+  @Param({"0", "1", "1000"})
+  public int subscribers;
+
+  @Param({"true", "false"})
+  public boolean coalesceVotes;
+
+  /**
+   * Participantes da sessão.
+   */
+  private User[] users;
+  /**
+   * Sessão na fase de votação.
+   */
+  private Session session;
+  /**
+   * Executor das entregas.
+   */
+  private ExecutorService executor;
+  /**
+   * Eventos entregues a todos os assinantes.
+   */
+  private LongAdder events;
+
+  /**
+   * Método de pré-configuração, que monta a sessão e as assinaturas.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, 10);
+    executor = Executors.newFixedThreadPool(2);
+    events = new LongAdder();
+    for (int i = 0; i < subscribers; i++) {
+      session.subscribe(batch -> events.add(batch.size()), executor, coalesceVotes);
+    }
+  }
+
+  /**
+   * Método de finalização, que encerra o executor.
+   */
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Contador dos eventos entregues, zerado a cada iteração.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Delivered {
+
+    public long delivered;
+
+    private long start;
+
+    @Setup(Level.Iteration)
+    public void start(SubscriptionBenchmark benchmark) {
+      start = benchmark.events.sum();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop(SubscriptionBenchmark benchmark) {
+      delivered = benchmark.events.sum() - start;
+    }
+  }
+
+  @Benchmark
+  public boolean voteAndWithdraw(Delivered delivered) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    User voter = users[random.nextInt(participants)];
+    Idea idea = session.getIdea(random.nextInt(ideas));
+    idea.registerVote(voter);
+    boolean voted = idea.countVotes() > 0;
+    idea.removeVote(voter);
+    return voted;
+  }
+}
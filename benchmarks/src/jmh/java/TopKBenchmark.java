@@ -0,0 +1,105 @@
+package jmh.java;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do ranqueamento parcial em sessões muito grandes, comparando as k primeiras ideias e a
+ * leitura do ranking página a página com a ordenação completa das ideias votadas, que era como o
+ * ranqueamento era feito antes do placar.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class TopKBenchmark {
+
+  @Param({"100000", "1000000"})
+  public int ideas;
+
+  @Param({"10000"})
+  public int participants;
+
+  @Param({"10"})
+  public int votingLimit;
+
+  /**
+   * Quantidade de ideias exibidas.
+   */
+  @Param({"20"})
+  public int k;
+
+  /**
+   * Sessão na fase de ranqueamento.
+   */
+  private Session session;
+
+  /**
+   * Método de pré-configuração, que monta a sessão, registra os votos e passa ao ranqueamento.
+   */
+  @Setup
+  public void setUp() {
+    User[] users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, votingLimit);
+    BenchmarkSessions.castAllVotes(session, users, 42);
+    session.nextPhase(); // RANKING
+  }
+
+  @Benchmark
+  public List<Idea> fullSort() {
+    List<Idea> voted = new ArrayList<>();
+    for (Idea idea : session.getIdeasView()) {
+      if (idea.countVotes() > 0) {
+        voted.add(idea);
+      }
+    }
+    // Ordenação estável, os empates ficam na ordem de adição
+    voted.sort(Comparator.comparingInt(Idea::countVotes).reversed());
+    return voted.subList(0, Math.min(k, voted.size()));
+  }
+
+  @Benchmark
+  public Idea[] rankIdeas() {
+    return session.rankIdeas();
+  }
+
+  @Benchmark
+  public Idea[] rankTop() {
+    return session.rankTop(k);
+  }
+
+  @Benchmark
+  public void rankPages(Blackhole blackhole) {
+    for (Iterator<Idea[]> pages = session.rankPages(k); pages.hasNext(); ) {
+      blackhole.consume(pages.next());
+    }
+  }
+
+  @Benchmark
+  public Idea[] rankPageDeep() {
+    return session.rankPage(session.getIdeaCount() / 20, k);
+  }
+}
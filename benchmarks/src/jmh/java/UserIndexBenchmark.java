@@ -0,0 +1,92 @@
+package jmh.java;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.SessionRegistry;
+import main.java.User;
+import main.java.UserIndex;
+
+/**
+ * Benchmark do custo do índice de usuários nos votos, com a sessão sem índice, ligada a um índice
+ * só com os contadores e ligada a um índice com limite de votos por semana. Cada operação registra
+ * um voto e o remove em seguida, como no {@link MetricsBenchmark}.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserIndexBenchmark {
+
+  @Param({"none", "counters", "quota"})
+  public String index;
+
+  private static final int PARTICIPANTS = 1000;
+  private static final int IDEAS = 1000;
+  private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+  private User[] users;
+  private Session session;
+
+  /**
+   * Método de pré-configuração, que liga o índice ao registro e monta a sessão por ele.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(PARTICIPANTS);
+    SessionRegistry registry = new SessionRegistry();
+    if (index.equals("counters")) {
+      registry.setUserIndex(new UserIndex());
+    } else if (index.equals("quota")) {
+      registry.setUserIndex(new UserIndex(1000, WEEK, System::currentTimeMillis));
+    }
+    session = registry.get(registry.create(users[0], "Benchmark", 10));
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    Idea[] ideas = new Idea[IDEAS];
+    for (int i = 0; i < IDEAS; i++) {
+      ideas[i] = new Idea(users[i % PARTICIPANTS], "Idea " + i);
+    }
+    session.addIdeas(ideas);
+    session.nextPhase(); // VOTING
+  }
+
+  @Benchmark
+  public boolean voteAndWithdraw() {
+    return castAndWithdraw();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean voteAndWithdrawContended() {
+    return castAndWithdraw();
+  }
+
+  private boolean castAndWithdraw() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    User voter = users[random.nextInt(PARTICIPANTS)];
+    Idea idea = session.getIdea(random.nextInt(IDEAS));
+    idea.registerVote(voter);
+    boolean voted = idea.countVotes() > 0;
+    idea.removeVote(voter);
+    return voted;
+  }
+}
@@ -0,0 +1,109 @@
+package jmh.java;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Benchmark do registro e remoção de votos, com uma thread e com várias threads votando na mesma
+ * sessão. Cada operação registra um voto e o remove em seguida, de forma que a sessão permanece
+ * no mesmo estado durante toda a medição.
+ * @author hugo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VotingBenchmark {
+
+  @Param({"100", "1000"})
+  public int participants;
+
+  @Param({"1000", "10000"})
+  public int ideas;
+
+  @Param({"3", "10"})
+  public int votingLimit;
+
+  /**
+   * Participantes da sessão.
+   */
+  private User[] users;
+  /**
+   * Sessão na fase de votação.
+   */
+  private Session session;
+  /**
+   * Participante que já usou todos os seus votos.
+   */
+  private User exhausted;
+
+  /**
+   * Método de pré-configuração, que monta a sessão e esgota os votos de um participante.
+   */
+  @Setup
+  public void setUp() {
+    users = BenchmarkSessions.users(participants);
+    session = BenchmarkSessions.voting(users, ideas, votingLimit);
+    exhausted = users[participants - 1];
+    for (int i = 0; i < ideas && i < votingLimit * 2; i++) {
+      session.getIdea(i).registerVote(exhausted);
+    }
+  }
+
+  /**
+   * Método para a escolha aleatória da ideia a votar.
+   */
+  private Idea pickIdea(ThreadLocalRandom random) {
+    return session.getIdea(random.nextInt(ideas));
+  }
+
+  @Benchmark
+  public boolean voteAndWithdraw() {
+    return castAndWithdraw();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public boolean voteAndWithdrawContended() {
+    return castAndWithdraw();
+  }
+
+  @Benchmark
+  public Integer rejectedVote() {
+    Idea idea = pickIdea(ThreadLocalRandom.current());
+    idea.registerVote(exhausted);
+    return idea.countVotes();
+  }
+
+  /**
+   * Método que registra e remove um voto de um participante aleatório em uma ideia aleatória.
+   */
+  private boolean castAndWithdraw() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    User voter = users[random.nextInt(participants - 1)];
+    Idea idea = pickIdea(random);
+    idea.registerVote(voter);
+    boolean voted = idea.countVotes() > 0;
+    idea.removeVote(voter);
+    return voted;
+  }
+}
@@ -0,0 +1,216 @@
+package server.java;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Classe que representa uma requisição HTTP/1.1 lida de uma conexão, com o mínimo necessário para
+ * a API das sessões: linha de requisição, parâmetros de consulta, cabeçalhos e corpo com tamanho
+ * declarado.
+ * @author hugo
+ */
+final class HttpRequest {
+
+  /**
+   * Tamanho máximo de uma linha da requisição.
+   */
+  private static final int MAX_LINE = 8 * 1024;
+  /**
+   * Quantidade máxima de cabeçalhos.
+   */
+  private static final int MAX_HEADERS = 100;
+  /**
+   * Tamanho máximo do corpo.
+   */
+  static final int MAX_BODY = 64 * 1024;
+
+  final String method;
+  final String path;
+  final Map<String, String> query;
+  /**
+   * Cabeçalhos, com os nomes em minúsculas.
+   */
+  final Map<String, String> headers;
+  final byte[] body;
+
+  private HttpRequest(String method, String path, Map<String, String> query,
+      Map<String, String> headers, byte[] body) {
+    this.method = method;
+    this.path = path;
+    this.query = query;
+    this.headers = headers;
+    this.body = body;
+  }
+
+  /**
+   * Método para a leitura da próxima requisição de uma conexão.
+   *
+   * @param in Fluxo da conexão, com buffer.
+   * @return Requisição lida, ou nulo se a conexão foi encerrada entre requisições.
+   * @throws IOException Se a requisição for malformada ou a conexão falhar.
+   */
+  static HttpRequest read(InputStream in) throws IOException {
+    String line = readLine(in);
+    if (line == null) {
+      return null;
+    }
+    String[] parts = line.split(" ");
+    if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+      throw new IOException("Linha de requisição malformada: " + line);
+    }
+    Map<String, String> headers = new HashMap<>();
+    for (String header = readLine(in); header != null && !header.isEmpty();
+        header = readLine(in)) {
+      int colon = header.indexOf(':');
+      if (colon <= 0 || headers.size() == MAX_HEADERS) {
+        throw new IOException("Cabeçalho malformado: " + header);
+      }
+      headers.put(header.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+          header.substring(colon + 1).trim());
+    }
+    int length = 0;
+    String contentLength = headers.get("content-length");
+    if (contentLength != null) {
+      try {
+        length = Integer.parseInt(contentLength);
+      } catch (NumberFormatException e) {
+        throw new IOException("Tamanho de corpo malformado: " + contentLength);
+      }
+      if (length < 0 || length > MAX_BODY) {
+        throw new IOException("Tamanho de corpo inválido: " + length);
+      }
+    }
+    byte[] body = in.readNBytes(length);
+    if (body.length != length) {
+      throw new EOFException();
+    }
+
+    String target = parts[1];
+    int mark = target.indexOf('?');
+    String path = mark < 0 ? target : target.substring(0, mark);
+    Map<String, String> query = new HashMap<>();
+    if (mark >= 0) {
+      for (String pair : target.substring(mark + 1).split("&")) {
+        int equals = pair.indexOf('=');
+        if (equals > 0) {
+          query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+        } else if (!pair.isEmpty()) {
+          query.put(decode(pair), "");
+        }
+      }
+    }
+    return new HttpRequest(parts[0], path, query, headers, body);
+  }
+
+  /**
+   * Método que indica se a conexão deve ser mantida após a resposta.
+   *
+   * @return Falso se o cliente pediu o encerramento.
+   */
+  boolean keepAlive() {
+    return !"close".equalsIgnoreCase(headers.get("connection"));
+  }
+
+  /**
+   * Método para a obtenção do corpo como texto.
+   *
+   * @return Corpo decodificado como UTF-8.
+   */
+  String text() {
+    return new String(body, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Método para a gravação de uma resposta com corpo JSON.
+   *
+   * @param out Fluxo da conexão.
+   * @param status Código de estado.
+   * @param json Corpo da resposta.
+   * @param keepAlive Se a conexão é mantida.
+   * @throws IOException Se a gravação falhar.
+   */
+  static void respond(OutputStream out, int status, String json, boolean keepAlive)
+      throws IOException {
+    respond(out, status, "application/json; charset=utf-8", json, keepAlive);
+  }
+
+  /**
+   * Método para a gravação de uma resposta com corpo de texto de qualquer tipo.
+   *
+   * @param out Fluxo da conexão.
+   * @param status Código de estado.
+   * @param contentType Tipo do corpo.
+   * @param text Corpo da resposta.
+   * @param keepAlive Se a conexão é mantida.
+   * @throws IOException Se a gravação falhar.
+   */
+  static void respond(OutputStream out, int status, String contentType, String text,
+      boolean keepAlive) throws IOException {
+    byte[] body = text.getBytes(StandardCharsets.UTF_8);
+    String head = "HTTP/1.1 " + status + " " + reason(status) + "\r\n"
+        + "Content-Type: " + contentType + "\r\n"
+        + "Content-Length: " + body.length + "\r\n"
+        + (keepAlive ? "" : "Connection: close\r\n")
+        + "\r\n";
+    out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+    out.write(body);
+    out.flush();
+  }
+
+  private static String reason(int status) {
+    switch (status) {
+      case 200:
+        return "OK";
+      case 201:
+        return "Created";
+      case 400:
+        return "Bad Request";
+      case 403:
+        return "Forbidden";
+      case 404:
+        return "Not Found";
+      case 405:
+        return "Method Not Allowed";
+      case 409:
+        return "Conflict";
+      default:
+        return "Status";
+    }
+  }
+
+  /**
+   * Método para a leitura de uma linha terminada em CRLF.
+   *
+   * @return Linha sem o terminador, ou nulo no fim do fluxo antes de qualquer byte.
+   */
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b < 0) {
+        if (line.size() == 0) {
+          return null;
+        }
+        throw new EOFException();
+      }
+      if (line.size() == MAX_LINE) {
+        throw new IOException("Linha muito longa");
+      }
+      line.write(b);
+    }
+    String text = line.toString(StandardCharsets.UTF_8);
+    return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+  }
+
+  private static String decode(String text) {
+    return URLDecoder.decode(text, StandardCharsets.UTF_8);
+  }
+}
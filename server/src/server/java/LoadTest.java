@@ -0,0 +1,441 @@
+package server.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classe que representa o teste de carga do servidor de sessões, que simula uma sessão com
+ * milhares de participantes conectados ao mesmo tempo e reporta as latências de cada etapa.
+ *
+ * Cada cliente mantém uma conexão persistente própria, em uma thread virtual, e todos executam
+ * cada etapa ao mesmo tempo: conexão, entrada na sessão, envio de uma ideia, votos e consulta do
+ * ranqueamento. Entre as etapas o anfitrião passa a sessão de fase. Durante a votação, alguns
+ * observadores acompanham a sessão por WebSocket.
+ *
+ * Os observadores que ficam para trás recebem ressincronizações, com o estado completo, no lugar
+ * dos eventos perdidos; a quantidade delas é reportada junto com as mensagens recebidas.
+ *
+ * Sem um servidor informado, o teste inicia um servidor em outro processo, de forma que os
+ * descritores de arquivo dos dois lados das conexões não se somam em um único processo.
+ *
+ * Argumentos, na forma nome=valor: {@code clients} (10000), {@code votes} por cliente (3),
+ * {@code watchers} (100) e {@code server} (host:porta).
+ * @author hugo
+ */
+public final class LoadTest {
+
+  private static final Pattern INDEX = Pattern.compile("\"index\":(\\d+)");
+  private static final int CONNECT_ATTEMPTS = 20;
+
+  private final InetSocketAddress address;
+  private final int clients;
+  private final int votes;
+  private final int watchers;
+  private final ExecutorService threads;
+
+  private LoadTest(InetSocketAddress address, int clients, int votes, int watchers) {
+    this.address = address;
+    this.clients = clients;
+    this.votes = votes;
+    this.watchers = watchers;
+    threads = Executors.newVirtualThreadPerTaskExecutor();
+  }
+
+  /**
+   * Método de entrada do teste de carga.
+   *
+   * @param args Argumentos na forma nome=valor.
+   * @throws Exception Se o servidor não puder ser iniciado ou alcançado.
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (equals > 0) {
+        options.put(arg.substring(0, equals), arg.substring(equals + 1));
+      }
+    }
+    int clients = Integer.parseInt(options.getOrDefault("clients", "10000"));
+    int votes = Integer.parseInt(options.getOrDefault("votes", "3"));
+    int watchers = Integer.parseInt(options.getOrDefault("watchers", "100"));
+    String server = options.get("server");
+
+    Process process = null;
+    InetSocketAddress address;
+    if (server == null) {
+      process = spawnServer();
+      address = new InetSocketAddress("127.0.0.1", readPort(process));
+    } else {
+      int colon = server.lastIndexOf(':');
+      address = new InetSocketAddress(server.substring(0, colon),
+          Integer.parseInt(server.substring(colon + 1)));
+    }
+    try {
+      new LoadTest(address, clients, votes, watchers).run();
+    } finally {
+      if (process != null) {
+        process.destroy();
+        process.waitFor(10, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  private static Process spawnServer() throws IOException {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+        SessionServer.class.getName(), "0")
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+  }
+
+  private static int readPort(Process process) throws IOException {
+    BufferedReader reader = new BufferedReader(
+        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    String line = reader.readLine();
+    if (line == null || !line.startsWith("listening ")) {
+      throw new IOException("O servidor não informou a porta: " + line);
+    }
+    return Integer.parseInt(line.substring("listening ".length()).trim());
+  }
+
+  private void run() throws Exception {
+    System.out.printf(Locale.ROOT, "%d clientes, %d votos por cliente, %d observadores, %s%n",
+        clients, votes, watchers, address);
+    Client host = Client.connect(address);
+    String created = host.send("POST", "/sessions?user=host&description=carga&limit=" + votes,
+        null).body;
+    String session = "/sessions/" + created.replaceAll("\\D", "");
+    host.send("POST", session + "/participants?user=host", null);
+
+    Client[] pool = new Client[clients];
+    List<Stage> stages = new ArrayList<>();
+    stages.add(stage("connect", i -> {
+      pool[i] = Client.connect(address);
+      return 200;
+    }));
+    stages.add(stage("join", i -> pool[i].send("POST",
+        session + "/participants?user=" + name(i), null).status));
+    host.send("POST", session + "/phase?user=host", null);
+    int[] ideaOf = new int[clients];
+    stages.add(stage("idea", i -> {
+      Response response = pool[i].send("POST", session + "/ideas?user=" + name(i),
+          "ideia " + i);
+      Matcher matcher = INDEX.matcher(response.body);
+      ideaOf[i] = matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+      return response.status;
+    }));
+
+    List<Watcher> watching = watch(session);
+    host.send("POST", session + "/phase?user=host", null);
+    stages.add(stage("vote", i -> {
+      SplittableRandom random = new SplittableRandom(i);
+      int status = 200;
+      for (int v = 0; v < votes; v++) {
+        int target = ideaOf[random.nextInt(clients)];
+        if (target < 0 || target == ideaOf[i]) {
+          target = ideaOf[(i + 1) % clients];
+        }
+        int code = pool[i].send("POST", session + "/ideas/" + target + "/votes?user=" + name(i),
+            null).status;
+        status = Math.max(status, code);
+      }
+      return status;
+    }, votes));
+    host.send("POST", session + "/phase?user=host", null);
+    stages.add(stage("ranking", i -> pool[i].send("GET",
+        session + "/ranking?offset=0&limit=10", null).status));
+
+    // Aguarda que os observadores recebam as últimas alterações antes de desconectá-los
+    Thread.sleep(500);
+    long messages = 0;
+    long events = 0;
+    long resyncs = 0;
+    for (Watcher watcher : watching) {
+      messages += watcher.messages.get();
+      events += watcher.events.get();
+      resyncs += watcher.resyncs.get();
+      watcher.close();
+    }
+    for (Client client : pool) {
+      if (client != null) {
+        client.close();
+      }
+    }
+    host.close();
+    threads.shutdown();
+
+    System.out.printf(Locale.ROOT, "%-8s %9s %7s %9s %9s %9s %11s%n",
+        "etapa", "reqs", "erros", "p50 ms", "p99 ms", "max ms", "reqs/s");
+    for (Stage stage : stages) {
+      System.out.println(stage);
+    }
+    if (!watching.isEmpty()) {
+      System.out.printf(Locale.ROOT,
+          "observadores: %d, em média %.1f mensagens, %.1f eventos e %.1f ressincronizações%n",
+          watching.size(), (double) messages / watching.size(),
+          (double) events / watching.size(), (double) resyncs / watching.size());
+    }
+  }
+
+  /**
+   * Método para a execução de uma etapa por todos os clientes ao mesmo tempo.
+   *
+   * @param name Nome da etapa.
+   * @param request Requisição de cada cliente, que devolve o pior código de estado obtido.
+   * @return Resultado da etapa.
+   */
+  private Stage stage(String name, Request request) throws InterruptedException {
+    return stage(name, request, 1);
+  }
+
+  /**
+   * Método para a execução de uma etapa com várias requisições por cliente, em que a latência de
+   * cada cliente é a média das suas requisições.
+   */
+  private Stage stage(String name, Request request, int requestsPerClient)
+      throws InterruptedException {
+    long[] latencies = new long[clients];
+    AtomicInteger errors = new AtomicInteger();
+    long start = System.nanoTime();
+    List<CompletableFuture<Void>> tasks = new ArrayList<>(clients);
+    for (int i = 0; i < clients; i++) {
+      int client = i;
+      tasks.add(CompletableFuture.runAsync(() -> {
+        long begin = System.nanoTime();
+        try {
+          if (request.send(client) >= 400) {
+            errors.incrementAndGet();
+          }
+        } catch (IOException | RuntimeException e) {
+          // Inclui os clientes cuja conexão falhou em uma etapa anterior
+          errors.incrementAndGet();
+        }
+        latencies[client] = (System.nanoTime() - begin) / requestsPerClient;
+      }, threads));
+    }
+    CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+    long elapsed = System.nanoTime() - start;
+    return new Stage(name, latencies, (long) clients * requestsPerClient, errors.get(), elapsed);
+  }
+
+  private List<Watcher> watch(String session) {
+    HttpClient http = HttpClient.newBuilder().executor(threads).build();
+    URI uri = URI.create("ws://" + address.getHostString() + ":" + address.getPort() + session
+        + "/live");
+    List<Watcher> watching = new ArrayList<>(watchers);
+    for (int i = 0; i < watchers; i++) {
+      Watcher watcher = new Watcher();
+      watcher.socket = http.newWebSocketBuilder().buildAsync(uri, watcher).join();
+      watching.add(watcher);
+    }
+    return watching;
+  }
+
+  private static String name(int client) {
+    return URLEncoder.encode("c" + client, StandardCharsets.UTF_8);
+  }
+
+  @FunctionalInterface
+  private interface Request {
+    int send(int client) throws IOException;
+  }
+
+  /**
+   * Classe que representa o resultado de uma etapa.
+   */
+  private static final class Stage {
+
+    final String name;
+    final long[] latencies;
+    final long requests;
+    final int errors;
+    final long elapsed;
+
+    Stage(String name, long[] latencies, long requests, int errors, long elapsed) {
+      this.name = name;
+      this.latencies = latencies.clone();
+      Arrays.sort(this.latencies);
+      this.requests = requests;
+      this.errors = errors;
+      this.elapsed = elapsed;
+    }
+
+    private double percentile(double p) {
+      if (latencies.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(p * latencies.length) - 1;
+      return latencies[Math.max(0, index)] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "%-8s %9d %7d %9.2f %9.2f %9.2f %11.0f", name, requests,
+          errors, percentile(0.50), percentile(0.99), percentile(1.0),
+          requests / (elapsed / 1e9));
+    }
+  }
+
+  /**
+   * Classe que representa um cliente HTTP com uma conexão persistente.
+   */
+  private static final class Client {
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    private Client(Socket socket) throws IOException {
+      this.socket = socket;
+      in = new BufferedInputStream(socket.getInputStream());
+      out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Método para a abertura de uma conexão, com novas tentativas enquanto a fila de conexões do
+     * servidor estiver cheia.
+     */
+    static Client connect(InetSocketAddress address) throws IOException {
+      for (int attempt = 1; ; attempt++) {
+        Socket socket = new Socket();
+        try {
+          socket.setTcpNoDelay(true);
+          socket.connect(address, 30_000);
+          return new Client(socket);
+        } catch (ConnectException e) {
+          socket.close();
+          if (attempt == CONNECT_ATTEMPTS) {
+            throw e;
+          }
+          try {
+            Thread.sleep(10L * attempt);
+          } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw e;
+          }
+        }
+      }
+    }
+
+    Response send(String method, String target, String body) throws IOException {
+      byte[] content = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+      String head = method + " " + target + " HTTP/1.1\r\n"
+          + "Host: localhost\r\n"
+          + "Content-Length: " + content.length + "\r\n"
+          + "\r\n";
+      out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+      out.write(content);
+      out.flush();
+
+      String status = readLine();
+      int length = 0;
+      for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+        if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+          length = Integer.parseInt(header.substring(15).trim());
+        }
+      }
+      byte[] response = in.readNBytes(length);
+      if (response.length != length) {
+        throw new EOFException();
+      }
+      return new Response(Integer.parseInt(status.split(" ")[1]),
+          new String(response, StandardCharsets.UTF_8));
+    }
+
+    private String readLine() throws IOException {
+      ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+      int b;
+      while ((b = in.read()) != '\n') {
+        if (b < 0) {
+          throw new EOFException();
+        }
+        if (b != '\r') {
+          line.write(b);
+        }
+      }
+      return line.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  private static final class Response {
+
+    final int status;
+    final String body;
+
+    Response(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+
+  /**
+   * Classe que representa um observador da sessão por WebSocket, que conta as mensagens e os
+   * eventos recebidos.
+   */
+  private static final class Watcher implements WebSocket.Listener {
+
+    final AtomicLong messages = new AtomicLong();
+    final AtomicLong events = new AtomicLong();
+    final AtomicLong resyncs = new AtomicLong();
+    private final StringBuilder text = new StringBuilder();
+    WebSocket socket;
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+      text.append(data);
+      if (last) {
+        messages.incrementAndGet();
+        int count = 0;
+        for (int i = text.indexOf("\"type\""); i >= 0; i = text.indexOf("\"type\"", i + 1)) {
+          count++;
+        }
+        events.addAndGet(count);
+        if (text.indexOf("\"RESYNC\"") >= 0) {
+          resyncs.incrementAndGet();
+        }
+        text.setLength(0);
+      }
+      webSocket.request(1);
+      return null;
+    }
+
+    void close() {
+      socket.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+    }
+  }
+}
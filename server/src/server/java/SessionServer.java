@@ -0,0 +1,685 @@
+package server.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import main.java.Idea;
+import main.java.MetricsRegistry;
+import main.java.SearchIndex;
+import main.java.Session;
+import main.java.SessionEvent;
+import main.java.SessionRegistry;
+import main.java.SessionSubscription;
+import main.java.User;
+import main.java.UserIndex;
+
+/**
+ * Classe que representa o servidor HTTP embutido das sessões, que expõe as operações de
+ * {@link Session} a clientes remotos e transmite os votos ao vivo por WebSocket.
+ *
+ * Cada conexão é atendida por uma thread virtual própria, que bloqueia na leitura do socket sem
+ * ocupar uma thread do sistema, de forma que milhares de participantes podem permanecer conectados
+ * durante a votação. As conexões são persistentes (keep-alive) e as rotas são:
+ *
+ * <pre>
+ * POST   /sessions?user=&amp;description=&amp;limit=        cria uma sessão
+ * GET    /sessions/{id}                                estado da sessão
+ * POST   /sessions/{id}/participants?user=             entrada de um participante
+ * DELETE /sessions/{id}/participants?user=&amp;ideas=      saída do participante, com os votos
+ * POST   /sessions/{id}/ideas?user=                    adição de ideia, com o texto no corpo
+ * POST   /sessions/{id}/ideas/{i}/votes?user=          voto na ideia i
+ * DELETE /sessions/{id}/ideas/{i}/votes?user=          remoção do voto na ideia i
+ * POST   /sessions/{id}/ideas/{i}/merge?user=&amp;into=&amp;combine=
+ *                                                      incorporação da ideia i, pelo anfitrião
+ * GET    /sessions/{id}/ranking?offset=&amp;limit=         página do ranqueamento
+ * POST   /sessions/{id}/phase?user=                    próxima fase, somente pelo anfitrião
+ * GET    /sessions/{id}/live                           WebSocket com as alterações ao vivo
+ * GET    /search?q=&amp;limit=&amp;order=                      busca de ideias nas sessões
+ * GET    /users/{nome}                                 atividade do usuário em todas as sessões
+ * GET    /metrics                                      métricas no formato do Prometheus
+ * </pre>
+ *
+ * A transmissão ao vivo começa com o estado da sessão e segue com um lote de alterações por
+ * mensagem, em que os votos são agrupados por ideia e enviados como contagens atuais.
+ *
+ * Os usuários são identificados pelo nome. As operações rejeitadas pelas regras da sessão não são
+ * erros: a resposta indica apenas se foram aceitas.
+ * @author hugo
+ */
+public final class SessionServer {
+
+  private final SessionRegistry registry;
+  private final MetricsRegistry metrics;
+  private final Map<String, User> users;
+  private final ServerSocket socket;
+  private final ExecutorService threads;
+  private final Set<Socket> connections;
+  private volatile boolean running;
+
+  /**
+   * Construtor para servidores com um registro de sessões próprio, sem descarga em disco.
+   *
+   * @param port Porta, ou 0 para uma porta livre qualquer.
+   * @throws IOException Se a porta não puder ser aberta.
+   */
+  public SessionServer(int port) throws IOException {
+    this(new SessionRegistry(), port);
+  }
+
+  /**
+   * Construtor para servidores sobre um registro de sessões existente.
+   *
+   * @param registry Registro de sessões.
+   * @param port Porta, ou 0 para uma porta livre qualquer.
+   * @throws IOException Se a porta não puder ser aberta.
+   */
+  public SessionServer(SessionRegistry registry, int port) throws IOException {
+    this.registry = registry;
+    metrics = new MetricsRegistry();
+    registry.setMetrics(metrics);
+    if (registry.getSearchIndex() == null) {
+      registry.setSearchIndex(new SearchIndex());
+    }
+    if (registry.getUserIndex() == null) {
+      registry.setUserIndex(new UserIndex());
+    }
+    users = new ConcurrentHashMap<>();
+    socket = new ServerSocket();
+    socket.setReuseAddress(true);
+    socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16 * 1024);
+    threads = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("session-server-", 0).factory());
+    connections = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Método para o início do atendimento. As conexões são aceitas por uma thread de plataforma, que
+   * mantém o processo ativo enquanto o servidor estiver aberto, já que as threads virtuais não o
+   * mantêm.
+   */
+  public void start() {
+    running = true;
+    Thread.ofPlatform().name("session-server-accept").start(this::accept);
+  }
+
+  /**
+   * Método para o encerramento do servidor, que fecha a porta e todas as conexões abertas.
+   */
+  public void stop() {
+    running = false;
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // A porta já está fechada
+    }
+    for (Socket connection : connections) {
+      close(connection);
+    }
+    threads.shutdown();
+  }
+
+  public int getPort() {
+    return socket.getLocalPort();
+  }
+
+  public SessionRegistry getRegistry() {
+    return registry;
+  }
+
+  public MetricsRegistry getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Método de entrada do servidor, que imprime a porta efetivamente aberta.
+   *
+   * @param args Porta, por padrão 8080; 0 escolhe uma porta livre.
+   * @throws IOException Se a porta não puder ser aberta.
+   */
+  public static void main(String[] args) throws IOException {
+    SessionServer server = new SessionServer(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+    server.start();
+    System.out.println("listening " + server.getPort());
+    System.out.flush();
+  }
+
+  private void accept() {
+    while (running) {
+      try {
+        Socket connection = socket.accept();
+        connection.setTcpNoDelay(true);
+        connections.add(connection);
+        threads.execute(() -> serve(connection));
+      } catch (IOException e) {
+        if (!running) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Método para o atendimento de uma conexão, uma requisição por vez, até que o cliente a encerre
+   * ou ela seja promovida a WebSocket.
+   */
+  private void serve(Socket connection) {
+    try (connection) {
+      InputStream in = new BufferedInputStream(connection.getInputStream());
+      OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+      while (true) {
+        HttpRequest request;
+        try {
+          request = HttpRequest.read(in);
+        } catch (SocketException e) {
+          return;
+        } catch (IOException e) {
+          HttpRequest.respond(out, 400, error("requisição inválida"), false);
+          return;
+        }
+        if (request == null) {
+          return;
+        }
+        String[] path = segments(request.path);
+        if (path.length == 3 && path[2].equals("live") && request.method.equals("GET")) {
+          live(request, path, in, out);
+          return;
+        }
+        boolean keepAlive = request.keepAlive();
+        if (path.length == 1 && path[0].equals("metrics") && request.method.equals("GET")) {
+          HttpRequest.respond(out, 200, "text/plain; version=0.0.4; charset=utf-8",
+              metrics.toPrometheus(), keepAlive);
+        } else {
+          Response response = route(request, path);
+          HttpRequest.respond(out, response.status, response.json, keepAlive);
+        }
+        if (!keepAlive) {
+          return;
+        }
+      }
+    } catch (IOException e) {
+      // Conexão encerrada pelo cliente
+    } finally {
+      connections.remove(connection);
+    }
+  }
+
+  private Response route(HttpRequest request, String[] path) {
+    if (path.length == 1 && path[0].equals("search")) {
+      return request.method.equals("GET") ? search(request) : Response.NOT_ALLOWED;
+    }
+    if (path.length == 2 && path[0].equals("users")) {
+      return request.method.equals("GET") ? activity(path[1]) : Response.NOT_ALLOWED;
+    }
+    if (path.length == 0 || !path[0].equals("sessions")) {
+      return Response.NOT_FOUND;
+    }
+    if (path.length == 1) {
+      return request.method.equals("POST") ? create(request) : Response.NOT_ALLOWED;
+    }
+    // A sessão não é descarregada enquanto a requisição a usa
+    Response response;
+    try {
+      response = registry.withSession(Long.parseLong(path[1]),
+          session -> route(request, path, session));
+    } catch (NumberFormatException e) {
+      response = null;
+    }
+    return response == null ? Response.NOT_FOUND : response;
+  }
+
+  private Response route(HttpRequest request, String[] path, Session session) {
+    String method = request.method;
+    if (path.length == 2) {
+      return method.equals("GET") ? new Response(200, state(path[1], session))
+          : Response.NOT_ALLOWED;
+    }
+    switch (path[2]) {
+      case "participants":
+        if (path.length != 3) {
+          return Response.NOT_ALLOWED;
+        }
+        if (method.equals("POST")) {
+          return join(request, session);
+        }
+        return method.equals("DELETE") ? leave(request, session) : Response.NOT_ALLOWED;
+      case "ideas":
+        if (path.length == 3) {
+          return method.equals("POST") ? submit(request, session) : Response.NOT_ALLOWED;
+        }
+        if (path.length == 5 && path[4].equals("votes")) {
+          Idea idea = idea(session, path[3]);
+          if (idea == null) {
+            return Response.NOT_FOUND;
+          }
+          if (method.equals("POST")) {
+            return vote(request, session, idea);
+          }
+          return method.equals("DELETE") ? unvote(request, idea) : Response.NOT_ALLOWED;
+        }
+        if (path.length == 5 && path[4].equals("merge")) {
+          Idea idea = idea(session, path[3]);
+          Idea target = idea(session, request.query.getOrDefault("into", ""));
+          if (idea == null || target == null) {
+            return Response.NOT_FOUND;
+          }
+          return method.equals("POST") ? merge(request, session, idea, target)
+              : Response.NOT_ALLOWED;
+        }
+        return Response.NOT_FOUND;
+      case "ranking":
+        return path.length == 3 && method.equals("GET") ? rank(request, session)
+            : Response.NOT_ALLOWED;
+      case "phase":
+        return path.length == 3 && method.equals("POST") ? advance(request, session)
+            : Response.NOT_ALLOWED;
+      default:
+        return Response.NOT_FOUND;
+    }
+  }
+
+  private Response create(HttpRequest request) {
+    User owner = user(request);
+    int limit = number(request.query.get("limit"), 3);
+    if (owner == null || limit <= 0) {
+      return Response.BAD_REQUEST;
+    }
+    String description = request.query.getOrDefault("description", "");
+    long id = registry.create(owner, description, limit);
+    return new Response(201, "{\"id\":" + id + "}");
+  }
+
+  private Response join(HttpRequest request, Session session) {
+    User user = user(request);
+    if (user == null) {
+      return Response.BAD_REQUEST;
+    }
+    boolean accepted = session.addParticipants(user)[0];
+    return accepted(accepted || session.isParticipant(user));
+  }
+
+  private Response leave(HttpRequest request, Session session) {
+    User user = user(request);
+    if (user == null) {
+      return Response.BAD_REQUEST;
+    }
+    boolean participant = session.isParticipant(user);
+    session.removeParticipant(user, Boolean.parseBoolean(request.query.get("ideas")));
+    return accepted(participant && !session.isParticipant(user));
+  }
+
+  private Response submit(HttpRequest request, Session session) {
+    User author = user(request);
+    if (author == null) {
+      return Response.BAD_REQUEST;
+    }
+    Idea idea = new Idea(author, request.text());
+    if (!session.addIdeas(idea)[0]) {
+      return accepted(false);
+    }
+    return new Response(201, "{\"accepted\":true,\"index\":" + idea.getIndex() + "}");
+  }
+
+  private Response vote(HttpRequest request, Session session, Idea idea) {
+    User voter = user(request);
+    if (voter == null) {
+      return Response.BAD_REQUEST;
+    }
+    return accepted(session.registerVotes(voter, idea)[0]);
+  }
+
+  private Response unvote(HttpRequest request, Idea idea) {
+    User voter = user(request);
+    if (voter == null) {
+      return Response.BAD_REQUEST;
+    }
+    idea.removeVote(voter);
+    return new Response(200, "{\"votes\":" + idea.countVotes() + "}");
+  }
+
+  private Response merge(HttpRequest request, Session session, Idea idea, Idea target) {
+    User user = user(request);
+    if (user == null) {
+      return Response.BAD_REQUEST;
+    }
+    if (!user.equals(session.getOwner())) {
+      return new Response(403, error("somente o anfitrião incorpora ideias"));
+    }
+    boolean combine = Boolean.parseBoolean(request.query.get("combine"));
+    return accepted(session.mergeIdea(idea, target, combine));
+  }
+
+  private Response search(HttpRequest request) {
+    int limit = number(request.query.get("limit"), 10);
+    String order = request.query.getOrDefault("order", "relevance");
+    if (limit <= 0 || !(order.equals("relevance") || order.equals("votes"))) {
+      return Response.BAD_REQUEST;
+    }
+    SearchIndex.Hit[] hits = registry.getSearchIndex().search(request.query.get("q"), limit,
+        order.equals("votes") ? SearchIndex.Order.VOTES : SearchIndex.Order.RELEVANCE);
+    StringBuilder json = new StringBuilder("{\"hits\":[");
+    for (int i = 0; i < hits.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"session\":").append(hits[i].getSession())
+          .append(",\"index\":").append(hits[i].getIndex())
+          .append(",\"description\":").append(quote(hits[i].getDescription()))
+          .append(",\"author\":").append(quote(hits[i].getAuthor()))
+          .append(",\"votes\":").append(hits[i].getVotes())
+          .append(",\"score\":").append(hits[i].getScore())
+          .append('}');
+    }
+    return new Response(200, json.append("]}").toString());
+  }
+
+  private Response activity(String name) {
+    UserIndex index = registry.getUserIndex();
+    User user = users.get(name);
+    StringBuilder json = new StringBuilder("{\"user\":").append(quote(name))
+        .append(",\"votes\":").append(user == null ? 0 : index.votesCast(user))
+        .append(",\"ideas\":").append(user == null ? 0 : index.ideasAuthored(user))
+        .append(",\"sessions\":").append(user == null ? 0 : index.sessionsJoined(user));
+    if (index.getQuota() > 0) {
+      json.append(",\"remainingVotes\":")
+          .append(user == null ? index.getQuota() : index.remainingVotes(user));
+    }
+    return new Response(200, json.append('}').toString());
+  }
+
+  private Response rank(HttpRequest request, Session session) {
+    int offset = number(request.query.get("offset"), 0);
+    int limit = number(request.query.get("limit"), 10);
+    if (offset < 0 || limit <= 0) {
+      return Response.BAD_REQUEST;
+    }
+    StringBuilder json = new StringBuilder("{\"offset\":").append(offset).append(",\"ideas\":[");
+    Idea[] page = session.rankPage(offset, limit);
+    for (int i = 0; i < page.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendIdea(json, session, page[i]);
+    }
+    return new Response(200, json.append("]}").toString());
+  }
+
+  private Response advance(HttpRequest request, Session session) {
+    User user = user(request);
+    if (user == null) {
+      return Response.BAD_REQUEST;
+    }
+    if (!user.equals(session.getOwner())) {
+      return new Response(403, error("somente o anfitrião passa de fase"));
+    }
+    session.nextPhase();
+    return new Response(200, "{\"phase\":\"" + session.getPhase() + "\"}");
+  }
+
+  /**
+   * Método para a transmissão ao vivo de uma sessão: envia o estado atual e, a seguir, um lote de
+   * alterações por mensagem, com os votos agrupados por ideia. A assinatura entrega os lotes em
+   * threads virtuais, enquanto a thread da conexão atende aos quadros de controle do cliente.
+   */
+  private void live(HttpRequest request, String[] path, InputStream in, OutputStream out)
+      throws IOException {
+    long key = key(path[1]);
+    if (key < 0 || registry.withSession(key, session -> Boolean.TRUE) == null) {
+      HttpRequest.respond(out, 404, error("sessão inexistente"), false);
+      return;
+    }
+    WebSocket webSocket = WebSocket.accept(request, in, out);
+    if (webSocket == null) {
+      HttpRequest.respond(out, 400, error("pedido de WebSocket inválido"), false);
+      return;
+    }
+    String id = path[1];
+    // A assinatura é feita antes da leitura do estado, para que nenhuma alteração se perca, e os
+    // lotes aguardam o envio do estado; as alterações já refletidas nele podem se repetir, mas os
+    // votos são enviados como contagens, e não como incrementos. Ambas ocorrem dentro do uso da
+    // sessão pelo registro, e a sessão com assinaturas ativas não é descarregada por ociosidade.
+    CountDownLatch sent = new CountDownLatch(1);
+    String[] state = new String[1];
+    SessionSubscription subscription = registry.withSession(key, session -> {
+      SessionSubscription created = session.subscribe(events -> {
+        try {
+          sent.await();
+          webSocket.send(batch(id, session, events));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(e);
+        }
+      }, threads, true);
+      state[0] = state(id, session);
+      return created;
+    });
+    if (subscription == null) {
+      // A sessão foi removida após o aceite da conexão, que é simplesmente encerrada
+      return;
+    }
+    try {
+      try {
+        webSocket.send(state[0]);
+      } finally {
+        sent.countDown();
+      }
+      webSocket.awaitClose();
+    } finally {
+      subscription.cancel();
+    }
+  }
+
+  private static String batch(String id, Session session, List<SessionEvent> events) {
+    StringBuilder json = new StringBuilder(64 * events.size() + 32);
+    json.append("{\"events\":[");
+    for (int i = 0; i < events.size(); i++) {
+      SessionEvent event = events.get(i);
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"type\":\"").append(event.getType()).append('"');
+      switch (event.getType()) {
+        case PHASE:
+          json.append(",\"phase\":\"").append(event.getPhase()).append('"');
+          break;
+        case IDEA:
+          json.append(",\"idea\":");
+          appendIdea(json, session, event.getIdea());
+          break;
+        case VOTE:
+        case UNVOTE:
+        case VOTES:
+          json.append(",\"index\":").append(event.getIdea().getIndex())
+              .append(",\"votes\":").append(event.getIdea().countVotes())
+              .append(",\"score\":").append(session.scoreOf(event.getIdea()));
+          break;
+        case MERGE:
+          json.append(",\"index\":").append(event.getIdea().getIndex())
+              .append(",\"into\":").append(event.getIdea().getMergedInto().getIndex());
+          break;
+        case WITHDRAWN:
+          json.append(",\"index\":").append(event.getIdea().getIndex());
+          break;
+        case RESYNC:
+          json.append(",\"state\":").append(state(id, session));
+          break;
+        default:
+          json.append(",\"user\":").append(quote(event.getUser().getUsername()));
+      }
+      json.append('}');
+    }
+    return json.append("]}").toString();
+  }
+
+  private static String state(String id, Session session) {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"id\":").append(id)
+        .append(",\"description\":").append(quote(session.getDescription()))
+        .append(",\"owner\":").append(quote(session.getOwner().getUsername()))
+        .append(",\"phase\":\"").append(session.getPhase())
+        .append("\",\"strategy\":\"").append(session.getVotingStrategy())
+        .append("\",\"votingLimit\":").append(session.getVotingLimit())
+        .append(",\"participants\":").append(session.getParticipantCount())
+        .append(",\"ideas\":[");
+    Idea[] ideas = session.getIdeas();
+    for (int i = 0; i < ideas.length; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      appendIdea(json, session, ideas[i]);
+    }
+    return json.append("]}").toString();
+  }
+
+  private static void appendIdea(StringBuilder json, Session session, Idea idea) {
+    json.append("{\"index\":").append(idea.getIndex())
+        .append(",\"description\":").append(quote(idea.getDescription()))
+        .append(",\"author\":").append(quote(idea.getAuthor().getUsername()))
+        .append(",\"votes\":").append(idea.countVotes())
+        .append(",\"score\":").append(session.scoreOf(idea));
+    Idea duplicateOf = idea.getDuplicateOf();
+    if (duplicateOf != null) {
+      json.append(",\"duplicateOf\":").append(duplicateOf.getIndex());
+    }
+    Idea mergedInto = idea.getMergedInto();
+    if (mergedInto != null) {
+      json.append(",\"mergedInto\":").append(mergedInto.getIndex());
+    }
+    if (idea.isWithdrawn()) {
+      json.append(",\"withdrawn\":true");
+    }
+    json.append('}');
+  }
+
+  private static long key(String id) {
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static Idea idea(Session session, String index) {
+    int i = number(index, -1);
+    return i >= 0 && i < session.getIdeaCount() ? session.getIdea(i) : null;
+  }
+
+  /**
+   * Método para a obtenção do usuário da requisição, criado no primeiro uso do nome.
+   *
+   * @return Usuário, ou nulo se a requisição não tiver nome de usuário.
+   */
+  private User user(HttpRequest request) {
+    String name = request.query.get("user");
+    if (name == null || name.isEmpty()) {
+      return null;
+    }
+    return users.computeIfAbsent(name, User::new);
+  }
+
+  private static int number(String text, int fallback) {
+    if (text == null) {
+      return fallback;
+    }
+    try {
+      return Integer.parseInt(text);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static String[] segments(String path) {
+    String trimmed = path.startsWith("/") ? path.substring(1) : path;
+    return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+  }
+
+  private static Response accepted(boolean accepted) {
+    return new Response(200, "{\"accepted\":" + accepted + "}");
+  }
+
+  private static String error(String message) {
+    return "{\"error\":" + quote(message) + "}";
+  }
+
+  /**
+   * Método para a representação de um texto como cadeia JSON.
+   *
+   * @param text Texto, possivelmente nulo.
+   * @return Cadeia JSON com os caracteres especiais escapados.
+   */
+  static String quote(String text) {
+    if (text == null) {
+      return "null";
+    }
+    StringBuilder json = new StringBuilder(text.length() + 2).append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    return json.append('"').toString();
+  }
+
+  private static void close(Socket connection) {
+    try {
+      connection.close();
+    } catch (IOException e) {
+      // A conexão já está fechada
+    }
+  }
+
+  /**
+   * Classe que representa uma resposta da API, com o código de estado e o corpo JSON.
+   */
+  private static final class Response {
+
+    static final Response BAD_REQUEST = new Response(400, error("parâmetros inválidos"));
+    static final Response NOT_FOUND = new Response(404, error("recurso inexistente"));
+    static final Response NOT_ALLOWED = new Response(405, error("método não permitido"));
+
+    final int status;
+    final String json;
+
+    Response(int status, String json) {
+      this.status = status;
+      this.json = json;
+    }
+  }
+}
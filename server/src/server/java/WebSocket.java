@@ -0,0 +1,159 @@
+package server.java;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * Classe que representa o lado servidor de uma conexão WebSocket (RFC 6455) já aceita: envia
+ * mensagens de texto e lê os quadros do cliente, respondendo aos pings e ao encerramento. As
+ * gravações são sincronizadas, de forma que mensagens e respostas de controle enviadas por threads
+ * diferentes não se misturam.
+ * @author hugo
+ */
+final class WebSocket {
+
+  private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+  private static final int TEXT = 0x1;
+  private static final int CLOSE = 0x8;
+  private static final int PING = 0x9;
+  private static final int PONG = 0xA;
+
+  private final InputStream in;
+  private final OutputStream out;
+  private boolean closed;
+
+  private WebSocket(InputStream in, OutputStream out) {
+    this.in = in;
+    this.out = out;
+  }
+
+  /**
+   * Método para a aceitação de um pedido de WebSocket, que responde ao handshake.
+   *
+   * @param request Requisição de upgrade.
+   * @param in Fluxo de entrada da conexão.
+   * @param out Fluxo de saída da conexão.
+   * @return Conexão WebSocket, ou nulo se a requisição não for um pedido válido.
+   * @throws IOException Se a gravação da resposta falhar.
+   */
+  static WebSocket accept(HttpRequest request, InputStream in, OutputStream out)
+      throws IOException {
+    String key = request.headers.get("sec-websocket-key");
+    String upgrade = request.headers.get("upgrade");
+    if (key == null || upgrade == null || !upgrade.equalsIgnoreCase("websocket")) {
+      return null;
+    }
+    String head = "HTTP/1.1 101 Switching Protocols\r\n"
+        + "Upgrade: websocket\r\n"
+        + "Connection: Upgrade\r\n"
+        + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n"
+        + "\r\n";
+    out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+    out.flush();
+    return new WebSocket(in, out);
+  }
+
+  static String acceptKey(String key) {
+    try {
+      MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+      byte[] digest = sha1.digest((key + GUID).getBytes(StandardCharsets.ISO_8859_1));
+      return Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Método para o envio de uma mensagem de texto.
+   *
+   * @param text Mensagem.
+   * @throws IOException Se a conexão estiver encerrada ou a gravação falhar.
+   */
+  void send(String text) throws IOException {
+    writeFrame(TEXT, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Método para a leitura dos quadros do cliente até o encerramento da conexão. As mensagens do
+   * cliente são descartadas; os pings são respondidos e o encerramento é confirmado.
+   *
+   * @throws IOException Se a conexão falhar.
+   */
+  void awaitClose() throws IOException {
+    while (true) {
+      int first = read();
+      int second = read();
+      int opcode = first & 0x0F;
+      long length = second & 0x7F;
+      if (length == 126) {
+        length = (read() << 8) | read();
+      } else if (length == 127) {
+        length = 0;
+        for (int i = 0; i < 8; i++) {
+          length = (length << 8) | read();
+        }
+      }
+      if (length < 0 || length > HttpRequest.MAX_BODY) {
+        throw new IOException("Tamanho de quadro inválido: " + length);
+      }
+      byte[] mask = new byte[4];
+      boolean masked = (second & 0x80) != 0;
+      if (masked && in.readNBytes(mask, 0, 4) != 4) {
+        throw new EOFException();
+      }
+      byte[] payload = in.readNBytes((int) length);
+      if (payload.length != length) {
+        throw new EOFException();
+      }
+      if (masked) {
+        for (int i = 0; i < payload.length; i++) {
+          payload[i] ^= mask[i & 3];
+        }
+      }
+      if (opcode == CLOSE) {
+        writeFrame(CLOSE, payload.length >= 2 ? new byte[] {payload[0], payload[1]} : payload);
+        return;
+      } else if (opcode == PING) {
+        writeFrame(PONG, payload);
+      }
+    }
+  }
+
+  private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+    if (closed) {
+      throw new IOException("WebSocket encerrado");
+    }
+    out.write(0x80 | opcode);
+    if (payload.length < 126) {
+      out.write(payload.length);
+    } else if (payload.length < 65536) {
+      out.write(126);
+      out.write(payload.length >>> 8);
+      out.write(payload.length);
+    } else {
+      out.write(127);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        out.write((int) ((long) payload.length >>> shift));
+      }
+    }
+    out.write(payload);
+    out.flush();
+    if (opcode == CLOSE) {
+      closed = true;
+    }
+  }
+
+  private int read() throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException();
+    }
+    return b;
+  }
+}
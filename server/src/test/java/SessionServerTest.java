@@ -0,0 +1,149 @@
+package test.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import server.java.SessionServer;
+
+/**
+ * Classe de testes de integração para a classe SessionServer.
+ * @author hugo
+ */
+public class SessionServerTest {
+
+  SessionServer server;
+  HttpClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new SessionServer(0);
+    server.start();
+    client = HttpClient.newHttpClient();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  private HttpResponse<String> send(String method, String path, String body) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(uri("http", path))
+        .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private URI uri(String scheme, String path) {
+    return URI.create(scheme + "://127.0.0.1:" + server.getPort() + path);
+  }
+
+  /**
+   * Teste de uma sessão completa pela API: criação, entrada, ideias, votos e ranqueamento.
+   */
+  @Test
+  public void sessionOverHttp() throws Exception {
+    HttpResponse<String> created = send("POST", "/sessions?user=ana&description=x&limit=2", null);
+    assertEquals(201, created.statusCode());
+    String session = "/sessions/" + created.body().replaceAll("\\D", "");
+
+    assertEquals("{\"accepted\":true}", send("POST", session + "/participants?user=ana", null)
+        .body());
+    assertEquals("{\"accepted\":true}", send("POST", session + "/participants?user=bia", null)
+        .body());
+    assertEquals(403, send("POST", session + "/phase?user=bia", null).statusCode());
+    assertEquals("{\"phase\":\"BRAINSTORM\"}", send("POST", session + "/phase?user=ana", null)
+        .body());
+
+    assertEquals("{\"accepted\":true,\"index\":0}",
+        send("POST", session + "/ideas?user=ana", "ideia \"a\"").body());
+    assertEquals("{\"accepted\":true,\"index\":1}",
+        send("POST", session + "/ideas?user=bia", "ideia b").body());
+    assertEquals("{\"accepted\":false}", send("POST", session + "/ideas?user=eva", "x").body());
+    send("POST", session + "/phase?user=ana", null);
+
+    assertEquals("{\"accepted\":true}", send("POST", session + "/ideas/0/votes?user=bia", null)
+        .body());
+    assertEquals("{\"accepted\":false}", send("POST", session + "/ideas/0/votes?user=ana", null)
+        .body());
+    assertEquals(404, send("POST", session + "/ideas/7/votes?user=bia", null).statusCode());
+
+    assertEquals("{\"votes\":0}", send("DELETE", session + "/ideas/0/votes?user=bia", null)
+        .body());
+    send("POST", session + "/ideas/0/votes?user=bia", null);
+    assertEquals("{\"phase\":\"RANKING\"}", send("POST", session + "/phase?user=ana", null)
+        .body());
+    String ranking = send("GET", session + "/ranking?limit=1", null).body();
+    assertTrue(ranking, ranking.contains("\"index\":0,\"description\":\"ideia \\\"a\\\"\""));
+    assertTrue(ranking, ranking.contains("\"votes\":1"));
+    String hits = send("GET", "/search?q=ide*+author:ana&order=votes", null).body();
+    assertTrue(hits, hits.startsWith("{\"hits\":[{"));
+    assertTrue(hits, hits.contains("\"index\":0,\"description\":\"ideia \\\"a\\\"\""));
+    assertTrue(hits, hits.contains("\"votes\":1"));
+    assertTrue(hits, !hits.contains("\"index\":1"));
+    assertEquals("{\"user\":\"bia\",\"votes\":1,\"ideas\":1,\"sessions\":1}",
+        send("GET", "/users/bia", null).body());
+    String metrics = send("GET", "/metrics", null).body();
+    assertTrue(metrics, metrics.contains("\nbrainstorm_votes_total 2\n"));
+    assertTrue(metrics, metrics.contains("brainstorm_votes_rejected_total{reason=\"own_idea\"} 1"));
+    assertEquals("{\"accepted\":true}",
+        send("DELETE", session + "/participants?user=bia&ideas=true", null).body());
+    assertEquals("{\"accepted\":false}",
+        send("DELETE", session + "/participants?user=bia", null).body());
+    assertEquals(404, send("GET", "/sessions/99", null).statusCode());
+    assertEquals(405, send("DELETE", session, null).statusCode());
+  }
+
+  /**
+   * Teste da transmissão ao vivo: o observador recebe o estado e, a seguir, os votos.
+   */
+  @Test
+  public void liveVotes() throws Exception {
+    String session = "/sessions/"
+        + send("POST", "/sessions?user=ana&limit=2", null).body().replaceAll("\\D", "");
+    send("POST", session + "/participants?user=ana", null);
+    send("POST", session + "/participants?user=bia", null);
+    send("POST", session + "/phase?user=ana", null);
+    send("POST", session + "/ideas?user=ana", "a");
+    send("POST", session + "/phase?user=ana", null);
+
+    BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+    WebSocket webSocket = client.newWebSocketBuilder()
+        .buildAsync(uri("ws", session + "/live"), new WebSocket.Listener() {
+          StringBuilder text = new StringBuilder();
+
+          @Override
+          public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+              messages.add(text.toString());
+              text = new StringBuilder();
+            }
+            socket.request(1);
+            return null;
+          }
+        }).join();
+
+    String state = messages.poll(5, TimeUnit.SECONDS);
+    assertTrue(state, state.contains("\"phase\":\"VOTING\""));
+    send("POST", session + "/ideas/0/votes?user=bia", null);
+    String update = messages.poll(5, TimeUnit.SECONDS);
+    assertTrue(update, update.contains("{\"type\":\"VOTES\",\"index\":0,\"votes\":1"));
+    webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+  }
+}
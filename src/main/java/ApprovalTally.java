@@ -0,0 +1,96 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe que representa a apuração por aprovação, o sistema original das sessões: cada
+ * participante dá no máximo um voto a cada ideia, até o limite de votos, e a pontuação de uma
+ * ideia é a sua quantidade de votos. Os votos ficam no livro de votos da sessão.
+ * @author hugo
+ */
+class ApprovalTally implements Tally {
+
+  /**
+   * Livro de votos da sessão.
+   */
+  protected final VoteLedger ledger;
+  /**
+   * Placar da sessão.
+   */
+  protected final Leaderboard leaderboard;
+
+  ApprovalTally(VoteLedger ledger, Leaderboard leaderboard) {
+    this.ledger = ledger;
+    this.leaderboard = leaderboard;
+  }
+
+  @Override
+  public void open(Idea idea) {
+    ledger.open(idea);
+  }
+
+  @Override
+  public boolean vote(Idea idea, User voter, int votingLimit) {
+    if (!ledger.admit(idea, voter, votingLimit)) {
+      return false;
+    }
+    leaderboard.refresh(idea);
+    return true;
+  }
+
+  @Override
+  public void voteAll(Idea[] ideas, boolean[] accepted, User voter, int votingLimit) {
+    ledger.admitAll(ideas, accepted, voter, votingLimit);
+    leaderboard.refreshAll(ideas, accepted);
+  }
+
+  @Override
+  public VoteRejection rejection(Idea idea, User voter, int votingLimit) {
+    return ledger.rejection(idea, voter, votingLimit);
+  }
+
+  @Override
+  public boolean withdraw(Idea idea, User voter) {
+    if (!ledger.retract(idea, voter)) {
+      return false;
+    }
+    leaderboard.refresh(idea);
+    return true;
+  }
+
+  @Override
+  public Idea[] withdrawAll(User voter, List<Idea> ideas) {
+    int[] voted = ledger.votedIdeas(voter);
+    Idea[] withdrawn = new Idea[voted.length];
+    int count = 0;
+    for (int index : voted) {
+      Idea idea = ideas.get(index);
+      if (withdraw(idea, voter)) {
+        withdrawn[count++] = idea;
+      }
+    }
+    return Arrays.copyOf(withdrawn, count);
+  }
+
+  @Override
+  public void restore(Idea idea, User voter) {
+    ledger.restore(idea, voter);
+    leaderboard.refresh(idea);
+  }
+
+  @Override
+  public int countVotes(Idea idea) {
+    return ledger.countVotes(idea);
+  }
+
+  @Override
+  public int score(Idea idea) {
+    return ledger.countVotes(idea);
+  }
+
+  @Override
+  public User[] getVoters(Idea idea) {
+    return ledger.getVoters(idea);
+  }
+}
@@ -0,0 +1,367 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classe base das apurações por cédula, em que os votos de cada participante formam uma lista
+ * ordenada de ideias, a sua cédula, e cada posição da cédula vale uma quantidade de pontos. A
+ * pontuação de cada ideia é a soma dos pontos das posições em que ela aparece.
+ *
+ * Quando uma cédula muda, apenas os pontos das suas posições são recalculados, de forma que o
+ * custo de um voto depende do tamanho da cédula, e não da quantidade de votantes ou de ideias.
+ * @author hugo
+ */
+abstract class BallotTally implements Tally {
+
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * Livro de votos da sessão, consultado para a elegibilidade dos votantes.
+   */
+  protected final VoteLedger ledger;
+  /**
+   * Placar da sessão.
+   */
+  protected final Leaderboard leaderboard;
+  /**
+   * Limite de votos por participante, que é também o tamanho máximo das cédulas.
+   */
+  protected final int votingLimit;
+  /**
+   * Cédula de cada votante, com os índices das ideias em ordem de preferência.
+   */
+  private Map<User, int[]> ballots;
+  /**
+   * Ideias da sessão, indexadas pelo índice da ideia.
+   */
+  private Idea[] ideas;
+  /**
+   * Pontuação de cada ideia, indexada pelo índice da ideia.
+   */
+  private int[] points;
+  /**
+   * Quantidade de posições de cédula que citam cada ideia, indexada pelo índice da ideia.
+   */
+  private int[] marks;
+
+  BallotTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+    this.ledger = ledger;
+    this.leaderboard = leaderboard;
+    this.votingLimit = votingLimit;
+    ballots = new LinkedHashMap<>();
+    ideas = new Idea[16];
+    points = new int[16];
+    marks = new int[16];
+  }
+
+  /**
+   * Método que define os pontos de uma posição da cédula.
+   *
+   * @param position Posição na cédula, a partir de 0.
+   * @return Pontos da posição.
+   */
+  protected abstract int points(int position);
+
+  /**
+   * Método que indica se uma mesma ideia pode aparecer mais de uma vez na cédula.
+   *
+   * @return Verdadeiro se as repetições são permitidas.
+   */
+  protected boolean allowsRepeats() {
+    return false;
+  }
+
+  @Override
+  public synchronized void open(Idea idea) {
+    int index = idea.getIndex();
+    if (index >= ideas.length) {
+      int length = Math.max(index + 1, ideas.length * 2);
+      ideas = Arrays.copyOf(ideas, length);
+      points = Arrays.copyOf(points, length);
+      marks = Arrays.copyOf(marks, length);
+    }
+    ideas[index] = idea;
+  }
+
+  @Override
+  public boolean vote(Idea idea, User voter, int votingLimit) {
+    if (!ledger.isRegistered(voter)) {
+      return false;
+    }
+    List<Idea> changed;
+    synchronized (this) {
+      int[] before = ballots.getOrDefault(voter, EMPTY);
+      if (before.length >= votingLimit || !isOpen(idea)
+          || (!allowsRepeats() && indexOf(before, idea.getIndex()) >= 0)) {
+        return false;
+      }
+      int[] after = Arrays.copyOf(before, before.length + 1);
+      after[before.length] = idea.getIndex();
+      changed = replace(voter, before, after);
+    }
+    leaderboard.refreshAll(changed);
+    return true;
+  }
+
+  @Override
+  public VoteRejection rejection(Idea idea, User voter, int votingLimit) {
+    if (!ledger.isRegistered(voter)) {
+      return VoteRejection.NOT_PARTICIPANT;
+    }
+    synchronized (this) {
+      int[] ballot = ballots.getOrDefault(voter, EMPTY);
+      if (!isOpen(idea)) {
+        return VoteRejection.INVALID_IDEA;
+      } else if (!allowsRepeats() && indexOf(ballot, idea.getIndex()) >= 0) {
+        return VoteRejection.DUPLICATE;
+      }
+      return VoteRejection.LIMIT_REACHED;
+    }
+  }
+
+  @Override
+  public boolean withdraw(Idea idea, User voter) {
+    List<Idea> changed;
+    synchronized (this) {
+      int[] before = ballots.getOrDefault(voter, EMPTY);
+      int position = lastIndexOf(before, idea.getIndex());
+      if (position < 0) {
+        return false;
+      }
+      int[] after = new int[before.length - 1];
+      System.arraycopy(before, 0, after, 0, position);
+      System.arraycopy(before, position + 1, after, position, after.length - position);
+      changed = replace(voter, before, after);
+    }
+    leaderboard.refreshAll(changed);
+    return true;
+  }
+
+  @Override
+  public Idea[] withdrawAll(User voter, List<Idea> ideas) {
+    List<Idea> changed;
+    synchronized (this) {
+      int[] before = ballots.get(voter);
+      if (before == null) {
+        return new Idea[0];
+      }
+      changed = replace(voter, before, EMPTY);
+    }
+    leaderboard.refreshAll(changed);
+    return changed.toArray(new Idea[0]);
+  }
+
+  @Override
+  public void restore(Idea idea, User voter) {
+    List<Idea> changed;
+    synchronized (this) {
+      int[] before = ballots.getOrDefault(voter, EMPTY);
+      if (!isOpen(idea) || (!allowsRepeats() && indexOf(before, idea.getIndex()) >= 0)) {
+        return;
+      }
+      int[] after = Arrays.copyOf(before, before.length + 1);
+      after[before.length] = idea.getIndex();
+      changed = replace(voter, before, after);
+    }
+    leaderboard.refreshAll(changed);
+  }
+
+  @Override
+  public void ballot(User voter, Idea[] ranking, boolean[] accepted, int votingLimit) {
+    if (!ledger.isRegistered(voter)) {
+      Arrays.fill(accepted, false);
+      return;
+    }
+    List<Idea> changed;
+    synchronized (this) {
+      int[] after = new int[Math.min(ranking.length, votingLimit)];
+      int length = 0;
+      for (int i = 0; i < ranking.length; i++) {
+        accepted[i] = accepted[i] && length < after.length && isOpen(ranking[i])
+            && (allowsRepeats() || indexOf(after, length, ranking[i].getIndex()) < 0);
+        if (accepted[i]) {
+          after[length++] = ranking[i].getIndex();
+        }
+      }
+      changed = replace(voter, ballots.getOrDefault(voter, EMPTY), Arrays.copyOf(after, length));
+    }
+    leaderboard.refreshAll(changed);
+  }
+
+  @Override
+  public void restoreBallot(User voter, Idea[] ranking) {
+    List<Idea> changed;
+    synchronized (this) {
+      int[] after = new int[ranking.length];
+      int length = 0;
+      for (Idea idea : ranking) {
+        if (isOpen(idea) && (allowsRepeats() || indexOf(after, length, idea.getIndex()) < 0)) {
+          after[length++] = idea.getIndex();
+        }
+      }
+      changed = replace(voter, ballots.getOrDefault(voter, EMPTY), Arrays.copyOf(after, length));
+    }
+    leaderboard.refreshAll(changed);
+  }
+
+  /**
+   * Nas cédulas, a ideia incorporada é substituída pela outra na mesma posição; nos sistemas
+   * ordenados, se a outra ideia já estiver na cédula, fica apenas a posição mais bem colocada.
+   */
+  @Override
+  public User[] merge(Idea duplicate, Idea target, boolean combine) {
+    List<Idea> changed = new ArrayList<>();
+    List<User> voters = new ArrayList<>();
+    synchronized (this) {
+      int from = duplicate.getIndex();
+      int to = target.getIndex();
+      for (Map.Entry<User, int[]> entry : new ArrayList<>(ballots.entrySet())) {
+        int[] before = entry.getValue();
+        if (indexOf(before, from) < 0) {
+          continue;
+        }
+        boolean keep = combine && !entry.getKey().equals(target.getAuthor());
+        int[] after = new int[before.length];
+        int length = 0;
+        for (int index : before) {
+          if (index == from) {
+            if (!keep) {
+              continue;
+            }
+            index = to;
+          }
+          if (allowsRepeats() || indexOf(after, length, index) < 0) {
+            after[length++] = index;
+          }
+        }
+        changed.addAll(replace(entry.getKey(), before, Arrays.copyOf(after, length)));
+        voters.add(entry.getKey());
+      }
+    }
+    leaderboard.refreshAll(changed);
+    return voters.toArray(new User[0]);
+  }
+
+  @Override
+  public synchronized int countVotes(Idea idea) {
+    return idea.getIndex() < marks.length ? marks[idea.getIndex()] : 0;
+  }
+
+  @Override
+  public synchronized int score(Idea idea) {
+    return idea.getIndex() < points.length ? points[idea.getIndex()] : 0;
+  }
+
+  @Override
+  public synchronized User[] getVoters(Idea idea) {
+    List<User> voters = new ArrayList<>();
+    for (Map.Entry<User, int[]> entry : ballots.entrySet()) {
+      for (int index : entry.getValue()) {
+        if (index == idea.getIndex()) {
+          voters.add(entry.getKey());
+        }
+      }
+    }
+    return voters.toArray(new User[0]);
+  }
+
+  @Override
+  public boolean hasBallots() {
+    return true;
+  }
+
+  @Override
+  public synchronized Map<User, Idea[]> getBallots() {
+    Map<User, Idea[]> copy = new LinkedHashMap<>();
+    for (Map.Entry<User, int[]> entry : ballots.entrySet()) {
+      int[] ballot = entry.getValue();
+      Idea[] ranking = new Idea[ballot.length];
+      for (int i = 0; i < ballot.length; i++) {
+        ranking[i] = ideas[ballot[i]];
+      }
+      copy.put(entry.getKey(), ranking);
+    }
+    return copy;
+  }
+
+  /**
+   * Método para a leitura das cédulas como índices de ideias, sob o bloqueio da apuração.
+   *
+   * @return Cédulas, em ordem de primeira votação.
+   */
+  protected int[][] ballotIndexes() {
+    return ballots.values().toArray(new int[0][]);
+  }
+
+  /**
+   * Método para a obtenção da quantidade de ideias abertas, sob o bloqueio da apuração.
+   *
+   * @return Maior índice de ideia aberta mais um.
+   */
+  protected int ideaCount() {
+    int count = ideas.length;
+    while (count > 0 && ideas[count - 1] == null) {
+      count--;
+    }
+    return count;
+  }
+
+  /**
+   * Método para a troca da cédula de um votante, retirando os pontos das posições antigas e
+   * somando os das novas. Deve ser chamado sob o bloqueio da apuração.
+   *
+   * @param voter Votante.
+   * @param before Cédula anterior.
+   * @param after Nova cédula.
+   * @return Ideias cuja pontuação pode ter mudado, para a atualização do placar.
+   */
+  private List<Idea> replace(User voter, int[] before, int[] after) {
+    List<Idea> changed = new ArrayList<>(before.length + after.length);
+    for (int position = 0; position < before.length; position++) {
+      points[before[position]] -= points(position);
+      marks[before[position]]--;
+      changed.add(ideas[before[position]]);
+    }
+    for (int position = 0; position < after.length; position++) {
+      points[after[position]] += points(position);
+      marks[after[position]]++;
+      changed.add(ideas[after[position]]);
+    }
+    if (after.length == 0) {
+      ballots.remove(voter);
+    } else {
+      ballots.put(voter, after);
+    }
+    return changed;
+  }
+
+  private boolean isOpen(Idea idea) {
+    return idea.getIndex() < ideas.length && ideas[idea.getIndex()] == idea;
+  }
+
+  private static int indexOf(int[] ballot, int index) {
+    return indexOf(ballot, ballot.length, index);
+  }
+
+  private static int indexOf(int[] ballot, int length, int index) {
+    for (int i = 0; i < length; i++) {
+      if (ballot[i] == index) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int lastIndexOf(int[] ballot, int index) {
+    for (int i = ballot.length - 1; i >= 0; i--) {
+      if (ballot[i] == index) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,19 @@
+package main.java;
+
+/**
+ * Classe que representa a apuração pela contagem de Borda: cada participante ordena até o limite
+ * de votos de ideias, e a ideia na posição p da cédula recebe o limite menos p pontos, de forma
+ * que a primeira preferência vale o limite e a última cabível vale um ponto.
+ * @author hugo
+ */
+class BordaTally extends BallotTally {
+
+  BordaTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+    super(ledger, leaderboard, votingLimit);
+  }
+
+  @Override
+  protected int points(int position) {
+    return Math.max(0, votingLimit - position);
+  }
+}
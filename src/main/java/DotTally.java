@@ -0,0 +1,24 @@
+package main.java;
+
+/**
+ * Classe que representa a apuração por pontos: cada participante distribui os seus votos como
+ * pontos entre as ideias, podendo dar mais de um ponto à mesma ideia, até o limite de votos. A
+ * pontuação de cada ideia é a quantidade de pontos recebidos.
+ * @author hugo
+ */
+class DotTally extends BallotTally {
+
+  DotTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+    super(ledger, leaderboard, votingLimit);
+  }
+
+  @Override
+  protected int points(int position) {
+    return 1;
+  }
+
+  @Override
+  protected boolean allowsRepeats() {
+    return true;
+  }
+}
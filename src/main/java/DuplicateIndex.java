@@ -0,0 +1,315 @@
+package main.java;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Classe que representa o índice de semelhança das ideias de uma sessão, usado para apontar
+ * ideias repetidas ou quase repetidas à medida que são adicionadas.
+ *
+ * Cada texto é normalizado (minúsculas, sem acentos nem pontuação) e reduzido ao conjunto dos seus
+ * trechos de {@value #SHINGLE} caracteres, do qual se calcula uma assinatura MinHash de
+ * {@value #HASHES} valores. A fração de valores iguais entre duas assinaturas estima a semelhança
+ * de Jaccard entre os dois conjuntos de trechos. As assinaturas são divididas em {@value #BANDS}
+ * faixas de {@value #ROWS} valores, e cada faixa é indexada em uma tabela de espalhamento (LSH):
+ * só as ideias que coincidem com o texto em ao menos uma faixa são comparadas, de forma que o
+ * custo de uma inserção não depende da quantidade de ideias da sessão.
+ *
+ * Com estes parâmetros, um par com semelhança 0,7 coincide em alguma faixa com probabilidade de
+ * 98,8%, e um par com semelhança 0,2, com probabilidade de 2,5%. O índice é guardado em arranjos
+ * primitivos e não é seguro para acesso concorrente: a sessão o usa sob o seu bloqueio.
+ * @author hugo
+ */
+final class DuplicateIndex {
+
+  /**
+   * Tamanho dos trechos de texto, em caracteres.
+   */
+  static final int SHINGLE = 4;
+  /**
+   * Quantidade de valores da assinatura.
+   */
+  static final int HASHES = 64;
+  /**
+   * Quantidade de faixas da assinatura.
+   */
+  static final int BANDS = 16;
+  /**
+   * Quantidade de valores por faixa.
+   */
+  static final int ROWS = HASHES / BANDS;
+
+  /**
+   * Coeficientes das funções de espalhamento da assinatura, fixos para que as assinaturas sejam
+   * comparáveis entre execuções.
+   */
+  private static final long[] MULTIPLIERS = new long[HASHES];
+  private static final long[] INCREMENTS = new long[HASHES];
+
+  static {
+    SplittableRandom random = new SplittableRandom(0x5EED_1DEAL);
+    for (int i = 0; i < HASHES; i++) {
+      MULTIPLIERS[i] = random.nextLong() | 1;
+      INCREMENTS[i] = random.nextLong();
+    }
+  }
+
+  /**
+   * Semelhança mínima para que duas ideias sejam consideradas repetidas.
+   */
+  private final double threshold;
+  /**
+   * Assinaturas das ideias, {@value #HASHES} valores por ideia, indexadas pelo índice da ideia.
+   */
+  private int[] signatures;
+  /**
+   * Se cada índice de ideia já foi indexado.
+   */
+  private boolean[] indexed;
+  /**
+   * Tabela das faixas: primeira entrada de cada posição, mais um, ou 0 se vazia.
+   */
+  private int[] heads;
+  /**
+   * Próxima entrada da mesma posição da tabela, mais um, por entrada. A entrada da faixa b da
+   * ideia i é i * {@value #BANDS} + b.
+   */
+  private int[] next;
+  /**
+   * Valor de espalhamento da faixa de cada entrada, para descartar as colisões da tabela.
+   */
+  private int[] bandHashes;
+  /**
+   * Quantidade de entradas na tabela.
+   */
+  private int entries;
+  /**
+   * Marca da última consulta que encontrou cada ideia, para não compará-la duas vezes.
+   */
+  private int[] seen;
+  private int query;
+
+  /**
+   * Construtor para um índice vazio.
+   *
+   * @param threshold Semelhança mínima, entre 0 e 1.
+   */
+  DuplicateIndex(double threshold) {
+    this.threshold = threshold;
+    signatures = new int[16 * HASHES];
+    indexed = new boolean[16];
+    heads = new int[16 * BANDS];
+    next = new int[16 * BANDS];
+    bandHashes = new int[16 * BANDS];
+    seen = new int[16];
+  }
+
+  double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Método para a indexação de uma ideia, que devolve a ideia já indexada mais semelhante a ela.
+   *
+   * @param index Índice da ideia na sessão.
+   * @param text Texto da ideia.
+   * @return Índice da ideia mais semelhante, com semelhança mínima, ou -1 se não houver; nos
+   *         empates, a adicionada primeiro.
+   */
+  int add(int index, String text) {
+    int[] signature = signature(text);
+    int[] similar = search(signature, 1);
+    ensureCapacity(index + 1);
+    System.arraycopy(signature, 0, signatures, index * HASHES, HASHES);
+    indexed[index] = true;
+    if ((entries + BANDS) * 2 > heads.length) {
+      rehash(heads.length * 2);
+    }
+    for (int band = 0; band < BANDS; band++) {
+      int entry = index * BANDS + band;
+      int hash = bandHash(signature, band);
+      int slot = slotOf(hash);
+      bandHashes[entry] = hash;
+      next[entry] = heads[slot];
+      heads[slot] = entry + 1;
+    }
+    entries += BANDS;
+    return similar.length == 0 ? -1 : similar[0];
+  }
+
+  /**
+   * Método para a busca das ideias semelhantes a um texto, sem indexá-lo.
+   *
+   * @param text Texto a comparar.
+   * @return Índices das ideias com semelhança mínima, da mais para a menos semelhante e, nos
+   *         empates, em ordem de adição.
+   */
+  int[] similar(String text) {
+    return search(signature(text), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Método para a busca das ideias indexadas semelhantes a uma assinatura.
+   *
+   * @param signature Assinatura a comparar.
+   * @param limit Quantidade máxima de resultados.
+   * @return Índices das ideias, da mais para a menos semelhante.
+   */
+  private int[] search(int[] signature, int limit) {
+    int minimum = (int) Math.ceil(threshold * HASHES);
+    if (++query == 0) {
+      Arrays.fill(seen, 0);
+      query = 1;
+    }
+    long[] found = new long[8];
+    int count = 0;
+    for (int band = 0; band < BANDS; band++) {
+      int hash = bandHash(signature, band);
+      for (int entry = heads[slotOf(hash)] - 1; entry >= 0; entry = next[entry] - 1) {
+        int idea = entry / BANDS;
+        if (entry % BANDS != band || bandHashes[entry] != hash || seen[idea] == query) {
+          continue;
+        }
+        seen[idea] = query;
+        int matches = matches(signatures, idea * HASHES, signature);
+        if (matches >= minimum) {
+          if (count == found.length) {
+            found = Arrays.copyOf(found, count * 2);
+          }
+          // Mais semelhantes primeiro e, nos empates, menor índice primeiro
+          found[count++] = ((long) (HASHES - matches) << 32) | idea;
+        }
+      }
+    }
+    Arrays.sort(found, 0, count);
+    int[] result = new int[Math.min(count, limit)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = (int) found[i];
+    }
+    return result;
+  }
+
+  private static int matches(int[] signatures, int offset, int[] signature) {
+    int matches = 0;
+    for (int i = 0; i < HASHES; i++) {
+      if (signatures[offset + i] == signature[i]) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Método para o cálculo da assinatura MinHash de um texto.
+   *
+   * @param text Texto, possivelmente nulo.
+   * @return Assinatura com {@value #HASHES} valores.
+   */
+  static int[] signature(String text) {
+    String normalized = normalize(text);
+    int[] signature = new int[HASHES];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    int shingles = Math.max(1, normalized.length() - SHINGLE + 1);
+    for (int start = 0; start < shingles; start++) {
+      long shingle = 0;
+      int end = Math.min(normalized.length(), start + SHINGLE);
+      for (int i = start; i < end; i++) {
+        shingle = (shingle << 16) | normalized.charAt(i);
+      }
+      long mixed = mix(shingle);
+      for (int i = 0; i < HASHES; i++) {
+        int value = (int) ((MULTIPLIERS[i] * mixed + INCREMENTS[i]) >>> 33);
+        if (value < signature[i]) {
+          signature[i] = value;
+        }
+      }
+    }
+    return signature;
+  }
+
+  /**
+   * Método para a normalização de um texto: letras e dígitos em minúsculas e sem acentos, com
+   * qualquer outra sequência de caracteres reduzida a um espaço.
+   *
+   * @param text Texto, possivelmente nulo.
+   * @return Texto normalizado.
+   */
+  static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+    StringBuilder normalized = new StringBuilder(decomposed.length());
+    boolean space = true;
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        normalized.append(Character.toLowerCase(c));
+        space = false;
+      } else if (Character.getType(c) != Character.NON_SPACING_MARK && !space) {
+        normalized.append(' ');
+        space = true;
+      }
+    }
+    int length = normalized.length();
+    if (length > 0 && normalized.charAt(length - 1) == ' ') {
+      normalized.setLength(length - 1);
+    }
+    return normalized.toString();
+  }
+
+  private static int bandHash(int[] signature, int band) {
+    long hash = band;
+    for (int i = band * ROWS; i < band * ROWS + ROWS; i++) {
+      hash = hash * 0x9E3779B97F4A7C15L + signature[i];
+    }
+    return (int) (mix(hash) >>> 32);
+  }
+
+  private int slotOf(int hash) {
+    return hash & (heads.length - 1);
+  }
+
+  /**
+   * Finalizador do MurmurHash3, que espalha os bits de um valor de 64 bits.
+   */
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  private void ensureCapacity(int ideas) {
+    if (ideas <= indexed.length) {
+      return;
+    }
+    int capacity = Math.max(ideas, indexed.length * 2);
+    signatures = Arrays.copyOf(signatures, capacity * HASHES);
+    indexed = Arrays.copyOf(indexed, capacity);
+    next = Arrays.copyOf(next, capacity * BANDS);
+    bandHashes = Arrays.copyOf(bandHashes, capacity * BANDS);
+    seen = Arrays.copyOf(seen, capacity);
+  }
+
+  /**
+   * Método para a reconstrução da tabela com um novo tamanho, uma potência de 2.
+   */
+  private void rehash(int size) {
+    heads = new int[size];
+    for (int idea = 0; idea < indexed.length; idea++) {
+      if (!indexed[idea]) {
+        continue;
+      }
+      for (int band = 0; band < BANDS; band++) {
+        int entry = idea * BANDS + band;
+        int slot = slotOf(bandHashes[entry]);
+        next[entry] = heads[slot];
+        heads[slot] = entry + 1;
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Classe que representa o registro de eventos de uma sessão, lido pelas suas assinaturas.
+ *
+ * Os eventos ficam em um anel de tamanho fixo, onde cada publicação reserva atomicamente uma
+ * posição e grava nela o evento, sem bloqueio e sem custo proporcional à quantidade de
+ * assinaturas. Cada assinatura lê o anel a partir da sua própria posição. As assinaturas são
+ * avisadas por uma única tarefa de despacho, agendada no máximo uma vez por vez, de forma que uma
+ * rajada de votos gera poucos despachos.
+ * @author hugo
+ */
+final class EventBus {
+
+  /**
+   * Quantidade de eventos guardados no anel, e portanto o maior atraso de uma assinatura antes
+   * que ela perca eventos.
+   */
+  static final int CAPACITY = 1 << 13;
+  private static final int MASK = CAPACITY - 1;
+
+  private final AtomicReferenceArray<SessionEvent> ring;
+  /**
+   * Próxima posição a reservar.
+   */
+  private final AtomicLong tail;
+  /**
+   * Se há uma tarefa de despacho agendada e ainda não iniciada.
+   */
+  private final AtomicBoolean dispatching;
+  /**
+   * Executor da tarefa de despacho.
+   */
+  private final Executor dispatcher;
+  private final Runnable dispatch;
+  /**
+   * Assinaturas ativas, substituídas a cada inclusão ou remoção.
+   */
+  private volatile SessionSubscription[] subscriptions;
+
+  EventBus(Executor dispatcher) {
+    this.dispatcher = dispatcher;
+    ring = new AtomicReferenceArray<>(CAPACITY);
+    tail = new AtomicLong();
+    dispatching = new AtomicBoolean();
+    subscriptions = new SessionSubscription[0];
+    dispatch = () -> {
+      dispatching.set(false);
+      for (SessionSubscription subscription : subscriptions) {
+        subscription.signal();
+      }
+    };
+  }
+
+  boolean hasSubscriptions() {
+    return subscriptions.length > 0;
+  }
+
+  /**
+   * Método para a publicação de um evento, ignorado se não houver assinaturas.
+   *
+   * @param event Evento a publicar.
+   */
+  void publish(SessionEvent event) {
+    if (subscriptions.length == 0) {
+      return;
+    }
+    long sequence = tail.getAndIncrement();
+    event.sequence = sequence;
+    ring.set((int) sequence & MASK, event);
+    if (!dispatching.get() && dispatching.compareAndSet(false, true)) {
+      dispatcher.execute(dispatch);
+    }
+  }
+
+  /**
+   * Método para a obtenção da próxima posição a reservar, até onde os eventos podem ser lidos.
+   *
+   * @return Posição seguinte à do último evento reservado.
+   */
+  long tail() {
+    return tail.get();
+  }
+
+  /**
+   * Método para a leitura da posição do anel de um evento.
+   *
+   * @param sequence Posição do evento no registro.
+   * @return Evento gravado na posição do anel, que pode ser mais antigo (ainda não publicado) ou
+   *         mais novo (já sobrescrito) que o procurado.
+   */
+  SessionEvent get(long sequence) {
+    return ring.get((int) sequence & MASK);
+  }
+
+  synchronized void add(SessionSubscription subscription) {
+    SessionSubscription[] current = subscriptions;
+    SessionSubscription[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = subscription;
+    subscriptions = updated;
+  }
+
+  synchronized void remove(SessionSubscription subscription) {
+    SessionSubscription[] current = subscriptions;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i] == subscription) {
+        SessionSubscription[] updated = new SessionSubscription[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, i);
+        System.arraycopy(current, i + 1, updated, i, updated.length - i);
+        subscriptions = updated;
+        return;
+      }
+    }
+  }
+}
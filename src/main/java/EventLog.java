@@ -0,0 +1,391 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Classe que representa um segmento do registro de eventos de uma sessão, um arquivo somente de
+ * acréscimo mapeado em memória. Cada evento é gravado como o seu tamanho, o seu tipo e os seus
+ * dados; o tamanho é gravado por último, de forma que um evento interrompido no meio da gravação
+ * aparece como tamanho zero, que marca o fim do registro.
+ *
+ * A região mapeada dobra até 1 GB, abaixo do limite de 2 GB de um mapeamento; um segmento cheio
+ * recusa os eventos seguintes, e o diário continua o registro em um novo segmento.
+ * @author hugo
+ */
+class EventLog implements Closeable {
+
+  static final byte PHASE = 1;
+  static final byte JOIN = 2;
+  static final byte LEAVE = 3;
+  static final byte IDEA = 4;
+  static final byte VOTE = 5;
+  static final byte UNVOTE = 6;
+  static final byte DESCRIPTION = 7;
+  static final byte STRATEGY = 8;
+  static final byte WEIGHT = 9;
+  static final byte BALLOT = 10;
+  static final byte MERGE = 11;
+
+  /**
+   * Tamanho inicial da região mapeada, que dobra sempre que se esgota.
+   */
+  private static final int INITIAL_SIZE = 1 << 20;
+
+  /**
+   * Canal do arquivo do segmento.
+   */
+  private FileChannel channel;
+  /**
+   * Região mapeada do arquivo.
+   */
+  private MappedByteBuffer buffer;
+  /**
+   * Indica se o segmento está cheio e recusa novos eventos.
+   */
+  private boolean full;
+
+  /**
+   * Construtor para um segmento novo e vazio.
+   *
+   * @param file Arquivo do segmento, que não deve existir.
+   * @throws IOException Se o arquivo não puder ser criado.
+   */
+  EventLog(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+  }
+
+  /**
+   * Método para o registro da passagem de fase.
+   *
+   * @param phase Nova fase.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendPhase(SessionPhase phase) {
+    int start = begin(1);
+    if (start < 0) {
+      return false;
+    }
+    buffer.put((byte) phase.ordinal());
+    end(start, PHASE);
+    return true;
+  }
+
+  /**
+   * Método para o registro da entrada de um participante.
+   *
+   * @param user Participante.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendJoin(User user) {
+    byte[] name = utf8(user.getUsername());
+    int start = begin(Long.BYTES + sizeOf(name));
+    if (start < 0) {
+      return false;
+    }
+    buffer.putLong(user.getId());
+    putBytes(name);
+    end(start, JOIN);
+    return true;
+  }
+
+  /**
+   * Método para o registro da saída de um participante. Os registros anteriores à retirada das
+   * ideias não têm a marca final, e são lidos como saídas sem a retirada.
+   *
+   * @param user Participante.
+   * @param withdrawIdeas Se as ideias do participante foram retiradas.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendLeave(User user, boolean withdrawIdeas) {
+    int start = begin(Long.BYTES + 1);
+    if (start < 0) {
+      return false;
+    }
+    buffer.putLong(user.getId());
+    buffer.put((byte) (withdrawIdeas ? 1 : 0));
+    end(start, LEAVE);
+    return true;
+  }
+
+  /**
+   * Método para o registro da adição de uma ideia.
+   *
+   * @param idea Ideia adicionada.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendIdea(Idea idea) {
+    byte[] description = utf8(idea.getDescription());
+    int start = begin(Long.BYTES + sizeOf(description));
+    if (start < 0) {
+      return false;
+    }
+    buffer.putLong(idea.getAuthor().getId());
+    putBytes(description);
+    end(start, IDEA);
+    return true;
+  }
+
+  /**
+   * Método para o registro de um voto ou da sua remoção.
+   *
+   * @param type {@link #VOTE} ou {@link #UNVOTE}.
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendVote(byte type, Idea idea, User voter) {
+    int start = begin(Integer.BYTES + Long.BYTES);
+    if (start < 0) {
+      return false;
+    }
+    buffer.putInt(idea.getIndex());
+    buffer.putLong(voter.getId());
+    end(start, type);
+    return true;
+  }
+
+  /**
+   * Método para o registro da alteração da descrição da sessão.
+   *
+   * @param description Nova descrição.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendDescription(String description) {
+    byte[] text = utf8(description);
+    int start = begin(sizeOf(text));
+    if (start < 0) {
+      return false;
+    }
+    putBytes(text);
+    end(start, DESCRIPTION);
+    return true;
+  }
+
+  /**
+   * Método para o registro da escolha do sistema de votação.
+   *
+   * @param strategy Sistema de votação.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendStrategy(VotingStrategy strategy) {
+    int start = begin(1);
+    if (start < 0) {
+      return false;
+    }
+    buffer.put((byte) strategy.ordinal());
+    end(start, STRATEGY);
+    return true;
+  }
+
+  /**
+   * Método para o registro do peso dos votos de um participante.
+   *
+   * @param user Participante.
+   * @param weight Peso dos votos.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendWeight(User user, int weight) {
+    int start = begin(Long.BYTES + Integer.BYTES);
+    if (start < 0) {
+      return false;
+    }
+    buffer.putLong(user.getId());
+    buffer.putInt(weight);
+    end(start, WEIGHT);
+    return true;
+  }
+
+  /**
+   * Método para o registro de uma cédula, com os índices das ideias em ordem de preferência.
+   *
+   * @param voter Votante.
+   * @param ranking Ideias aceitas na cédula.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendBallot(User voter, Idea[] ranking) {
+    int start = begin(Long.BYTES + Integer.BYTES + ranking.length * Integer.BYTES);
+    if (start < 0) {
+      return false;
+    }
+    buffer.putLong(voter.getId());
+    buffer.putInt(ranking.length);
+    for (Idea idea : ranking) {
+      buffer.putInt(idea.getIndex());
+    }
+    end(start, BALLOT);
+    return true;
+  }
+
+  /**
+   * Método para o registro da incorporação de uma ideia a outra.
+   *
+   * @param duplicate Ideia incorporada.
+   * @param target Ideia que a incorporou.
+   * @param combine Se os votos passaram à outra ideia.
+   * @return Falso se o segmento estiver cheio.
+   */
+  synchronized boolean appendMerge(Idea duplicate, Idea target, boolean combine) {
+    int start = begin(2 * Integer.BYTES + 1);
+    if (start < 0) {
+      return false;
+    }
+    buffer.putInt(duplicate.getIndex());
+    buffer.putInt(target.getIndex());
+    buffer.put((byte) (combine ? 1 : 0));
+    end(start, MERGE);
+    return true;
+  }
+
+  /**
+   * Método para forçar a gravação em disco dos eventos registrados.
+   */
+  synchronized void sync() {
+    buffer.force();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    full = true;
+    buffer.force();
+    channel.close();
+  }
+
+  /**
+   * Método para a leitura dos eventos de um segmento, em ordem de registro.
+   *
+   * @param file Arquivo do segmento.
+   * @param visitor Visitante que recebe cada evento.
+   * @throws IOException Se o arquivo não puder ser lido.
+   */
+  static void read(Path file, Visitor visitor) throws IOException {
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+      while (data.remaining() > Integer.BYTES) {
+        int length = data.getInt();
+        if (length <= 0 || length > data.remaining()) {
+          break;
+        }
+        ByteBuffer event = data.slice();
+        event.limit(length);
+        data.position(data.position() + length);
+        visitor.visit(event.get(), event);
+      }
+    }
+  }
+
+  /**
+   * Método para a leitura de um texto gravado como tamanho e bytes UTF-8, onde o tamanho -1
+   * representa um texto nulo.
+   *
+   * @param data Dados do evento, posicionados no texto.
+   * @return Texto lido.
+   */
+  static String getString(ByteBuffer data) {
+    int length = data.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    data.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Método para o início de um evento, que garante o espaço e reserva o campo de tamanho.
+   *
+   * @param payload Tamanho dos dados do evento.
+   * @return Posição de início do evento, ou -1 se o segmento estiver cheio.
+   */
+  private int begin(int payload) {
+    int needed = Integer.BYTES + 1 + payload + Integer.BYTES;
+    if (full || buffer.remaining() < needed && !grow(needed)) {
+      return -1;
+    }
+    int start = buffer.position();
+    buffer.position(start + Integer.BYTES + 1);
+    return start;
+  }
+
+  /**
+   * Método para o fim de um evento, que grava o tipo e, por último, o tamanho.
+   *
+   * @param start Posição de início do evento.
+   * @param type Tipo do evento.
+   */
+  private void end(int start, byte type) {
+    buffer.put(start + Integer.BYTES, type);
+    buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+  }
+
+  /**
+   * Método para o aumento da região mapeada, que dobra de tamanho até caber o evento. Se o evento
+   * não couber no limite da região, o segmento passa a recusar os eventos.
+   *
+   * @param needed Espaço necessário.
+   * @return Falso se o segmento estiver cheio.
+   */
+  private boolean grow(int needed) {
+    int position = buffer.position();
+    long size = buffer.capacity();
+    while (size - position < needed) {
+      size *= 2;
+    }
+    if (size > Integer.MAX_VALUE) {
+      if (position == 0) {
+        throw new IllegalArgumentException("Evento maior que um segmento: " + needed);
+      }
+      full = true;
+      return false;
+    }
+    try {
+      buffer.force();
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.position(position);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return true;
+  }
+
+  private void putBytes(byte[] bytes) {
+    if (bytes == null) {
+      buffer.putInt(-1);
+    } else {
+      buffer.putInt(bytes.length);
+      buffer.put(bytes);
+    }
+  }
+
+  private static int sizeOf(byte[] bytes) {
+    return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+  }
+
+  private static byte[] utf8(String text) {
+    return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Interface para a visita dos eventos lidos de um segmento.
+   */
+  interface Visitor {
+
+    /**
+     * Método chamado para cada evento lido.
+     *
+     * @param type Tipo do evento.
+     * @param data Dados do evento, posicionados após o tipo.
+     * @throws IOException Se o evento não puder ser aplicado.
+     */
+    void visit(byte type, ByteBuffer data) throws IOException;
+  }
+}
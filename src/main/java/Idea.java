@@ -1,9 +1,5 @@
 package main.java;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 /**
  * Classe que representa uma ideia gerada por um participante de uma sessão e que pode ser 
  * adicionada a esta ultima assim como receber votos. 
@@ -12,25 +8,41 @@ import java.util.List;
 public class Idea {
 
   /**
-   * Texto descritivo da ideia
+   * Texto descritivo da ideia, ou nulo depois do arquivamento
+   */
+  private volatile String description;
+  /**
+   * Autor da ideia, ou nulo depois do arquivamento
    */
-  private String description;
+  private volatile User author;
   /**
-   * Autor da ideia
+   * Arquivo da sessão encerrada, de onde o texto e o autor são lidos depois do arquivamento
    */
-  private User author;
+  private volatile IdeaArchive archive;
   /**
    * Sessão a que a ideia é vinculada
    */
   private Session session;
   /**
-   * Lista de votantes
+   * Posição da ideia na ordem de adição à sessão
+   */
+  private int index;
+  /**
+   * Ideia semelhante já existente quando esta foi adicionada, se a sessão apontar repetições
+   */
+  private volatile Idea duplicateOf;
+  /**
+   * Ideia a que esta foi incorporada, quando deixa de receber votos
+   */
+  private volatile Idea mergedInto;
+  /**
+   * Se a ideia foi retirada pelo autor ao sair da sessão, quando deixa de receber votos
    */
-  private List<User> voters;
+  private volatile boolean withdrawn;
 
   /**
-   * Construtor para os objetos de Idea, nele definese o autor e descrição da ideia, assim como 
-   * cria-se uma lista vazia de votos.
+   * Construtor para os objetos de Idea, nele definese o autor e descrição da ideia. Os votos são
+   * mantidos pelo livro de votos da sessão a que a ideia for adicionada.
    * 
    * @param author O autor da ideia.
    * @param description Texto descritivo da ideia
@@ -38,64 +50,81 @@ public class Idea {
   public Idea(User author, String description) {
     this.author = author;
     this.description = description;
+  }
 
-    voters = new ArrayList<>();
+  /**
+   * Construtor para as ideias lidas de um arquivo de sessão em disco, fora de qualquer sessão, com
+   * os votos lidos do arquivo.
+   * 
+   * @param archive Arquivo da sessão.
+   * @param index Índice da ideia no arquivo.
+   */
+  Idea(IdeaArchive archive, int index) {
+    this.archive = archive;
+    this.index = index;
+    author = archive.author(index);
+    description = archive.description(index);
   }
 
   /**
-   * Método para registro de um voto na ideia, para tanto adiciona-se o votante à lista de votantes
-   * da ideia.
+   * Método para registro de um voto na ideia, para tanto a sessão admite o votante, na fase de
+   * votação, se este for participante e não for o autor, segundo as regras do seu sistema de
+   * votação: na aprovação, se ele não tiver votado na ideia e não tiver alcançado o limite de
+   * votos; nos sistemas de cédula, a ideia entra no fim da cédula do votante.
    * 
    * @param voter Votante a adicionar.
    */
   public void registerVote(User voter) {
-    boolean isVotingPhase = (session.getPhase() == SessionPhase.VOTING);
-
-    User[] participants = session.getParticipants();
-    boolean isParticipant = Arrays.asList(participants).contains(voter);
-
-    boolean isAuthor = (author == voter);
-
-    boolean alreadyVoted = voters.contains(voter);
-
-    int votesCount = 0;
-    Idea[] ideas = session.getIdeas();
-    for(Idea idea : ideas) {
-      if (idea != this && idea.voters.contains(voter)) {
-        votesCount++;
-      }
-    }
-    boolean reachedLimit = (votesCount == session.getVotingLimit());
-
-    if (isVotingPhase && isParticipant && !isAuthor && !alreadyVoted && !reachedLimit) {
-      voters.add(voter);
+    if (session != null) {
+      session.castVote(this, voter);
     }
   }
 
   /**
-   * Método para remoção de votos da ideia, para tanto, remove-se o votante da lista.
+   * Método para remoção de votos da ideia, para tanto, retira-se o voto do livro de votos da
+   * sessão, devolvendo-o ao votante.
    * 
    * @param voter Votante a remover.
    */
   public void removeVote(User voter) {
-    voters.remove(voter);
+    if (session != null) {
+      session.withdrawVote(this, voter);
+    }
   }
 
   /**
-   * Método para a obtenção da contagem de votos em uma ideia.
+   * Método para a obtenção da contagem de votos em uma ideia, que, nas ideias lidas de uma sessão
+   * gravada, é a contagem gravada.
    * 
    * @return Contagem de votos.
    */
   public Integer countVotes() {
-    return voters.size();
+    if (session != null) {
+      return session.getTally().countVotes(this);
+    }
+    IdeaArchive archive = this.archive;
+    return archive == null ? 0 : archive.countVotes(index);
   }
 
+  /**
+   * Método para a obtenção do texto da ideia, que é decodificado do arquivo a cada chamada se a
+   * sessão tiver sido arquivada.
+   * 
+   * @return Texto descritivo da ideia.
+   * @see Session#archive()
+   */
   public String getDescription() {
-    return description;
+    // O texto é limpo depois que o arquivo é definido, portanto um texto nulo lido aqui garante
+    // que o arquivo já é visível
+    String description = this.description;
+    IdeaArchive archive = this.archive;
+    return description != null || archive == null ? description : archive.description(index);
   }
 
   public User getAuthor() {
-    return author;
+    User author = this.author;
+    IdeaArchive archive = this.archive;
+    return author != null || archive == null ? author : archive.author(index);
   }
 
   public Session getSession() {
@@ -105,4 +134,85 @@ public class Idea {
   public void setSession(Session session) {
     this.session = session;
   }
+
+  /**
+   * Método para a obtenção da posição da ideia na ordem de adição à sessão, a mesma usada por
+   * {@link Session#getIdea(int)}.
+   * 
+   * @return Posição da ideia, a partir de 0.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  void setIndex(int index) {
+    this.index = index;
+  }
+
+  /**
+   * Método para a obtenção da ideia semelhante que já existia quando esta foi adicionada, apontada
+   * se a sessão tiver a detecção de repetições habilitada.
+   * 
+   * @return Ideia semelhante, ou nulo se não houver.
+   * @see Session#setDuplicateThreshold(double)
+   */
+  public Idea getDuplicateOf() {
+    return duplicateOf;
+  }
+
+  void setDuplicateOf(Idea duplicateOf) {
+    this.duplicateOf = duplicateOf;
+  }
+
+  /**
+   * Método para a obtenção da ideia a que esta foi incorporada.
+   * 
+   * @return Ideia que a incorporou, ou nulo se esta não tiver sido incorporada.
+   * @see Session#mergeIdea(Idea, Idea, boolean)
+   */
+  public Idea getMergedInto() {
+    return mergedInto;
+  }
+
+  void setMergedInto(Idea mergedInto) {
+    this.mergedInto = mergedInto;
+  }
+
+  /**
+   * Método que indica se a ideia foi retirada, com os seus votos, pelo autor ao sair da sessão.
+   * 
+   * @return Verdadeiro se a ideia foi retirada.
+   * @see Session#removeParticipant(User, boolean)
+   */
+  public boolean isWithdrawn() {
+    return withdrawn;
+  }
+
+  void setWithdrawn(boolean withdrawn) {
+    this.withdrawn = withdrawn;
+  }
+
+  IdeaArchive getArchive() {
+    return archive;
+  }
+
+  /**
+   * Método para o arquivamento da ideia, que passa a ler o texto e o autor do arquivo.
+   * 
+   * @param archive Arquivo da sessão, com o texto e o autor da ideia.
+   */
+  void archive(IdeaArchive archive) {
+    this.archive = archive;
+    description = null;
+    author = null;
+  }
+
+  /**
+   * Método que indica se a ideia deixou de aceitar votos, por ter sido incorporada ou retirada.
+   * 
+   * @return Verdadeiro se a ideia não aceita votos.
+   */
+  boolean isClosed() {
+    return mergedInto != null || withdrawn;
+  }
 }
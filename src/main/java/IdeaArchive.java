@@ -0,0 +1,488 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classe que representa o arquivo de uma sessão, que guarda fora do heap o texto das ideias e a
+ * apuração. O arquivo de uma sessão encerrada substitui a apuração da sessão no ranqueamento,
+ * quando os votos não mudam mais, e as ideias arquivadas deixam de guardar o texto e o autor, que
+ * são lidos do arquivo. Gravado em disco, o arquivo também é lido por {@link StoredSession}.
+ *
+ * O arquivo é um segmento único, em memória direta ou mapeado de um arquivo, formado por um
+ * cabeçalho com os dados da sessão, por um registro de tamanho fixo por ideia (texto, autor,
+ * votos, pontuação e votantes), pelo dicionário dos usuários, pelas cédulas, e pelas áreas de
+ * inteiros (votantes, cédulas, participantes e ranqueamento) e de textos em UTF-8. Autores e
+ * votantes são guardados como posições no dicionário, que tem o identificador e o nome de cada
+ * usuário uma única vez; no heap resta apenas a referência de cada usuário, que continua sendo o
+ * mesmo objeto dos participantes. Os textos são decodificados a cada leitura, sem cópia mantida
+ * no heap. Mapeado de um arquivo, o segmento é um registro completo da sessão, que o sistema pode
+ * tirar da memória enquanto não é lido. O segmento é limitado a 2 GB.
+ * @author hugo
+ */
+final class IdeaArchive implements Tally {
+
+  /**
+   * Marca de início do segmento ("BRIA").
+   */
+  private static final int MAGIC = 0x42524941;
+  private static final int VERSION = 1;
+  /**
+   * Tamanhos do cabeçalho, de cada ideia, de cada usuário e de cada cédula no segmento.
+   */
+  private static final int HEADER_BYTES = 64;
+  private static final int IDEA_BYTES = 28;
+  private static final int USER_BYTES = 16;
+  private static final int BALLOT_BYTES = 12;
+
+  /**
+   * Segmento somente leitura, lido apenas por posições absolutas.
+   */
+  private final ByteBuffer segment;
+  /**
+   * Ideias da sessão, indexadas pelo índice da ideia, ou nulo em um arquivo lido do disco.
+   */
+  private final List<Idea> ideas;
+  /**
+   * Usuário de cada posição do dicionário.
+   */
+  private final User[] users;
+  /**
+   * Se a apuração arquivada é de um sistema de cédula.
+   */
+  private final boolean ballots;
+  private final int ideaCount;
+  private final int ballotCount;
+  /**
+   * Posições do dicionário e das cédulas no segmento.
+   */
+  private final int usersAt;
+  private final int ballotsAt;
+
+  private IdeaArchive(ByteBuffer segment, List<Idea> ideas, User[] users) {
+    this.segment = segment.asReadOnlyBuffer();
+    this.ideas = ideas;
+    this.users = users;
+    ideaCount = segment.getInt(8);
+    ballotCount = segment.getInt(16);
+    ballots = segment.getInt(60) != 0;
+    usersAt = HEADER_BYTES + ideaCount * IDEA_BYTES;
+    ballotsAt = usersAt + users.length * USER_BYTES;
+  }
+
+  /**
+   * Método para a criação do arquivo de uma sessão. Deve ser chamado sob o bloqueio da sessão e de
+   * todos os votantes, e a sessão não é alterada. Os votantes de cada ideia são lidos uma única
+   * vez, e a mesma leitura dimensiona e preenche o segmento.
+   *
+   * @param session Sessão arquivada.
+   * @param file Arquivo em que o segmento é gravado e mapeado, ou nulo para memória direta.
+   * @return Arquivo da sessão.
+   * @throws IOException Se o arquivo não puder ser gravado, ou o segmento passar de 2 GB.
+   */
+  static IdeaArchive create(Session session, Path file) throws IOException {
+    List<Idea> ideas = session.getIdeasView();
+    Tally tally = session.getTally();
+    Collection<User> participants = session.getParticipantsView();
+    Idea[] ranking = session.rankIdeas();
+    boolean ballots = tally.hasBallots();
+    Map<User, Integer> dictionary = new LinkedHashMap<>();
+    Map<User, Idea[]> cast = tally.getBallots();
+    ordinal(dictionary, session.getOwner());
+    long ints = participants.size() + ranking.length;
+    long bytes = utf8Length(session.getDescription());
+    User[][] voters = new User[ideas.size()][];
+    for (int index = 0; index < voters.length; index++) {
+      Idea idea = ideas.get(index);
+      ordinal(dictionary, idea.getAuthor());
+      bytes += utf8Length(idea.getDescription());
+      voters[index] = ballots ? new User[0] : tally.getVoters(idea);
+      for (User voter : voters[index]) {
+        ordinal(dictionary, voter);
+      }
+      ints += voters[index].length;
+    }
+    for (Map.Entry<User, Idea[]> ballot : cast.entrySet()) {
+      ordinal(dictionary, ballot.getKey());
+      ints += ballot.getValue().length;
+    }
+    for (User participant : participants) {
+      ordinal(dictionary, participant);
+    }
+    for (User user : dictionary.keySet()) {
+      bytes += utf8Length(user.getUsername());
+    }
+    long size = HEADER_BYTES + (long) ideas.size() * IDEA_BYTES
+        + (long) dictionary.size() * USER_BYTES + (long) cast.size() * BALLOT_BYTES
+        + ints * Integer.BYTES + bytes;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Arquivo de sessão maior que 2 GB: " + size + " bytes");
+    }
+
+    ByteBuffer segment;
+    if (file == null) {
+      segment = ByteBuffer.allocateDirect((int) size);
+    } else {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+          StandardOpenOption.WRITE)) {
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+    int usersAt = HEADER_BYTES + ideas.size() * IDEA_BYTES;
+    int ballotsAt = usersAt + dictionary.size() * USER_BYTES;
+    // Os inteiros vêm antes dos textos, de forma que ficam alinhados
+    int intAt = ballotsAt + cast.size() * BALLOT_BYTES;
+    int byteAt = (int) (intAt + ints * Integer.BYTES);
+    segment.putInt(0, MAGIC);
+    segment.putInt(4, VERSION);
+    segment.putInt(8, ideas.size());
+    segment.putInt(12, dictionary.size());
+    segment.putInt(16, cast.size());
+    segment.putInt(20, participants.size());
+    segment.putInt(24, ranking.length);
+    segment.putInt(28, dictionary.get(session.getOwner()));
+    segment.putInt(32, session.getVotingLimit());
+    segment.putInt(36, session.getPhase().ordinal());
+    segment.putInt(40, session.getVotingStrategy().ordinal());
+    segment.putInt(60, ballots ? 1 : 0);
+    int length = putString(segment, byteAt, session.getDescription());
+    segment.putInt(44, byteAt);
+    segment.putInt(48, length);
+    byteAt += Math.max(0, length);
+
+    segment.putInt(52, intAt);
+    for (User participant : participants) {
+      segment.putInt(intAt, dictionary.get(participant));
+      intAt += Integer.BYTES;
+    }
+    segment.putInt(56, intAt);
+    for (Idea idea : ranking) {
+      segment.putInt(intAt, idea.getIndex());
+      intAt += Integer.BYTES;
+    }
+    for (int index = 0; index < voters.length; index++) {
+      Idea idea = ideas.get(index);
+      int at = HEADER_BYTES + index * IDEA_BYTES;
+      length = putString(segment, byteAt, idea.getDescription());
+      segment.putInt(at, byteAt);
+      segment.putInt(at + 4, length);
+      byteAt += Math.max(0, length);
+      segment.putInt(at + 8, dictionary.get(idea.getAuthor()));
+      segment.putInt(at + 12, tally.countVotes(idea));
+      segment.putInt(at + 16, tally.score(idea));
+      segment.putInt(at + 20, intAt);
+      segment.putInt(at + 24, voters[index].length);
+      for (User voter : voters[index]) {
+        segment.putInt(intAt, dictionary.get(voter));
+        intAt += Integer.BYTES;
+      }
+    }
+    User[] users = new User[dictionary.size()];
+    for (Map.Entry<User, Integer> entry : dictionary.entrySet()) {
+      User user = entry.getKey();
+      int at = usersAt + entry.getValue() * USER_BYTES;
+      length = putString(segment, byteAt, user.getUsername());
+      segment.putLong(at, user.getId());
+      segment.putInt(at + 8, byteAt);
+      segment.putInt(at + 12, length);
+      byteAt += Math.max(0, length);
+      users[entry.getValue()] = user;
+    }
+    int at = ballotsAt;
+    for (Map.Entry<User, Idea[]> ballot : cast.entrySet()) {
+      segment.putInt(at, dictionary.get(ballot.getKey()));
+      segment.putInt(at + 4, intAt);
+      segment.putInt(at + 8, ballot.getValue().length);
+      for (Idea idea : ballot.getValue()) {
+        segment.putInt(intAt, idea.getIndex());
+        intAt += Integer.BYTES;
+      }
+      at += BALLOT_BYTES;
+    }
+    if (segment instanceof MappedByteBuffer) {
+      ((MappedByteBuffer) segment).force();
+    }
+    return new IdeaArchive(segment, ideas, users);
+  }
+
+  /**
+   * Método para a leitura de um arquivo gravado em disco, que é mapeado sem ler as ideias. Apenas
+   * o dicionário dos usuários é lido na abertura.
+   *
+   * @param file Arquivo gravado por {@link #create(Session, Path)}.
+   * @return Arquivo da sessão, sem as ideias em memória.
+   * @throws IOException Se o arquivo não puder ser lido ou o formato não for reconhecido.
+   */
+  static IdeaArchive open(Path file) throws IOException {
+    ByteBuffer segment;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (segment.capacity() < HEADER_BYTES || segment.getInt(0) != MAGIC) {
+      throw new IOException("Formato de arquivo de sessão desconhecido");
+    } else if (segment.getInt(4) != VERSION) {
+      throw new IOException("Versão do arquivo de sessão não suportada: " + segment.getInt(4));
+    }
+    User[] users = new User[segment.getInt(12)];
+    int usersAt = HEADER_BYTES + segment.getInt(8) * IDEA_BYTES;
+    for (int ordinal = 0; ordinal < users.length; ordinal++) {
+      int at = usersAt + ordinal * USER_BYTES;
+      users[ordinal] = new User(segment.getLong(at),
+          getString(segment, segment.getInt(at + 8), segment.getInt(at + 12)));
+    }
+    return new IdeaArchive(segment, null, users);
+  }
+
+  int getIdeaCount() {
+    return ideaCount;
+  }
+
+  User getOwner() {
+    return users[segment.getInt(28)];
+  }
+
+  int getVotingLimit() {
+    return segment.getInt(32);
+  }
+
+  SessionPhase getPhase() {
+    return SessionPhase.values()[segment.getInt(36)];
+  }
+
+  VotingStrategy getStrategy() {
+    return VotingStrategy.values()[segment.getInt(40)];
+  }
+
+  String getDescription() {
+    return getString(segment, segment.getInt(44), segment.getInt(48));
+  }
+
+  int getParticipantCount() {
+    return segment.getInt(20);
+  }
+
+  /**
+   * Método para a leitura dos participantes, em ordem de entrada.
+   *
+   * @return Arranjo com os participantes.
+   */
+  User[] getParticipants() {
+    User[] participants = new User[getParticipantCount()];
+    int from = segment.getInt(52);
+    for (int i = 0; i < participants.length; i++) {
+      participants[i] = users[segment.getInt(from + i * Integer.BYTES)];
+    }
+    return participants;
+  }
+
+  /**
+   * Método para a obtenção da quantidade de ideias do ranqueamento gravado, que só existe se a
+   * sessão estava no ranqueamento.
+   *
+   * @return Quantidade de ideias com votos no ranqueamento.
+   */
+  int getRankedCount() {
+    return segment.getInt(24);
+  }
+
+  /**
+   * Método para a leitura de uma posição do ranqueamento gravado.
+   *
+   * @param position Posição no ranqueamento, a partir de 0.
+   * @return Índice da ideia na posição.
+   */
+  int ranked(int position) {
+    return segment.getInt(segment.getInt(56) + position * Integer.BYTES);
+  }
+
+  /**
+   * Método para a leitura do texto de uma ideia arquivada.
+   *
+   * @param index Índice da ideia.
+   * @return Texto da ideia, decodificado a cada chamada.
+   */
+  String description(int index) {
+    int at = HEADER_BYTES + index * IDEA_BYTES;
+    return getString(segment, segment.getInt(at), segment.getInt(at + 4));
+  }
+
+  /**
+   * Método para a leitura do autor de uma ideia arquivada.
+   *
+   * @param index Índice da ideia.
+   * @return Autor da ideia.
+   */
+  User author(int index) {
+    return users[segment.getInt(HEADER_BYTES + index * IDEA_BYTES + 8)];
+  }
+
+  @Override
+  public void open(Idea idea) {
+  }
+
+  @Override
+  public boolean vote(Idea idea, User voter, int votingLimit) {
+    return false;
+  }
+
+  @Override
+  public VoteRejection rejection(Idea idea, User voter, int votingLimit) {
+    return VoteRejection.WRONG_PHASE;
+  }
+
+  @Override
+  public boolean withdraw(Idea idea, User voter) {
+    return false;
+  }
+
+  @Override
+  public Idea[] withdrawAll(User voter, List<Idea> ideas) {
+    return new Idea[0];
+  }
+
+  @Override
+  public void restore(Idea idea, User voter) {
+  }
+
+  @Override
+  public User[] merge(Idea duplicate, Idea target, boolean combine) {
+    return new User[0];
+  }
+
+  @Override
+  public int countVotes(Idea idea) {
+    return countVotes(idea.getIndex());
+  }
+
+  /**
+   * Método para a leitura da contagem de votos de uma ideia pelo índice, sem passar pela ideia.
+   *
+   * @param index Índice da ideia.
+   * @return Contagem de votos.
+   */
+  int countVotes(int index) {
+    return field(index, 12);
+  }
+
+  @Override
+  public int score(Idea idea) {
+    return field(idea.getIndex(), 16);
+  }
+
+  @Override
+  public User[] getVoters(Idea idea) {
+    int index = idea.getIndex();
+    if (index >= ideaCount) {
+      return new User[0];
+    } else if (!ballots) {
+      int at = HEADER_BYTES + index * IDEA_BYTES;
+      int from = segment.getInt(at + 20);
+      User[] voters = new User[segment.getInt(at + 24)];
+      for (int i = 0; i < voters.length; i++) {
+        voters[i] = users[segment.getInt(from + i * Integer.BYTES)];
+      }
+      return voters;
+    }
+    List<User> voters = new ArrayList<>();
+    for (int ballot = 0; ballot < ballotCount; ballot++) {
+      int at = ballotsAt + ballot * BALLOT_BYTES;
+      int from = segment.getInt(at + 4);
+      for (int i = 0; i < segment.getInt(at + 8); i++) {
+        if (segment.getInt(from + i * Integer.BYTES) == index) {
+          voters.add(users[segment.getInt(at)]);
+        }
+      }
+    }
+    return voters.toArray(new User[0]);
+  }
+
+  @Override
+  public boolean hasBallots() {
+    return ballots;
+  }
+
+  @Override
+  public Map<User, Idea[]> getBallots() {
+    Map<User, Idea[]> copy = new LinkedHashMap<>();
+    for (int ballot = 0; ballot < ballotCount; ballot++) {
+      int at = ballotsAt + ballot * BALLOT_BYTES;
+      int from = segment.getInt(at + 4);
+      Idea[] ranking = new Idea[segment.getInt(at + 8)];
+      for (int i = 0; i < ranking.length; i++) {
+        ranking[i] = ideas.get(segment.getInt(from + i * Integer.BYTES));
+      }
+      copy.put(users[segment.getInt(at)], ranking);
+    }
+    return copy;
+  }
+
+  private int field(int index, int offset) {
+    return index < ideaCount ? segment.getInt(HEADER_BYTES + index * IDEA_BYTES + offset) : 0;
+  }
+
+  private static String getString(ByteBuffer segment, int at, int length) {
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    segment.get(at, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void ordinal(Map<User, Integer> dictionary, User user) {
+    dictionary.putIfAbsent(user, dictionary.size());
+  }
+
+  /**
+   * Método para a gravação de um texto em UTF-8 em uma posição do segmento.
+   *
+   * @return Quantidade de bytes gravados, ou -1 para um texto nulo.
+   */
+  private static int putString(ByteBuffer segment, int at, String text) {
+    if (text == null) {
+      return -1;
+    }
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    segment.put(at, bytes);
+    return bytes.length;
+  }
+
+  /**
+   * Método para o cálculo do tamanho de um texto em UTF-8 sem codificá-lo, com os substitutos
+   * isolados contados como o caractere de substituição de {@link String#getBytes}.
+   */
+  static int utf8Length(String text) {
+    if (text == null) {
+      return 0;
+    }
+    int length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
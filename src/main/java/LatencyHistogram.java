@@ -0,0 +1,126 @@
+package main.java;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe que representa um histograma de latências sem bloqueio, com faixas exponenciais de 1
+ * microssegundo a cerca de 17 segundos: a faixa i conta as medidas de até 2^i microssegundos, e a
+ * última, as maiores que isso. Cada faixa é um {@link LongAdder}, de forma que threads registrando
+ * ao mesmo tempo não disputam uma mesma posição de memória.
+ *
+ * A leitura não é atômica em relação aos registros concorrentes: um registro em andamento pode
+ * aparecer na contagem antes de aparecer na soma.
+ * @author hugo
+ */
+public final class LatencyHistogram {
+
+  /**
+   * Quantidade de faixas com limite, a última de 2^24 microssegundos.
+   */
+  static final int BOUNDS = 25;
+
+  private final LongAdder[] buckets;
+  private final LongAdder sum;
+
+  LatencyHistogram() {
+    buckets = new LongAdder[BOUNDS + 1];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+    sum = new LongAdder();
+  }
+
+  /**
+   * Método para o registro de uma medida.
+   *
+   * @param nanos Latência em nanossegundos.
+   */
+  void record(long nanos) {
+    buckets[bucketOf(nanos)].increment();
+    sum.add(nanos);
+  }
+
+  /**
+   * Método para a obtenção da faixa de uma medida, a menor cujo limite a contém.
+   *
+   * @param nanos Latência em nanossegundos.
+   * @return Índice da faixa.
+   */
+  static int bucketOf(long nanos) {
+    if (nanos <= 1000) {
+      return 0;
+    }
+    return Math.min(BOUNDS, 64 - Long.numberOfLeadingZeros((nanos - 1) / 1000));
+  }
+
+  /**
+   * Método para a obtenção do limite superior de uma faixa.
+   *
+   * @param bucket Índice da faixa, menor que {@value #BOUNDS}.
+   * @return Limite em nanossegundos.
+   */
+  static long boundOf(int bucket) {
+    return 1000L << bucket;
+  }
+
+  /**
+   * Método para a obtenção da quantidade de medidas.
+   *
+   * @return Quantidade de medidas registradas.
+   */
+  public long count() {
+    long count = 0;
+    for (LongAdder bucket : buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  /**
+   * Método para a obtenção da soma das medidas.
+   *
+   * @return Soma em nanossegundos.
+   */
+  public long sum() {
+    return sum.sum();
+  }
+
+  /**
+   * Método para a estimativa de um percentil, pelo limite superior da faixa que o contém.
+   *
+   * @param quantile Quantil, entre 0 e 1.
+   * @return Limite da faixa em nanossegundos, {@link Long#MAX_VALUE} se o percentil cair na última
+   *         faixa, ou 0 se não houver medidas.
+   */
+  public long percentile(double quantile) {
+    long[] counts = new long[buckets.length];
+    addTo(counts);
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BOUNDS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return boundOf(i);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Método para a soma das contagens de cada faixa a um arranjo, usado na agregação.
+   *
+   * @param counts Arranjo com {@value #BOUNDS} + 1 posições.
+   */
+  void addTo(long[] counts) {
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] += buckets[i].sum();
+    }
+  }
+}
@@ -0,0 +1,483 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Classe que representa o placar de uma sessão, um índice ordenado das ideias por número de votos
+ * que é atualizado a cada voto, em vez de ser reordenado a cada consulta. O número de votos de uma
+ * ideia é a sua pontuação no sistema de votação da sessão, que na aprovação é a contagem de votos.
+ *
+ * As ideias ficam em um arranjo em ordem decrescente de votos, e para cada contagem de votos
+ * guarda-se a posição onde começam as ideias com aquela contagem ou menos. Como um voto altera a
+ * contagem de uma ideia em apenas uma unidade, basta trocar a ideia com a primeira (ou última) do
+ * seu grupo de empate e mover a fronteira do grupo, o que custa tempo constante. A posição de uma
+ * ideia no ranking é a fronteira do seu grupo, também obtida em tempo constante.
+ *
+ * Se a sessão publicar retratos, as contagens são também copiadas em blocos que os retratos
+ * compartilham com o placar: um bloco publicado não é mais alterado, e o primeiro voto em uma
+ * ideia do bloco o copia antes de alterá-lo.
+ * @author hugo
+ */
+class Leaderboard {
+
+  /**
+   * Ordem de desempate das ideias, pela ordem em que foram adicionadas à sessão.
+   */
+  private static final Comparator<Idea> BY_INDEX = Comparator.comparingInt(Idea::getIndex);
+  /**
+   * Logaritmo do tamanho dos blocos de contagens compartilhados com os retratos.
+   */
+  static final int CHUNK_BITS = 8;
+  /**
+   * Tamanho dos blocos de contagens compartilhados com os retratos.
+   */
+  static final int CHUNK = 1 << CHUNK_BITS;
+
+  /**
+   * Fonte de onde são lidas as contagens.
+   */
+  private ToIntFunction<Idea> scores;
+  /**
+   * Ideias em ordem decrescente de votos.
+   */
+  private Idea[] order;
+  /**
+   * Posição de cada ideia no arranjo ordenado, indexada pelo índice da ideia.
+   */
+  private int[] position;
+  /**
+   * Contagem de votos de cada ideia, indexada pelo índice da ideia.
+   */
+  private int[] votes;
+  /**
+   * Para cada contagem de votos c, a quantidade de ideias com mais de c votos, que é também a
+   * posição da primeira ideia com c votos ou menos.
+   */
+  private int[] head;
+  /**
+   * Quantidade de ideias no placar.
+   */
+  private int size;
+  /**
+   * Contagens em blocos de {@value #CHUNK} ideias, compartilhados com os retratos publicados, ou
+   * nulo se a sessão não publica retratos.
+   */
+  private int[][] chunks;
+  /**
+   * Para cada bloco, se ele ainda não foi publicado e pode ser alterado sem cópia.
+   */
+  private boolean[] owned;
+  /**
+   * Quantidade de alterações das contagens em blocos, lida sem bloqueio para saber se há
+   * contagens a publicar.
+   */
+  private volatile long changes;
+
+  /**
+   * Construtor para o placar, que inicia vazio.
+   *
+   * @param scores Fonte de onde são lidas as contagens, a pontuação de cada ideia.
+   */
+  Leaderboard(ToIntFunction<Idea> scores) {
+    this.scores = scores;
+    order = new Idea[16];
+    position = new int[16];
+    votes = new int[16];
+    head = new int[16];
+  }
+
+  /**
+   * Método para a adição de uma ideia, que entra no fim do placar, sem votos.
+   *
+   * @param idea Ideia a adicionar, com o índice já definido pela sessão.
+   */
+  synchronized void add(Idea idea) {
+    if (size == order.length) {
+      order = Arrays.copyOf(order, size * 2);
+      position = Arrays.copyOf(position, size * 2);
+      votes = Arrays.copyOf(votes, size * 2);
+    }
+    order[size] = idea;
+    position[idea.getIndex()] = size;
+    size++;
+    share(idea.getIndex());
+  }
+
+  /**
+   * Método para a atualização da posição de uma ideia após um voto ou remoção de voto. A contagem
+   * é lida da fonte dentro do bloqueio do placar, de forma que atualizações concorrentes convergem
+   * para a contagem mais recente.
+   *
+   * @param idea Ideia a atualizar.
+   */
+  synchronized void refresh(Idea idea) {
+    int index = idea.getIndex();
+    int target = scores.applyAsInt(idea);
+    while (votes[index] < target) {
+      increment(index);
+    }
+    while (votes[index] > target) {
+      decrement(index);
+    }
+  }
+
+  /**
+   * Método para a atualização das posições de várias ideias de uma só vez, com uma única
+   * aquisição do bloqueio do placar.
+   *
+   * @param ideas Ideias votadas.
+   * @param changed Para cada ideia, se a sua contagem foi alterada.
+   */
+  synchronized void refreshAll(Idea[] ideas, boolean[] changed) {
+    for (int i = 0; i < ideas.length; i++) {
+      if (changed[i]) {
+        refresh(ideas[i]);
+      }
+    }
+  }
+
+  /**
+   * Método para a atualização das posições de várias ideias de uma só vez, com uma única
+   * aquisição do bloqueio do placar.
+   *
+   * @param ideas Ideias a atualizar.
+   */
+  synchronized void refreshAll(Iterable<Idea> ideas) {
+    for (Idea idea : ideas) {
+      refresh(idea);
+    }
+  }
+
+  /**
+   * Método para a reordenação de todo o placar, usado quando as contagens mudam de uma só vez. As
+   * ideias são redistribuídas por contagem, em ordem de índice, em tempo linear no tamanho do
+   * placar e na maior contagem.
+   */
+  synchronized void rebuild() {
+    Idea[] byIndex = new Idea[size];
+    int max = 0;
+    for (int i = 0; i < size; i++) {
+      Idea idea = order[i];
+      byIndex[idea.getIndex()] = idea;
+      votes[idea.getIndex()] = scores.applyAsInt(idea);
+      max = Math.max(max, votes[idea.getIndex()]);
+    }
+    int[] groups = new int[max + 1];
+    for (int index = 0; index < size; index++) {
+      groups[votes[index]]++;
+    }
+    head = new int[Math.max(16, Integer.highestOneBit(max + 1) * 2)];
+    for (int count = max - 1; count >= 0; count--) {
+      head[count] = head[count + 1] + groups[count + 1];
+    }
+    // Próxima posição livre de cada grupo, que começa na fronteira do grupo
+    int[] next = Arrays.copyOf(head, max + 1);
+    for (int index = 0; index < size; index++) {
+      int at = next[votes[index]]++;
+      order[at] = byIndex[index];
+      position[index] = at;
+      share(index);
+    }
+  }
+
+  /**
+   * Método para o congelamento das contagens atuais, que passam a ser compartilhadas com um
+   * retrato. Os blocos deixam de pertencer ao placar, de forma que o custo é proporcional à
+   * quantidade de blocos, e não de ideias. Na primeira chamada os blocos são criados, e a partir
+   * dela cada alteração de contagem é copiada também nos blocos.
+   *
+   * @return Blocos com as contagens de todas as ideias do placar, que não são mais alterados.
+   */
+  synchronized int[][] freeze() {
+    if (chunks == null) {
+      chunks = new int[16][];
+      owned = new boolean[16];
+      for (int index = 0; index < size; index++) {
+        share(index);
+      }
+    }
+    int used = (size + CHUNK - 1) >>> CHUNK_BITS;
+    Arrays.fill(owned, 0, used, false);
+    return Arrays.copyOf(chunks, used);
+  }
+
+  /**
+   * Método para a obtenção de uma cópia das contagens atuais em blocos, sem compartilhamento com o
+   * placar, para um retrato avulso.
+   *
+   * @return Blocos com as contagens de todas as ideias do placar.
+   */
+  synchronized int[][] copyScores() {
+    int[][] copy = new int[(size + CHUNK - 1) >>> CHUNK_BITS][];
+    for (int chunk = 0; chunk < copy.length; chunk++) {
+      copy[chunk] = Arrays.copyOfRange(votes, chunk << CHUNK_BITS, (chunk + 1) << CHUNK_BITS);
+    }
+    return copy;
+  }
+
+  /**
+   * Método para o fim da cópia das contagens em blocos, quando a sessão deixa de publicar
+   * retratos.
+   */
+  synchronized void unshare() {
+    chunks = null;
+    owned = null;
+  }
+
+  /**
+   * Método para a obtenção da quantidade de alterações das contagens desde o início do
+   * compartilhamento, sem bloqueio.
+   *
+   * @return Quantidade de alterações.
+   */
+  long changes() {
+    return changes;
+  }
+
+  /**
+   * Método para a obtenção das k ideias mais votadas, ignorando as ideias sem votos. Os empates
+   * são desfeitos pela ordem de adição das ideias.
+   *
+   * @param k Quantidade máxima de ideias.
+   * @return Arranjo com as ideias em ordem decrescente de votos.
+   */
+  Idea[] top(int k) {
+    return page(0, k);
+  }
+
+  /**
+   * Método para a obtenção de uma página do ranking, ignorando as ideias sem votos. Os empates são
+   * desfeitos pela ordem de adição das ideias.
+   *
+   * Os grupos de empate inteiramente contidos na página são copiados e ordenados. Do grupo que
+   * cruza a fronteira da página são selecionadas apenas as ideias de menor índice necessárias, de
+   * forma que o custo depende do tamanho da página e não da sessão. Para percorrer o ranking
+   * inteiro, {@link #pages(int)} evita selecionar de novo as ideias das páginas anteriores.
+   *
+   * @param offset Posição da primeira ideia da página, a partir de 0.
+   * @param limit Quantidade máxima de ideias da página.
+   * @return Arranjo com as ideias da página em ordem decrescente de votos.
+   */
+  synchronized Idea[] page(int offset, int limit) {
+    int start = Math.max(0, offset);
+    int end = (int) Math.min((long) start + Math.max(0, limit), head[0]);
+    if (start >= end) {
+      return new Idea[0];
+    }
+    Idea[] page = new Idea[end - start];
+    int position = start;
+    while (position < end) {
+      // Grupo de empate que contém a posição
+      int tie = votes[order[position].getIndex()];
+      int groupStart = head[tie];
+      int take = Math.min(head[tie - 1], end) - position;
+      select(tie, -1, position - groupStart, page, position - start, take);
+      position += take;
+    }
+    return page;
+  }
+
+  /**
+   * Método para a leitura do ranking página a página. Cada página continua a partir da última
+   * ideia da anterior, de forma que percorrer o ranking inteiro custa o mesmo que ordená-lo uma
+   * vez. As páginas só são consistentes entre si se não houver votos durante a leitura.
+   *
+   * @param pageSize Quantidade máxima de ideias por página.
+   * @return Iterador sobre as páginas do ranking.
+   */
+  Iterator<Idea[]> pages(int pageSize) {
+    return new Iterator<Idea[]>() {
+      private int position;
+      private int lastIndex = -1;
+
+      @Override
+      public boolean hasNext() {
+        synchronized (Leaderboard.this) {
+          return pageSize > 0 && position < head[0];
+        }
+      }
+
+      @Override
+      public Idea[] next() {
+        synchronized (Leaderboard.this) {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          Idea[] page = new Idea[Math.min(pageSize, head[0] - position)];
+          int filled = 0;
+          while (filled < page.length) {
+            int tie = votes[order[position].getIndex()];
+            int groupStart = head[tie];
+            int after = (position == groupStart) ? -1 : lastIndex;
+            int take = Math.min(head[tie - 1] - position, page.length - filled);
+            select(tie, after, 0, page, filled, take);
+            filled += take;
+            position += take;
+            lastIndex = page[filled - 1].getIndex();
+          }
+          return page;
+        }
+      }
+    };
+  }
+
+  /**
+   * Método para a seleção, em ordem de índice, de ideias de um grupo de empate: dentre as ideias
+   * do grupo com índice maior que um dado, descartam-se as primeiras e copiam-se as seguintes.
+   *
+   * Quando o grupo é grande em relação à sessão, as ideias são encontradas percorrendo as
+   * contagens por índice, já em ordem; caso contrário, o grupo é ordenado por inteiro ou, se
+   * apenas parte dele for necessária, percorrido com um heap limitado que guarda as ideias de
+   * menor índice.
+   *
+   * @param tie Contagem de votos do grupo.
+   * @param after Índice a partir do qual as ideias são consideradas, exclusivo.
+   * @param skip Quantidade de ideias a descartar.
+   * @param target Arranjo de destino.
+   * @param at Posição do destino onde copiar.
+   * @param take Quantidade de ideias a copiar.
+   */
+  private void select(int tie, int after, int skip, Idea[] target, int at, int take) {
+    int groupStart = head[tie];
+    int groupEnd = head[tie - 1];
+    long group = groupEnd - groupStart;
+    long wanted = skip + take;
+    // Índices percorridos em média até encontrar as ideias, contra o custo de ordenar o grupo
+    long scanCost = wanted * size / group;
+    long sortCost = group * (64 - Long.numberOfLeadingZeros(wanted));
+    if (scanCost < sortCost) {
+      int seen = 0;
+      for (int index = after + 1; seen < wanted; index++) {
+        if (votes[index] == tie) {
+          if (seen >= skip) {
+            target[at + seen - skip] = order[position[index]];
+          }
+          seen++;
+        }
+      }
+    } else if (wanted == group && after < 0) {
+      Idea[] all = Arrays.copyOfRange(order, groupStart, groupEnd);
+      Arrays.sort(all, BY_INDEX);
+      System.arraycopy(all, skip, target, at, take);
+    } else {
+      // Heap com a ideia de maior índice entre as selecionadas no topo
+      PriorityQueue<Idea> heap = new PriorityQueue<>((int) wanted, BY_INDEX.reversed());
+      for (int i = groupStart; i < groupEnd; i++) {
+        Idea idea = order[i];
+        if (idea.getIndex() <= after) {
+          continue;
+        }
+        if (heap.size() < wanted) {
+          heap.add(idea);
+        } else if (idea.getIndex() < heap.peek().getIndex()) {
+          heap.poll();
+          heap.add(idea);
+        }
+      }
+      Idea[] selected = heap.toArray(new Idea[0]);
+      Arrays.sort(selected, BY_INDEX);
+      System.arraycopy(selected, skip, target, at, take);
+    }
+  }
+
+  /**
+   * Método para a obtenção de todas as ideias com votos, em ordem decrescente de votos.
+   *
+   * @return Arranjo com as ideias votadas.
+   */
+  Idea[] ranking() {
+    return top(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Método para a obtenção da posição de uma ideia no ranking, contando a partir de 1. Ideias
+   * empatadas compartilham a mesma posição.
+   *
+   * @param idea Ideia a consultar.
+   * @return Posição da ideia, ou 0 se a ideia não tiver votos.
+   */
+  synchronized int rankOf(Idea idea) {
+    int index = idea.getIndex();
+    if (index >= size || order[position[index]] != idea || votes[index] == 0) {
+      return 0;
+    }
+    return head[votes[index]] + 1;
+  }
+
+  /**
+   * Método para o incremento da contagem de uma ideia, trocando-a com a primeira ideia do seu
+   * grupo de empate.
+   *
+   * @param index Índice da ideia.
+   */
+  private void increment(int index) {
+    int count = votes[index];
+    if (count + 1 >= head.length) {
+      head = Arrays.copyOf(head, head.length * 2);
+    }
+    swap(position[index], head[count]);
+    head[count]++;
+    votes[index] = count + 1;
+    share(index);
+  }
+
+  /**
+   * Método para o decremento da contagem de uma ideia, trocando-a com a última ideia do seu grupo
+   * de empate.
+   *
+   * @param index Índice da ideia.
+   */
+  private void decrement(int index) {
+    int count = votes[index];
+    head[count - 1]--;
+    swap(position[index], head[count - 1]);
+    votes[index] = count - 1;
+    share(index);
+  }
+
+  /**
+   * Método para a cópia da contagem de uma ideia no seu bloco, se a sessão publicar retratos. Um
+   * bloco já publicado é copiado antes de ser alterado.
+   *
+   * @param index Índice da ideia.
+   */
+  private void share(int index) {
+    if (chunks == null) {
+      return;
+    }
+    int chunk = index >>> CHUNK_BITS;
+    if (chunk == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunk * 2);
+      owned = Arrays.copyOf(owned, chunk * 2);
+    }
+    if (chunks[chunk] == null) {
+      chunks[chunk] = new int[CHUNK];
+      owned[chunk] = true;
+    } else if (!owned[chunk]) {
+      chunks[chunk] = chunks[chunk].clone();
+      owned[chunk] = true;
+    }
+    chunks[chunk][index & (CHUNK - 1)] = votes[index];
+    changes++;
+  }
+
+  /**
+   * Método para a troca de duas posições do arranjo ordenado.
+   *
+   * @param i Primeira posição.
+   * @param j Segunda posição.
+   */
+  private void swap(int i, int j) {
+    Idea a = order[i];
+    Idea b = order[j];
+    order[i] = b;
+    order[j] = a;
+    position[a.getIndex()] = j;
+    position[b.getIndex()] = i;
+  }
+}
@@ -0,0 +1,262 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classe que representa o registro das métricas das sessões de um nó, que liga cada sessão às suas
+ * métricas e as exporta no formato de texto do Prometheus.
+ *
+ * As métricas globais são a soma das sessões ligadas e das já desligadas, calculada apenas na
+ * exportação, de forma que os votos atualizam somente os contadores da própria sessão. As séries
+ * por sessão levam o rótulo {@code session} e podem ser omitidas da exportação quando houver
+ * sessões demais.
+ * @author hugo
+ */
+public class MetricsRegistry {
+
+  private static final String PREFIX = "brainstorm_";
+  private static final VoteRejection[] REJECTIONS = VoteRejection.values();
+  private static final SessionMetrics.Operation[] OPERATIONS = SessionMetrics.Operation.values();
+
+  /**
+   * Métricas de cada sessão ligada, pelo nome.
+   */
+  private Map<String, SessionMetrics> sessions;
+  /**
+   * Soma das métricas das sessões desligadas.
+   */
+  private Totals retired;
+  /**
+   * Se as séries por sessão são exportadas.
+   */
+  private volatile boolean perSession;
+
+  /**
+   * Construtor para o registro de métricas, que inicia sem sessões e exporta as séries por sessão.
+   */
+  public MetricsRegistry() {
+    sessions = new ConcurrentHashMap<>();
+    retired = new Totals();
+    perSession = true;
+  }
+
+  /**
+   * Método para a ligação de uma sessão às métricas do nome dado, criadas no primeiro uso. Uma
+   * sessão recarregada com o mesmo nome continua as métricas anteriores.
+   *
+   * @param name Nome da sessão nas métricas.
+   * @param session Sessão a ligar.
+   * @return Métricas da sessão.
+   */
+  public SessionMetrics attach(String name, Session session) {
+    SessionMetrics metrics = sessions.computeIfAbsent(name, SessionMetrics::new);
+    session.setMetrics(metrics);
+    return metrics;
+  }
+
+  /**
+   * Método para o desligamento definitivo das métricas de um nome, que deixam de ser exportadas
+   * por sessão mas continuam somadas às globais.
+   *
+   * @param name Nome da sessão nas métricas.
+   * @param session Sessão ligada, que deixa de registrar métricas, ou nulo.
+   */
+  public synchronized void detach(String name, Session session) {
+    SessionMetrics metrics = sessions.remove(name);
+    if (session != null && session.getMetrics() == metrics) {
+      session.setMetrics(null);
+    }
+    if (metrics != null) {
+      retired.add(metrics);
+    }
+  }
+
+  /**
+   * Método para a obtenção das métricas de uma sessão ligada.
+   *
+   * @param name Nome da sessão nas métricas.
+   * @return Métricas, ou nulo se o nome não estiver ligado.
+   */
+  public SessionMetrics get(String name) {
+    return sessions.get(name);
+  }
+
+  public void setPerSession(boolean perSession) {
+    this.perSession = perSession;
+  }
+
+  /**
+   * Método para a exportação das métricas no formato de texto do Prometheus.
+   *
+   * @return Texto da exportação.
+   */
+  public String toPrometheus() {
+    StringBuilder out = new StringBuilder(4096);
+    try {
+      writePrometheus(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Método para a escrita das métricas no formato de texto do Prometheus: contadores globais de
+   * votos aceitos, recusados por motivo e retirados e de ideias adicionadas, histogramas de
+   * latência por operação e, se habilitados, os contadores de cada sessão.
+   *
+   * @param out Destino da exportação.
+   * @throws IOException Se a escrita falhar.
+   */
+  public void writePrometheus(Appendable out) throws IOException {
+    Map<String, SessionMetrics> live = new TreeMap<>();
+    Totals totals = new Totals();
+    synchronized (this) {
+      live.putAll(sessions);
+      totals.merge(retired);
+      for (SessionMetrics metrics : live.values()) {
+        totals.add(metrics);
+      }
+    }
+
+    family(out, "votes_total", "counter", "Votos aceitos.");
+    sample(out, "votes_total", "", totals.accepted);
+    family(out, "votes_rejected_total", "counter", "Votos recusados, por motivo.");
+    for (VoteRejection reason : REJECTIONS) {
+      sample(out, "votes_rejected_total", label("reason", reason),
+          totals.rejected[reason.ordinal()]);
+    }
+    family(out, "votes_withdrawn_total", "counter", "Votos retirados.");
+    sample(out, "votes_withdrawn_total", "", totals.withdrawn);
+    family(out, "ideas_total", "counter", "Ideias adicionadas.");
+    sample(out, "ideas_total", "", totals.ideas);
+
+    family(out, "operation_duration_seconds", "histogram", "Latência das operações das sessões.");
+    for (SessionMetrics.Operation operation : OPERATIONS) {
+      String labels = label("operation", operation);
+      long[] counts = totals.buckets[operation.ordinal()];
+      long cumulative = 0;
+      for (int i = 0; i < LatencyHistogram.BOUNDS; i++) {
+        cumulative += counts[i];
+        sample(out, "operation_duration_seconds_bucket", labels + ",le=\""
+            + seconds(LatencyHistogram.boundOf(i)) + "\"", cumulative);
+      }
+      cumulative += counts[LatencyHistogram.BOUNDS];
+      sample(out, "operation_duration_seconds_bucket", labels + ",le=\"+Inf\"", cumulative);
+      out.append(PREFIX).append("operation_duration_seconds_sum{").append(labels).append("} ")
+          .append(seconds(totals.sums[operation.ordinal()])).append('\n');
+      sample(out, "operation_duration_seconds_count", labels, cumulative);
+    }
+
+    if (!perSession) {
+      return;
+    }
+    family(out, "session_votes_total", "counter", "Votos aceitos, por sessão.");
+    for (SessionMetrics metrics : live.values()) {
+      sample(out, "session_votes_total", session(metrics), metrics.getAcceptedVotes());
+    }
+    family(out, "session_votes_rejected_total", "counter", "Votos recusados, por sessão e motivo.");
+    for (SessionMetrics metrics : live.values()) {
+      for (VoteRejection reason : REJECTIONS) {
+        sample(out, "session_votes_rejected_total",
+            session(metrics) + "," + label("reason", reason), metrics.getRejectedVotes(reason));
+      }
+    }
+    family(out, "session_votes_withdrawn_total", "counter", "Votos retirados, por sessão.");
+    for (SessionMetrics metrics : live.values()) {
+      sample(out, "session_votes_withdrawn_total", session(metrics), metrics.getWithdrawnVotes());
+    }
+    family(out, "session_ideas_total", "counter", "Ideias adicionadas, por sessão.");
+    for (SessionMetrics metrics : live.values()) {
+      sample(out, "session_ideas_total", session(metrics), metrics.getAddedIdeas());
+    }
+  }
+
+  private static void family(Appendable out, String name, String type, String help)
+      throws IOException {
+    out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(Appendable out, String name, String labels, long value)
+      throws IOException {
+    out.append(PREFIX).append(name);
+    if (!labels.isEmpty()) {
+      out.append('{').append(labels).append('}');
+    }
+    out.append(' ').append(Long.toString(value)).append('\n');
+  }
+
+  private static String label(String name, Enum<?> value) {
+    return name + "=\"" + value.name().toLowerCase() + "\"";
+  }
+
+  /**
+   * Método para o rótulo de sessão, com os caracteres especiais do nome escapados.
+   */
+  private static String session(SessionMetrics metrics) {
+    String name = metrics.getName();
+    StringBuilder label = new StringBuilder(name.length() + 12).append("session=\"");
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '\\' || c == '"') {
+        label.append('\\').append(c);
+      } else if (c == '\n') {
+        label.append("\\n");
+      } else {
+        label.append(c);
+      }
+    }
+    return label.append('"').toString();
+  }
+
+  private static String seconds(long nanos) {
+    return Double.toString(nanos / 1e9);
+  }
+
+  /**
+   * Classe que representa a soma das métricas de várias sessões.
+   */
+  private static final class Totals {
+
+    long accepted;
+    final long[] rejected = new long[REJECTIONS.length];
+    long withdrawn;
+    long ideas;
+    final long[][] buckets = new long[OPERATIONS.length][LatencyHistogram.BOUNDS + 1];
+    final long[] sums = new long[OPERATIONS.length];
+
+    void add(SessionMetrics metrics) {
+      accepted += metrics.getAcceptedVotes();
+      for (VoteRejection reason : REJECTIONS) {
+        rejected[reason.ordinal()] += metrics.getRejectedVotes(reason);
+      }
+      withdrawn += metrics.getWithdrawnVotes();
+      ideas += metrics.getAddedIdeas();
+      for (SessionMetrics.Operation operation : OPERATIONS) {
+        LatencyHistogram histogram = metrics.getLatency(operation);
+        histogram.addTo(buckets[operation.ordinal()]);
+        sums[operation.ordinal()] += histogram.sum();
+      }
+    }
+
+    void merge(Totals other) {
+      accepted += other.accepted;
+      for (int i = 0; i < rejected.length; i++) {
+        rejected[i] += other.rejected[i];
+      }
+      withdrawn += other.withdrawn;
+      ideas += other.ideas;
+      for (int i = 0; i < buckets.length; i++) {
+        for (int j = 0; j < buckets[i].length; j++) {
+          buckets[i][j] += other.buckets[i][j];
+        }
+        sums[i] += other.sums[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package main.java;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Classe responsável pela apuração e ranqueamento paralelos das ideias de uma sessão, usados para
+ * recalcular o ranking de sessões muito grandes a partir do livro de votos, sem passar pelo
+ * placar.
+ *
+ * O ranqueamento é uma ordenação por contagem estável: as ideias são divididas em faixas
+ * contíguas de índices, cada faixa apura as contagens e o seu histograma em paralelo, as somas dos
+ * histogramas dão a posição de saída de cada faixa em cada grupo de empate, e cada faixa então
+ * distribui as suas ideias, em ordem de índice, em paralelo. O resultado é idêntico ao de
+ * {@link Leaderboard#ranking()}, com os empates desfeitos pela ordem de adição.
+ * @author hugo
+ */
+final class ParallelRanking {
+
+  /**
+   * Quantidade de ideias a partir da qual o ranqueamento é paralelo.
+   */
+  static final int THRESHOLD = 1 << 15;
+  /**
+   * Quantidade mínima de ideias por faixa.
+   */
+  private static final int MIN_CHUNK = 1 << 12;
+
+  private ParallelRanking() {
+  }
+
+  /**
+   * Método para a apuração e ranqueamento das ideias votadas.
+   *
+   * @param ideas Ideias da sessão, em ordem de adição, cada uma na posição do seu índice.
+   * @param ledger Livro de votos da sessão, que não deve ser alterado durante o ranqueamento.
+   * @param pool Pool onde as tarefas são executadas.
+   * @return Arranjo com as ideias votadas em ordem decrescente de votos.
+   */
+  static Idea[] rank(Idea[] ideas, VoteLedger ledger, ForkJoinPool pool) {
+    int n = ideas.length;
+    int chunks = Math.max(1, Math.min(n / MIN_CHUNK, pool.getParallelism() * 4));
+    int[] counts = new int[n];
+    int[][] histograms = new int[chunks][];
+
+    // Apuração: contagem de cada ideia e histograma de cada faixa
+    forEachChunk(pool, chunks, chunk -> {
+      int from = start(chunk, chunks, n);
+      int to = start(chunk + 1, chunks, n);
+      ledger.countVotes(from, to, counts);
+      int max = 0;
+      for (int i = from; i < to; i++) {
+        max = Math.max(max, counts[i]);
+      }
+      int[] histogram = new int[max + 1];
+      for (int i = from; i < to; i++) {
+        histogram[counts[i]]++;
+      }
+      histograms[chunk] = histogram;
+    });
+
+    // Posição de saída de cada faixa em cada grupo de empate, do mais votado para o menos votado
+    int max = 0;
+    for (int[] histogram : histograms) {
+      max = Math.max(max, histogram.length - 1);
+    }
+    int voted = 0;
+    for (int votes = max; votes >= 1; votes--) {
+      for (int[] histogram : histograms) {
+        if (votes < histogram.length) {
+          int size = histogram[votes];
+          histogram[votes] = voted;
+          voted += size;
+        }
+      }
+    }
+
+    // Distribuição estável das ideias de cada faixa
+    Idea[] ranking = new Idea[voted];
+    forEachChunk(pool, chunks, chunk -> {
+      int[] next = histograms[chunk];
+      for (int i = start(chunk, chunks, n), to = start(chunk + 1, chunks, n); i < to; i++) {
+        if (counts[i] > 0) {
+          ranking[next[counts[i]]++] = ideas[i];
+        }
+      }
+    });
+    return ranking;
+  }
+
+  private static int start(int chunk, int chunks, int n) {
+    return (int) ((long) chunk * n / chunks);
+  }
+
+  private static void forEachChunk(ForkJoinPool pool, int chunks, IntConsumer action) {
+    if (chunks == 1) {
+      action.accept(0);
+    } else {
+      pool.invoke(new ChunkTask(0, chunks, action));
+    }
+  }
+
+  /**
+   * Classe que representa a execução de uma ação sobre um intervalo de faixas, dividido ao meio
+   * até restar uma faixa por tarefa.
+   */
+  private static class ChunkTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final IntConsumer action;
+
+    ChunkTask(int from, int to, IntConsumer action) {
+      this.from = from;
+      this.to = to;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        action.accept(from);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new ChunkTask(from, middle, action), new ChunkTask(middle, to, action));
+    }
+  }
+}
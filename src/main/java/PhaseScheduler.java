@@ -0,0 +1,373 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Classe que representa o agendador das passagens de fase das sessões de um registro, que conduz
+ * sessões cronometradas (por exemplo, 10 minutos de brainstorm e 5 de votação) de dezenas de
+ * milhares de sessões com uma única thread, em vez de um temporizador por sessão.
+ *
+ * Os temporizadores ficam em uma roda de tempo hierárquica: cada nível é uma roda de
+ * {@value #WHEEL_SIZE} posições, em que cada posição do nível 0 vale um tique e cada posição de um
+ * nível vale uma volta inteira do nível abaixo. Um temporizador entra na posição do seu prazo no
+ * nível mais baixo que o alcança, em uma lista duplamente encadeada, de forma que agendar, pausar,
+ * estender e cancelar custam tempo constante. A cada volta de um nível, a posição seguinte do
+ * nível de cima é redistribuída nos níveis abaixo; os prazos além do último nível aguardam em uma
+ * lista à parte, redistribuída a cada volta dele.
+ *
+ * O relógio é injetado, e o agendador só avança quando {@link #advance()} é chamado, pela thread
+ * iniciada em {@link #start()} ou diretamente, como nos testes, sem depender do tempo real. As
+ * sessões são obtidas do registro a cada passagem, portanto uma sessão descarregada é recarregada
+ * para passar de fase, e uma sessão descartada encerra o seu temporizador. Uma passagem de fase
+ * feita por outro caminho antes do prazo também encerra o temporizador.
+ * @author hugo
+ */
+public class PhaseScheduler implements AutoCloseable {
+
+  /**
+   * Bits do índice da posição em cada nível da roda.
+   */
+  private static final int WHEEL_BITS = 6;
+  /**
+   * Quantidade de posições de cada nível da roda.
+   */
+  static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  /**
+   * Quantidade de níveis da roda, que alcançam 2^24 tiques.
+   */
+  static final int LEVELS = 4;
+
+  /**
+   * Registro das sessões cronometradas.
+   */
+  private final SessionRegistry registry;
+  /**
+   * Duração de cada tique, em milissegundos.
+   */
+  private final long tickMillis;
+  /**
+   * Relógio em milissegundos.
+   */
+  private final LongSupplier clock;
+  /**
+   * Cabeças das listas de cada posição de cada nível da roda.
+   */
+  private final PhaseTimer[][] wheels;
+  /**
+   * Cabeça da lista dos prazos além do último nível.
+   */
+  private final PhaseTimer overflow;
+  /**
+   * Último tique processado.
+   */
+  private long currentTick;
+  /**
+   * Quantidade de temporizadores na roda.
+   */
+  private int size;
+  /**
+   * Thread que avança o agendador a cada tique, ou nulo se ele for avançado por quem o usa.
+   */
+  private ScheduledExecutorService thread;
+
+  /**
+   * Construtor para um agendador com tiques de 100 milissegundos e o relógio do sistema.
+   *
+   * @param registry Registro das sessões cronometradas.
+   */
+  public PhaseScheduler(SessionRegistry registry) {
+    this(registry, 100, System::currentTimeMillis);
+  }
+
+  /**
+   * Construtor para um agendador com a duração do tique e o relógio definidos.
+   *
+   * @param registry Registro das sessões cronometradas.
+   * @param tickMillis Duração de cada tique, em milissegundos, que é a precisão dos prazos.
+   * @param clock Relógio em milissegundos.
+   */
+  public PhaseScheduler(SessionRegistry registry, long tickMillis, LongSupplier clock) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Duração do tique inválida");
+    }
+    this.registry = registry;
+    this.tickMillis = tickMillis;
+    this.clock = clock;
+    wheels = new PhaseTimer[LEVELS][WHEEL_SIZE];
+    for (PhaseTimer[] wheel : wheels) {
+      for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+        wheel[slot] = new PhaseTimer();
+      }
+    }
+    overflow = new PhaseTimer();
+    currentTick = clock.getAsLong() / tickMillis;
+  }
+
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /**
+   * Método para o cronometramento das fases de uma sessão a partir da fase atual. Quando a fase
+   * cronometrada termina, a sessão passa à seguinte, que também é cronometrada se tiver uma
+   * duração definida; os prazos seguintes contam do prazo anterior, e não do instante em que a
+   * passagem foi feita, de forma que os atrasos não se acumulam.
+   *
+   * @param id Identificador da sessão no registro.
+   * @param durations Duração de cada fase cronometrada, em milissegundos.
+   * @return Temporizador da sessão, ou nulo se a sessão não estiver registrada ou a fase atual não
+   *         tiver duração definida.
+   */
+  public PhaseTimer schedule(long id, Map<SessionPhase, Long> durations) {
+    Session session = registry.get(id);
+    if (session == null) {
+      return null;
+    }
+    SessionPhase phase = session.getPhase();
+    Long duration = durations.get(phase);
+    if (duration == null) {
+      return null;
+    }
+    PhaseTimer timer = new PhaseTimer(this, id, phase, new EnumMap<>(durations));
+    long due = clock.getAsLong() + Math.max(0, duration);
+    synchronized (this) {
+      timer.deadline = Math.max(currentTick + 1, Math.floorDiv(due + tickMillis - 1, tickMillis));
+      link(timer);
+    }
+    return timer;
+  }
+
+  /**
+   * Método para o processamento dos tiques até o instante atual do relógio, que passa de fase as
+   * sessões cujos prazos venceram. As passagens são feitas fora do bloqueio do agendador, na
+   * thread que chama, em ordem de prazo.
+   *
+   * @return Quantidade de sessões que passaram de fase.
+   */
+  public int advance() {
+    List<PhaseTimer> due = new ArrayList<>();
+    synchronized (this) {
+      long target = clock.getAsLong() / tickMillis;
+      if (size == 0 && target > currentTick) {
+        currentTick = target;
+      }
+      while (currentTick < target) {
+        long tick = ++currentTick;
+        for (int level = LEVELS; level > 0; level--) {
+          if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+            cascade(level == LEVELS ? overflow : slotOf(level, tick));
+          }
+        }
+        PhaseTimer head = slotOf(0, tick);
+        while (head.next != head) {
+          PhaseTimer timer = head.next;
+          unlink(timer);
+          timer.firing = true;
+          due.add(timer);
+        }
+      }
+    }
+    int advanced = 0;
+    for (PhaseTimer timer : due) {
+      if (fire(timer)) {
+        advanced++;
+      }
+    }
+    return advanced;
+  }
+
+  /**
+   * Método para o início da thread que avança o agendador a cada tique.
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread created = new Thread(runnable, "phase-scheduler");
+      created.setDaemon(true);
+      return created;
+    });
+    thread.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Método para a parada da thread do agendador; os temporizadores são mantidos, e voltam a
+   * correr com um novo início ou com chamadas a {@link #advance()}.
+   */
+  @Override
+  public synchronized void close() {
+    if (thread != null) {
+      thread.shutdownNow();
+      thread = null;
+    }
+  }
+
+  /**
+   * Método para a obtenção da quantidade de temporizadores correndo, sem os pausados.
+   *
+   * @return Quantidade de temporizadores.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Método para a passagem de fase de um temporizador vencido e o agendamento da fase seguinte.
+   * Um erro na passagem encerra o temporizador, sem interromper os demais.
+   *
+   * @param timer Temporizador vencido, fora da roda.
+   * @return Verdadeiro se a sessão passou de fase.
+   */
+  private boolean fire(PhaseTimer timer) {
+    SessionPhase phase;
+    synchronized (this) {
+      phase = timer.phase;
+    }
+    SessionPhase reached = null;
+    try {
+      reached = registry.withSession(timer.sessionId, session -> {
+        synchronized (session) {
+          if (session.getPhase() != phase) {
+            return null;
+          }
+          session.nextPhase();
+          return session.getPhase();
+        }
+      });
+    } finally {
+      synchronized (this) {
+        timer.firing = false;
+        Long duration = reached == null || reached == phase ? null : timer.durations.get(reached);
+        if (duration == null) {
+          timer.done = true;
+        } else if (!timer.done) {
+          timer.phase = reached;
+          timer.deadline += Math.floorDiv(Math.max(0, duration) + tickMillis - 1, tickMillis);
+          if (timer.paused) {
+            timer.remaining = Math.max(1, timer.deadline - currentTick);
+          } else {
+            timer.deadline = Math.max(timer.deadline, currentTick + 1);
+            link(timer);
+          }
+        }
+      }
+    }
+    return reached != null && reached != phase;
+  }
+
+  synchronized long remainingMillis(PhaseTimer timer) {
+    if (timer.done) {
+      return 0;
+    } else if (timer.paused) {
+      return timer.remaining * tickMillis;
+    }
+    return Math.max(0, timer.deadline * tickMillis - clock.getAsLong());
+  }
+
+  synchronized boolean pause(PhaseTimer timer) {
+    if (timer.done || timer.paused) {
+      return false;
+    }
+    timer.paused = true;
+    if (!timer.firing) {
+      unlink(timer);
+      timer.remaining = Math.max(1, timer.deadline - currentTick);
+    }
+    return true;
+  }
+
+  synchronized boolean resume(PhaseTimer timer) {
+    if (timer.done || !timer.paused) {
+      return false;
+    }
+    timer.paused = false;
+    if (!timer.firing) {
+      timer.deadline = currentTick + timer.remaining;
+      link(timer);
+    }
+    return true;
+  }
+
+  synchronized boolean extend(PhaseTimer timer, long millis) {
+    if (timer.done || timer.firing) {
+      return false;
+    }
+    long ticks = Math.floorDiv(millis + tickMillis - 1, tickMillis);
+    if (timer.paused) {
+      timer.remaining = Math.max(1, timer.remaining + ticks);
+      return true;
+    }
+    unlink(timer);
+    timer.deadline = Math.max(currentTick + 1, timer.deadline + ticks);
+    link(timer);
+    return true;
+  }
+
+  synchronized boolean cancel(PhaseTimer timer) {
+    if (timer.done) {
+      return false;
+    }
+    timer.done = true;
+    if (!timer.firing && !timer.paused) {
+      unlink(timer);
+    }
+    return true;
+  }
+
+  /**
+   * Método para a inclusão de um temporizador na posição do seu prazo, no nível mais baixo cuja
+   * volta atual contém o prazo. O prazo pode ser o tique atual, durante a redistribuição de um
+   * nível, quando a posição do tique no nível 0 ainda vai ser processada.
+   */
+  private void link(PhaseTimer timer) {
+    long deadline = timer.deadline;
+    PhaseTimer head = overflow;
+    for (int level = 0; level < LEVELS; level++) {
+      int shift = WHEEL_BITS * (level + 1);
+      if (deadline >>> shift == currentTick >>> shift) {
+        head = slotOf(level, deadline);
+        break;
+      }
+    }
+    timer.prev = head.prev;
+    timer.next = head;
+    head.prev.next = timer;
+    head.prev = timer;
+    size++;
+  }
+
+  private void unlink(PhaseTimer timer) {
+    timer.prev.next = timer.next;
+    timer.next.prev = timer.prev;
+    timer.prev = null;
+    timer.next = null;
+    size--;
+  }
+
+  /**
+   * Método para a redistribuição dos temporizadores de uma posição nos níveis abaixo dela.
+   */
+  private void cascade(PhaseTimer head) {
+    PhaseTimer timer = head.next;
+    head.next = head;
+    head.prev = head;
+    while (timer != head) {
+      PhaseTimer next = timer.next;
+      size--;
+      link(timer);
+      timer = next;
+    }
+  }
+
+  private PhaseTimer slotOf(int level, long tick) {
+    return wheels[level][(int) (tick >>> (WHEEL_BITS * level)) & (WHEEL_SIZE - 1)];
+  }
+}
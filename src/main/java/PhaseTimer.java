@@ -0,0 +1,157 @@
+package main.java;
+
+import java.util.Map;
+
+/**
+ * Classe que representa o temporizador das fases de uma sessão em um {@link PhaseScheduler}. O
+ * temporizador cronometra a fase atual da sessão e, a cada passagem, a fase seguinte, enquanto
+ * ela tiver uma duração definida; ele pode ser pausado, estendido e cancelado a qualquer momento.
+ * @author hugo
+ */
+public final class PhaseTimer {
+
+  /**
+   * Agendador do temporizador, ou nulo nas cabeças das listas da roda.
+   */
+  final PhaseScheduler scheduler;
+  /**
+   * Identificador da sessão no registro.
+   */
+  final long sessionId;
+  /**
+   * Duração de cada fase cronometrada, em milissegundos.
+   */
+  final Map<SessionPhase, Long> durations;
+  /**
+   * Fase cronometrada, que passa à seguinte no prazo.
+   */
+  SessionPhase phase;
+  /**
+   * Tique do prazo, enquanto o temporizador corre.
+   */
+  long deadline;
+  /**
+   * Tiques restantes, enquanto o temporizador está pausado.
+   */
+  long remaining;
+  /**
+   * Se o temporizador está pausado.
+   */
+  boolean paused;
+  /**
+   * Se o temporizador foi encerrado, pelo fim das fases cronometradas ou por cancelamento.
+   */
+  boolean done;
+  /**
+   * Se a passagem de fase do prazo está em andamento, fora da roda.
+   */
+  boolean firing;
+  /**
+   * Vizinhos na lista da posição da roda, ou nulos fora da roda.
+   */
+  PhaseTimer prev;
+  PhaseTimer next;
+
+  /**
+   * Construtor para as cabeças das listas da roda, que apontam para si mesmas.
+   */
+  PhaseTimer() {
+    scheduler = null;
+    sessionId = 0;
+    durations = null;
+    prev = this;
+    next = this;
+  }
+
+  PhaseTimer(PhaseScheduler scheduler, long sessionId, SessionPhase phase,
+      Map<SessionPhase, Long> durations) {
+    this.scheduler = scheduler;
+    this.sessionId = sessionId;
+    this.phase = phase;
+    this.durations = durations;
+  }
+
+  public long getSessionId() {
+    return sessionId;
+  }
+
+  /**
+   * Método para a obtenção da fase cronometrada.
+   *
+   * @return Fase que passa à seguinte no prazo.
+   */
+  public SessionPhase getPhase() {
+    synchronized (scheduler) {
+      return phase;
+    }
+  }
+
+  /**
+   * Método que indica se o temporizador ainda não foi encerrado.
+   *
+   * @return Verdadeiro se o temporizador corre ou está pausado.
+   */
+  public boolean isActive() {
+    synchronized (scheduler) {
+      return !done;
+    }
+  }
+
+  /**
+   * Método que indica se o temporizador está pausado.
+   *
+   * @return Verdadeiro se o temporizador está pausado.
+   */
+  public boolean isPaused() {
+    synchronized (scheduler) {
+      return paused && !done;
+    }
+  }
+
+  /**
+   * Método para a obtenção do tempo restante da fase cronometrada.
+   *
+   * @return Tempo restante, em milissegundos, ou 0 se o temporizador tiver sido encerrado.
+   */
+  public long remainingMillis() {
+    return scheduler.remainingMillis(this);
+  }
+
+  /**
+   * Método para a pausa do temporizador, que guarda o tempo restante da fase.
+   *
+   * @return Verdadeiro se o temporizador corria e foi pausado.
+   */
+  public boolean pause() {
+    return scheduler.pause(this);
+  }
+
+  /**
+   * Método para a retomada do temporizador, com o tempo restante de quando foi pausado.
+   *
+   * @return Verdadeiro se o temporizador estava pausado e foi retomado.
+   */
+  public boolean resume() {
+    return scheduler.resume(this);
+  }
+
+  /**
+   * Método para a extensão da fase cronometrada, pausada ou não. Um tempo negativo encurta a
+   * fase, que passa no máximo no próximo tique.
+   *
+   * @param millis Tempo acrescentado ao prazo, em milissegundos.
+   * @return Verdadeiro se o prazo foi alterado.
+   */
+  public boolean extend(long millis) {
+    return scheduler.extend(this, millis);
+  }
+
+  /**
+   * Método para o cancelamento do temporizador, sem passagem de fase.
+   *
+   * @return Verdadeiro se o temporizador ainda não tinha sido encerrado.
+   */
+  public boolean cancel() {
+    return scheduler.cancel(this);
+  }
+}
@@ -0,0 +1,186 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * Classe que representa a apuração por segundo turno instantâneo: cada participante ordena até o
+ * limite de votos de ideias, e ao fim da votação a ideia com menos cédulas é eliminada, rodada a
+ * rodada, transferindo cada uma das suas cédulas à próxima preferência ainda não eliminada.
+ *
+ * Durante a votação, a pontuação de cada ideia é a sua quantidade de primeiras preferências. Ao
+ * fim, a eliminação é calculada uma única vez, e a pontuação passa a ser a rodada em que a ideia
+ * foi eliminada, de forma que o ranking é a ordem inversa de eliminação e a vencedora é a última
+ * restante. As ideias sem cédulas não entram na eliminação.
+ *
+ * A eliminação não reconta as cédulas a cada rodada: cada ideia guarda a pilha de cédulas que a
+ * apoiam, e apenas as cédulas da ideia eliminada são transferidas. A ideia com menos cédulas é
+ * obtida de um heap de chaves primitivas atualizado preguiçosamente, pois as contagens das ideias
+ * restantes só crescem. O custo total é proporcional ao total de posições das cédulas mais o
+ * número de ideias vezes o logaritmo do número de ideias.
+ * @author hugo
+ */
+class RankedChoiceTally extends BallotTally {
+
+  /**
+   * Rodada de eliminação de cada ideia, indexada pelo índice da ideia, ou nulo durante a votação.
+   */
+  private int[] rounds;
+
+  RankedChoiceTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+    super(ledger, leaderboard, votingLimit);
+  }
+
+  @Override
+  protected int points(int position) {
+    return position == 0 ? 1 : 0;
+  }
+
+  @Override
+  public void finish() {
+    synchronized (this) {
+      rounds = eliminate(ballotIndexes(), ideaCount());
+    }
+    leaderboard.rebuild();
+  }
+
+  @Override
+  public synchronized int score(Idea idea) {
+    if (rounds == null) {
+      return super.score(idea);
+    }
+    return idea.getIndex() < rounds.length ? rounds[idea.getIndex()] : 0;
+  }
+
+  /**
+   * Método para o cálculo da eliminação. Os empates na menor contagem são desfeitos eliminando
+   * primeiro a ideia adicionada por último, coerente com o desempate do ranking.
+   *
+   * @param ballots Cédulas com os índices das ideias em ordem de preferência.
+   * @param ideas Quantidade de ideias.
+   * @return Rodada de eliminação de cada ideia, a partir de 1, ou 0 para as ideias sem cédulas.
+   */
+  static int[] eliminate(int[][] ballots, int ideas) {
+    int[] rounds = new int[ideas];
+    boolean[] candidate = new boolean[ideas];
+    int candidates = 0;
+    for (int[] ballot : ballots) {
+      for (int index : ballot) {
+        if (!candidate[index]) {
+          candidate[index] = true;
+          candidates++;
+        }
+      }
+    }
+
+    // Pilha de cédulas de cada ideia, em listas encadeadas por arranjos
+    int[] pile = new int[ideas];
+    Arrays.fill(pile, -1);
+    int[] below = new int[ballots.length];
+    int[] preference = new int[ballots.length];
+    int[] count = new int[ideas];
+    for (int b = 0; b < ballots.length; b++) {
+      if (ballots[b].length > 0) {
+        int first = ballots[b][0];
+        below[b] = pile[first];
+        pile[first] = b;
+        count[first]++;
+      }
+    }
+
+    LongHeap heap = new LongHeap(candidates);
+    for (int index = 0; index < ideas; index++) {
+      if (candidate[index]) {
+        heap.push(key(count[index], index));
+      }
+    }
+    int round = 0;
+    while (!heap.isEmpty()) {
+      long key = heap.pop();
+      int index = Integer.MAX_VALUE - (int) key;
+      if ((int) (key >>> 32) != count[index]) {
+        // Chave desatualizada: a ideia recebeu cédulas desde que entrou no heap
+        heap.push(key(count[index], index));
+        continue;
+      }
+      rounds[index] = ++round;
+      candidate[index] = false;
+      for (int b = pile[index]; b >= 0; ) {
+        int next = below[b];
+        int[] ballot = ballots[b];
+        int p = preference[b] + 1;
+        while (p < ballot.length && !candidate[ballot[p]]) {
+          p++;
+        }
+        preference[b] = p;
+        if (p < ballot.length) {
+          int to = ballot[p];
+          below[b] = pile[to];
+          pile[to] = b;
+          count[to]++;
+        }
+        b = next;
+      }
+      pile[index] = -1;
+    }
+    return rounds;
+  }
+
+  /**
+   * Método para a chave de uma ideia no heap: a menor contagem primeiro e, no empate, o maior
+   * índice.
+   */
+  private static long key(int count, int index) {
+    return ((long) count << 32) | (Integer.MAX_VALUE - index);
+  }
+
+  /**
+   * Classe que representa um heap mínimo de chaves primitivas.
+   */
+  private static final class LongHeap {
+
+    private long[] keys;
+    private int size;
+
+    LongHeap(int capacity) {
+      keys = new long[Math.max(1, capacity)];
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void push(long key) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+      }
+      int i = size++;
+      while (i > 0 && keys[(i - 1) >>> 1] > key) {
+        keys[i] = keys[(i - 1) >>> 1];
+        i = (i - 1) >>> 1;
+      }
+      keys[i] = key;
+    }
+
+    long pop() {
+      long top = keys[0];
+      long last = keys[--size];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && keys[child + 1] < keys[child]) {
+          child++;
+        }
+        if (keys[child] >= last) {
+          break;
+        }
+        keys[i] = keys[child];
+        i = child;
+      }
+      keys[i] = last;
+      return top;
+    }
+  }
+}
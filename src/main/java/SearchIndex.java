@@ -0,0 +1,783 @@
+package main.java;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Classe que representa o índice de busca textual das ideias de várias sessões, pelo texto das
+ * ideias, pelo nome dos autores e pela sessão, com os resultados ordenados por relevância ou por
+ * votos. A relevância é calculada pelo BM25 sobre o texto das ideias, normalizado como na
+ * detecção de repetições, sem diferenciar maiúsculas, acentos e pontuação.
+ *
+ * As consultas são palavras separadas por espaços, todas obrigatórias. Uma palavra terminada em
+ * {@code *} busca qualquer palavra com esse prefixo; {@code author:nome} restringe o autor e
+ * {@code session:id} restringe a sessão. As ideias são identificadas pelo identificador da sessão
+ * e pelo índice da ideia, e uma ideia indexada de novo substitui a anterior.
+ *
+ * O índice é formado por um segmento gravado em disco, mapeado em memória na abertura e nunca
+ * alterado, e por um segmento em memória com as ideias indexadas desde então. A gravação funde os
+ * dois segmentos em um novo arquivo, descartando as sessões removidas. A abertura lê apenas os
+ * identificadores e votos das ideias; o dicionário, as listas de ocorrências e os textos são
+ * lidos do mapeamento durante as consultas. O arquivo é limitado a 2 GB.
+ * @author hugo
+ */
+public class SearchIndex {
+
+  /**
+   * Classe de enumeração para representar a ordem dos resultados.
+   */
+  public enum Order {
+    /** Mais relevantes primeiro e, nos empates, mais votadas. */
+    RELEVANCE,
+    /** Mais votadas primeiro e, nos empates, mais relevantes. */
+    VOTES
+  }
+
+  /**
+   * Classe que representa um resultado da busca.
+   */
+  public static final class Hit {
+
+    private final long session;
+    private final int index;
+    private final String description;
+    private final String author;
+    private final int votes;
+    private final double score;
+
+    Hit(long session, int index, String description, String author, int votes, double score) {
+      this.session = session;
+      this.index = index;
+      this.description = description;
+      this.author = author;
+      this.votes = votes;
+      this.score = score;
+    }
+
+    public long getSession() {
+      return session;
+    }
+
+    /**
+     * Método para a obtenção do índice da ideia na sua sessão.
+     *
+     * @return Índice da ideia, o mesmo de {@link Idea#getIndex()}.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    /**
+     * Método para a obtenção do nome do autor da ideia.
+     *
+     * @return Nome do autor.
+     */
+    public String getAuthor() {
+      return author;
+    }
+
+    /**
+     * Método para a obtenção da quantidade de votos da ideia na última atualização do índice.
+     *
+     * @return Quantidade de votos.
+     */
+    public int getVotes() {
+      return votes;
+    }
+
+    /**
+     * Método para a obtenção da relevância do resultado para a consulta.
+     *
+     * @return Relevância, não negativa.
+     */
+    public double getScore() {
+      return score;
+    }
+  }
+
+  /**
+   * Marca de início do arquivo ("BRSI").
+   */
+  private static final int MAGIC = 0x42525349;
+  private static final int VERSION = 1;
+  /**
+   * Tamanhos do cabeçalho, de cada ideia e de cada palavra do dicionário no arquivo.
+   */
+  private static final int HEADER_BYTES = 24;
+  private static final int DOC_BYTES = 28;
+  private static final int TERM_BYTES = 12;
+  /**
+   * Parâmetros do BM25.
+   */
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  /**
+   * Quantidade máxima de palavras buscadas por um prefixo.
+   */
+  private static final int MAX_EXPANSIONS = 1024;
+  /**
+   * Prefixo das palavras do nome do autor no dicionário, que nunca aparece no texto normalizado.
+   */
+  private static final String AUTHOR = "@";
+
+  /**
+   * Arquivo do índice, ou nulo se o índice for apenas em memória.
+   */
+  private Path file;
+  /**
+   * Segmento mapeado, ou nulo se não houver arquivo gravado.
+   */
+  private ByteBuffer base;
+  /**
+   * Quantidade de ideias e de palavras do segmento mapeado.
+   */
+  private int baseDocs;
+  private int baseTerms;
+  /**
+   * Sessão, índice, votos e tamanho do texto de cada ideia, pelo número da ideia no índice: as do
+   * segmento mapeado primeiro, e as do segmento em memória em seguida.
+   */
+  private long[] sessions;
+  private int[] ideas;
+  private int[] votes;
+  private int[] lengths;
+  private int docs;
+  /**
+   * Soma do tamanho dos textos, para o tamanho médio do BM25.
+   */
+  private long totalLength;
+  /**
+   * Ideias substituídas ou de sessões removidas.
+   */
+  private BitSet deleted;
+  private int live;
+  private long maxSession;
+  /**
+   * Texto e autor das ideias do segmento em memória.
+   */
+  private List<String> descriptions;
+  private List<String> authors;
+  /**
+   * Dicionário do segmento em memória, em ordem, com as ocorrências de cada palavra.
+   */
+  private TreeMap<String, Postings> terms;
+  /**
+   * Número de cada ideia no índice mais um, pelo índice da ideia, de cada sessão.
+   */
+  private Map<Long, int[]> sessionDocs;
+
+  /**
+   * Construtor para um índice vazio apenas em memória, que não pode ser gravado.
+   */
+  public SearchIndex() {
+    reset();
+  }
+
+  /**
+   * Método para a abertura de um índice gravado, que é mapeado em memória, ou para a criação de
+   * um índice vazio que será gravado no arquivo dado.
+   *
+   * @param file Arquivo do índice.
+   * @return Índice aberto.
+   * @throws IOException Se o arquivo existir mas não puder ser lido.
+   */
+  public static SearchIndex open(Path file) throws IOException {
+    SearchIndex index = new SearchIndex();
+    index.file = file;
+    if (Files.exists(file)) {
+      index.load();
+    }
+    return index;
+  }
+
+  /**
+   * Método para a indexação de uma ideia de uma sessão, com os votos atuais.
+   *
+   * @param session Identificador da sessão.
+   * @param idea Ideia da sessão.
+   */
+  public void add(long session, Idea idea) {
+    add(session, idea.getIndex(), idea.getAuthor().getUsername(), idea.getDescription(),
+        idea.countVotes());
+  }
+
+  /**
+   * Método para a indexação de uma ideia, que substitui a ideia de mesmo índice já indexada.
+   *
+   * @param session Identificador da sessão.
+   * @param index Índice da ideia na sessão.
+   * @param author Nome do autor.
+   * @param description Texto da ideia, possivelmente nulo.
+   * @param voteCount Quantidade de votos.
+   */
+  synchronized void add(long session, int index, String author, String description,
+      int voteCount) {
+    int doc = docs++;
+    if (doc == sessions.length) {
+      grow(doc * 2);
+    }
+    String[] words = words(description);
+    Map<String, Integer> frequencies = new LinkedHashMap<>();
+    for (String word : words) {
+      frequencies.merge(word, 1, Integer::sum);
+    }
+    for (String word : words(author)) {
+      frequencies.putIfAbsent(AUTHOR + word, 1);
+    }
+    for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+      terms.computeIfAbsent(frequency.getKey(), key -> new Postings())
+          .add(doc, frequency.getValue());
+    }
+    sessions[doc] = session;
+    ideas[doc] = index;
+    votes[doc] = voteCount;
+    lengths[doc] = words.length;
+    totalLength += words.length;
+    descriptions.add(description);
+    authors.add(author);
+    live++;
+    link(doc);
+  }
+
+  /**
+   * Método para a atualização dos votos das ideias indexadas de uma sessão.
+   *
+   * @param id Identificador da sessão.
+   * @param session Sessão com os votos atuais.
+   */
+  public void updateVotes(long id, Session session) {
+    // Os votos são lidos fora do bloqueio do índice, que é obtido sob o bloqueio das sessões
+    Idea[] current = session.getIdeas();
+    int[] counts = new int[current.length];
+    for (int i = 0; i < current.length; i++) {
+      counts[i] = current[i].countVotes();
+    }
+    synchronized (this) {
+      int[] docsOf = sessionDocs.get(id);
+      if (docsOf == null) {
+        return;
+      }
+      for (int i = 0; i < Math.min(counts.length, docsOf.length); i++) {
+        if (docsOf[i] > 0) {
+          votes[docsOf[i] - 1] = counts[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Método para a remoção das ideias de uma sessão, que deixam de aparecer nas buscas e são
+   * descartadas na próxima gravação.
+   *
+   * @param session Identificador da sessão.
+   */
+  public synchronized void removeSession(long session) {
+    int[] docsOf = sessionDocs.remove(session);
+    if (docsOf == null) {
+      return;
+    }
+    for (int doc : docsOf) {
+      if (doc > 0) {
+        delete(doc - 1);
+      }
+    }
+  }
+
+  /**
+   * Método para a obtenção da quantidade de ideias indexadas.
+   *
+   * @return Quantidade de ideias que aparecem nas buscas.
+   */
+  public synchronized int size() {
+    return live;
+  }
+
+  /**
+   * Método para a obtenção do maior identificador de sessão já indexado.
+   *
+   * @return Maior identificador, ou 0 se o índice nunca teve ideias.
+   */
+  public synchronized long maxSession() {
+    return maxSession;
+  }
+
+  /**
+   * Método para a busca das ideias que contêm todas as palavras da consulta.
+   *
+   * @param query Consulta, com palavras, prefixos terminados em {@code *} e os filtros
+   *        {@code author:nome} e {@code session:id}.
+   * @param limit Quantidade máxima de resultados.
+   * @param order Ordem dos resultados.
+   * @return Resultados, na ordem pedida; nos empates, em ordem de indexação.
+   */
+  public synchronized Hit[] search(String query, int limit, Order order) {
+    Map<Integer, Double> scores = match(query);
+    if (scores == null || scores.isEmpty() || limit <= 0) {
+      return new Hit[0];
+    }
+    Comparator<Integer> relevance = Comparator.comparingDouble(scores::get);
+    Comparator<Integer> byVotes = Comparator.comparingInt(doc -> votes[doc]);
+    Comparator<Integer> better = order == Order.VOTES ? byVotes.thenComparing(relevance)
+        : relevance.thenComparing(byVotes);
+    better = better.thenComparing(Comparator.<Integer>reverseOrder());
+    // Fila com os piores resultados no topo, limitada à quantidade pedida
+    PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, scores.size()) + 1, better);
+    for (Integer doc : scores.keySet()) {
+      top.add(doc);
+      if (top.size() > limit) {
+        top.poll();
+      }
+    }
+    Hit[] hits = new Hit[top.size()];
+    for (int i = hits.length - 1; i >= 0; i--) {
+      int doc = top.poll();
+      hits[i] = new Hit(sessions[doc], ideas[doc], description(doc), author(doc), votes[doc],
+          scores.get(doc));
+    }
+    return hits;
+  }
+
+  /**
+   * Método para a gravação do índice, que funde o segmento mapeado e o segmento em memória em um
+   * novo arquivo, substituído de uma só vez, e passa a mapeá-lo.
+   *
+   * @throws IOException Se a gravação falhar.
+   * @throws IllegalStateException Se o índice for apenas em memória.
+   */
+  public synchronized void save() throws IOException {
+    if (file == null) {
+      throw new IllegalStateException("Índice sem arquivo");
+    }
+    int[] renumbered = new int[docs];
+    int count = 0;
+    for (int doc = 0; doc < docs; doc++) {
+      renumbered[doc] = deleted.get(doc) ? -1 : count++;
+    }
+
+    ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+    DataOutputStream strings = new DataOutputStream(stringBytes);
+    List<Integer> termTexts = new ArrayList<>();
+    List<Integer> termDfs = new ArrayList<>();
+    Postings merged = new Postings();
+    int slot = 0;
+    Map.Entry<String, Postings> memory = terms.firstEntry();
+    while (slot < baseTerms || memory != null) {
+      String term = slot < baseTerms ? baseTerm(slot) : null;
+      int compare = term == null ? 1 : memory == null ? -1 : term.compareTo(memory.getKey());
+      int start = merged.size;
+      if (compare <= 0) {
+        int at = termAt(slot++);
+        int offset = base.getInt(at + 4);
+        for (int i = 0; i < base.getInt(at + 8); i++) {
+          int doc = renumbered[base.getInt(offset + i * 8)];
+          if (doc >= 0) {
+            merged.add(doc, base.getInt(offset + i * 8 + 4));
+          }
+        }
+      }
+      if (compare >= 0) {
+        term = memory.getKey();
+        Postings postings = memory.getValue();
+        for (int i = 0; i < postings.size; i++) {
+          int doc = renumbered[postings.docs[i]];
+          if (doc >= 0) {
+            merged.add(doc, postings.frequencies[i]);
+          }
+        }
+        memory = terms.higherEntry(term);
+      }
+      if (merged.size > start) {
+        termTexts.add(strings.size());
+        writeString(strings, term);
+        termDfs.add(merged.size - start);
+      }
+    }
+
+    int[] descriptionOffsets = new int[count];
+    int[] authorOffsets = new int[count];
+    Map<String, Integer> authorStrings = new HashMap<>();
+    long liveLength = 0;
+    for (int doc = 0; doc < docs; doc++) {
+      int target = renumbered[doc];
+      if (target < 0) {
+        continue;
+      }
+      liveLength += lengths[doc];
+      String description = description(doc);
+      descriptionOffsets[target] = description == null ? -1 : strings.size();
+      if (description != null) {
+        writeString(strings, description);
+      }
+      String author = author(doc);
+      Integer offset = authorStrings.get(author);
+      if (offset == null) {
+        offset = strings.size();
+        authorStrings.put(author, offset);
+        writeString(strings, author);
+      }
+      authorOffsets[target] = offset;
+    }
+
+    long postingsStart = HEADER_BYTES + (long) count * DOC_BYTES
+        + (long) termTexts.size() * TERM_BYTES;
+    long stringsStart = postingsStart + (long) merged.size * 8;
+    if (stringsStart + strings.size() > Integer.MAX_VALUE) {
+      throw new IOException("Índice grande demais para um arquivo");
+    }
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(count);
+      out.writeInt(termTexts.size());
+      out.writeLong(liveLength);
+      for (int doc = 0; doc < docs; doc++) {
+        int target = renumbered[doc];
+        if (target < 0) {
+          continue;
+        }
+        out.writeLong(sessions[doc]);
+        out.writeInt(ideas[doc]);
+        out.writeInt(votes[doc]);
+        out.writeInt(lengths[doc]);
+        out.writeInt(descriptionOffsets[target] < 0 ? -1
+            : (int) stringsStart + descriptionOffsets[target]);
+        out.writeInt((int) stringsStart + authorOffsets[target]);
+      }
+      int postingsOffset = (int) postingsStart;
+      for (int i = 0; i < termTexts.size(); i++) {
+        out.writeInt((int) stringsStart + termTexts.get(i));
+        out.writeInt(postingsOffset);
+        out.writeInt(termDfs.get(i));
+        postingsOffset += termDfs.get(i) * 8;
+      }
+      for (int i = 0; i < merged.size; i++) {
+        out.writeInt(merged.docs[i]);
+        out.writeInt(merged.frequencies[i]);
+      }
+      stringBytes.writeTo(out);
+      out.flush();
+      stream.getChannel().force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    load();
+  }
+
+  /**
+   * Método para a leitura das ideias de uma consulta, com a relevância de cada uma.
+   *
+   * @param query Consulta.
+   * @return Relevância de cada ideia encontrada, pelo número da ideia, ou nulo se a consulta não
+   *         tiver palavras nem sessão.
+   */
+  private Map<Integer, Double> match(String query) {
+    long session = -1;
+    List<String> required = new ArrayList<>();
+    List<Boolean> prefixes = new ArrayList<>();
+    for (String part : query == null ? new String[0] : query.trim().split("\\s+")) {
+      if (part.startsWith("session:")) {
+        try {
+          session = Long.parseLong(part.substring("session:".length()));
+        } catch (NumberFormatException e) {
+          return null;
+        }
+      } else if (part.startsWith("author:")) {
+        for (String word : words(part.substring("author:".length()))) {
+          required.add(AUTHOR + word);
+          prefixes.add(false);
+        }
+      } else {
+        String[] words = words(part);
+        for (int i = 0; i < words.length; i++) {
+          required.add(words[i]);
+          prefixes.add(i == words.length - 1 && part.endsWith("*"));
+        }
+      }
+    }
+
+    Map<Integer, Double> scores = null;
+    if (required.isEmpty()) {
+      int[] docsOf = session < 0 ? null : sessionDocs.get(session);
+      if (docsOf == null) {
+        return null;
+      }
+      scores = new HashMap<>();
+      for (int doc : docsOf) {
+        if (doc > 0) {
+          scores.put(doc - 1, 0.0);
+        }
+      }
+      return scores;
+    }
+    for (int i = 0; i < required.size() && (scores == null || !scores.isEmpty()); i++) {
+      String word = required.get(i);
+      Map<Integer, Double> matched = new HashMap<>();
+      for (String term : prefixes.get(i) ? expand(word) : List.of(word)) {
+        collect(term, session, matched);
+      }
+      if (scores == null) {
+        scores = matched;
+      } else {
+        scores.keySet().retainAll(matched.keySet());
+        scores.replaceAll((doc, score) -> score + matched.get(doc));
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Método para a soma da relevância de uma palavra às ideias que a contêm. As palavras do nome do
+   * autor apenas filtram, sem somar relevância.
+   */
+  private void collect(String term, long session, Map<Integer, Double> scores) {
+    int slot = baseTerms == 0 ? -1 : findBaseTerm(term);
+    Postings postings = terms.get(term);
+    int df = (slot >= 0 ? base.getInt(termAt(slot) + 8) : 0)
+        + (postings == null ? 0 : postings.size);
+    if (df == 0) {
+      return;
+    }
+    boolean scored = !term.startsWith(AUTHOR);
+    double idf = Math.log(1 + (docs - df + 0.5) / (df + 0.5));
+    double average = docs == 0 ? 1 : Math.max(1, (double) totalLength / docs);
+    if (slot >= 0) {
+      int at = termAt(slot);
+      int offset = base.getInt(at + 4);
+      for (int i = 0; i < base.getInt(at + 8); i++) {
+        int doc = base.getInt(offset + i * 8);
+        score(doc, base.getInt(offset + i * 8 + 4), scored, idf, average, session, scores);
+      }
+    }
+    if (postings != null) {
+      for (int i = 0; i < postings.size; i++) {
+        score(postings.docs[i], postings.frequencies[i], scored, idf, average, session, scores);
+      }
+    }
+  }
+
+  private void score(int doc, int frequency, boolean scored, double idf, double average,
+      long session, Map<Integer, Double> scores) {
+    if (deleted.get(doc) || (session >= 0 && sessions[doc] != session)) {
+      return;
+    }
+    double score = 0;
+    if (scored) {
+      double norm = K1 * (1 - B + B * lengths[doc] / average);
+      score = idf * frequency * (K1 + 1) / (frequency + norm);
+    }
+    scores.merge(doc, score, Double::sum);
+  }
+
+  /**
+   * Método para a obtenção das palavras do dicionário com um prefixo, nos dois segmentos.
+   */
+  private List<String> expand(String prefix) {
+    TreeSet<String> expanded = new TreeSet<>();
+    if (baseTerms > 0) {
+      int slot = findBaseTerm(prefix);
+      for (int i = slot >= 0 ? slot : -slot - 1; i < baseTerms; i++) {
+        String term = baseTerm(i);
+        if (!term.startsWith(prefix) || expanded.size() == MAX_EXPANSIONS) {
+          break;
+        }
+        expanded.add(term);
+      }
+    }
+    for (String term : terms.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+      if (expanded.size() == MAX_EXPANSIONS) {
+        break;
+      }
+      expanded.add(term);
+    }
+    return new ArrayList<>(expanded);
+  }
+
+  /**
+   * Método para a busca binária de uma palavra no dicionário do segmento mapeado.
+   *
+   * @return Posição da palavra, ou -(posição de inserção) - 1 se ela não estiver no dicionário.
+   */
+  private int findBaseTerm(String term) {
+    int low = 0;
+    int high = baseTerms - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int compare = baseTerm(middle).compareTo(term);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -low - 1;
+  }
+
+  private int termAt(int slot) {
+    return HEADER_BYTES + baseDocs * DOC_BYTES + slot * TERM_BYTES;
+  }
+
+  private String baseTerm(int slot) {
+    return readString(base.getInt(termAt(slot)));
+  }
+
+  private String description(int doc) {
+    return doc < baseDocs ? readString(base.getInt(HEADER_BYTES + doc * DOC_BYTES + 20))
+        : descriptions.get(doc - baseDocs);
+  }
+
+  private String author(int doc) {
+    return doc < baseDocs ? readString(base.getInt(HEADER_BYTES + doc * DOC_BYTES + 24))
+        : authors.get(doc - baseDocs);
+  }
+
+  private String readString(int offset) {
+    if (offset < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[base.getInt(offset)];
+    base.get(offset + 4, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String[] words(String text) {
+    String normalized = DuplicateIndex.normalize(text);
+    return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+  }
+
+  /**
+   * Método para a ligação de uma ideia à sua sessão, substituindo a ideia de mesmo índice.
+   */
+  private void link(int doc) {
+    int[] docsOf = sessionDocs.get(sessions[doc]);
+    int index = ideas[doc];
+    if (docsOf == null || index >= docsOf.length) {
+      int length = docsOf == null ? Math.max(index + 1, 8)
+          : Math.max(index + 1, docsOf.length * 2);
+      docsOf = docsOf == null ? new int[length] : Arrays.copyOf(docsOf, length);
+      sessionDocs.put(sessions[doc], docsOf);
+    }
+    if (docsOf[index] > 0) {
+      delete(docsOf[index] - 1);
+    }
+    docsOf[index] = doc + 1;
+    maxSession = Math.max(maxSession, sessions[doc]);
+  }
+
+  private void delete(int doc) {
+    if (!deleted.get(doc)) {
+      deleted.set(doc);
+      live--;
+    }
+  }
+
+  /**
+   * Método para a leitura do arquivo gravado, que passa a ser o segmento mapeado, com o segmento
+   * em memória vazio.
+   */
+  private void load() throws IOException {
+    reset();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      base = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (base.capacity() < HEADER_BYTES || base.getInt(0) != MAGIC) {
+      throw new IOException("Formato de índice desconhecido");
+    } else if (base.getInt(4) != VERSION) {
+      throw new IOException("Versão do índice não suportada: " + base.getInt(4));
+    }
+    baseDocs = base.getInt(8);
+    baseTerms = base.getInt(12);
+    totalLength = base.getLong(16);
+    grow(Math.max(baseDocs, 16));
+    for (int doc = 0; doc < baseDocs; doc++) {
+      int at = HEADER_BYTES + doc * DOC_BYTES;
+      sessions[doc] = base.getLong(at);
+      ideas[doc] = base.getInt(at + 8);
+      votes[doc] = base.getInt(at + 12);
+      lengths[doc] = base.getInt(at + 16);
+      link(doc);
+    }
+    docs = baseDocs;
+    live = baseDocs;
+  }
+
+  private void reset() {
+    base = null;
+    baseDocs = 0;
+    baseTerms = 0;
+    sessions = new long[16];
+    ideas = new int[16];
+    votes = new int[16];
+    lengths = new int[16];
+    docs = 0;
+    totalLength = 0;
+    deleted = new BitSet();
+    live = 0;
+    maxSession = 0;
+    descriptions = new ArrayList<>();
+    authors = new ArrayList<>();
+    terms = new TreeMap<>();
+    sessionDocs = new HashMap<>();
+  }
+
+  private void grow(int capacity) {
+    sessions = Arrays.copyOf(sessions, capacity);
+    ideas = Arrays.copyOf(ideas, capacity);
+    votes = Arrays.copyOf(votes, capacity);
+    lengths = Arrays.copyOf(lengths, capacity);
+  }
+
+  /**
+   * Classe que representa as ocorrências de uma palavra: as ideias que a contêm, em ordem
+   * crescente, e quantas vezes cada uma a contém.
+   */
+  private static final class Postings {
+
+    int[] docs = new int[4];
+    int[] frequencies = new int[4];
+    int size;
+
+    void add(int doc, int frequency) {
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      docs[size] = doc;
+      frequencies[size++] = frequency;
+    }
+  }
+}
@@ -1,15 +1,47 @@
 package main.java;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Classe que representa a sessão, que é o elemento central do sistema, ela é composta de usuários
  * participantes e ideias, e possui quatro fases (Acolhimento, Brainstorm, Votação e Ranqueamento).
+ * 
+ * A sessão pode ser usada por várias threads: os votos são admitidos pelo livro de votos sem
+ * bloqueio global, sob um bloqueio listrado por votante, enquanto as alterações das listas de
+ * participantes e ideias, que ocorrem fora da votação, são sincronizadas na própria sessão. As
+ * alterações que mudam os votos de vários votantes, como a passagem de fase, tomam todas as
+ * listras, de forma que nenhum voto é aplicado após o fim da votação. Leitores que precisam de uma
+ * vista consistente de toda a sessão, como painéis e exportações, podem ler os retratos imutáveis
+ * publicados por ela, veja {@link #setSnapshotInterval(long)}.
  * @author hugo
  */
 public class Session {
 
+  /**
+   * Maior peso de votos de um participante no sistema de votação ponderado.
+   */
+  public static final int MAX_VOTE_WEIGHT = 100;
+
+  /**
+   * Quantidade de listras de bloqueio dos votantes, uma potência de 2.
+   */
+  private static final int STRIPES = 64;
+
   /**
    * Texto descritivo da sessão.
    */
@@ -17,23 +49,89 @@ public class Session {
   /**
    * Limite de votos que um participante pode dar em uma mesma sessão.
    */
-  private Integer votingLimit;
+  private int votingLimit;
   /**
    * Criador e anfitrião da sessão.
    */
   private User owner;
   /**
-   * Lista de Participantes.
+   * Conjunto de Participantes, em ordem de entrada.
    */
-  private List<User> participants;
+  private Set<User> participants;
   /**
    * Lista de Ideias.
    */
   private List<Idea> ideas;
+  /**
+   * Vista somente leitura do conjunto de participantes.
+   */
+  private Collection<User> participantsView;
+  /**
+   * Vista somente leitura da lista de ideias.
+   */
+  private List<Idea> ideasView;
   /**
    * Fase da sessão.
    */
-  private SessionPhase phase;
+  private volatile SessionPhase phase;
+  /**
+   * Livro de votos, com os votos usados por participante e os votantes de cada ideia.
+   */
+  private VoteLedger ledger;
+  /**
+   * Placar com as ideias ordenadas por votos, atualizado a cada voto.
+   */
+  private Leaderboard leaderboard;
+  /**
+   * Sistema de votação da sessão.
+   */
+  private volatile VotingStrategy strategy;
+  /**
+   * Apuração dos votos segundo o sistema de votação, substituída quando o sistema é alterado.
+   */
+  private volatile Tally tally;
+  /**
+   * Diário que registra as alterações da sessão, se ela for persistente.
+   */
+  private volatile SessionJournal journal;
+  /**
+   * Observadores internos das alterações da sessão, substituídos a cada inclusão ou remoção.
+   */
+  private volatile SessionObserver[] observers;
+  /**
+   * Registro de eventos lido pelas assinaturas, criado na primeira assinatura.
+   */
+  private volatile EventBus events;
+  /**
+   * Métricas da sessão, ou nulo se ela não estiver ligada a um registro de métricas.
+   */
+  private volatile SessionMetrics metrics;
+  /**
+   * Índice de semelhança das ideias, ou nulo se a detecção de repetições estiver desabilitada.
+   */
+  private DuplicateIndex duplicates;
+  /**
+   * Publicador dos retratos da sessão, ou nulo se a sessão não publica retratos.
+   */
+  private volatile SnapshotPublisher snapshots;
+  /**
+   * Índice central dos usuários, que soma a atividade e limita os votos em todas as sessões, ou
+   * nulo se a sessão não estiver ligada a um.
+   */
+  private volatile UserIndex users;
+  /**
+   * Arquivo fora do heap com o texto das ideias e a apuração, ou nulo se a sessão não tiver sido
+   * arquivada.
+   */
+  private volatile IdeaArchive archive;
+  /**
+   * Bloqueios listrados por votante, sob os quais os votos são aplicados e registrados.
+   */
+  private ReentrantLock[] stripes;
+  /**
+   * Indica se a sessão foi descarregada e deixou de aceitar alterações por este objeto.
+   */
+  private volatile boolean retired;
 
   /**
    * Construtor para os objetos sessão, estes iniciam com um anfitrião, destrição e limites de votos
@@ -43,21 +141,53 @@ public class Session {
    * @param description Texto descritivo da sessão.
    * @param votingLimit Limite de votos para participante.
    */
-  public Session(User owner, String description, Integer votingLimit) {
+  public Session(User owner, String description, int votingLimit) {
     this.owner = owner;
     this.description = description;
     this.votingLimit = votingLimit;
 
     phase = SessionPhase.WELCOME;
     ideas = new ArrayList<>();
-    participants = new ArrayList<>();
+    participants = new LinkedHashSet<>();
+    participantsView = Collections.unmodifiableSet(participants);
+    ideasView = Collections.unmodifiableList(ideas);
+    ledger = new VoteLedger();
+    leaderboard = new Leaderboard(idea -> tally.score(idea));
+    strategy = VotingStrategy.APPROVAL;
+    tally = strategy.newTally(ledger, leaderboard, votingLimit);
+    observers = new SessionObserver[0];
+    stripes = new ReentrantLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
   }
 
   /**
-   * Método para passagem da sessão para a próxima fase.
+   * Método para passagem da sessão para a próxima fase. A passagem espera os votos em andamento e
+   * os exclui até a nova fase ficar visível, e os votos seguintes a encontram; ao passar ao
+   * ranqueamento, a apuração é concluída antes disso.
    */
-  public void nextPhase() {
-    phase = phase.next();
+  public synchronized void nextPhase() {
+    SessionPhase next = phase.next();
+    if (next != phase && !retired) {
+      lockStripes();
+      try {
+        if (next == SessionPhase.RANKING) {
+          tally.finish();
+        }
+        phase = next;
+        if (journal != null) {
+          journal.recordPhase(next);
+        }
+      } finally {
+        unlockStripes();
+      }
+      for (SessionObserver observer : observers) {
+        observer.phaseChanged(this, next);
+      }
+      publish(SessionEvent.Type.PHASE, next, null, null);
+      republish(false, false);
+    }
   }
 
   public User getOwner() {
@@ -68,42 +198,388 @@ public class Session {
     return phase;
   }
 
+  /**
+   * Método para a verificação de que a sessão está em uma fase e ainda aceita alterações.
+   */
+  private boolean inPhase(SessionPhase expected) {
+    return phase == expected && !retired;
+  }
+
   /**
    * Método para a adição de uma ideia, para tanto a sessão deve ainda estar na fase de brainstorm.
    * 
    * @param Idea Idéia a ser adicionada.
    */
-  public void addIdea(Idea idea) {
-    if (phase == SessionPhase.BRAINSTORM && participants.contains(idea.getAuthor())) {
-      idea.setSession(this);
-      ideas.add(idea);
+  public synchronized void addIdea(Idea idea) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    boolean added = inPhase(SessionPhase.BRAINSTORM) && appendIdea(idea);
+    if (added) {
+      republish(false, true);
+    }
+    if (metrics != null) {
+      metrics.recordIdeas(added ? 1 : 0);
+      metrics.recordLatency(SessionMetrics.Operation.ADD_IDEA, start);
+    }
+  }
+
+  /**
+   * Método para a adição de várias ideias de uma só vez, para tanto a sessão deve ainda estar na
+   * fase de brainstorm. A fase é verificada uma única vez e o lote é aplicado inteiro, sem que
+   * outras alterações da sessão se intercalem.
+   * 
+   * @param ideas Ideias a serem adicionadas.
+   * @return Arranjo indicando, para cada ideia, se ela foi aceita.
+   */
+  public synchronized boolean[] addIdeas(Idea... ideas) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    boolean[] accepted = new boolean[ideas.length];
+    int added = 0;
+    if (inPhase(SessionPhase.BRAINSTORM)) {
+      for (int i = 0; i < ideas.length; i++) {
+        accepted[i] = appendIdea(ideas[i]);
+        added += accepted[i] ? 1 : 0;
+      }
+    }
+    if (added > 0) {
+      republish(false, true);
+    }
+    if (metrics != null) {
+      metrics.recordIdeas(added);
+      metrics.recordLatency(SessionMetrics.Operation.ADD_IDEA, start);
     }
+    return accepted;
   }
 
-  public Idea[] getIdeas() {
+  /**
+   * Método para a inclusão de uma ideia na sessão, já verificada a fase. A ideia só é incluída se
+   * o autor for participante e se ela ainda não pertencer a alguma sessão.
+   * 
+   * @param idea Ideia a incluir.
+   * @return Verdadeiro se a ideia foi incluída.
+   */
+  private boolean appendIdea(Idea idea) {
+    if (idea == null || idea.getSession() != null || !participants.contains(idea.getAuthor())) {
+      return false;
+    }
+    restoreIdea(idea);
+    if (journal != null) {
+      journal.recordIdea(idea);
+    }
+    UserIndex users = this.users;
+    if (users != null) {
+      users.recordIdea(idea.getAuthor());
+    }
+    for (SessionObserver observer : observers) {
+      observer.ideaAdded(this, idea);
+    }
+    publish(SessionEvent.Type.IDEA, null, idea, idea.getAuthor());
+    return true;
+  }
+
+  /**
+   * Método para a definição da semelhança mínima a partir da qual uma ideia adicionada é apontada
+   * como repetição de outra, em {@link Idea#getDuplicateOf()}. A semelhança é estimada sobre os
+   * trechos do texto das ideias, sem diferenciar maiúsculas, acentos e pontuação, e o custo de
+   * cada adição não depende da quantidade de ideias. Ao habilitar a detecção, as ideias já
+   * adicionadas são indexadas, sem que sejam apontadas. A configuração não é persistida.
+   * 
+   * @param threshold Semelhança mínima, até 1, ou 0 para desabilitar a detecção.
+   */
+  public synchronized void setDuplicateThreshold(double threshold) {
+    if (threshold <= 0 || threshold > 1) {
+      duplicates = null;
+      return;
+    }
+    DuplicateIndex index = new DuplicateIndex(threshold);
+    for (Idea idea : ideas) {
+      index.add(idea.getIndex(), idea.getDescription());
+    }
+    duplicates = index;
+  }
+
+  /**
+   * Método para a obtenção da semelhança mínima da detecção de repetições.
+   * 
+   * @return Semelhança mínima, ou 0 se a detecção estiver desabilitada.
+   */
+  public synchronized double getDuplicateThreshold() {
+    return duplicates == null ? 0 : duplicates.getThreshold();
+  }
+
+  /**
+   * Método para a busca das ideias da sessão semelhantes a uma ideia, que pode ainda não ter sido
+   * adicionada. As ideias incorporadas são substituídas pelas que as incorporaram, e as retiradas
+   * são ignoradas.
+   * 
+   * @param idea Ideia a comparar.
+   * @return Ideias semelhantes, exceto a própria, da mais para a menos semelhante, ou um arranjo
+   *         vazio se a detecção de repetições estiver desabilitada.
+   */
+  public synchronized Idea[] findDuplicates(Idea idea) {
+    if (duplicates == null || idea == null) {
+      return new Idea[0];
+    }
+    Set<Idea> found = new LinkedHashSet<>();
+    for (int index : duplicates.similar(idea.getDescription())) {
+      Idea similar = resolve(ideas.get(index));
+      if (similar != idea && !similar.isWithdrawn()) {
+        found.add(similar);
+      }
+    }
+    return found.toArray(new Idea[0]);
+  }
+
+  /**
+   * Método para a incorporação de uma ideia repetida a outra da sessão, na fase de brainstorm ou
+   * de votação. A ideia incorporada continua na sessão, mas perde os votos e deixa de aceitá-los;
+   * se os votos forem combinados, os seus votantes passam a votar na outra ideia, exceto o autor
+   * desta. Um voto concorrente na ideia incorporada pode ainda ser aceito nela.
+   * 
+   * @param duplicate Ideia incorporada.
+   * @param target Ideia que a incorpora, que não pode ter sido incorporada nem retirada.
+   * @param combineVoters Se os votos passam à outra ideia.
+   * @return Verdadeiro se a ideia foi incorporada.
+   */
+  public synchronized boolean mergeIdea(Idea duplicate, Idea target, boolean combineVoters) {
+    if ((!inPhase(SessionPhase.BRAINSTORM) && !inPhase(SessionPhase.VOTING))
+        || duplicate == null || target == null || duplicate == target
+        || duplicate.getSession() != this || target.getSession() != this
+        || duplicate.isClosed() || target.isClosed()) {
+      return false;
+    }
+    lockStripes();
+    try {
+      restoreMerge(duplicate, target, combineVoters);
+      if (journal != null) {
+        journal.recordMerge(duplicate, target, combineVoters);
+      }
+    } finally {
+      unlockStripes();
+    }
+    return true;
+  }
+
+  /**
+   * Método para a obtenção da ideia que, ao fim das incorporações, representa uma ideia.
+   */
+  private static Idea resolve(Idea idea) {
+    while (idea.getMergedInto() != null) {
+      idea = idea.getMergedInto();
+    }
+    return idea;
+  }
+
+  public synchronized Idea[] getIdeas() {
     return ideas.toArray(new Idea[ideas.size()]);
   }
 
   /**
-   * Método para ranqueamento das ideias.
+   * Método para a obtenção de uma vista somente leitura das ideias, em ordem de adição, que não
+   * copia a lista. A vista acompanha as alterações da sessão, portanto não deve ser percorrida
+   * enquanto outra thread adiciona ideias; após a fase de brainstorm ela não muda mais.
+   * 
+   * @return Vista das ideias.
+   */
+  public List<Idea> getIdeasView() {
+    return ideasView;
+  }
+
+  /**
+   * Método para a obtenção de uma ideia pela sua posição na ordem de adição, sem cópia da lista.
+   * 
+   * @param index Posição da ideia, de 0 a {@link #getIdeaCount()} - 1.
+   * @return Ideia na posição.
+   */
+  public synchronized Idea getIdea(int index) {
+    return ideas.get(index);
+  }
+
+  public synchronized int getIdeaCount() {
+    return ideas.size();
+  }
+
+  /**
+   * Método para ranqueamento das ideias. Os empates são desfeitos pela ordem de adição das ideias.
    * 
    * @return Arranjo com as ideias (com votos) ordenadas em ordem decrescente de votos
    */
   public Idea[] rankIdeas() {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    Idea[] ranking = phase == SessionPhase.RANKING ? leaderboard.ranking() : new Idea[0];
+    if (metrics != null) {
+      metrics.recordLatency(SessionMetrics.Operation.RANK_IDEAS, start);
+    }
+    return ranking;
+  }
+
+  /**
+   * Método para ranqueamento das ideias com apuração paralela, para sessões muito grandes. As
+   * contagens são lidas do livro de votos e ordenadas em paralelo no pool dado, sem passar pelo
+   * placar; sessões com menos de {@value ParallelRanking#THRESHOLD} ideias, ou com outro sistema
+   * de votação que não a aprovação, são ranqueadas pelo placar, como em {@link #rankIdeas()}. O
+   * resultado é sempre idêntico ao de {@link #rankIdeas()}.
+   * 
+   * @param pool Pool onde a apuração é executada.
+   * @return Arranjo com as ideias (com votos) ordenadas em ordem decrescente de votos
+   */
+  public Idea[] rankIdeas(ForkJoinPool pool) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    Idea[] ranking = rankInParallel(pool);
+    if (metrics != null) {
+      metrics.recordLatency(SessionMetrics.Operation.RANK_IDEAS, start);
+    }
+    return ranking;
+  }
+
+  private Idea[] rankInParallel(ForkJoinPool pool) {
+    if (phase != SessionPhase.RANKING) {
+      return new Idea[0];
+    }
+    Idea[] snapshot;
+    synchronized (this) {
+      if (strategy != VotingStrategy.APPROVAL || ideas.size() < ParallelRanking.THRESHOLD) {
+        return leaderboard.ranking();
+      }
+      snapshot = ideas.toArray(new Idea[0]);
+    }
+    return ParallelRanking.rank(snapshot, ledger, pool);
+  }
+
+  /**
+   * Método para o ranqueamento das k ideias mais votadas, sem ordenar as demais. Os empates são
+   * desfeitos pela ordem de adição das ideias. Para isto a sessão deve estar na fase de
+   * ranqueamento.
+   * 
+   * @param k Quantidade máxima de ideias.
+   * @return Arranjo com as k ideias (com votos) mais votadas, em ordem decrescente de votos.
+   */
+  public Idea[] rankTop(int k) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    Idea[] top = phase == SessionPhase.RANKING ? leaderboard.top(k) : new Idea[0];
+    if (metrics != null) {
+      metrics.recordLatency(SessionMetrics.Operation.RANK_IDEAS, start);
+    }
+    return top;
+  }
+
+  /**
+   * Método para o ranqueamento de uma página das ideias votadas, em qualquer posição do ranking.
+   * Como os votos não mudam na fase de ranqueamento, páginas consecutivas formam exatamente o
+   * resultado de {@link #rankIdeas()}; para percorrer o ranking inteiro, {@link #rankPages(int)}
+   * evita refazer a seleção das páginas anteriores. Para isto a sessão deve estar na fase de
+   * ranqueamento.
+   * 
+   * @param offset Posição da primeira ideia da página, a partir de 0.
+   * @param limit Quantidade máxima de ideias da página.
+   * @return Arranjo com as ideias da página, vazio após a última página.
+   */
+  public Idea[] rankPage(int offset, int limit) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    Idea[] page = phase == SessionPhase.RANKING ? leaderboard.page(offset, limit) : new Idea[0];
+    if (metrics != null) {
+      metrics.recordLatency(SessionMetrics.Operation.RANK_IDEAS, start);
+    }
+    return page;
+  }
+
+  /**
+   * Método para a leitura do ranqueamento página a página, sem montar o arranjo completo. Cada
+   * página continua a partir da anterior, e juntas formam exatamente o resultado de
+   * {@link #rankIdeas()}. Para isto a sessão deve estar na fase de ranqueamento.
+   * 
+   * @param pageSize Quantidade máxima de ideias por página.
+   * @return Iterador sobre as páginas do ranqueamento.
+   */
+  public Iterator<Idea[]> rankPages(int pageSize) {
     if (phase == SessionPhase.RANKING) {
-      List<Idea> rankeredIdeas = new ArrayList<>();
-      ideas.forEach(idea -> {
-          if (idea.countVotes() != 0) {
-            rankeredIdeas.add(idea);
-          }
-          });
+      return leaderboard.pages(pageSize);
+    }
+    return Collections.emptyIterator();
+  }
+
+  /**
+   * Método para a consulta das ideias mais votadas até o momento, que pode ser usado como prévia
+   * do ranqueamento durante a votação. Os empates são desfeitos pela ordem de adição das ideias.
+   * 
+   * @param k Quantidade máxima de ideias.
+   * @return Arranjo com as k ideias (com votos) mais votadas, em ordem decrescente de votos.
+   */
+  public Idea[] topIdeas(int k) {
+    return leaderboard.top(k);
+  }
 
-      rankeredIdeas.sort((a, b) -> 
-          b.countVotes() - a.countVotes());
+  /**
+   * Método para a consulta da posição atual de uma ideia no ranqueamento. Ideias empatadas
+   * compartilham a mesma posição.
+   * 
+   * @param idea Ideia a consultar.
+   * @return Posição da ideia a partir de 1, ou 0 se a ideia não tiver votos nesta sessão.
+   */
+  public int rankOf(Idea idea) {
+    if (idea.getSession() != this) {
+      return 0;
+    }
+    return leaderboard.rankOf(idea);
+  }
+
+  /**
+   * Método para o arquivamento da sessão encerrada em memória direta. Veja {@link #archive(Path)}.
+   * 
+   * @return Verdadeiro se a sessão foi arquivada.
+   */
+  public boolean archive() {
+    try {
+      return archive(null);
+    } catch (IOException e) {
+      // Sem arquivo, a única falha é um segmento maior que o limite
+      throw new UncheckedIOException(e);
+    }
+  }
 
-      return rankeredIdeas.toArray(new Idea[rankeredIdeas.size()]);
+  /**
+   * Método para o arquivamento da sessão encerrada, para sessões que ficam em memória muito
+   * depois do ranqueamento. O texto e o autor das ideias e a apuração, com os votantes e as
+   * cédulas, passam a um segmento fora do heap, e as ideias passam a decodificar o texto a cada
+   * leitura; os conjuntos de votantes do livro de votos são descartados. O ranqueamento, as
+   * contagens e a exportação continuam com os mesmos resultados. Para isto a sessão deve estar na
+   * fase de ranqueamento. O arquivamento não é persistido, e uma sessão recarregada pode ser
+   * arquivada de novo.
+   * 
+   * @param file Arquivo em que o segmento é gravado e mapeado, substituído se existir, ou nulo
+   *        para memória direta.
+   * @return Verdadeiro se a sessão foi arquivada, falso se ela não estiver no ranqueamento ou já
+   *         tiver sido arquivada.
+   * @throws IOException Se o arquivo não puder ser gravado, ou o segmento passar de 2 GB.
+   */
+  public synchronized boolean archive(Path file) throws IOException {
+    if (phase != SessionPhase.RANKING || archive != null) {
+      return false;
+    }
+    // Nenhum voto é aplicado no ranqueamento, mas os votantes são excluídos durante a troca da
+    // apuração e do livro de votos, como na passagem de fase
+    lockStripes();
+    try {
+      IdeaArchive created = IdeaArchive.create(this, file);
+      for (Idea idea : ideas) {
+        idea.archive(created);
+      }
+      tally = created;
+      ledger.archive(created);
+      archive = created;
+    } finally {
+      unlockStripes();
     }
-    return new Idea[0];
+    return true;
+  }
+
+  public boolean isArchived() {
+    return archive != null;
   }
 
   /**
@@ -112,34 +588,1000 @@ public class Session {
    * 
    * @param user usuário a adicionar.
    */
-  public void addParticipant(User user) {
-    if (phase == SessionPhase.WELCOME && !participants.contains(user)) {
-      participants.add(user);
+  public synchronized void addParticipant(User user) {
+    if (inPhase(SessionPhase.WELCOME) && appendParticipant(user)) {
+      republish(true, false);
+    }
+  }
+
+  /**
+   * Método para a adição de vários participantes de uma só vez, para tanto a sessão deve estar na
+   * fase de acolhimento. A fase é verificada uma única vez e o lote é aplicado inteiro, sem que
+   * outras alterações da sessão se intercalem.
+   * 
+   * @param users Usuários a adicionar.
+   * @return Arranjo indicando, para cada usuário, se ele foi aceito.
+   */
+  public synchronized boolean[] addParticipants(User... users) {
+    boolean[] accepted = new boolean[users.length];
+    if (inPhase(SessionPhase.WELCOME)) {
+      boolean any = false;
+      for (int i = 0; i < users.length; i++) {
+        accepted[i] = appendParticipant(users[i]);
+        any |= accepted[i];
+      }
+      if (any) {
+        republish(true, false);
+      }
     }
+    return accepted;
   }
 
   /**
-   * Método para remoção de um participante.
+   * Método para a inclusão de um participante, já verificada a fase.
+   * 
+   * @param user Usuário a incluir.
+   * @return Verdadeiro se o usuário foi incluído, falso se ele já participava.
+   */
+  private boolean appendParticipant(User user) {
+    if (user == null || !restoreParticipant(user)) {
+      return false;
+    }
+    if (journal != null) {
+      journal.recordJoin(user);
+    }
+    UserIndex users = this.users;
+    if (users != null) {
+      users.recordJoin(user);
+    }
+    for (SessionObserver observer : observers) {
+      observer.participantJoined(this, user);
+    }
+    publish(SessionEvent.Type.PARTICIPANT_JOINED, null, null, user);
+    return true;
+  }
+
+  /**
+   * Método para remoção de um participante, cujos votos são retirados. Veja
+   * {@link #removeParticipant(User, boolean)}.
    * 
    * @param user usuário a ser removido.
    */
   public void removeParticipant(User user) {
-    participants.remove(user);
+    removeParticipant(user, false);
   }
 
-  public User[] getParticipants() {
+  /**
+   * Método para remoção de um participante. Antes do ranqueamento, os votos dele, ou a sua
+   * cédula, são retirados e, se pedido, também as ideias que propôs, que perdem os votos recebidos
+   * e deixam de aceitá-los, veja {@link Idea#isWithdrawn()}. Os votos e as ideias do participante
+   * são encontrados pelo índice inverso do livro de votos, de forma que o custo da remoção depende
+   * da atividade do participante, e não da quantidade de participantes ou de ideias. No
+   * ranqueamento o resultado já está apurado, e o participante apenas deixa a sessão.
+   * 
+   * @param user usuário a ser removido.
+   * @param withdrawIdeas Se as ideias do participante também são retiradas.
+   */
+  public synchronized void removeParticipant(User user, boolean withdrawIdeas) {
+    if (user == null || retired) {
+      return;
+    }
+    boolean removed;
+    if (withdrawIdeas) {
+      // A retirada das ideias muda os votos de outros participantes, como a incorporação
+      lockStripes();
+      try {
+        removed = leave(user, true);
+        if (removed && journal != null) {
+          journal.recordLeave(user, true);
+        }
+      } finally {
+        unlockStripes();
+      }
+    } else {
+      Lock stripe = stripe(user);
+      stripe.lock();
+      try {
+        removed = leave(user, false);
+        if (removed && journal != null) {
+          journal.recordLeave(user, false);
+        }
+      } finally {
+        stripe.unlock();
+      }
+    }
+    if (removed) {
+      for (SessionObserver observer : observers) {
+        observer.participantLeft(this, user);
+      }
+      publish(SessionEvent.Type.PARTICIPANT_LEFT, null, null, user);
+      republish(true, false);
+    }
+  }
+
+  /**
+   * Método para a saída de um participante, com a retirada dos seus votos e, se pedido, das suas
+   * ideias, se a sessão ainda não estiver no ranqueamento. O retrato é publicado por quem chama.
+   * 
+   * @param user Participante.
+   * @param withdrawIdeas Se as ideias do participante também são retiradas.
+   * @return Verdadeiro se o usuário participava.
+   */
+  private boolean leave(User user, boolean withdrawIdeas) {
+    if (!participants.remove(user)) {
+      return false;
+    }
+    // O registro é removido antes, para que nenhum voto novo do participante seja admitido
+    ledger.unregister(user);
+    if (phase == SessionPhase.RANKING) {
+      return true;
+    }
+    Tally current = tally;
+    Idea[] withdrawn = current.withdrawAll(user, ideas);
+    if (current.hasBallots()) {
+      if (withdrawn.length > 0) {
+        publish(SessionEvent.Type.BALLOT, null, null, user);
+      }
+    } else {
+      for (Idea idea : withdrawn) {
+        recordWithdrawal(idea, user);
+      }
+    }
+    if (withdrawIdeas) {
+      for (int index : ledger.authoredIdeas(user)) {
+        withdrawIdea(ideas.get(index));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Método para a retirada de uma ideia, que perde os votos recebidos e deixa de aceitá-los. As
+   * ideias já incorporadas, que não têm votos, são mantidas como estão.
+   * 
+   * @param idea Ideia retirada.
+   */
+  private void withdrawIdea(Idea idea) {
+    if (idea.isClosed()) {
+      return;
+    }
+    idea.setWithdrawn(true);
+    Tally current = tally;
+    User[] voters = current.close(idea);
+    publish(SessionEvent.Type.WITHDRAWN, null, idea, idea.getAuthor());
+    for (User voter : voters) {
+      if (current.hasBallots()) {
+        publish(SessionEvent.Type.BALLOT, null, null, voter);
+      } else {
+        recordWithdrawal(idea, voter);
+      }
+    }
+  }
+
+  public synchronized User[] getParticipants() {
     return participants.toArray(new User[participants.size()]);
   }
 
+  /**
+   * Método para a obtenção de uma vista somente leitura dos participantes, em ordem de entrada,
+   * que não copia a lista. A vista acompanha as alterações da sessão, portanto não deve ser
+   * percorrida enquanto outra thread adiciona ou remove participantes.
+   * 
+   * @return Vista dos participantes.
+   */
+  public Collection<User> getParticipantsView() {
+    return participantsView;
+  }
+
+  public synchronized int getParticipantCount() {
+    return participants.size();
+  }
+
+  /**
+   * Método para a verificação de que um usuário participa da sessão, em tempo constante e sem
+   * bloqueio.
+   * 
+   * @param user Usuário a verificar.
+   * @return Verdadeiro se o usuário é participante.
+   */
+  public boolean isParticipant(User user) {
+    return ledger.isRegistered(user);
+  }
+
   public String getDescription() {
     return description;
   }
 
-  public void setDescription(String description) {
+  public synchronized void setDescription(String description) {
+    if (retired) {
+      return;
+    }
     this.description = description;
+    if (journal != null) {
+      journal.recordDescription(description);
+    }
+    republish(false, false);
   }
 
-  public Integer getVotingLimit() {
+  public int getVotingLimit() {
     return votingLimit;
   }
+
+  VoteLedger getLedger() {
+    return ledger;
+  }
+
+  Tally getTally() {
+    return tally;
+  }
+
+  public VotingStrategy getVotingStrategy() {
+    return strategy;
+  }
+
+  /**
+   * Método para a escolha do sistema de votação, que define como os votos são apurados e
+   * ranqueados. Para isto a sessão deve estar na fase de acolhimento ou de brainstorm, antes de
+   * qualquer voto.
+   * 
+   * @param strategy Sistema de votação.
+   */
+  public synchronized void setVotingStrategy(VotingStrategy strategy) {
+    if (strategy == null || strategy == this.strategy
+        || (!inPhase(SessionPhase.WELCOME) && !inPhase(SessionPhase.BRAINSTORM))) {
+      return;
+    }
+    restoreStrategy(strategy);
+    if (journal != null) {
+      journal.recordStrategy(strategy);
+    }
+    republish(false, false);
+  }
+
+  /**
+   * Método para a definição do peso dos votos de um participante, usado pelo sistema de votação
+   * ponderado. Para isto a sessão deve estar na fase de acolhimento ou de brainstorm, e o peso deve
+   * estar entre 0 e {@value #MAX_VOTE_WEIGHT}.
+   * 
+   * @param user Participante.
+   * @param weight Peso dos votos do participante.
+   */
+  public synchronized void setVoteWeight(User user, int weight) {
+    if (weight < 0 || weight > MAX_VOTE_WEIGHT || !isParticipant(user)
+        || (!inPhase(SessionPhase.WELCOME) && !inPhase(SessionPhase.BRAINSTORM))) {
+      return;
+    }
+    restoreWeight(user, weight);
+    if (journal != null) {
+      journal.recordWeight(user, weight);
+    }
+  }
+
+  /**
+   * Método para a obtenção do peso dos votos de um usuário.
+   * 
+   * @param user Usuário a consultar.
+   * @return Peso dos votos, um se não tiver sido definido.
+   */
+  public int getVoteWeight(User user) {
+    return ledger.getWeight(user);
+  }
+
+  /**
+   * Método para a obtenção da pontuação de uma ideia no sistema de votação da sessão, pela qual as
+   * ideias são ranqueadas. Na aprovação é a contagem de votos; no segundo turno instantâneo é,
+   * durante a votação, a quantidade de primeiras preferências e, no ranqueamento, a rodada em que
+   * a ideia foi eliminada.
+   * 
+   * @param idea Ideia a consultar.
+   * @return Pontuação da ideia, ou 0 se ela não pertencer a esta sessão.
+   */
+  public int scoreOf(Idea idea) {
+    if (idea == null || idea.getSession() != this) {
+      return 0;
+    }
+    return tally.score(idea);
+  }
+
+  /**
+   * Método para o registro de um voto, que deve ocorrer na fase de votação e não pode ser do autor
+   * da ideia. O voto é então admitido pela apuração e refletido no placar.
+   * 
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Verdadeiro se o voto foi aceito.
+   */
+  boolean castVote(Idea idea, User voter) {
+    SessionMetrics metrics = this.metrics;
+    if (metrics == null) {
+      return screen(idea, voter) == null && admitVote(idea, voter);
+    }
+    long start = System.nanoTime();
+    boolean accepted = screen(idea, voter) == null && admitVote(idea, voter);
+    if (accepted) {
+      metrics.recordAccepted(1);
+    } else {
+      metrics.recordRejected(rejectionOf(idea, voter), 1);
+    }
+    metrics.recordLatency(SessionMetrics.Operation.VOTE, start);
+    return accepted;
+  }
+
+  /**
+   * Método para a verificação das regras de um voto que não dependem da apuração.
+   * 
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Motivo da recusa, ou nulo se o voto pode ser levado à apuração.
+   */
+  private VoteRejection screen(Idea idea, User voter) {
+    if (!inPhase(SessionPhase.VOTING)) {
+      return VoteRejection.WRONG_PHASE;
+    } else if (voter == null) {
+      return VoteRejection.NOT_PARTICIPANT;
+    } else if (idea == null || idea.getSession() != this || idea.isClosed()) {
+      return VoteRejection.INVALID_IDEA;
+    } else if (voter.equals(idea.getAuthor())) {
+      return VoteRejection.OWN_IDEA;
+    }
+    return null;
+  }
+
+  /**
+   * Método para a classificação de um voto recusado, chamado somente com as métricas ligadas. Os
+   * motivos da apuração são lidos após a recusa, portanto um voto concorrente do mesmo votante
+   * pode mudar o motivo registrado.
+   * 
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Motivo da recusa.
+   */
+  private VoteRejection rejectionOf(Idea idea, User voter) {
+    VoteRejection rejection = screen(idea, voter);
+    if (rejection != null) {
+      return rejection;
+    }
+    UserIndex users = this.users;
+    if (users != null && users.remainingVotes(voter) <= 0) {
+      return VoteRejection.QUOTA_EXCEEDED;
+    }
+    return tally.rejection(idea, voter, votingLimit);
+  }
+
+  /**
+   * Método para o registro das métricas de um lote de votos.
+   */
+  private void recordVotes(SessionMetrics metrics, User voter, Idea[] ideas, boolean[] accepted,
+      long start) {
+    int count = 0;
+    for (int i = 0; i < ideas.length; i++) {
+      if (accepted[i]) {
+        count++;
+      } else {
+        metrics.recordRejected(rejectionOf(ideas[i], voter), 1);
+      }
+    }
+    metrics.recordAccepted(count);
+    metrics.recordLatency(SessionMetrics.Operation.VOTE, start);
+  }
+
+  /**
+   * Método para o registro de um voto já validado quanto à fase e à autoria, que é admitido pelo
+   * livro de votos e refletido no placar. Se a sessão for persistente, o voto é aplicado e
+   * registrado sob o bloqueio do votante no diário.
+   * 
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Verdadeiro se o voto foi aceito.
+   */
+  private boolean admitVote(Idea idea, User voter) {
+    UserIndex users = this.users;
+    if (users == null) {
+      return journalVote(idea, voter);
+    }
+    int granted = users.acquireVotes(voter, 1);
+    boolean accepted = granted > 0 && journalVote(idea, voter);
+    users.recordVotes(voter, granted, accepted ? 1 : 0);
+    return accepted;
+  }
+
+  /**
+   * Método para a aplicação de um voto já admitido pelo índice de usuários, sob o bloqueio do
+   * votante, registrado no diário se a sessão for persistente. A fase é verificada de novo sob o
+   * bloqueio, que a passagem de fase também toma, para que um voto verificado antes do fim da
+   * votação não seja aplicado depois dele.
+   */
+  private boolean journalVote(Idea idea, User voter) {
+    Lock stripe = stripe(voter);
+    stripe.lock();
+    try {
+      if (!inPhase(SessionPhase.VOTING) || !applyVote(idea, voter)) {
+        return false;
+      }
+      SessionJournal journal = this.journal;
+      if (journal != null) {
+        journal.recordVote(idea, voter);
+      }
+      return true;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  private boolean applyVote(Idea idea, User voter) {
+    if (!tally.vote(idea, voter, votingLimit)) {
+      return false;
+    }
+    publish(SessionEvent.Type.VOTE, null, idea, voter);
+    votesChanged();
+    return true;
+  }
+
+  /**
+   * Método para o registro de uma cédula, com os votos de um participante em várias ideias de uma
+   * só vez. A fase e a participação do votante são verificadas uma única vez, e as vagas de voto
+   * são reservadas de uma só vez no livro de votos. Cada voto é aceito pelas mesmas regras de
+   * {@link Idea#registerVote(User)}, na ordem da cédula, até o limite de votos do participante.
+   * 
+   * @param voter Votante.
+   * @param ideas Ideias votadas.
+   * @return Arranjo indicando, para cada ideia, se o voto foi aceito.
+   */
+  public boolean[] registerVotes(User voter, Idea... ideas) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    boolean[] accepted = admitVotes(voter, ideas);
+    if (metrics != null) {
+      recordVotes(metrics, voter, ideas, accepted, start);
+    }
+    return accepted;
+  }
+
+  private boolean[] admitVotes(User voter, Idea[] ideas) {
+    boolean[] accepted = new boolean[ideas.length];
+    if (!inPhase(SessionPhase.VOTING) || voter == null || !isParticipant(voter)) {
+      return accepted;
+    }
+    for (int i = 0; i < ideas.length; i++) {
+      Idea idea = ideas[i];
+      accepted[i] = idea != null && idea.getSession() == this && !idea.isClosed()
+          && !voter.equals(idea.getAuthor());
+    }
+    UserIndex users = this.users;
+    if (users == null) {
+      journalVotes(voter, ideas, accepted);
+      return accepted;
+    }
+    // As vagas do índice são reservadas na ordem do lote, e as ideias sem vaga são recusadas
+    int granted = users.acquireVotes(voter, count(accepted));
+    for (int i = 0, kept = 0; i < ideas.length; i++) {
+      if (accepted[i] && kept++ >= granted) {
+        accepted[i] = false;
+      }
+    }
+    journalVotes(voter, ideas, accepted);
+    users.recordVotes(voter, granted, count(accepted));
+    return accepted;
+  }
+
+  /**
+   * Método para a aplicação de um lote de votos já admitido pelo índice de usuários, sob o
+   * bloqueio do votante, registrado no diário se a sessão for persistente. O lote é recusado
+   * inteiro se a votação tiver terminado, como em {@link #journalVote(Idea, User)}.
+   */
+  private void journalVotes(User voter, Idea[] ideas, boolean[] accepted) {
+    Lock stripe = stripe(voter);
+    stripe.lock();
+    try {
+      if (!inPhase(SessionPhase.VOTING)) {
+        Arrays.fill(accepted, false);
+        return;
+      }
+      applyVotes(voter, ideas, accepted);
+      SessionJournal journal = this.journal;
+      for (int i = 0; journal != null && i < ideas.length; i++) {
+        if (accepted[i]) {
+          journal.recordVote(ideas[i], voter);
+        }
+      }
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  private static int count(boolean[] flags) {
+    int count = 0;
+    for (boolean flag : flags) {
+      count += flag ? 1 : 0;
+    }
+    return count;
+  }
+
+  private void applyVotes(User voter, Idea[] ideas, boolean[] accepted) {
+    tally.voteAll(ideas, accepted, voter, votingLimit);
+    boolean any = false;
+    for (int i = 0; i < ideas.length; i++) {
+      if (accepted[i]) {
+        publish(SessionEvent.Type.VOTE, null, ideas[i], voter);
+        any = true;
+      }
+    }
+    if (any) {
+      votesChanged();
+    }
+  }
+
+  /**
+   * Método para o registro da cédula de um participante nos sistemas de cédula (pontos, Borda e
+   * segundo turno instantâneo), que substitui os votos anteriores do participante. As ideias
+   * entram na cédula em ordem de preferência, pelas mesmas regras de
+   * {@link Idea#registerVote(User)}, até o limite de votos; nos sistemas ordenados, as ideias
+   * repetidas são ignoradas. Para isto a sessão deve estar na fase de votação.
+   * 
+   * @param voter Votante.
+   * @param ranking Ideias em ordem de preferência.
+   * @return Arranjo indicando, para cada ideia, se ela entrou na cédula.
+   */
+  public boolean[] castBallot(User voter, Idea... ranking) {
+    SessionMetrics metrics = this.metrics;
+    long start = metrics == null ? 0 : System.nanoTime();
+    boolean[] accepted = admitBallot(voter, ranking);
+    if (metrics != null) {
+      if (tally.hasBallots()) {
+        recordVotes(metrics, voter, ranking, accepted, start);
+      } else {
+        metrics.recordLatency(SessionMetrics.Operation.VOTE, start);
+      }
+    }
+    return accepted;
+  }
+
+  private boolean[] admitBallot(User voter, Idea[] ranking) {
+    boolean[] accepted = new boolean[ranking.length];
+    if (!inPhase(SessionPhase.VOTING) || voter == null || !isParticipant(voter)) {
+      return accepted;
+    }
+    for (int i = 0; i < ranking.length; i++) {
+      Idea idea = ranking[i];
+      accepted[i] = idea != null && idea.getSession() == this && !idea.isClosed()
+          && !voter.equals(idea.getAuthor());
+    }
+    Lock stripe = stripe(voter);
+    stripe.lock();
+    try {
+      if (!inPhase(SessionPhase.VOTING)) {
+        Arrays.fill(accepted, false);
+        return accepted;
+      }
+      Tally current = tally;
+      current.ballot(voter, ranking, accepted, votingLimit);
+      SessionJournal journal = this.journal;
+      if (current.hasBallots()) {
+        publish(SessionEvent.Type.BALLOT, null, null, voter);
+      }
+      if (current.hasBallots() && journal != null) {
+        List<Idea> recorded = new ArrayList<>();
+        for (int i = 0; i < ranking.length; i++) {
+          if (accepted[i]) {
+            recorded.add(ranking[i]);
+          }
+        }
+        journal.recordBallot(voter, recorded.toArray(new Idea[0]));
+      }
+      votesChanged();
+    } finally {
+      stripe.unlock();
+    }
+    return accepted;
+  }
+
+  /**
+   * Método para a retirada de um voto, que é devolvido ao votante e refletido no placar. Como os
+   * votos, a retirada só é aceita na fase de votação, verificada sob o bloqueio do votante.
+   * 
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Verdadeiro se o voto existia e foi retirado.
+   */
+  boolean withdrawVote(Idea idea, User voter) {
+    if (voter == null) {
+      return false;
+    }
+    Lock stripe = stripe(voter);
+    stripe.lock();
+    try {
+      if (!inPhase(SessionPhase.VOTING) || !applyWithdrawal(idea, voter)) {
+        return false;
+      }
+      SessionJournal journal = this.journal;
+      if (journal != null) {
+        journal.recordUnvote(idea, voter);
+      }
+      return true;
+    } finally {
+      stripe.unlock();
+    }
+  }
+
+  private boolean applyWithdrawal(Idea idea, User voter) {
+    if (!tally.withdraw(idea, voter)) {
+      return false;
+    }
+    recordWithdrawal(idea, voter);
+    votesChanged();
+    return true;
+  }
+
+  /**
+   * Método para o registro de um voto retirado nas métricas, no índice de usuários e nas
+   * assinaturas.
+   */
+  private void recordWithdrawal(Idea idea, User voter) {
+    SessionMetrics metrics = this.metrics;
+    if (metrics != null) {
+      metrics.recordWithdrawn();
+    }
+    UserIndex users = this.users;
+    if (users != null) {
+      users.recordWithdrawal(voter);
+    }
+    publish(SessionEvent.Type.UNVOTE, null, idea, voter);
+  }
+
+  /**
+   * Método para a publicação de retratos imutáveis da sessão, lidos por {@link #snapshot()} sem
+   * bloqueio. As alterações de fase, participantes, ideias, descrição e sistema de votação publicam
+   * um retrato ao fim de cada lote. Com intervalo 0, cada voto, retirada, cédula ou lote de votos
+   * também publica um retrato; com um intervalo positivo, os votos são publicados no máximo uma
+   * vez por intervalo, na primeira leitura após ele, sem custo para os votantes. A configuração não
+   * é persistida.
+   * 
+   * @param millis Intervalo mínimo entre as publicações dos votos, em milissegundos; 0 para
+   *        publicar a cada voto, ou negativo para deixar de publicar retratos.
+   */
+  public synchronized void setSnapshotInterval(long millis) {
+    if (millis < 0) {
+      snapshots = null;
+      leaderboard.unshare();
+      return;
+    }
+    SnapshotPublisher publisher =
+        new SnapshotPublisher(leaderboard, TimeUnit.MILLISECONDS.toNanos(millis));
+    publisher.participantsChanged(participants);
+    publisher.ideasAdded(ideas);
+    publisher.publish(this, phase, description, strategy);
+    snapshots = publisher;
+  }
+
+  /**
+   * Método para a obtenção do intervalo de publicação dos retratos.
+   * 
+   * @return Intervalo em milissegundos, ou -1 se a sessão não publica retratos.
+   */
+  public long getSnapshotInterval() {
+    SnapshotPublisher snapshots = this.snapshots;
+    return snapshots == null ? -1 : TimeUnit.NANOSECONDS.toMillis(snapshots.getInterval());
+  }
+
+  /**
+   * Método para a obtenção de um retrato consistente da sessão. Se a sessão publica retratos, é
+   * devolvido o mais recente, sem bloqueio; caso contrário, um retrato avulso é montado sob o
+   * bloqueio da sessão, copiando as listas e as pontuações.
+   * 
+   * @return Retrato da sessão.
+   */
+  public SessionSnapshot snapshot() {
+    SnapshotPublisher snapshots = this.snapshots;
+    if (snapshots != null) {
+      return snapshots.current();
+    }
+    synchronized (this) {
+      return new SessionSnapshot(this, phase, description, strategy,
+          participants.toArray(new User[0]), ideas.toArray(new Idea[0]), ideas.size(),
+          leaderboard.copyScores(), 0);
+    }
+  }
+
+  /**
+   * Método para a publicação de um retrato após uma alteração feita sob o bloqueio da sessão,
+   * sem custo se a sessão não publicar retratos.
+   * 
+   * @param members Se os participantes mudaram.
+   * @param added Se ideias foram adicionadas.
+   */
+  private void republish(boolean members, boolean added) {
+    SnapshotPublisher snapshots = this.snapshots;
+    if (snapshots == null) {
+      return;
+    }
+    if (members) {
+      snapshots.participantsChanged(participants);
+    }
+    if (added) {
+      snapshots.ideasAdded(ideas);
+    }
+    snapshots.publish(this, phase, description, strategy);
+  }
+
+  /**
+   * Método para a publicação dos votos aceitos, sem custo se a sessão não publicar retratos.
+   */
+  private void votesChanged() {
+    SnapshotPublisher snapshots = this.snapshots;
+    if (snapshots != null) {
+      snapshots.votesChanged();
+    }
+  }
+
+  /**
+   * Método para a assinatura das alterações da sessão, entregues no pool comum com os votos
+   * agrupados por ideia. Veja {@link #subscribe(SessionListener, Executor, boolean)}.
+   * 
+   * @param listener Ouvinte que recebe os eventos.
+   * @return Assinatura, que pode ser cancelada.
+   */
+  public SessionSubscription subscribe(SessionListener listener) {
+    return subscribe(listener, ForkJoinPool.commonPool(), true);
+  }
+
+  /**
+   * Método para a assinatura das alterações da sessão: passagens de fase, entradas e saídas de
+   * participantes, ideias adicionadas, votos e cédulas, a partir da assinatura. Os eventos são
+   * entregues em lotes, em ordem e fora da thread que fez a alteração, de forma que os votos não
+   * esperam pelos assinantes; um assinante que fique muito atrasado recebe um evento
+   * {@link SessionEvent.Type#RESYNC} no lugar dos eventos perdidos.
+   * 
+   * @param listener Ouvinte que recebe os eventos.
+   * @param executor Executor onde os lotes são entregues.
+   * @param coalesceVotes Se os votos de cada lote devem ser agrupados por ideia.
+   * @return Assinatura, que pode ser cancelada.
+   */
+  public synchronized SessionSubscription subscribe(SessionListener listener, Executor executor,
+      boolean coalesceVotes) {
+    if (events == null) {
+      events = new EventBus(ForkJoinPool.commonPool());
+    }
+    SessionSubscription subscription =
+        new SessionSubscription(this, events, listener, executor, coalesceVotes);
+    events.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * Método para a verificação de que a sessão tem assinaturas ativas.
+   */
+  boolean hasSubscriptions() {
+    EventBus events = this.events;
+    return events != null && events.hasSubscriptions();
+  }
+
+  /**
+   * Método para a publicação de um evento às assinaturas, sem custo se não houver nenhuma.
+   */
+  private void publish(SessionEvent.Type type, SessionPhase phase, Idea idea, User user) {
+    EventBus events = this.events;
+    if (events != null && events.hasSubscriptions()) {
+      events.publish(new SessionEvent(type, this, phase, idea, user));
+    }
+  }
+
+  /**
+   * Método para a obtenção das métricas da sessão.
+   * 
+   * @return Métricas, ou nulo se a sessão não estiver ligada a um registro de métricas.
+   */
+  public SessionMetrics getMetrics() {
+    return metrics;
+  }
+
+  void setMetrics(SessionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  UserIndex getUserIndex() {
+    return users;
+  }
+
+  void setUserIndex(UserIndex users) {
+    this.users = users;
+  }
+
+  void setJournal(SessionJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Método para a obtenção do bloqueio listrado de um votante.
+   *
+   * @param voter Votante.
+   * @return Bloqueio do votante.
+   */
+  ReentrantLock stripe(User voter) {
+    return stripes[(voter.hashCode() * 0x9E3779B9) >>> 26];
+  }
+
+  /**
+   * Método para o bloqueio de todos os votantes, para as alterações que mudam votos de vários
+   * votantes de uma só vez, ou que não podem ocorrer durante um voto.
+   */
+  void lockStripes() {
+    for (ReentrantLock stripe : stripes) {
+      stripe.lock();
+    }
+  }
+
+  void unlockStripes() {
+    for (ReentrantLock stripe : stripes) {
+      stripe.unlock();
+    }
+  }
+
+  /**
+   * Método para o encerramento das alterações da sessão por este objeto, chamado pelo registro
+   * ao descarregá-la ou descartá-la, que espera os votos em andamento. A partir daí, os votos e as
+   * demais alterações são recusados como se a sessão estivesse fora da fase, para que nenhuma
+   * alteração feita por quem ainda guarda o objeto se perca sem aviso.
+   */
+  synchronized void retire() {
+    lockStripes();
+    try {
+      retired = true;
+    } finally {
+      unlockStripes();
+    }
+  }
+
+  synchronized void addObserver(SessionObserver observer) {
+    SessionObserver[] current = observers;
+    SessionObserver[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = observer;
+    observers = updated;
+  }
+
+  synchronized void removeObserver(SessionObserver observer) {
+    List<SessionObserver> updated = new ArrayList<>(Arrays.asList(observers));
+    updated.remove(observer);
+    observers = updated.toArray(new SessionObserver[0]);
+  }
+
+  /**
+   * Método para a restauração da fase, sem registro no diário.
+   * 
+   * @param phase Fase restaurada.
+   */
+  void restorePhase(SessionPhase phase) {
+    if (phase == SessionPhase.RANKING && this.phase != SessionPhase.RANKING) {
+      tally.finish();
+    }
+    this.phase = phase;
+  }
+
+  /**
+   * Método para a restauração do sistema de votação, sem verificação da fase nem registro no
+   * diário. A nova apuração começa sem votos.
+   * 
+   * @param strategy Sistema de votação restaurado.
+   */
+  synchronized void restoreStrategy(VotingStrategy strategy) {
+    Tally created = strategy.newTally(ledger, leaderboard, votingLimit);
+    for (Idea idea : ideas) {
+      created.open(idea);
+    }
+    this.strategy = strategy;
+    tally = created;
+    leaderboard.rebuild();
+  }
+
+  /**
+   * Método para a restauração do peso dos votos de um usuário, sem verificação da fase nem registro
+   * no diário.
+   * 
+   * @param user Usuário.
+   * @param weight Peso dos votos.
+   */
+  void restoreWeight(User user, int weight) {
+    ledger.setWeight(user, weight);
+  }
+
+  /**
+   * Método para a restauração de uma cédula aceita anteriormente, sem verificação das regras de
+   * votação nem registro no diário.
+   * 
+   * @param voter Votante.
+   * @param ranking Ideias em ordem de preferência.
+   */
+  void restoreBallot(User voter, Idea[] ranking) {
+    tally.restoreBallot(voter, ranking);
+  }
+
+  /**
+   * Método para a restauração de um participante, sem verificação da fase nem registro no diário.
+   * 
+   * @param user Participante restaurado.
+   * @return Verdadeiro se o usuário ainda não participava.
+   */
+  synchronized boolean restoreParticipant(User user) {
+    if (!participants.add(user)) {
+      return false;
+    }
+    ledger.register(user);
+    return true;
+  }
+
+  /**
+   * Método para a restauração de uma ideia, sem verificação das regras de adição nem registro no
+   * diário.
+   * 
+   * @param idea Ideia restaurada.
+   */
+  synchronized void restoreIdea(Idea idea) {
+    idea.setSession(this);
+    idea.setIndex(ideas.size());
+    ideas.add(idea);
+    ledger.author(idea);
+    tally.open(idea);
+    leaderboard.add(idea);
+    if (duplicates != null) {
+      int similar = duplicates.add(idea.getIndex(), idea.getDescription());
+      if (similar >= 0) {
+        idea.setDuplicateOf(resolve(ideas.get(similar)));
+      }
+    }
+  }
+
+  /**
+   * Método para a restauração da incorporação de uma ideia a outra, sem verificação das regras
+   * nem registro no diário. Os votos mudam como em {@link #mergeIdea(Idea, Idea, boolean)}.
+   * 
+   * @param duplicate Ideia incorporada.
+   * @param target Ideia que a incorpora.
+   * @param combine Se os votos passam à outra ideia.
+   */
+  synchronized void restoreMerge(Idea duplicate, Idea target, boolean combine) {
+    duplicate.setMergedInto(target);
+    User[] voters = tally.merge(duplicate, target, combine);
+    publish(SessionEvent.Type.MERGE, null, duplicate, null);
+    boolean ballots = tally.hasBallots();
+    for (User voter : voters) {
+      if (ballots) {
+        publish(SessionEvent.Type.BALLOT, null, null, voter);
+      } else {
+        publish(SessionEvent.Type.UNVOTE, null, duplicate, voter);
+        if (combine && !voter.equals(target.getAuthor())) {
+          publish(SessionEvent.Type.VOTE, null, target, voter);
+        }
+      }
+    }
+    republish(false, false);
+  }
+
+  /**
+   * Método para a restauração da marca de uma ideia incorporada, cujos votos já foram restaurados.
+   * 
+   * @param duplicate Ideia incorporada.
+   * @param target Ideia que a incorporou.
+   */
+  void restoreMerged(Idea duplicate, Idea target) {
+    duplicate.setMergedInto(target);
+  }
+
+  /**
+   * Método para a restauração da marca de uma ideia retirada, cujos votos já foram restaurados.
+   * 
+   * @param idea Ideia retirada.
+   */
+  void restoreWithdrawn(Idea idea) {
+    idea.setWithdrawn(true);
+  }
+
+  /**
+   * Método para a restauração de um voto aceito anteriormente, sem verificação das regras de
+   * votação nem registro no diário.
+   * 
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   */
+  void restoreVote(Idea idea, User voter) {
+    tally.restore(idea, voter);
+  }
 }
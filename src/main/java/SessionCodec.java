@@ -0,0 +1,615 @@
+package main.java;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classe responsável pelo formato binário compacto das sessões, usado para transferi-las entre
+ * serviços, arquivá-las e gravar as fotografias do diário.
+ *
+ * O formato começa com uma marca e a versão, seguidas do cabeçalho da sessão com o sistema de
+ * votação, dos participantes, dos pesos de voto alterados, das ideias com os seus votantes e, nos
+ * sistemas de cédula, das cédulas com os índices das ideias em ordem de preferência e, por fim,
+ * das ideias incorporadas a outras e das ideias retiradas. A versão 1, anterior aos sistemas de
+ * votação, ainda é lida como uma sessão por aprovação, a versão 2, anterior à incorporação de
+ * ideias, como uma sessão sem ideias incorporadas, e a versão 3, anterior à retirada de ideias,
+ * como uma sessão sem ideias retiradas. Todos os inteiros são gravados como varints. Os usuários
+ * formam um dicionário construído durante a própria gravação: a primeira referência a um usuário
+ * grava o seu identificador e nome, e as seguintes gravam apenas a sua posição no dicionário, de
+ * forma que um voto custa em geral um ou dois bytes. Tanto a gravação quanto a leitura são feitas
+ * em fluxo, sem montar a sessão inteira em memória.
+ * @author hugo
+ */
+public final class SessionCodec {
+
+  /**
+   * Marca de início do formato ("BRSC").
+   */
+  private static final int MAGIC = 0x42525343;
+  /**
+   * Versão atual do formato.
+   */
+  public static final int VERSION = 4;
+
+  private SessionCodec() {
+  }
+
+  /**
+   * Método para a gravação de uma sessão. Os dados da sessão são capturados com as alterações
+   * suspensas, e gravados depois de liberá-la, de forma que a cópia reflete um só instante sem
+   * que os votos aguardem a escrita no fluxo.
+   *
+   * @param session Sessão a gravar.
+   * @param output Fluxo de saída, que não é fechado.
+   * @throws IOException Se a gravação falhar.
+   */
+  public static void encode(Session session, OutputStream output) throws IOException {
+    Capture capture;
+    synchronized (session) {
+      session.lockStripes();
+      try {
+        capture = capture(session);
+      } finally {
+        session.unlockStripes();
+      }
+    }
+    encode(capture, output);
+  }
+
+  /**
+   * Método para a captura dos dados da sessão que a gravação usa, que apenas copia referências e
+   * os votantes de cada ideia, de forma que a sessão pode ser gravada depois, já liberada. Quem
+   * chama deve garantir que a sessão não é alterada durante a captura.
+   *
+   * @param session Sessão a capturar.
+   * @return Dados capturados.
+   */
+  static Capture capture(Session session) {
+    Tally tally = session.getTally();
+    Idea[] ideas = session.getIdeasView().toArray(new Idea[0]);
+    User[][] voters = new User[ideas.length][];
+    Idea[] mergedInto = new Idea[ideas.length];
+    boolean[] withdrawn = new boolean[ideas.length];
+    User[] none = new User[0];
+    for (int i = 0; i < ideas.length; i++) {
+      voters[i] = tally.hasBallots() ? none : tally.getVoters(ideas[i]);
+      mergedInto[i] = ideas[i].getMergedInto();
+      withdrawn[i] = ideas[i].isWithdrawn();
+    }
+    return new Capture(session.getOwner(), session.getDescription(), session.getVotingLimit(),
+        session.getPhase(), session.getVotingStrategy(),
+        session.getParticipantsView().toArray(new User[0]), session.getLedger().getWeights(),
+        ideas, voters, tally.getBallots(), mergedInto, withdrawn);
+  }
+
+  /**
+   * Método para a gravação dos dados capturados de uma sessão.
+   *
+   * @param session Dados capturados.
+   * @param output Fluxo de saída, que não é fechado.
+   * @throws IOException Se a gravação falhar.
+   */
+  static void encode(Capture session, OutputStream output) throws IOException {
+    Encoder out = new Encoder(output);
+    out.writeInt(MAGIC);
+    out.writeVarLong(VERSION);
+
+    out.writeUser(session.owner);
+    out.writeString(session.description);
+    out.writeVarLong(session.votingLimit);
+    out.write(session.phase.ordinal());
+    out.write(session.strategy.ordinal());
+
+    out.writeVarLong(session.participants.length);
+    for (User user : session.participants) {
+      out.writeUser(user);
+    }
+    out.writeVarLong(session.weights.size());
+    for (Map.Entry<User, Integer> weight : session.weights.entrySet()) {
+      out.writeUser(weight.getKey());
+      out.writeVarLong(weight.getValue());
+    }
+    Idea[] ideas = session.ideas;
+    out.writeVarLong(ideas.length);
+    for (int i = 0; i < ideas.length; i++) {
+      out.writeUser(ideas[i].getAuthor());
+      out.writeString(ideas[i].getDescription());
+      out.writeVarLong(session.voters[i].length);
+      for (User voter : session.voters[i]) {
+        out.writeUser(voter);
+      }
+    }
+    out.writeVarLong(session.ballots.size());
+    for (Map.Entry<User, Idea[]> ballot : session.ballots.entrySet()) {
+      out.writeUser(ballot.getKey());
+      out.writeVarLong(ballot.getValue().length);
+      for (Idea idea : ballot.getValue()) {
+        out.writeVarLong(idea.getIndex());
+      }
+    }
+    List<Integer> merged = new ArrayList<>();
+    List<Integer> withdrawn = new ArrayList<>();
+    for (int i = 0; i < ideas.length; i++) {
+      if (session.mergedInto[i] != null) {
+        merged.add(i);
+      }
+      if (session.withdrawn[i]) {
+        withdrawn.add(i);
+      }
+    }
+    out.writeVarLong(merged.size());
+    for (int index : merged) {
+      out.writeVarLong(ideas[index].getIndex());
+      out.writeVarLong(session.mergedInto[index].getIndex());
+    }
+    out.writeVarLong(withdrawn.size());
+    for (int index : withdrawn) {
+      out.writeVarLong(ideas[index].getIndex());
+    }
+    out.flush();
+  }
+
+  /**
+   * Método para a leitura de uma sessão gravada, montando-a em memória.
+   *
+   * @param input Fluxo de entrada, de preferência com buffer, que não é fechado.
+   * @return Sessão lida.
+   * @throws IOException Se a leitura falhar ou o formato não for reconhecido.
+   */
+  public static Session decode(InputStream input) throws IOException {
+    return decode(input, new HashMap<>());
+  }
+
+  /**
+   * Método para a leitura de uma sessão gravada, montando-a em memória.
+   *
+   * @param input Fluxo de entrada, de preferência com buffer, que não é fechado.
+   * @param users Mapa preenchido com os usuários lidos, por identificador.
+   * @return Sessão lida.
+   * @throws IOException Se a leitura falhar, o formato não for reconhecido ou a sessão gravada
+   *         não puder ser montada.
+   */
+  static Session decode(InputStream input, Map<Long, User> users) throws IOException {
+    Builder builder = new Builder(users);
+    try {
+      decode(input, builder);
+      return builder.finish();
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new IOException("Sessão gravada inconsistente", e);
+    }
+  }
+
+  /**
+   * Método para a leitura em fluxo de uma sessão gravada, entregando cada parte a um visitante
+   * assim que é lida, sem montar a sessão em memória.
+   *
+   * @param input Fluxo de entrada, de preferência com buffer, que não é fechado.
+   * @param visitor Visitante que recebe as partes da sessão.
+   * @throws IOException Se a leitura falhar, o formato não for reconhecido ou um valor lido for
+   *         inválido, como uma fase, uma ideia ou um usuário inexistentes.
+   */
+  public static void decode(InputStream input, Visitor visitor) throws IOException {
+    Decoder in = new Decoder(input);
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Formato de sessão desconhecido");
+    }
+    long version = in.readVarLong();
+    if (version < 1 || version > VERSION) {
+      throw new IOException("Versão do formato de sessão não suportada: " + version);
+    }
+
+    User owner = in.readUser();
+    String description = in.readString();
+    int votingLimit = in.readVarInt();
+    SessionPhase phase = in.readConstant(SessionPhase.values());
+    visitor.header(owner, description, votingLimit, phase);
+    if (version > 1) {
+      visitor.strategy(in.readConstant(VotingStrategy.values()));
+    }
+
+    long participants = in.readVarLong();
+    for (long i = 0; i < participants; i++) {
+      visitor.participant(in.readUser());
+    }
+    long weights = version > 1 ? in.readVarLong() : 0;
+    for (long i = 0; i < weights; i++) {
+      User user = in.readUser();
+      visitor.weight(user, in.readVarInt());
+    }
+    long ideas = in.readVarLong();
+    for (long i = 0; i < ideas; i++) {
+      User author = in.readUser();
+      String text = in.readString();
+      // Os arranjos crescem com a leitura, para que uma contagem corrompida não os aloque
+      List<User> voters = new ArrayList<>();
+      for (int v = in.readVarInt(); v > 0; v--) {
+        voters.add(in.readUser());
+      }
+      visitor.idea(author, text, voters.toArray(new User[0]));
+    }
+    long ballots = version > 1 ? in.readVarLong() : 0;
+    for (long i = 0; i < ballots; i++) {
+      User voter = in.readUser();
+      int length = in.readVarInt();
+      int[] ranking = new int[Math.min(length, 16)];
+      for (int p = 0; p < length; p++) {
+        if (p == ranking.length) {
+          ranking = Arrays.copyOf(ranking, 2 * p);
+        }
+        ranking[p] = in.readIndex(ideas);
+      }
+      visitor.ballot(voter, Arrays.copyOf(ranking, length));
+    }
+    long merged = version > 2 ? in.readVarLong() : 0;
+    for (long i = 0; i < merged; i++) {
+      int duplicate = in.readIndex(ideas);
+      visitor.merge(duplicate, in.readIndex(ideas));
+    }
+    long withdrawn = version > 3 ? in.readVarLong() : 0;
+    for (long i = 0; i < withdrawn; i++) {
+      visitor.withdrawn(in.readIndex(ideas));
+    }
+  }
+
+  /**
+   * Interface para a visita das partes de uma sessão lida em fluxo, na ordem em que foram
+   * gravadas: cabeçalho, sistema de votação, participantes, pesos, ideias, cédulas, ideias
+   * incorporadas e ideias retiradas.
+   */
+  public interface Visitor {
+
+    /**
+     * Método chamado com o cabeçalho da sessão.
+     *
+     * @param owner Anfitrião.
+     * @param description Texto descritivo da sessão.
+     * @param votingLimit Limite de votos por participante.
+     * @param phase Fase da sessão.
+     */
+    void header(User owner, String description, int votingLimit, SessionPhase phase);
+
+    /**
+     * Método chamado para cada participante, em ordem de entrada.
+     *
+     * @param user Participante.
+     */
+    void participant(User user);
+
+    /**
+     * Método chamado para cada ideia, em ordem de adição.
+     *
+     * @param author Autor da ideia.
+     * @param description Texto descritivo da ideia.
+     * @param voters Votantes da ideia.
+     */
+    void idea(User author, String description, User[] voters);
+
+    /**
+     * Método chamado com o sistema de votação, logo após o cabeçalho. Não é chamado para as
+     * sessões gravadas antes dos sistemas de votação, que são por aprovação.
+     *
+     * @param strategy Sistema de votação.
+     */
+    default void strategy(VotingStrategy strategy) {
+    }
+
+    /**
+     * Método chamado para cada usuário cujo peso de voto foi alterado, antes das ideias.
+     *
+     * @param user Usuário.
+     * @param weight Peso dos votos.
+     */
+    default void weight(User user, int weight) {
+    }
+
+    /**
+     * Método chamado para cada cédula, nos sistemas de cédula, após as ideias.
+     *
+     * @param voter Votante.
+     * @param ranking Índices das ideias, em ordem de adição, por ordem de preferência.
+     */
+    default void ballot(User voter, int[] ranking) {
+    }
+
+    /**
+     * Método chamado para cada ideia incorporada a outra, após as cédulas. Os votos gravados já
+     * refletem a incorporação.
+     *
+     * @param duplicate Índice da ideia incorporada.
+     * @param target Índice da ideia que a incorporou.
+     */
+    default void merge(int duplicate, int target) {
+    }
+
+    /**
+     * Método chamado para cada ideia retirada pelo autor, após as ideias incorporadas. Os votos
+     * gravados já refletem a retirada.
+     *
+     * @param idea Índice da ideia retirada.
+     */
+    default void withdrawn(int idea) {
+    }
+  }
+
+  /**
+   * Classe com os dados de uma sessão capturados para a gravação, que não mudam com a sessão.
+   */
+  static final class Capture {
+
+    private final User owner;
+    private final String description;
+    private final int votingLimit;
+    private final SessionPhase phase;
+    private final VotingStrategy strategy;
+    private final User[] participants;
+    private final Map<User, Integer> weights;
+    private final Idea[] ideas;
+    /**
+     * Votantes de cada ideia, na ordem das ideias.
+     */
+    private final User[][] voters;
+    private final Map<User, Idea[]> ballots;
+    /**
+     * Ideia que incorporou cada ideia, ou nulo, na ordem das ideias.
+     */
+    private final Idea[] mergedInto;
+    /**
+     * Marca de retirada de cada ideia, na ordem das ideias.
+     */
+    private final boolean[] withdrawn;
+
+    private Capture(User owner, String description, int votingLimit, SessionPhase phase,
+        VotingStrategy strategy, User[] participants, Map<User, Integer> weights, Idea[] ideas,
+        User[][] voters, Map<User, Idea[]> ballots, Idea[] mergedInto, boolean[] withdrawn) {
+      this.owner = owner;
+      this.description = description;
+      this.votingLimit = votingLimit;
+      this.phase = phase;
+      this.strategy = strategy;
+      this.participants = participants;
+      this.weights = weights;
+      this.ideas = ideas;
+      this.voters = voters;
+      this.ballots = ballots;
+      this.mergedInto = mergedInto;
+      this.withdrawn = withdrawn;
+    }
+  }
+
+  /**
+   * Classe que monta uma sessão a partir das partes lidas.
+   */
+  private static class Builder implements Visitor {
+
+    private Session session;
+    private SessionPhase phase;
+    private Map<Long, User> users;
+
+    Builder(Map<Long, User> users) {
+      this.users = users;
+    }
+
+    @Override
+    public void header(User owner, String description, int votingLimit, SessionPhase phase) {
+      this.session = new Session(owner, description, votingLimit);
+      this.phase = phase;
+      users.put(owner.getId(), owner);
+    }
+
+    @Override
+    public void participant(User user) {
+      session.restoreParticipant(user);
+      users.put(user.getId(), user);
+    }
+
+    @Override
+    public void idea(User author, String description, User[] voters) {
+      Idea idea = new Idea(author, description);
+      session.restoreIdea(idea);
+      users.put(author.getId(), author);
+      for (User voter : voters) {
+        session.restoreVote(idea, voter);
+        users.put(voter.getId(), voter);
+      }
+    }
+
+    @Override
+    public void strategy(VotingStrategy strategy) {
+      session.restoreStrategy(strategy);
+    }
+
+    @Override
+    public void weight(User user, int weight) {
+      session.restoreWeight(user, weight);
+      users.put(user.getId(), user);
+    }
+
+    @Override
+    public void ballot(User voter, int[] ranking) {
+      Idea[] ideas = new Idea[ranking.length];
+      for (int i = 0; i < ranking.length; i++) {
+        ideas[i] = session.getIdea(ranking[i]);
+      }
+      session.restoreBallot(voter, ideas);
+      users.put(voter.getId(), voter);
+    }
+
+    @Override
+    public void merge(int duplicate, int target) {
+      session.restoreMerged(session.getIdea(duplicate), session.getIdea(target));
+    }
+
+    @Override
+    public void withdrawn(int idea) {
+      session.restoreWithdrawn(session.getIdea(idea));
+    }
+
+    Session finish() {
+      session.restorePhase(phase);
+      return session;
+    }
+  }
+
+  /**
+   * Classe que grava os valores do formato, mantendo o dicionário de usuários.
+   */
+  private static class Encoder {
+
+    private OutputStream out;
+    private Map<User, Integer> dictionary = new HashMap<>();
+
+    Encoder(OutputStream output) {
+      out = new BufferedOutputStream(output, 1 << 16);
+    }
+
+    void write(int value) throws IOException {
+      out.write(value);
+    }
+
+    void writeInt(int value) throws IOException {
+      out.write(value >>> 24);
+      out.write(value >>> 16);
+      out.write(value >>> 8);
+      out.write(value);
+    }
+
+    void writeVarLong(long value) throws IOException {
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+
+    /**
+     * Grava a posição do usuário no dicionário mais um, ou 0 seguido do identificador e do nome
+     * na primeira referência ao usuário.
+     */
+    void writeUser(User user) throws IOException {
+      Integer position = dictionary.get(user);
+      if (position != null) {
+        writeVarLong(position + 1L);
+        return;
+      }
+      dictionary.put(user, dictionary.size());
+      writeVarLong(0);
+      writeVarLong(user.getId());
+      writeString(user.getUsername());
+    }
+
+    /**
+     * Grava o tamanho do texto em bytes mais um, ou 0 para um texto nulo, seguido dos bytes UTF-8.
+     */
+    void writeString(String text) throws IOException {
+      if (text == null) {
+        writeVarLong(0);
+        return;
+      }
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(bytes.length + 1L);
+      out.write(bytes);
+    }
+
+    void flush() throws IOException {
+      out.flush();
+    }
+  }
+
+  /**
+   * Classe que lê os valores do formato, mantendo o dicionário de usuários.
+   */
+  private static class Decoder {
+
+    private InputStream in;
+    private List<User> dictionary = new ArrayList<>();
+
+    Decoder(InputStream input) {
+      in = input;
+    }
+
+    int read() throws IOException {
+      int value = in.read();
+      if (value < 0) {
+        throw new EOFException();
+      }
+      return value;
+    }
+
+    int readInt() throws IOException {
+      return (read() << 24) | (read() << 16) | (read() << 8) | read();
+    }
+
+    long readVarLong() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = read();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Varint malformado");
+    }
+
+    int readVarInt() throws IOException {
+      long value = readVarLong();
+      if (value < 0 || value > Integer.MAX_VALUE) {
+        throw new IOException("Inteiro fora do intervalo: " + value);
+      }
+      return (int) value;
+    }
+
+    int readIndex(long ideas) throws IOException {
+      int index = readVarInt();
+      if (index >= ideas) {
+        throw new IOException("Ideia inexistente: " + index);
+      }
+      return index;
+    }
+
+    <E> E readConstant(E[] values) throws IOException {
+      int ordinal = read();
+      if (ordinal >= values.length) {
+        throw new IOException("Constante inexistente: " + ordinal);
+      }
+      return values[ordinal];
+    }
+
+    User readUser() throws IOException {
+      long reference = readVarLong();
+      if (reference != 0) {
+        if (reference < 0 || reference > dictionary.size()) {
+          throw new IOException("Usuário inexistente: " + reference);
+        }
+        return dictionary.get((int) (reference - 1));
+      }
+      User user = new User(readVarLong(), readString());
+      dictionary.add(user);
+      return user;
+    }
+
+    String readString() throws IOException {
+      long length = readVarLong();
+      if (length == 0) {
+        return null;
+      }
+      if (length < 0 || length - 1 > Integer.MAX_VALUE - 8) {
+        throw new IOException("Tamanho de texto inválido: " + length);
+      }
+      byte[] bytes = in.readNBytes((int) (length - 1));
+      if (bytes.length != length - 1) {
+        throw new EOFException();
+      }
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package main.java;
+
+/**
+ * Classe que representa uma alteração de uma sessão entregue aos seus assinantes. Os eventos são
+ * imutáveis e compartilhados entre os assinantes.
+ * @author hugo
+ */
+public final class SessionEvent {
+
+  /**
+   * Classe de enumeração para representar os tipos de evento.
+   */
+  public enum Type {
+    /** Passagem de fase, com a nova fase. */
+    PHASE,
+    /** Entrada de um participante, com o participante. */
+    PARTICIPANT_JOINED,
+    /** Saída de um participante, com o participante. */
+    PARTICIPANT_LEFT,
+    /** Adição de uma ideia, com a ideia. */
+    IDEA,
+    /** Registro de um voto, com a ideia e o votante. */
+    VOTE,
+    /** Remoção de um voto, com a ideia e o votante. */
+    UNVOTE,
+    /** Registro de uma cédula, com o votante. */
+    BALLOT,
+    /** Incorporação de uma ideia a outra, com a ideia incorporada. */
+    MERGE,
+    /** Retirada de uma ideia pelo autor ao sair da sessão, com a ideia. */
+    WITHDRAWN,
+    /** Alteração dos votos de uma ideia, com a ideia, entregue no lugar dos votos agrupados. */
+    VOTES,
+    /** Eventos perdidos pelo assinante, que deve reler o estado da sessão. */
+    RESYNC
+  }
+
+  private final Type type;
+  private final Session session;
+  private final SessionPhase phase;
+  private final Idea idea;
+  private final User user;
+  /**
+   * Posição do evento no registro de eventos da sessão, definida antes da sua publicação.
+   */
+  long sequence;
+
+  SessionEvent(Type type, Session session, SessionPhase phase, Idea idea, User user) {
+    this.type = type;
+    this.session = session;
+    this.phase = phase;
+    this.idea = idea;
+    this.user = user;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public Session getSession() {
+    return session;
+  }
+
+  /**
+   * Método para a obtenção da nova fase, nos eventos de passagem de fase.
+   *
+   * @return Nova fase, ou nulo nos demais eventos.
+   */
+  public SessionPhase getPhase() {
+    return phase;
+  }
+
+  /**
+   * Método para a obtenção da ideia, nos eventos de ideia, de voto e de incorporação.
+   *
+   * @return Ideia, ou nulo nos demais eventos.
+   */
+  public Idea getIdea() {
+    return idea;
+  }
+
+  /**
+   * Método para a obtenção do participante ou votante do evento.
+   *
+   * @return Usuário, ou nulo nos eventos sem usuário.
+   */
+  public User getUser() {
+    return user;
+  }
+
+  @Override
+  public String toString() {
+    return type + (phase != null ? " " + phase : "")
+        + (idea != null ? " " + idea.getDescription() : "")
+        + (user != null ? " " + user.getUsername() : "");
+  }
+}
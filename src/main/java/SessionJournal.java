@@ -0,0 +1,533 @@
+package main.java;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classe que representa o diário de uma sessão, que torna a sessão persistente. Toda alteração de
+ * estado da sessão (passagem de fase, entrada e saída de participantes, adição de ideias, votos e
+ * remoção de votos) é registrada em um registro de eventos somente de acréscimo, e periodicamente
+ * grava-se uma fotografia completa da sessão, iniciando um novo segmento do registro. Para
+ * recuperar a sessão basta carregar a última fotografia e reaplicar os eventos dos segmentos que a
+ * seguem: em geral um só, mas, se a gravação de uma fotografia não chegou ao fim, também o
+ * segmento iniciado com ela.
+ *
+ * Os votos de um mesmo votante são aplicados e registrados sob o bloqueio listrado do votante na
+ * sessão, de forma que a ordem do registro corresponde à ordem em que os votos foram aceitos, sem
+ * que votantes diferentes disputem o mesmo bloqueio.
+ * @author hugo
+ */
+public class SessionJournal implements Closeable {
+
+  /**
+   * Quantidade padrão de eventos entre duas fotografias.
+   */
+  public static final int DEFAULT_CHECKPOINT_INTERVAL = 1_000_000;
+
+  /**
+   * Diretório com as fotografias e os segmentos do registro.
+   */
+  private Path directory;
+  /**
+   * Sessão registrada.
+   */
+  private Session session;
+  /**
+   * Quantidade de eventos entre duas fotografias.
+   */
+  private int checkpointInterval;
+  /**
+   * Segmento atual do registro de eventos.
+   */
+  private volatile EventLog log;
+  /**
+   * Número do segmento atual, que é também o da última fotografia, a menos que um segmento cheio
+   * tenha sido trocado depois dela.
+   */
+  private long generation;
+  /**
+   * Bloqueio da troca de segmento.
+   */
+  private Object rolling;
+  /**
+   * Eventos registrados desde a última fotografia.
+   */
+  private AtomicInteger eventsSinceCheckpoint;
+  /**
+   * Indica se há uma fotografia agendada.
+   */
+  private AtomicBoolean checkpointScheduled;
+  /**
+   * Executor das fotografias periódicas.
+   */
+  private ExecutorService checkpointer;
+  /**
+   * Falha da última fotografia periódica, relatada na próxima sincronização.
+   */
+  private volatile IOException failure;
+
+  private SessionJournal(Path directory, Session session, long generation,
+      int checkpointInterval) {
+    this.directory = directory;
+    this.session = session;
+    this.generation = generation;
+    this.checkpointInterval = checkpointInterval;
+
+    rolling = new Object();
+    eventsSinceCheckpoint = new AtomicInteger();
+    checkpointScheduled = new AtomicBoolean();
+    checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "session-journal-checkpoint");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Método para o início do registro de uma sessão em um diretório ainda sem diário. A sessão não
+   * deve ser alterada durante a criação do diário.
+   *
+   * @param directory Diretório do diário.
+   * @param session Sessão a registrar.
+   * @return Diário da sessão.
+   * @throws IOException Se o diretório já tiver um diário ou não puder ser gravado.
+   */
+  public static SessionJournal create(Path directory, Session session) throws IOException {
+    return create(directory, session, DEFAULT_CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * Método para o início do registro de uma sessão em um diretório ainda sem diário. A sessão não
+   * deve ser alterada durante a criação do diário.
+   *
+   * @param directory Diretório do diário.
+   * @param session Sessão a registrar.
+   * @param checkpointInterval Quantidade de eventos entre duas fotografias.
+   * @return Diário da sessão.
+   * @throws IOException Se o diretório já tiver um diário ou não puder ser gravado.
+   */
+  public static SessionJournal create(Path directory, Session session, int checkpointInterval)
+      throws IOException {
+    Files.createDirectories(directory);
+    if (latestGeneration(directory) != 0) {
+      throw new IOException("Já existe um diário de sessão em " + directory);
+    }
+    SessionJournal journal = new SessionJournal(directory, session, 0, checkpointInterval);
+    journal.checkpoint();
+    session.setJournal(journal);
+    return journal;
+  }
+
+  /**
+   * Método para a recuperação de uma sessão a partir do seu diário, carregando a última
+   * fotografia e reaplicando os eventos registrados depois dela. O registro continua a partir de
+   * uma nova fotografia do estado recuperado.
+   *
+   * @param directory Diretório do diário.
+   * @return Diário da sessão recuperada.
+   * @throws IOException Se o diário não existir ou não puder ser lido.
+   */
+  public static SessionJournal open(Path directory) throws IOException {
+    return open(directory, DEFAULT_CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * Método para a recuperação de uma sessão a partir do seu diário, carregando a última
+   * fotografia e reaplicando os eventos registrados depois dela. O registro continua a partir de
+   * uma nova fotografia do estado recuperado.
+   *
+   * @param directory Diretório do diário.
+   * @param checkpointInterval Quantidade de eventos entre duas fotografias.
+   * @return Diário da sessão recuperada.
+   * @throws IOException Se o diário não existir ou não puder ser lido.
+   */
+  public static SessionJournal open(Path directory, int checkpointInterval) throws IOException {
+    long generation = latestGeneration(directory);
+    if (generation == 0) {
+      throw new IOException("Não há diário de sessão em " + directory);
+    }
+    Map<Long, User> users = new HashMap<>();
+    Session session;
+    try (InputStream in = new BufferedInputStream(
+        Files.newInputStream(snapshotFile(directory, generation)))) {
+      session = SessionCodec.decode(in, users);
+    }
+    Replay replay = new Replay(session, users);
+    long segment = generation;
+    for (Path tail = segmentFile(directory, segment); Files.exists(tail);
+        tail = segmentFile(directory, ++segment)) {
+      EventLog.read(tail, replay);
+    }
+
+    SessionJournal journal = new SessionJournal(directory, session,
+        Math.max(generation, segment - 1), checkpointInterval);
+    journal.checkpoint();
+    session.setJournal(journal);
+    return journal;
+  }
+
+  public Session getSession() {
+    return session;
+  }
+
+  /**
+   * Método para a gravação de uma fotografia da sessão, que inicia um novo segmento do registro e
+   * descarta a fotografia e os segmentos anteriores. As alterações da sessão ficam suspensas
+   * apenas durante a captura dos dados da sessão e a troca de segmento; a fotografia é gravada em
+   * seguida, com a sessão liberada, e as anteriores só são descartadas depois que ela está em
+   * disco.
+   *
+   * @throws IOException Se a fotografia não puder ser gravada.
+   */
+  public synchronized void checkpoint() throws IOException {
+    long next;
+    EventLog previous;
+    SessionCodec.Capture capture;
+    synchronized (session) {
+      session.lockStripes();
+      try {
+        capture = SessionCodec.capture(session);
+        synchronized (rolling) {
+          next = generation + 1;
+          previous = log;
+          log = new EventLog(segmentFile(directory, next));
+          generation = next;
+        }
+        eventsSinceCheckpoint.set(0);
+      } finally {
+        session.unlockStripes();
+      }
+    }
+    if (previous != null) {
+      previous.close();
+    }
+    writeSnapshot(next, capture);
+    discardBefore(next);
+  }
+
+  /**
+   * Método para forçar a gravação em disco dos eventos registrados até o momento.
+   *
+   * @throws IOException Se a última fotografia periódica tiver falhado.
+   */
+  public void sync() throws IOException {
+    log.sync();
+    IOException last = failure;
+    if (last != null) {
+      failure = null;
+      throw last;
+    }
+  }
+
+  /**
+   * Método para o encerramento do diário, que deixa de registrar as alterações da sessão.
+   */
+  @Override
+  public void close() throws IOException {
+    checkpointer.shutdown();
+    try {
+      checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (session) {
+      session.lockStripes();
+      try {
+        session.setJournal(null);
+        sync();
+        log.close();
+      } finally {
+        session.unlockStripes();
+      }
+    }
+  }
+
+  void recordPhase(SessionPhase phase) {
+    EventLog current = log;
+    while (!current.appendPhase(phase)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordJoin(User user) {
+    EventLog current = log;
+    while (!current.appendJoin(user)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordLeave(User user, boolean withdrawIdeas) {
+    EventLog current = log;
+    while (!current.appendLeave(user, withdrawIdeas)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordIdea(Idea idea) {
+    EventLog current = log;
+    while (!current.appendIdea(idea)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordVote(Idea idea, User voter) {
+    EventLog current = log;
+    while (!current.appendVote(EventLog.VOTE, idea, voter)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordUnvote(Idea idea, User voter) {
+    EventLog current = log;
+    while (!current.appendVote(EventLog.UNVOTE, idea, voter)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordDescription(String description) {
+    EventLog current = log;
+    while (!current.appendDescription(description)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordStrategy(VotingStrategy strategy) {
+    EventLog current = log;
+    while (!current.appendStrategy(strategy)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordWeight(User user, int weight) {
+    EventLog current = log;
+    while (!current.appendWeight(user, weight)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordBallot(User voter, Idea[] ranking) {
+    EventLog current = log;
+    while (!current.appendBallot(voter, ranking)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  void recordMerge(Idea duplicate, Idea target, boolean combine) {
+    EventLog current = log;
+    while (!current.appendMerge(duplicate, target, combine)) {
+      current = roll(current);
+    }
+    counted();
+  }
+
+  /**
+   * Método para a troca de um segmento cheio por um novo, que segue o anterior sem uma fotografia
+   * e é reaplicado junto com ele na recuperação.
+   *
+   * @param full Segmento cheio.
+   * @return Segmento atual.
+   */
+  private EventLog roll(EventLog full) {
+    synchronized (rolling) {
+      if (log == full) {
+        try {
+          long next = generation + 1;
+          log = new EventLog(segmentFile(directory, next));
+          generation = next;
+          full.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      return log;
+    }
+  }
+
+  /**
+   * Método para a contagem de um evento registrado, que agenda uma fotografia ao alcançar o
+   * intervalo entre fotografias.
+   */
+  private void counted() {
+    if (eventsSinceCheckpoint.incrementAndGet() >= checkpointInterval
+        && checkpointScheduled.compareAndSet(false, true)) {
+      checkpointer.execute(() -> {
+        try {
+          checkpoint();
+        } catch (IOException e) {
+          failure = e;
+        } finally {
+          checkpointScheduled.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Método para a gravação de uma fotografia em um arquivo temporário, que só substitui o nome
+   * definitivo depois de gravado em disco.
+   *
+   * @param number Número da fotografia.
+   * @param capture Dados capturados da sessão.
+   * @throws IOException Se a gravação falhar.
+   */
+  private void writeSnapshot(long number, SessionCodec.Capture capture) throws IOException {
+    Path target = snapshotFile(directory, number);
+    Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+      SessionCodec.encode(capture, file);
+      file.getChannel().force(true);
+    }
+    Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Método para o descarte das fotografias e dos segmentos anteriores a uma fotografia gravada.
+   *
+   * @param number Número da fotografia gravada.
+   * @throws IOException Se o diretório não puder ser listado ou um arquivo não puder ser apagado.
+   */
+  private void discardBefore(long number) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+        "{snapshot-*.bin,events-*.log}")) {
+      for (Path file : files) {
+        if (numberOf(file) < number) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  private static Path snapshotFile(Path directory, long number) {
+    return directory.resolve(String.format("snapshot-%019d.bin", number));
+  }
+
+  private static Path segmentFile(Path directory, long number) {
+    return directory.resolve(String.format("events-%019d.log", number));
+  }
+
+  /**
+   * Método para a busca do número da última fotografia de um diretório.
+   *
+   * @param directory Diretório do diário.
+   * @return Número da última fotografia, ou 0 se não houver nenhuma.
+   * @throws IOException Se o diretório não puder ser listado.
+   */
+  private static long latestGeneration(Path directory) throws IOException {
+    long latest = 0;
+    if (!Files.isDirectory(directory)) {
+      return latest;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.bin")) {
+      for (Path file : files) {
+        latest = Math.max(latest, numberOf(file));
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * Método para a leitura do número de uma fotografia ou de um segmento pelo nome do arquivo.
+   *
+   * @param file Arquivo da fotografia ou do segmento.
+   * @return Número do arquivo.
+   */
+  private static long numberOf(Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+  }
+
+  /**
+   * Classe que reaplica sobre uma sessão recuperada os eventos de um segmento do registro.
+   */
+  private static class Replay implements EventLog.Visitor {
+
+    private Session session;
+    private Map<Long, User> users;
+
+    Replay(Session session, Map<Long, User> users) {
+      this.session = session;
+      this.users = users;
+    }
+
+    @Override
+    public void visit(byte type, ByteBuffer data) throws IOException {
+      switch (type) {
+        case EventLog.PHASE:
+          session.restorePhase(SessionPhase.values()[data.get()]);
+          break;
+        case EventLog.JOIN:
+          long id = data.getLong();
+          String username = EventLog.getString(data);
+          session.restoreParticipant(users.computeIfAbsent(id, key -> new User(key, username)));
+          break;
+        case EventLog.LEAVE:
+          User leaving = users.get(data.getLong());
+          session.removeParticipant(leaving, data.hasRemaining() && data.get() != 0);
+          break;
+        case EventLog.IDEA:
+          User author = users.get(data.getLong());
+          session.restoreIdea(new Idea(author, EventLog.getString(data)));
+          break;
+        case EventLog.VOTE:
+          Idea voted = session.getIdea(data.getInt());
+          session.restoreVote(voted, users.get(data.getLong()));
+          break;
+        case EventLog.UNVOTE:
+          Idea unvoted = session.getIdea(data.getInt());
+          session.withdrawVote(unvoted, users.get(data.getLong()));
+          break;
+        case EventLog.DESCRIPTION:
+          session.setDescription(EventLog.getString(data));
+          break;
+        case EventLog.STRATEGY:
+          session.restoreStrategy(VotingStrategy.values()[data.get()]);
+          break;
+        case EventLog.WEIGHT:
+          User weighted = users.get(data.getLong());
+          session.restoreWeight(weighted, data.getInt());
+          break;
+        case EventLog.BALLOT:
+          User voter = users.get(data.getLong());
+          Idea[] ranking = new Idea[data.getInt()];
+          for (int i = 0; i < ranking.length; i++) {
+            ranking[i] = session.getIdea(data.getInt());
+          }
+          session.restoreBallot(voter, ranking);
+          break;
+        case EventLog.MERGE:
+          Idea duplicate = session.getIdea(data.getInt());
+          Idea target = session.getIdea(data.getInt());
+          session.restoreMerge(duplicate, target, data.get() != 0);
+          break;
+        default:
+          throw new IOException("Evento de sessão desconhecido: " + type);
+      }
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package main.java;
+
+import java.util.List;
+
+/**
+ * Interface para o recebimento dos eventos de uma sessão assinada com
+ * {@link Session#subscribe(SessionListener)}. Os eventos chegam em lotes, em ordem, na thread do
+ * executor da assinatura, e nunca há duas entregas simultâneas para a mesma assinatura.
+ * @author hugo
+ */
+@FunctionalInterface
+public interface SessionListener {
+
+  /**
+   * Método chamado com um lote de eventos. Se lançar uma exceção, a assinatura é cancelada.
+   *
+   * @param events Eventos em ordem de ocorrência.
+   */
+  void onEvents(List<SessionEvent> events);
+}
@@ -0,0 +1,120 @@
+package main.java;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe que representa as métricas de uma sessão: votos aceitos, recusados por motivo e
+ * retirados, ideias adicionadas e a latência das operações. Os contadores são {@link LongAdder}s,
+ * que não bloqueiam nem disputam a mesma posição de memória entre threads.
+ *
+ * As métricas são opcionais: uma sessão só as registra depois de ligada a um
+ * {@link MetricsRegistry}, e sem elas o custo em cada operação é apenas a leitura de um campo
+ * nulo.
+ * @author hugo
+ */
+public final class SessionMetrics {
+
+  /**
+   * Classe de enumeração para representar as operações medidas.
+   */
+  public enum Operation {
+    /** Adição de ideias, uma a uma ou em lote. */
+    ADD_IDEA,
+    /** Ranqueamento das ideias, completo, das primeiras ou de uma página. */
+    RANK_IDEAS,
+    /** Registro de votos e cédulas. */
+    VOTE
+  }
+
+  private static final VoteRejection[] REJECTIONS = VoteRejection.values();
+  private static final Operation[] OPERATIONS = Operation.values();
+
+  private final String name;
+  private final LongAdder accepted;
+  private final LongAdder[] rejected;
+  private final LongAdder withdrawn;
+  private final LongAdder ideas;
+  private final LatencyHistogram[] latencies;
+
+  SessionMetrics(String name) {
+    this.name = name;
+    accepted = new LongAdder();
+    rejected = new LongAdder[REJECTIONS.length];
+    for (int i = 0; i < rejected.length; i++) {
+      rejected[i] = new LongAdder();
+    }
+    withdrawn = new LongAdder();
+    ideas = new LongAdder();
+    latencies = new LatencyHistogram[OPERATIONS.length];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * Método para a obtenção do nome da sessão nas métricas exportadas.
+   *
+   * @return Nome da sessão.
+   */
+  public String getName() {
+    return name;
+  }
+
+  public long getAcceptedVotes() {
+    return accepted.sum();
+  }
+
+  /**
+   * Método para a obtenção da quantidade de votos recusados por um motivo.
+   *
+   * @param reason Motivo da recusa.
+   * @return Quantidade de votos recusados.
+   */
+  public long getRejectedVotes(VoteRejection reason) {
+    return rejected[reason.ordinal()].sum();
+  }
+
+  public long getWithdrawnVotes() {
+    return withdrawn.sum();
+  }
+
+  public long getAddedIdeas() {
+    return ideas.sum();
+  }
+
+  /**
+   * Método para a obtenção do histograma de latência de uma operação.
+   *
+   * @param operation Operação medida.
+   * @return Histograma da operação.
+   */
+  public LatencyHistogram getLatency(Operation operation) {
+    return latencies[operation.ordinal()];
+  }
+
+  void recordAccepted(int votes) {
+    accepted.add(votes);
+  }
+
+  void recordRejected(VoteRejection reason, int votes) {
+    rejected[reason.ordinal()].add(votes);
+  }
+
+  void recordWithdrawn() {
+    withdrawn.increment();
+  }
+
+  void recordIdeas(int added) {
+    ideas.add(added);
+  }
+
+  /**
+   * Método para o registro da duração de uma operação iniciada em {@code start}.
+   *
+   * @param operation Operação medida.
+   * @param start Instante de início, de {@link System#nanoTime()}.
+   */
+  void recordLatency(Operation operation, long start) {
+    latencies[operation.ordinal()].record(System.nanoTime() - start);
+  }
+}
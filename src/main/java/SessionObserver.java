@@ -0,0 +1,46 @@
+package main.java;
+
+/**
+ * Interface interna para a observação síncrona das alterações de uma sessão, usada pelos
+ * componentes que precisam manter índices atualizados a partir dela. Os métodos são chamados na
+ * thread que fez a alteração, logo após a sua aplicação, e devem ser rápidos.
+ * @author hugo
+ */
+interface SessionObserver {
+
+  /**
+   * Método chamado quando um usuário passa a participar da sessão.
+   *
+   * @param session Sessão alterada.
+   * @param user Participante.
+   */
+  default void participantJoined(Session session, User user) {
+  }
+
+  /**
+   * Método chamado quando um participante deixa a sessão.
+   *
+   * @param session Sessão alterada.
+   * @param user Participante.
+   */
+  default void participantLeft(Session session, User user) {
+  }
+
+  /**
+   * Método chamado quando uma ideia é adicionada à sessão.
+   *
+   * @param session Sessão alterada.
+   * @param idea Ideia adicionada, com o índice já definido.
+   */
+  default void ideaAdded(Session session, Idea idea) {
+  }
+
+  /**
+   * Método chamado quando a sessão passa de fase.
+   *
+   * @param session Sessão alterada.
+   * @param phase Nova fase.
+   */
+  default void phaseChanged(Session session, SessionPhase phase) {
+  }
+}
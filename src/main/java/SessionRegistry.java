@@ -0,0 +1,679 @@
+package main.java;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.FileOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Classe que representa o registro das sessões hospedadas em um nó, que cria, consulta, passa de
+ * fase e descarta sessões pelo seu identificador, e responde em quais sessões um usuário
+ * participa.
+ *
+ * As sessões ficam distribuídas em fragmentos pelo identificador, de forma que threads em núcleos
+ * diferentes raramente disputam o mesmo fragmento. Para manter a memória limitada, as sessões
+ * ociosas podem ser descarregadas em disco no formato de {@link SessionCodec}, e são recarregadas
+ * de forma transparente no próximo acesso. Cada fragmento também pode ter um limite de sessões
+ * residentes, acima do qual a sessão usada há mais tempo é descarregada. As sessões com
+ * assinaturas ativas não são descarregadas nem descartadas por ociosidade, para que os assinantes
+ * continuem a receber as alterações; o intervalo dos retratos e a semelhança mínima da detecção de
+ * repetições são restaurados na recarga.
+ *
+ * Um índice de busca pode ser ligado ao registro, e passa a receber as ideias adicionadas às
+ * sessões. Os votos das ideias no índice são atualizados quando a sessão passa ao ranqueamento, é
+ * descarregada ou é descartada; as sessões descartadas continuam no índice, como arquivo. Da
+ * mesma forma, um índice de usuários pode ser ligado ao registro para somar a atividade de cada
+ * usuário em todas as sessões e limitar os seus votos por período.
+ *
+ * Uma sessão descarregada recusa as alterações feitas pelo objeto antigo, portanto as sessões
+ * devem ser obtidas do registro a cada uso, e não guardadas por quem as usa. As alterações devem
+ * ser feitas por {@link #withSession(long, Function)}, durante a qual a sessão não é descarregada.
+ * @author hugo
+ */
+public class SessionRegistry {
+
+  /**
+   * Quantidade padrão de fragmentos, uma potência de 2.
+   */
+  private static final int DEFAULT_SHARDS = 64;
+
+  /**
+   * Fragmentos com as sessões, cada um um mapa do identificador para a entrada da sessão.
+   */
+  private Map<Long, Entry>[] shards;
+  /**
+   * Sessões em que cada usuário participa, por identificador.
+   */
+  private Map<User, Set<Long>> userSessions;
+  /**
+   * Próximo identificador de sessão.
+   */
+  private AtomicLong nextId;
+  /**
+   * Quantidade de sessões residentes em memória.
+   */
+  private AtomicInteger resident;
+  /**
+   * Diretório onde as sessões ociosas são descarregadas, ou nulo para descartá-las.
+   */
+  private Path offloadDirectory;
+  /**
+   * Limite de sessões residentes por fragmento.
+   */
+  private int maxResidentPerShard;
+  /**
+   * Relógio em milissegundos, usado para medir a ociosidade das sessões.
+   */
+  private LongSupplier clock;
+  /**
+   * Registro de métricas ao qual as sessões são ligadas, ou nulo se as métricas estiverem
+   * desligadas.
+   */
+  private volatile MetricsRegistry metrics;
+  /**
+   * Índice de busca que recebe as ideias das sessões, ou nulo se não houver.
+   */
+  private volatile SearchIndex search;
+  /**
+   * Índice central dos usuários ao qual as sessões são ligadas, ou nulo se não houver.
+   */
+  private volatile UserIndex users;
+
+  /**
+   * Construtor para um registro sem limite de sessões residentes, que descarta as sessões ociosas
+   * em vez de descarregá-las.
+   */
+  public SessionRegistry() {
+    this(null, Integer.MAX_VALUE, System::currentTimeMillis);
+  }
+
+  /**
+   * Construtor para um registro que descarrega as sessões ociosas em disco.
+   *
+   * @param offloadDirectory Diretório onde as sessões são descarregadas, ou nulo para descartá-las.
+   * @param maxResidentPerShard Limite de sessões residentes por fragmento.
+   * @param clock Relógio em milissegundos.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public SessionRegistry(Path offloadDirectory, int maxResidentPerShard, LongSupplier clock) {
+    this.offloadDirectory = offloadDirectory;
+    this.maxResidentPerShard = maxResidentPerShard;
+    this.clock = clock;
+
+    shards = new Map[DEFAULT_SHARDS];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new ConcurrentHashMap<>();
+    }
+    userSessions = new ConcurrentHashMap<>();
+    nextId = new AtomicLong(1);
+    resident = new AtomicInteger();
+  }
+
+  /**
+   * Método para a criação de uma nova sessão no registro.
+   *
+   * @param owner Anfitrião.
+   * @param description Texto descritivo da sessão.
+   * @param votingLimit Limite de votos por participante.
+   * @return Identificador da sessão criada.
+   */
+  public long create(User owner, String description, int votingLimit) {
+    long id = nextId.getAndIncrement();
+    Entry entry = new Entry(id);
+    entry.attach(new Session(owner, description, votingLimit));
+    Map<Long, Entry> shard = shardOf(id);
+    shard.put(id, entry);
+    enforceLimit(shard);
+    return id;
+  }
+
+  /**
+   * Método para a obtenção de uma sessão, recarregando-a se ela tiver sido descarregada. A sessão
+   * pode ser descarregada logo depois, e passar a recusar as alterações; para alterá-la, veja
+   * {@link #withSession(long, Function)}.
+   *
+   * @param id Identificador da sessão.
+   * @return Sessão, ou nulo se o identificador não estiver registrado.
+   */
+  public Session get(long id) {
+    Map<Long, Entry> shard = shardOf(id);
+    Entry entry = shard.get(id);
+    if (entry == null) {
+      return null;
+    }
+    boolean loaded = entry.session == null;
+    Session session = entry.resident();
+    if (loaded) {
+      enforceLimit(shard);
+    }
+    return session;
+  }
+
+  /**
+   * Método para o uso de uma sessão por uma ação, recarregando-a se ela tiver sido descarregada.
+   * Enquanto a ação é executada, a sessão não é descarregada nem descartada por ociosidade ou pelo
+   * limite de sessões residentes, de forma que as alterações feitas pela ação não se perdem.
+   *
+   * @param id Identificador da sessão.
+   * @param action Ação executada com a sessão.
+   * @return Resultado da ação, ou nulo se o identificador não estiver registrado.
+   */
+  public <T> T withSession(long id, Function<Session, T> action) {
+    Map<Long, Entry> shard = shardOf(id);
+    Entry entry;
+    boolean loaded;
+    T result;
+    while (true) {
+      entry = shard.get(id);
+      if (entry == null) {
+        return null;
+      }
+      entry.lock.readLock().lock();
+      try {
+        // A entrada pode ter sido descartada entre a consulta e o bloqueio, e não é recarregada
+        if (entry.discarded) {
+          continue;
+        }
+        loaded = entry.session == null;
+        result = action.apply(entry.resident());
+        break;
+      } finally {
+        entry.lock.readLock().unlock();
+      }
+    }
+    if (loaded) {
+      enforceLimit(shard);
+    }
+    return result;
+  }
+
+  /**
+   * Método para a passagem de uma sessão para a próxima fase.
+   *
+   * @param id Identificador da sessão.
+   * @return Nova fase da sessão, ou nulo se o identificador não estiver registrado.
+   */
+  public SessionPhase nextPhase(long id) {
+    return withSession(id, session -> {
+      session.nextPhase();
+      return session.getPhase();
+    });
+  }
+
+  /**
+   * Método para o descarte definitivo de uma sessão, inclusive da sua cópia em disco, que espera
+   * as ações em andamento sobre ela. Não deve ser chamado por uma ação sobre a mesma sessão.
+   *
+   * @param id Identificador da sessão.
+   * @return Verdadeiro se a sessão estava registrada.
+   */
+  public boolean evict(long id) {
+    Entry entry = shardOf(id).remove(id);
+    if (entry == null) {
+      return false;
+    }
+    entry.lock.writeLock().lock();
+    try {
+      entry.discard();
+    } finally {
+      entry.lock.writeLock().unlock();
+    }
+    return true;
+  }
+
+  /**
+   * Método para o descarregamento, ou descarte se não houver diretório de descarga, das sessões
+   * sem acesso há um tempo mínimo.
+   *
+   * @param idleMillis Tempo mínimo sem acesso, em milissegundos.
+   * @return Quantidade de sessões descarregadas ou descartadas.
+   */
+  public int evictIdle(long idleMillis) {
+    long threshold = clock.getAsLong() - idleMillis;
+    int evicted = 0;
+    for (Map<Long, Entry> shard : shards) {
+      for (Entry entry : shard.values()) {
+        if (entry.lastAccess <= threshold && entry.session != null && release(shard, entry)) {
+          evicted++;
+        }
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Método para a consulta das sessões em que um usuário participa, residentes ou não.
+   *
+   * @param user Usuário a consultar.
+   * @return Identificadores das sessões.
+   */
+  public long[] sessionsOf(User user) {
+    Set<Long> ids = userSessions.getOrDefault(user, Collections.emptySet());
+    return ids.stream().mapToLong(Long::longValue).sorted().toArray();
+  }
+
+  /**
+   * Método para a obtenção da quantidade de sessões registradas, residentes ou não.
+   *
+   * @return Quantidade de sessões.
+   */
+  public int size() {
+    int size = 0;
+    for (Map<Long, Entry> shard : shards) {
+      size += shard.size();
+    }
+    return size;
+  }
+
+  /**
+   * Método para a obtenção da quantidade de sessões residentes em memória.
+   *
+   * @return Quantidade de sessões residentes.
+   */
+  public int residentCount() {
+    return resident.get();
+  }
+
+  /**
+   * Método para a ligação das sessões do registro a um registro de métricas, com o identificador
+   * como nome. As sessões já residentes são ligadas imediatamente e as demais ao serem criadas ou
+   * recarregadas; as descartadas são desligadas.
+   *
+   * @param metrics Registro de métricas.
+   */
+  public void setMetrics(MetricsRegistry metrics) {
+    this.metrics = metrics;
+    for (Map<Long, Entry> shard : shards) {
+      for (Entry entry : shard.values()) {
+        Session session = entry.session;
+        if (session != null) {
+          metrics.attach(Long.toString(entry.id), session);
+        }
+      }
+    }
+  }
+
+  /**
+   * Método para a ligação das sessões do registro a um índice de busca, que passa a receber as
+   * ideias adicionadas. As ideias das sessões já registradas, residentes ou descarregadas, são
+   * indexadas imediatamente e substituem as entradas anteriores das mesmas sessões no índice. Os
+   * próximos identificadores de sessão são maiores que os já indexados, para que as sessões novas
+   * não se misturem às arquivadas.
+   *
+   * @param index Índice de busca.
+   */
+  public void setSearchIndex(SearchIndex index) {
+    nextId.accumulateAndGet(index.maxSession() + 1, Math::max);
+    search = index;
+    for (Map<Long, Entry> shard : shards) {
+      for (Entry entry : shard.values()) {
+        entry.index(index);
+      }
+    }
+  }
+
+  public SearchIndex getSearchIndex() {
+    return search;
+  }
+
+  /**
+   * Método para a ligação das sessões do registro a um índice de usuários, que passa a somar os
+   * votos, ideias e entradas em sessões de cada usuário, e a aplicar o seu limite de votos. As
+   * sessões já residentes são ligadas imediatamente e as demais ao serem criadas ou recarregadas;
+   * a atividade anterior à ligação não é contada.
+   *
+   * @param index Índice de usuários.
+   */
+  public void setUserIndex(UserIndex index) {
+    users = index;
+    for (Map<Long, Entry> shard : shards) {
+      for (Entry entry : shard.values()) {
+        Session session = entry.session;
+        if (session != null) {
+          session.setUserIndex(index);
+        }
+      }
+    }
+  }
+
+  public UserIndex getUserIndex() {
+    return users;
+  }
+
+  private Map<Long, Entry> shardOf(long id) {
+    return shards[(int) (id * 0x9E3779B97F4A7C15L >>> 58)];
+  }
+
+  /**
+   * Método que descarrega a sessão usada há mais tempo de um fragmento que excedeu o limite de
+   * sessões residentes. As sessões em uso são mantidas, e a seguinte mais antiga é descarregada no
+   * seu lugar.
+   *
+   * @param shard Fragmento a verificar.
+   */
+  private void enforceLimit(Map<Long, Entry> shard) {
+    List<Entry> busy = null;
+    while (true) {
+      Entry oldest = null;
+      int count = 0;
+      for (Entry entry : shard.values()) {
+        if (entry.session != null) {
+          count++;
+          if ((oldest == null || entry.lastAccess < oldest.lastAccess)
+              && (busy == null || !busy.contains(entry))) {
+            oldest = entry;
+          }
+        }
+      }
+      if (count <= maxResidentPerShard || oldest == null) {
+        return;
+      }
+      if (!release(shard, oldest)) {
+        if (busy == null) {
+          busy = new ArrayList<>();
+        }
+        busy.add(oldest);
+      }
+    }
+  }
+
+  /**
+   * Método que libera uma sessão da memória, descarregando-a se houver diretório de descarga ou
+   * descartando-a caso contrário.
+   *
+   * @param shard Fragmento da sessão.
+   * @param entry Entrada da sessão.
+   * @return Verdadeiro se a sessão foi liberada, falso se ela estiver em uso, tiver assinaturas
+   *         ou já tiver sido liberada.
+   */
+  private boolean release(Map<Long, Entry> shard, Entry entry) {
+    // Uma sessão em uso por withSession não é liberada, e os usos seguintes esperam a liberação
+    Lock exclusive = entry.lock.writeLock();
+    if (!exclusive.tryLock()) {
+      return false;
+    }
+    try {
+      Session current = entry.session;
+      if (current != null && current.hasSubscriptions()) {
+        return false;
+      }
+      if (offloadDirectory == null) {
+        if (shard.remove(entry.id, entry)) {
+          entry.discard();
+          return true;
+        }
+        return false;
+      }
+      return entry.offload();
+    } finally {
+      exclusive.unlock();
+    }
+  }
+
+  /**
+   * Classe que representa a entrada de uma sessão no registro, residente ou descarregada, e que
+   * mantém o índice de participação dos usuários a partir das alterações da sessão.
+   */
+  private class Entry implements SessionObserver {
+
+    /**
+     * Identificador da sessão.
+     */
+    private final long id;
+    /**
+     * Sessão, ou nulo se ela estiver descarregada.
+     */
+    private volatile Session session;
+    /**
+     * Instante do último acesso, em milissegundos.
+     */
+    private volatile long lastAccess;
+    /**
+     * Bloqueio da sessão, compartilhado pelos usos e exclusivo na liberação e no descarte.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Indica se a entrada foi descartada, e não pode mais ser recarregada.
+     */
+    private volatile boolean discarded;
+    /**
+     * Intervalo dos retratos da sessão descarregada, restaurado na recarga.
+     */
+    private long snapshotInterval = -1;
+    /**
+     * Semelhança mínima da detecção de repetições da sessão descarregada, restaurada na recarga.
+     */
+    private double duplicateThreshold;
+
+    Entry(long id) {
+      this.id = id;
+      lastAccess = clock.getAsLong();
+    }
+
+    @Override
+    public void participantJoined(Session session, User user) {
+      userSessions.computeIfAbsent(user, key -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    @Override
+    public void participantLeft(Session session, User user) {
+      userSessions.computeIfPresent(user, (key, ids) -> {
+        ids.remove(id);
+        return ids.isEmpty() ? null : ids;
+      });
+    }
+
+    @Override
+    public void ideaAdded(Session session, Idea idea) {
+      SearchIndex index = search;
+      if (index != null) {
+        index.add(id, idea);
+      }
+    }
+
+    @Override
+    public void phaseChanged(Session session, SessionPhase phase) {
+      SearchIndex index = search;
+      if (index != null && phase == SessionPhase.RANKING) {
+        index.updateVotes(id, session);
+      }
+    }
+
+    /**
+     * Método que indexa as ideias da sessão, lendo apenas as ideias da cópia em disco se ela
+     * estiver descarregada. Uma ideia adicionada ao mesmo tempo pode ser indexada duas vezes, o
+     * que apenas a substitui no índice.
+     */
+    synchronized void index(SearchIndex index) {
+      index.removeSession(id);
+      Session current = session;
+      if (current != null) {
+        for (Idea idea : current.getIdeas()) {
+          index.add(id, idea);
+        }
+        return;
+      }
+      try (InputStream in = new BufferedInputStream(Files.newInputStream(file()))) {
+        SessionCodec.decode(in, new SessionCodec.Visitor() {
+          private int next;
+
+          @Override
+          public void header(User owner, String description, int votingLimit,
+              SessionPhase phase) {
+          }
+
+          @Override
+          public void participant(User user) {
+          }
+
+          @Override
+          public void idea(User author, String description, User[] voters) {
+            index.add(id, next++, author.getUsername(), description, voters.length);
+          }
+        });
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /**
+     * Método que torna a sessão residente, passando a observá-la.
+     */
+    private void attach(Session attached) {
+      attached.addObserver(this);
+      attached.setUserIndex(users);
+      MetricsRegistry registry = metrics;
+      if (registry != null) {
+        registry.attach(Long.toString(id), attached);
+      }
+      session = attached;
+      resident.incrementAndGet();
+    }
+
+    /**
+     * Método para a obtenção da sessão, que é recarregada do disco se estiver descarregada.
+     */
+    Session resident() {
+      lastAccess = clock.getAsLong();
+      Session current = session;
+      if (current != null) {
+        return current;
+      }
+      synchronized (this) {
+        if (discarded) {
+          return null;
+        }
+        if (session == null) {
+          Session loaded;
+          try (InputStream in = new BufferedInputStream(Files.newInputStream(file()))) {
+            loaded = SessionCodec.decode(in);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          // A configuração não é gravada pelo formato, e é restaurada da descarga
+          loaded.setSnapshotInterval(snapshotInterval);
+          loaded.setDuplicateThreshold(duplicateThreshold);
+          attach(loaded);
+        }
+        return session;
+      }
+    }
+
+    /**
+     * Método que descarrega a sessão em disco e a retira da memória. A sessão é gravada sem votos
+     * nem outras alterações em andamento, e deixa de aceitá-las logo após a gravação, para que as
+     * alterações feitas por quem ainda guarda o objeto sejam recusadas em vez de perdidas. A cópia
+     * é gravada em um arquivo temporário e só então substitui a anterior, de forma que uma falha
+     * na gravação não a corrompe.
+     */
+    synchronized boolean offload() {
+      Session current = session;
+      if (current == null) {
+        return false;
+      }
+      synchronized (current) {
+        if (current.hasSubscriptions()) {
+          return false;
+        }
+        current.lockStripes();
+        try {
+          Path target = file();
+          Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+          try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+            SessionCodec.encode(current, out);
+            out.getChannel().force(true);
+          }
+          Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+          snapshotInterval = current.getSnapshotInterval();
+          duplicateThreshold = current.getDuplicateThreshold();
+          current.retire();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } finally {
+          current.unlockStripes();
+        }
+      }
+      SearchIndex index = search;
+      if (index != null) {
+        index.updateVotes(id, current);
+      }
+      current.removeObserver(this);
+      session = null;
+      resident.decrementAndGet();
+      return true;
+    }
+
+    /**
+     * Método que descarta a sessão, retirando-a do índice de participação e do disco.
+     */
+    synchronized void discard() {
+      discarded = true;
+      Session current = session;
+      MetricsRegistry registry = metrics;
+      if (registry != null) {
+        registry.detach(Long.toString(id), current);
+      }
+      SearchIndex index = search;
+      if (current != null) {
+        if (index != null) {
+          index.updateVotes(id, current);
+        }
+        current.retire();
+        current.removeObserver(this);
+        for (User user : current.getParticipants()) {
+          participantLeft(current, user);
+        }
+        session = null;
+        resident.decrementAndGet();
+      } else if (offloadDirectory != null) {
+        // Lê apenas os participantes da cópia em disco, sem montar a sessão
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file()))) {
+          SessionCodec.decode(in, new SessionCodec.Visitor() {
+            @Override
+            public void header(User owner, String description, int votingLimit,
+                SessionPhase phase) {
+            }
+
+            @Override
+            public void participant(User user) {
+              participantLeft(null, user);
+            }
+
+            @Override
+            public void idea(User author, String description, User[] voters) {
+            }
+          });
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      if (offloadDirectory != null) {
+        try {
+          Files.deleteIfExists(file());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    private Path file() {
+      return offloadDirectory.resolve(id + ".session");
+    }
+  }
+}
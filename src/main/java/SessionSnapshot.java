@@ -0,0 +1,207 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classe que representa um retrato imutável de uma sessão: a fase, a descrição, o sistema de
+ * votação, os participantes, as ideias e as pontuações das ideias em um mesmo instante. O retrato
+ * é lido sem bloqueio e nunca reflete um voto ou um lote de votos aplicado pela metade, de forma
+ * que painéis e exportações não disputam a sessão com os votantes.
+ *
+ * Retratos consecutivos compartilham a estrutura que não mudou entre eles: o arranjo de ideias,
+ * que só cresce, o arranjo de participantes, substituído apenas quando eles mudam, e os blocos de
+ * pontuações, copiados um a um pelo placar da sessão quando uma ideia do bloco recebe um voto.
+ *
+ * Os objetos ideia são os da sessão, portanto as suas contagens e marcas de repetição são as
+ * atuais; as pontuações do retrato são lidas por {@link #scoreOf(Idea)}.
+ * @author hugo
+ */
+public final class SessionSnapshot {
+
+  /**
+   * Sessão retratada.
+   */
+  private final Session session;
+  /**
+   * Fase da sessão.
+   */
+  private final SessionPhase phase;
+  /**
+   * Texto descritivo da sessão.
+   */
+  private final String description;
+  /**
+   * Sistema de votação da sessão.
+   */
+  private final VotingStrategy strategy;
+  /**
+   * Participantes, em ordem de entrada.
+   */
+  private final User[] participants;
+  /**
+   * Ideias em ordem de adição, das quais só as primeiras {@link #ideaCount} pertencem ao retrato.
+   */
+  private final Idea[] ideas;
+  /**
+   * Quantidade de ideias do retrato.
+   */
+  private final int ideaCount;
+  /**
+   * Pontuações das ideias em blocos de {@value Leaderboard#CHUNK}, indexadas pelo índice da ideia.
+   */
+  private final int[][] scores;
+  /**
+   * Quantidade de alterações das pontuações no placar quando elas foram congeladas.
+   */
+  final long changes;
+  /**
+   * Instante da publicação do retrato, em nanossegundos.
+   */
+  final long publishedAt;
+  /**
+   * Ranqueamento das ideias do retrato, montado na primeira consulta.
+   */
+  private volatile Idea[] ranking;
+
+  SessionSnapshot(Session session, SessionPhase phase, String description,
+      VotingStrategy strategy, User[] participants, Idea[] ideas, int ideaCount, int[][] scores,
+      long changes) {
+    this.session = session;
+    this.phase = phase;
+    this.description = description;
+    this.strategy = strategy;
+    this.participants = participants;
+    this.ideas = ideas;
+    this.ideaCount = ideaCount;
+    this.scores = scores;
+    this.changes = changes;
+    publishedAt = System.nanoTime();
+  }
+
+  /**
+   * Método para a obtenção de um novo retrato com a mesma estrutura deste e outras pontuações.
+   *
+   * @param scores Pontuações congeladas.
+   * @param changes Quantidade de alterações das pontuações no placar.
+   * @return Novo retrato.
+   */
+  SessionSnapshot withScores(int[][] scores, long changes) {
+    return new SessionSnapshot(session, phase, description, strategy, participants, ideas,
+        ideaCount, scores, changes);
+  }
+
+  public Session getSession() {
+    return session;
+  }
+
+  public SessionPhase getPhase() {
+    return phase;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public VotingStrategy getVotingStrategy() {
+    return strategy;
+  }
+
+  /**
+   * Método para a obtenção dos participantes, em ordem de entrada, sem cópia.
+   *
+   * @return Lista somente leitura dos participantes.
+   */
+  public List<User> getParticipants() {
+    return Collections.unmodifiableList(Arrays.asList(participants));
+  }
+
+  public int getParticipantCount() {
+    return participants.length;
+  }
+
+  /**
+   * Método para a obtenção das ideias, em ordem de adição, sem cópia.
+   *
+   * @return Lista somente leitura das ideias.
+   */
+  public List<Idea> getIdeas() {
+    return Collections.unmodifiableList(Arrays.asList(ideas).subList(0, ideaCount));
+  }
+
+  public int getIdeaCount() {
+    return ideaCount;
+  }
+
+  /**
+   * Método para a obtenção da pontuação de uma ideia no instante do retrato.
+   *
+   * @param idea Ideia a consultar.
+   * @return Pontuação da ideia, ou 0 se ela não pertencer ao retrato.
+   */
+  public int scoreOf(Idea idea) {
+    if (idea == null || idea.getSession() != session) {
+      return 0;
+    }
+    int index = idea.getIndex();
+    if (index >= ideaCount || ideas[index] != idea) {
+      return 0;
+    }
+    return scores[index >>> Leaderboard.CHUNK_BITS][index & (Leaderboard.CHUNK - 1)];
+  }
+
+  /**
+   * Método para o ranqueamento das ideias pelas pontuações do retrato, em qualquer fase. Os
+   * empates são desfeitos pela ordem de adição das ideias. Na fase de ranqueamento o resultado é
+   * o mesmo de {@link Session#rankIdeas()}; nas anteriores, é uma prévia como a de
+   * {@link Session#topIdeas(int)}, mas consistente com as demais consultas ao retrato.
+   *
+   * @return Arranjo com as ideias (com pontos) em ordem decrescente de pontuação.
+   */
+  public Idea[] rankIdeas() {
+    Idea[] ranked = ranking;
+    if (ranked == null) {
+      ranked = rank();
+      ranking = ranked;
+    }
+    return ranked.clone();
+  }
+
+  /**
+   * Método para o ranqueamento das k ideias com maior pontuação no retrato.
+   *
+   * @param k Quantidade máxima de ideias.
+   * @return Arranjo com as k ideias (com pontos) de maior pontuação, em ordem decrescente.
+   */
+  public Idea[] rankTop(int k) {
+    Idea[] ranked = ranking;
+    if (ranked == null) {
+      ranked = rank();
+      ranking = ranked;
+    }
+    return Arrays.copyOf(ranked, Math.max(0, Math.min(k, ranked.length)));
+  }
+
+  /**
+   * Método para a ordenação das ideias com pontos. Cada ideia vira uma chave com a pontuação
+   * invertida na parte alta e o índice na parte baixa, de forma que uma ordenação de primitivos
+   * já desfaz os empates.
+   */
+  private Idea[] rank() {
+    long[] keys = new long[ideaCount];
+    int count = 0;
+    for (int index = 0; index < ideaCount; index++) {
+      int score = scores[index >>> Leaderboard.CHUNK_BITS][index & (Leaderboard.CHUNK - 1)];
+      if (score > 0) {
+        keys[count++] = ((long) (Integer.MAX_VALUE - score) << 32) | index;
+      }
+    }
+    Arrays.sort(keys, 0, count);
+    Idea[] ranked = new Idea[count];
+    for (int i = 0; i < count; i++) {
+      ranked[i] = ideas[(int) keys[i]];
+    }
+    return ranked;
+  }
+}
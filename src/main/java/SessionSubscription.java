@@ -0,0 +1,193 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Classe que representa a assinatura dos eventos de uma sessão, criada por
+ * {@link Session#subscribe(SessionListener, Executor, boolean)}.
+ *
+ * A assinatura lê o registro de eventos da sessão a partir da sua própria posição e entrega os
+ * eventos pendentes em lotes de até {@value #MAX_BATCH}, um lote por vez, no seu executor. Um
+ * assinante lento não atrasa a sessão nem os demais assinantes: se ele ficar mais de
+ * {@value EventBus#CAPACITY} eventos atrás, os eventos perdidos são substituídos por um único
+ * evento {@link SessionEvent.Type#RESYNC}, após o qual ele deve reler o estado da sessão.
+ *
+ * Com o agrupamento de votos, os eventos de voto e remoção de voto de cada lote são trocados por
+ * um único evento {@link SessionEvent.Type#VOTES} por ideia, e as cédulas de cada votante pela
+ * última, de forma que o tamanho dos lotes depende das ideias alteradas, e não da quantidade de
+ * votos.
+ * @author hugo
+ */
+public final class SessionSubscription {
+
+  /**
+   * Quantidade máxima de eventos por lote.
+   */
+  public static final int MAX_BATCH = 1024;
+
+  private final Session session;
+  private final EventBus bus;
+  private final SessionListener listener;
+  private final Executor executor;
+  private final boolean coalesceVotes;
+  /**
+   * Posição do próximo evento a entregar.
+   */
+  private volatile long cursor;
+  /**
+   * Se há uma entrega agendada ou em andamento.
+   */
+  private final AtomicBoolean running;
+  private volatile boolean cancelled;
+  private final Runnable deliver;
+
+  SessionSubscription(Session session, EventBus bus, SessionListener listener, Executor executor,
+      boolean coalesceVotes) {
+    this.session = session;
+    this.bus = bus;
+    this.listener = listener;
+    this.executor = executor;
+    this.coalesceVotes = coalesceVotes;
+    cursor = bus.tail();
+    running = new AtomicBoolean();
+    deliver = this::deliver;
+  }
+
+  /**
+   * Método para o cancelamento da assinatura. Um lote já em entrega é concluído, mas nenhum outro
+   * é entregue.
+   */
+  public void cancel() {
+    cancelled = true;
+    bus.remove(this);
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Método para o aviso de que há eventos publicados, que agenda uma entrega se não houver uma em
+   * andamento.
+   */
+  void signal() {
+    if (cancelled || !hasPublished() || !running.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(deliver);
+    } catch (RejectedExecutionException e) {
+      running.set(false);
+      cancel();
+    }
+  }
+
+  /**
+   * Método que indica se o próximo evento da assinatura já foi gravado, ou sobrescrito. Uma
+   * posição reservada mas ainda não gravada não agenda entrega: quem a reservou avisa as
+   * assinaturas depois de gravá-la.
+   *
+   * @return Verdadeiro se há eventos a entregar.
+   */
+  private boolean hasPublished() {
+    long position = cursor;
+    if (position >= bus.tail()) {
+      return false;
+    }
+    SessionEvent event = bus.get(position);
+    return event != null && event.sequence >= position;
+  }
+
+  /**
+   * Método para a entrega de um lote, que reagenda a entrega seguinte se ainda houver eventos.
+   */
+  private void deliver() {
+    try {
+      List<SessionEvent> batch = poll();
+      if (!batch.isEmpty() && !cancelled) {
+        listener.onEvents(Collections.unmodifiableList(batch));
+      }
+    } catch (RuntimeException e) {
+      cancel();
+    } finally {
+      running.set(false);
+    }
+    signal();
+  }
+
+  /**
+   * Método para a leitura dos próximos eventos publicados, a partir da posição da assinatura.
+   *
+   * @return Lote de eventos, vazio se não houver eventos publicados.
+   */
+  private List<SessionEvent> poll() {
+    long position = cursor;
+    long end = bus.tail();
+    if (end - position > EventBus.CAPACITY) {
+      return resync(end);
+    }
+    List<SessionEvent> batch = new ArrayList<>((int) Math.min(end - position, MAX_BATCH));
+    while (position < end && batch.size() < MAX_BATCH) {
+      SessionEvent event = bus.get(position);
+      if (event == null || event.sequence < position) {
+        // Posição reservada, mas o evento ainda não foi gravado
+        break;
+      }
+      if (event.sequence > position) {
+        return resync(bus.tail());
+      }
+      batch.add(event);
+      position++;
+    }
+    cursor = position;
+    return coalesceVotes ? coalesce(batch) : batch;
+  }
+
+  private List<SessionEvent> resync(long end) {
+    cursor = end;
+    List<SessionEvent> batch = new ArrayList<>(1);
+    batch.add(new SessionEvent(SessionEvent.Type.RESYNC, session, null, null, null));
+    return batch;
+  }
+
+  /**
+   * Método para o agrupamento dos votos de um lote, que mantém cada grupo na posição da sua
+   * última alteração.
+   *
+   * @param batch Lote em ordem de ocorrência.
+   * @return Lote agrupado, em ordem de ocorrência.
+   */
+  private List<SessionEvent> coalesce(List<SessionEvent> batch) {
+    List<SessionEvent> coalesced = new ArrayList<>(batch.size());
+    Set<Idea> voted = new HashSet<>();
+    Set<User> balloted = new HashSet<>();
+    for (int i = batch.size() - 1; i >= 0; i--) {
+      SessionEvent event = batch.get(i);
+      switch (event.getType()) {
+        case VOTE:
+        case UNVOTE:
+          if (voted.add(event.getIdea())) {
+            coalesced.add(new SessionEvent(SessionEvent.Type.VOTES, session, null,
+                event.getIdea(), null));
+          }
+          break;
+        case BALLOT:
+          if (balloted.add(event.getUser())) {
+            coalesced.add(event);
+          }
+          break;
+        default:
+          coalesced.add(event);
+      }
+    }
+    Collections.reverse(coalesced);
+    return coalesced;
+  }
+}
@@ -0,0 +1,151 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Classe que publica os retratos de uma sessão. As alterações de fase, participantes e ideias,
+ * feitas sob o bloqueio da sessão, publicam um retrato ao fim de cada lote; os votos, que não
+ * passam pelo bloqueio da sessão, publicam um retrato a cada voto ou lote de votos, ou, com um
+ * intervalo definido, na primeira leitura após o intervalo em que houver votos novos.
+ *
+ * Um retrato só substitui o retrato do qual foi montado, e as pontuações são congeladas depois
+ * da leitura do retrato atual, de forma que os retratos publicados nunca voltam no tempo. A
+ * quantidade de alterações é lida antes do congelamento, portanto pode apenas subestimar as
+ * alterações refletidas, o que no pior caso antecipa uma publicação.
+ * @author hugo
+ */
+class SnapshotPublisher {
+
+  /**
+   * Placar da sessão, de onde são congeladas as pontuações.
+   */
+  private final Leaderboard leaderboard;
+  /**
+   * Intervalo mínimo entre as publicações dos votos, em nanossegundos, ou 0 para publicar a cada
+   * voto.
+   */
+  private final long interval;
+  /**
+   * Retrato publicado mais recente.
+   */
+  private final AtomicReference<SessionSnapshot> current = new AtomicReference<>();
+  /**
+   * Ideias publicadas, compartilhadas pelos retratos; o arranjo é substituído ao crescer, e as
+   * posições além da quantidade de ideias de um retrato não são lidas por ele.
+   */
+  private Idea[] ideas = new Idea[16];
+  /**
+   * Quantidade de ideias publicadas.
+   */
+  private int ideaCount;
+  /**
+   * Participantes publicados, substituídos quando eles mudam.
+   */
+  private User[] participants = new User[0];
+
+  /**
+   * Construtor para o publicador, que ainda não tem retrato.
+   *
+   * @param leaderboard Placar da sessão.
+   * @param interval Intervalo mínimo entre as publicações dos votos, em nanossegundos.
+   */
+  SnapshotPublisher(Leaderboard leaderboard, long interval) {
+    this.leaderboard = leaderboard;
+    this.interval = interval;
+  }
+
+  long getInterval() {
+    return interval;
+  }
+
+  /**
+   * Método para a obtenção do retrato mais recente, sem bloqueio. Se os votos forem publicados
+   * por intervalo, e o intervalo tiver passado com votos novos, o retrato é atualizado antes.
+   *
+   * @return Retrato mais recente.
+   */
+  SessionSnapshot current() {
+    SessionSnapshot snapshot = current.get();
+    if (interval > 0 && snapshot.changes != leaderboard.changes()
+        && System.nanoTime() - snapshot.publishedAt >= interval) {
+      return publishVotes();
+    }
+    return snapshot;
+  }
+
+  /**
+   * Método para a publicação dos votos, chamado após cada voto ou lote de votos aceito.
+   */
+  void votesChanged() {
+    if (interval == 0) {
+      publishVotes();
+    }
+  }
+
+  /**
+   * Método para a publicação das pontuações atuais sobre a estrutura do retrato mais recente.
+   *
+   * @return Retrato publicado.
+   */
+  private SessionSnapshot publishVotes() {
+    while (true) {
+      SessionSnapshot snapshot = current.get();
+      long changes = leaderboard.changes();
+      SessionSnapshot next = snapshot.withScores(leaderboard.freeze(), changes);
+      if (current.compareAndSet(snapshot, next)) {
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Método para a inclusão das ideias adicionadas desde a última publicação, chamado sob o
+   * bloqueio da sessão.
+   *
+   * @param added Ideias da sessão, em ordem de adição.
+   */
+  void ideasAdded(List<Idea> added) {
+    int size = added.size();
+    if (size > ideas.length) {
+      ideas = Arrays.copyOf(ideas, Math.max(size, ideas.length * 2));
+    }
+    for (int index = ideaCount; index < size; index++) {
+      ideas[index] = added.get(index);
+    }
+    ideaCount = size;
+  }
+
+  /**
+   * Método para a substituição dos participantes publicados, chamado sob o bloqueio da sessão.
+   *
+   * @param members Participantes da sessão, em ordem de entrada.
+   */
+  void participantsChanged(Collection<User> members) {
+    participants = members.toArray(new User[0]);
+  }
+
+  /**
+   * Método para a publicação de um retrato com a estrutura atual da sessão, chamado sob o
+   * bloqueio da sessão ao fim de cada alteração.
+   *
+   * @param session Sessão retratada.
+   * @param phase Fase da sessão.
+   * @param description Texto descritivo da sessão.
+   * @param strategy Sistema de votação da sessão.
+   */
+  void publish(Session session, SessionPhase phase, String description,
+      VotingStrategy strategy) {
+    while (true) {
+      SessionSnapshot snapshot = current.get();
+      long changes = leaderboard.changes();
+      SessionSnapshot next = new SessionSnapshot(session, phase, description, strategy,
+          participants, ideas, ideaCount, leaderboard.freeze(), changes);
+      if (current.compareAndSet(snapshot, next)) {
+        return;
+      }
+    }
+  }
+}
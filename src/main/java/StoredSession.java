@@ -0,0 +1,245 @@
+package main.java;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Classe que representa uma sessão gravada em disco, aberta para leitura sem montar a sessão em
+ * memória, como nos relatórios que mostram apenas a primeira página do ranqueamento. A abertura
+ * mapeia o arquivo e lê apenas o cabeçalho e o dicionário dos usuários, em tempo que não depende
+ * da quantidade de ideias; os participantes são lidos a cada consulta, e as ideias, com o texto,
+ * o autor e os votos, são montadas sob demanda em páginas de {@value #PAGE_SIZE} ideias, mantidas
+ * em um cache limitado das páginas usadas mais recentemente.
+ *
+ * O arquivo é o mesmo gravado por {@link Session#archive(Path)}, ou por
+ * {@link #write(Session, Path)} em qualquer fase. As consultas seguem os contratos das consultas
+ * de mesmo nome de {@link Session}: as ideias em ordem de adição e, só no ranqueamento, as ideias
+ * com votos em ordem decrescente de pontuação, com os empates desfeitos pela ordem de adição. As
+ * ideias lidas não pertencem a nenhuma sessão e não aceitam votos; uma ideia cuja página saiu do
+ * cache é montada de novo, em outro objeto, na próxima consulta.
+ * @author hugo
+ */
+public class StoredSession {
+
+  /**
+   * Quantidade de ideias de cada página.
+   */
+  static final int PAGE_SIZE = 1024;
+  /**
+   * Quantidade padrão de páginas mantidas no cache.
+   */
+  private static final int DEFAULT_CACHED_PAGES = 64;
+
+  /**
+   * Arquivo da sessão, mapeado do disco.
+   */
+  private final IdeaArchive archive;
+  /**
+   * Páginas de ideias montadas, em ordem de uso, da menos para a mais recente.
+   */
+  private final Map<Integer, Idea[]> pages;
+
+  private StoredSession(IdeaArchive archive, int cachedPages) {
+    this.archive = archive;
+    pages = new LinkedHashMap<Integer, Idea[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Idea[]> eldest) {
+        return size() > cachedPages;
+      }
+    };
+  }
+
+  /**
+   * Método para a abertura de uma sessão gravada, com o cache padrão de
+   * {@value #DEFAULT_CACHED_PAGES} páginas. Veja {@link #open(Path, int)}.
+   *
+   * @param file Arquivo da sessão.
+   * @return Sessão gravada.
+   * @throws IOException Se o arquivo não puder ser lido ou o formato não for reconhecido.
+   */
+  public static StoredSession open(Path file) throws IOException {
+    return open(file, DEFAULT_CACHED_PAGES);
+  }
+
+  /**
+   * Método para a abertura de uma sessão gravada, que mapeia o arquivo sem ler as ideias.
+   *
+   * @param file Arquivo da sessão.
+   * @param cachedPages Quantidade máxima de páginas de ideias mantidas em memória.
+   * @return Sessão gravada.
+   * @throws IOException Se o arquivo não puder ser lido ou o formato não for reconhecido.
+   */
+  public static StoredSession open(Path file, int cachedPages) throws IOException {
+    if (cachedPages <= 0) {
+      throw new IllegalArgumentException("Quantidade de páginas inválida");
+    }
+    return new StoredSession(IdeaArchive.open(file), cachedPages);
+  }
+
+  /**
+   * Método para a gravação de uma sessão em qualquer fase, no formato lido por {@link #open(Path)}.
+   * A sessão não é alterada, e os votos e as demais alterações esperam o fim da gravação, de forma
+   * que os votos gravados correspondem a um mesmo instante. O ranqueamento só é gravado se a sessão
+   * estiver no ranqueamento.
+   *
+   * @param session Sessão a gravar.
+   * @param file Arquivo de destino, substituído se existir.
+   * @throws IOException Se a gravação falhar, ou o arquivo passar de 2 GB.
+   */
+  public static void write(Session session, Path file) throws IOException {
+    synchronized (session) {
+      session.lockStripes();
+      try {
+        IdeaArchive.create(session, file);
+      } finally {
+        session.unlockStripes();
+      }
+    }
+  }
+
+  public User getOwner() {
+    return archive.getOwner();
+  }
+
+  public String getDescription() {
+    return archive.getDescription();
+  }
+
+  public int getVotingLimit() {
+    return archive.getVotingLimit();
+  }
+
+  public SessionPhase getPhase() {
+    return archive.getPhase();
+  }
+
+  public VotingStrategy getVotingStrategy() {
+    return archive.getStrategy();
+  }
+
+  public int getParticipantCount() {
+    return archive.getParticipantCount();
+  }
+
+  /**
+   * Método para a leitura dos participantes, a cada chamada.
+   *
+   * @return Arranjo com os participantes, em ordem de entrada.
+   */
+  public User[] getParticipants() {
+    return archive.getParticipants();
+  }
+
+  public int getIdeaCount() {
+    return archive.getIdeaCount();
+  }
+
+  /**
+   * Método para a obtenção de uma ideia pela sua posição na ordem de adição, montando apenas a
+   * página da ideia.
+   *
+   * @param index Posição da ideia, de 0 a {@link #getIdeaCount()} - 1.
+   * @return Ideia na posição.
+   */
+  public Idea getIdea(int index) {
+    Objects.checkIndex(index, archive.getIdeaCount());
+    return page(index / PAGE_SIZE)[index % PAGE_SIZE];
+  }
+
+  /**
+   * Método para a obtenção de todas as ideias, em ordem de adição, que monta todas as páginas.
+   *
+   * @return Arranjo com as ideias.
+   */
+  public Idea[] getIdeas() {
+    Idea[] ideas = new Idea[archive.getIdeaCount()];
+    for (int from = 0; from < ideas.length; from += PAGE_SIZE) {
+      Idea[] page = page(from / PAGE_SIZE);
+      System.arraycopy(page, 0, ideas, from, page.length);
+    }
+    return ideas;
+  }
+
+  /**
+   * Método para a obtenção do ranqueamento gravado, que monta as páginas de todas as ideias com
+   * votos.
+   *
+   * @return Arranjo com as ideias (com votos) ordenadas em ordem decrescente de votos, vazio se a
+   *         sessão não estava no ranqueamento.
+   */
+  public Idea[] rankIdeas() {
+    return rankPage(0, archive.getRankedCount());
+  }
+
+  /**
+   * Método para a obtenção das k ideias mais votadas do ranqueamento gravado.
+   *
+   * @param k Quantidade máxima de ideias.
+   * @return Arranjo com as k ideias (com votos) mais votadas, em ordem decrescente de votos.
+   */
+  public Idea[] rankTop(int k) {
+    return rankPage(0, k);
+  }
+
+  /**
+   * Método para a obtenção de uma página do ranqueamento gravado, que monta apenas as páginas das
+   * ideias da página.
+   *
+   * @param offset Posição da primeira ideia da página, a partir de 0.
+   * @param limit Quantidade máxima de ideias da página.
+   * @return Arranjo com as ideias da página, vazio após a última página.
+   */
+  public Idea[] rankPage(int offset, int limit) {
+    int start = Math.max(0, offset);
+    int end = (int) Math.min((long) start + Math.max(0, limit), archive.getRankedCount());
+    if (start >= end) {
+      return new Idea[0];
+    }
+    Idea[] page = new Idea[end - start];
+    for (int position = start; position < end; position++) {
+      page[position - start] = getIdea(archive.ranked(position));
+    }
+    return page;
+  }
+
+  /**
+   * Método para a obtenção da pontuação gravada de uma ideia, pela qual as ideias são ranqueadas.
+   *
+   * @param idea Ideia a consultar.
+   * @return Pontuação da ideia, ou 0 se ela não tiver sido lida desta sessão.
+   */
+  public int scoreOf(Idea idea) {
+    if (idea == null || idea.getArchive() != archive) {
+      return 0;
+    }
+    return archive.score(idea);
+  }
+
+  /**
+   * Método para a obtenção de uma página de ideias, do cache ou montada do arquivo. A montagem é
+   * feita fora do bloqueio do cache; se duas threads montarem a mesma página, fica a primeira.
+   *
+   * @param number Número da página.
+   * @return Ideias da página.
+   */
+  private Idea[] page(int number) {
+    synchronized (pages) {
+      Idea[] cached = pages.get(number);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    int from = number * PAGE_SIZE;
+    Idea[] loaded = new Idea[Math.min(PAGE_SIZE, archive.getIdeaCount() - from)];
+    for (int i = 0; i < loaded.length; i++) {
+      loaded[i] = new Idea(archive, from + i);
+    }
+    synchronized (pages) {
+      Idea[] raced = pages.putIfAbsent(number, loaded);
+      return raced != null ? raced : loaded;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package main.java;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface interna para a apuração dos votos de uma sessão segundo um sistema de votação. A
+ * apuração é incremental: cada voto atualiza a pontuação das ideias afetadas e o placar da sessão,
+ * de forma que o ranqueamento nunca exige uma recontagem.
+ *
+ * As implementações não chamam o placar enquanto seguram o próprio bloqueio, pois o placar lê as
+ * pontuações sob o seu bloqueio.
+ * @author hugo
+ */
+interface Tally {
+
+  /**
+   * Método para a abertura da apuração de uma ideia.
+   *
+   * @param idea Ideia adicionada à sessão, com o índice já definido.
+   */
+  void open(Idea idea);
+
+  /**
+   * Método para o registro de um voto já validado quanto à fase e à autoria.
+   *
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @param votingLimit Limite de votos por participante.
+   * @return Verdadeiro se o voto foi aceito.
+   */
+  boolean vote(Idea idea, User voter, int votingLimit);
+
+  /**
+   * Método para o registro de vários votos de um participante de uma só vez.
+   *
+   * @param ideas Ideias votadas.
+   * @param accepted Para cada ideia, se ela é candidata ao voto; ao fim, se o voto foi aceito.
+   * @param voter Votante.
+   * @param votingLimit Limite de votos por participante.
+   */
+  default void voteAll(Idea[] ideas, boolean[] accepted, User voter, int votingLimit) {
+    for (int i = 0; i < ideas.length; i++) {
+      accepted[i] = accepted[i] && vote(ideas[i], voter, votingLimit);
+    }
+  }
+
+  /**
+   * Método para a classificação de um voto recusado por {@link #vote(Idea, User, int)}, a partir
+   * do estado atual da apuração.
+   *
+   * @param idea Ideia votada, desta sessão.
+   * @param voter Votante, não nulo.
+   * @param votingLimit Limite de votos por participante.
+   * @return Motivo da recusa.
+   */
+  VoteRejection rejection(Idea idea, User voter, int votingLimit);
+
+  /**
+   * Método para a retirada de um voto.
+   *
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   * @return Verdadeiro se o voto existia e foi retirado.
+   */
+  boolean withdraw(Idea idea, User voter);
+
+  /**
+   * Método para a retirada de todos os votos de um votante, ou da sua cédula, na saída do
+   * participante, em tempo proporcional aos votos dele.
+   *
+   * @param voter Votante.
+   * @param ideas Ideias da sessão, indexadas pelo índice da ideia.
+   * @return Ideias das quais votos foram retirados.
+   */
+  Idea[] withdrawAll(User voter, List<Idea> ideas);
+
+  /**
+   * Método para a restauração de um voto aceito anteriormente, sem verificação das regras.
+   *
+   * @param idea Ideia votada.
+   * @param voter Votante.
+   */
+  void restore(Idea idea, User voter);
+
+  /**
+   * Método para a incorporação de uma ideia repetida a outra: os votos da repetida são retirados
+   * e, se combinados, passam à outra ideia, exceto os do autor desta. O votante que já votou nas
+   * duas fica com um único voto, e o voto excedente é devolvido.
+   *
+   * @param duplicate Ideia incorporada.
+   * @param target Ideia que a incorpora.
+   * @param combine Se os votos passam à outra ideia.
+   * @return Votantes cujos votos mudaram.
+   */
+  default User[] merge(Idea duplicate, Idea target, boolean combine) {
+    User[] voters = getVoters(duplicate);
+    for (User voter : voters) {
+      withdraw(duplicate, voter);
+      if (combine && !voter.equals(target.getAuthor())) {
+        restore(target, voter);
+      }
+    }
+    return voters;
+  }
+
+  /**
+   * Método para a retirada de todos os votos de uma ideia que deixa de aceitá-los, como na
+   * incorporação sem combinação dos votos.
+   *
+   * @param idea Ideia retirada.
+   * @return Votantes cujos votos mudaram.
+   */
+  default User[] close(Idea idea) {
+    return merge(idea, idea, false);
+  }
+
+  /**
+   * Método para o registro de uma cédula, que substitui a cédula anterior do votante. Só é aceito
+   * pelos sistemas de cédula.
+   *
+   * @param voter Votante.
+   * @param ranking Ideias da cédula, em ordem de preferência.
+   * @param accepted Para cada ideia, se ela é candidata; ao fim, se entrou na cédula.
+   * @param votingLimit Tamanho máximo da cédula.
+   */
+  default void ballot(User voter, Idea[] ranking, boolean[] accepted, int votingLimit) {
+    for (int i = 0; i < accepted.length; i++) {
+      accepted[i] = false;
+    }
+  }
+
+  /**
+   * Método para a restauração de uma cédula aceita anteriormente, sem verificação das regras.
+   *
+   * @param voter Votante.
+   * @param ranking Ideias da cédula, em ordem de preferência.
+   */
+  default void restoreBallot(User voter, Idea[] ranking) {
+  }
+
+  /**
+   * Método chamado quando a sessão passa à fase de ranqueamento, quando não há mais votos.
+   */
+  default void finish() {
+  }
+
+  /**
+   * Método para a obtenção da quantidade de votos de uma ideia, ou de cédulas que a citam.
+   *
+   * @param idea Ideia a consultar.
+   * @return Quantidade de votos.
+   */
+  int countVotes(Idea idea);
+
+  /**
+   * Método para a obtenção da pontuação de uma ideia, pela qual o placar a ordena.
+   *
+   * @param idea Ideia a consultar.
+   * @return Pontuação, não negativa.
+   */
+  int score(Idea idea);
+
+  /**
+   * Método para a obtenção dos votantes de uma ideia, usado quando os votos são guardados por
+   * ideia.
+   *
+   * @param idea Ideia a consultar.
+   * @return Arranjo com os votantes.
+   */
+  User[] getVoters(Idea idea);
+
+  /**
+   * Método que indica se os votos são guardados como cédulas por votante, e não por ideia.
+   *
+   * @return Verdadeiro para os sistemas de cédula.
+   */
+  default boolean hasBallots() {
+    return false;
+  }
+
+  /**
+   * Método para a obtenção das cédulas, nos sistemas de cédula.
+   *
+   * @return Cédula de cada votante, em ordem de preferência.
+   */
+  default Map<User, Idea[]> getBallots() {
+    return Collections.emptyMap();
+  }
+}
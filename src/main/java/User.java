@@ -1,5 +1,7 @@
 package main.java;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Classe que representa um usuário para o sistema de brainstorm.
  * 
@@ -7,6 +9,16 @@ package main.java;
  */
 public class User {
 
+  /**
+   * Próximo identificador livre para novos usuários
+   */
+  private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+  /**
+   * Identificador estável do usuário, usado como sua identidade (igualdade e hash)
+   */
+  private final long id;
+
   /**
    * Nome do usuário
    */
@@ -15,15 +27,33 @@ public class User {
   /**
    * Número de votos do usuário
    */
-  private Integer numVotes;
+  private int numVotes;
 
   /**
-   * Construtor para objetos do tipo usuário. Estes deve ter um nome definido.
+   * Construtor para objetos do tipo usuário. Estes deve ter um nome definido, e recebem um novo
+   * identificador.
    * 
    * @param username Nome do usuário
    */
   public User(String username) {
+    this(NEXT_ID.getAndIncrement(), username);
+  }
+
+  /**
+   * Construtor para usuários com identificador já conhecido, por exemplo ao carregá-los de um
+   * armazenamento. Os identificadores gerados depois deste passam a ser maiores que ele.
+   * 
+   * @param id Identificador do usuário
+   * @param username Nome do usuário
+   */
+  public User(long id, String username) {
+    this.id = id;
     this.username = username;
+    NEXT_ID.accumulateAndGet(id + 1, Math::max);
+  }
+
+  public long getId() {
+    return id;
   }
 
   public String getUsername() {
@@ -34,11 +64,43 @@ public class User {
     this.username = username;
   }
 
-  public Integer getNumVotes() {
+  /**
+   * Método para a obtenção do número de votos do usuário, que não é atualizado pelas sessões.
+   * 
+   * @return Número de votos definido por {@link #setNumVotes(int)}.
+   * @deprecated Os votos de cada usuário em todas as sessões são somados por
+   *             {@link UserIndex#votesCast(User)}.
+   */
+  @Deprecated
+  public int getNumVotes() {
     return numVotes;
   }
 
-  public void setNumVotes(Integer numVotes) {
+  /**
+   * Método para a definição do número de votos do usuário.
+   * 
+   * @param numVotes Número de votos.
+   * @deprecated Os votos de cada usuário em todas as sessões são somados por
+   *             {@link UserIndex#votesCast(User)}.
+   */
+  @Deprecated
+  public void setNumVotes(int numVotes) {
     this.numVotes = numVotes;
   }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof User)) {
+      return false;
+    }
+    return id == ((User) obj).id;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(id);
+  }
 }
@@ -0,0 +1,280 @@
+package main.java;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Classe que representa o índice central dos usuários, com a atividade de cada um somada em todas
+ * as sessões ligadas a ele: votos dados, ideias propostas e sessões em que entrou. Os contadores
+ * são {@link LongAdder}, de forma que votantes de sessões diferentes não disputam o mesmo
+ * contador, e cada usuário tem o seu registro em um mapa concorrente.
+ *
+ * O índice pode limitar os votos de cada usuário por período, somados em todas as sessões, por
+ * exemplo a N votos por semana. Os períodos são janelas fixas contadas a partir da época do
+ * relógio, e os votos do período atual de cada usuário ficam em uma única palavra, com o número
+ * do período e a contagem, reservada por comparação e troca; a verificação custa tempo constante.
+ * Um voto retirado devolve a vaga ao período atual, mesmo que tenha sido dado em outro.
+ *
+ * Os votos contados são os votos simples e em lote; as cédulas dos sistemas de cédula não são
+ * contadas nem limitadas.
+ * @author hugo
+ */
+public class UserIndex {
+
+  /**
+   * Máscara do número do período na palavra de votos do período.
+   */
+  private static final long PERIOD_MASK = 0xFFFFFFFFL;
+
+  /**
+   * Atividade de cada usuário.
+   */
+  private final Map<User, Activity> activities;
+  /**
+   * Limite de votos por usuário em cada período, ou 0 se não houver limite.
+   */
+  private final int quota;
+  /**
+   * Duração de cada período, em milissegundos.
+   */
+  private final long periodMillis;
+  /**
+   * Relógio em milissegundos, usado para identificar o período atual.
+   */
+  private final LongSupplier clock;
+
+  /**
+   * Construtor para um índice sem limite de votos.
+   */
+  public UserIndex() {
+    this(0, 1, System::currentTimeMillis);
+  }
+
+  /**
+   * Construtor para um índice com limite de votos por usuário em cada período.
+   *
+   * @param quota Limite de votos por usuário em cada período, ou 0 para não limitar.
+   * @param periodMillis Duração de cada período, em milissegundos.
+   * @param clock Relógio em milissegundos.
+   */
+  public UserIndex(int quota, long periodMillis, LongSupplier clock) {
+    if (quota < 0 || periodMillis <= 0) {
+      throw new IllegalArgumentException("Limite de votos ou período inválido");
+    }
+    this.quota = quota;
+    this.periodMillis = periodMillis;
+    this.clock = clock;
+    activities = new ConcurrentHashMap<>();
+  }
+
+  public int getQuota() {
+    return quota;
+  }
+
+  public long getPeriodMillis() {
+    return periodMillis;
+  }
+
+  /**
+   * Método para a obtenção dos votos dados por um usuário e ainda não retirados.
+   *
+   * @param user Usuário a consultar.
+   * @return Quantidade de votos.
+   */
+  public long votesCast(User user) {
+    Activity activity = activities.get(user);
+    return activity == null ? 0 : activity.votes.sum();
+  }
+
+  /**
+   * Método para a obtenção das ideias propostas por um usuário e aceitas pelas sessões.
+   *
+   * @param user Usuário a consultar.
+   * @return Quantidade de ideias.
+   */
+  public long ideasAuthored(User user) {
+    Activity activity = activities.get(user);
+    return activity == null ? 0 : activity.ideas.sum();
+  }
+
+  /**
+   * Método para a obtenção da quantidade de vezes em que um usuário entrou em sessões.
+   *
+   * @param user Usuário a consultar.
+   * @return Quantidade de entradas.
+   */
+  public long sessionsJoined(User user) {
+    Activity activity = activities.get(user);
+    return activity == null ? 0 : activity.sessions.sum();
+  }
+
+  /**
+   * Método para a obtenção dos votos de um usuário no período atual.
+   *
+   * @param user Usuário a consultar.
+   * @return Quantidade de votos no período, ou 0 se não houver limite de votos.
+   */
+  public int votesInPeriod(User user) {
+    Activity activity = activities.get(user);
+    return activity == null || quota == 0 ? 0 : used(activity.period.get(), period());
+  }
+
+  /**
+   * Método para a obtenção dos votos que um usuário ainda pode dar no período atual.
+   *
+   * @param user Usuário a consultar.
+   * @return Quantidade de votos restantes, ou {@link Integer#MAX_VALUE} se não houver limite.
+   */
+  public int remainingVotes(User user) {
+    return quota == 0 ? Integer.MAX_VALUE : quota - votesInPeriod(user);
+  }
+
+  /**
+   * Método para a obtenção da quantidade de usuários com atividade registrada.
+   *
+   * @return Quantidade de usuários.
+   */
+  public int size() {
+    return activities.size();
+  }
+
+  /**
+   * Método para a reserva de vagas de voto no período atual, antes da apuração dos votos.
+   *
+   * @param user Votante.
+   * @param wanted Quantidade de votos pretendidos.
+   * @return Quantidade de votos reservados, de 0 a wanted.
+   */
+  int acquireVotes(User user, int wanted) {
+    if (quota == 0 || wanted == 0) {
+      return wanted;
+    }
+    AtomicLong period = activity(user).period;
+    long current = period();
+    while (true) {
+      long state = period.get();
+      int used = used(state, current);
+      int granted = Math.min(wanted, quota - used);
+      if (granted <= 0) {
+        return 0;
+      }
+      if (period.compareAndSet(state, current << 32 | (used + granted))) {
+        return granted;
+      }
+    }
+  }
+
+  /**
+   * Método para o registro dos votos aceitos pela apuração, que devolve as vagas reservadas e
+   * não usadas.
+   *
+   * @param user Votante.
+   * @param granted Quantidade de votos reservados.
+   * @param accepted Quantidade de votos aceitos.
+   */
+  void recordVotes(User user, int granted, int accepted) {
+    if (accepted == 0 && (quota == 0 || granted == 0)) {
+      return;
+    }
+    Activity activity = activity(user);
+    activity.votes.add(accepted);
+    if (quota != 0 && granted > accepted) {
+      release(activity, granted - accepted);
+    }
+  }
+
+  /**
+   * Método para o registro de um voto retirado, cuja vaga volta ao período atual.
+   *
+   * @param user Votante.
+   */
+  void recordWithdrawal(User user) {
+    Activity activity = activity(user);
+    activity.votes.decrement();
+    if (quota != 0) {
+      release(activity, 1);
+    }
+  }
+
+  /**
+   * Método para o registro de uma ideia aceita por uma sessão.
+   *
+   * @param author Autor da ideia.
+   */
+  void recordIdea(User author) {
+    activity(author).ideas.increment();
+  }
+
+  /**
+   * Método para o registro da entrada de um usuário em uma sessão.
+   *
+   * @param user Participante.
+   */
+  void recordJoin(User user) {
+    activity(user).sessions.increment();
+  }
+
+  /**
+   * Método para a devolução de vagas ao período atual, sem que a contagem fique negativa.
+   */
+  private void release(Activity activity, int count) {
+    long current = period();
+    while (true) {
+      long state = activity.period.get();
+      int used = used(state, current);
+      if (used == 0) {
+        return;
+      }
+      long next = current << 32 | Math.max(0, used - count);
+      if (activity.period.compareAndSet(state, next)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Método para a obtenção do número do período atual, truncado a 32 bits.
+   */
+  private long period() {
+    return clock.getAsLong() / periodMillis & PERIOD_MASK;
+  }
+
+  /**
+   * Método para a leitura dos votos do período atual em uma palavra de votos do período, que são
+   * zero se a palavra for de um período anterior.
+   */
+  private static int used(long state, long current) {
+    return (state >>> 32) == current ? (int) state : 0;
+  }
+
+  private Activity activity(User user) {
+    Activity activity = activities.get(user);
+    return activity != null ? activity : activities.computeIfAbsent(user, key -> new Activity());
+  }
+
+  /**
+   * Classe que representa a atividade de um usuário.
+   */
+  private static final class Activity {
+
+    /**
+     * Votos dados e não retirados.
+     */
+    private final LongAdder votes = new LongAdder();
+    /**
+     * Ideias propostas.
+     */
+    private final LongAdder ideas = new LongAdder();
+    /**
+     * Entradas em sessões.
+     */
+    private final LongAdder sessions = new LongAdder();
+    /**
+     * Número do período atual na parte alta e votos no período na parte baixa.
+     */
+    private final AtomicLong period = new AtomicLong();
+  }
+}
@@ -0,0 +1,491 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Classe que representa o livro de votos de uma sessão, nele mantém-se o contador de votos usados
+ * por cada participante e o conjunto de votantes de cada ideia, de forma que a admissão de um voto
+ * (elegibilidade, voto repetido e limite de votos) seja verificada em tempo constante.
+ *
+ * Os votos são guardados como uma matriz de ideias por votantes em forma primitiva: cada usuário
+ * recebe uma posição densa na primeira vez que é visto, e cada ideia, pelo seu índice na sessão,
+ * um {@link VoterSet} com as posições dos seus votantes. Os contadores de votos usados são
+ * inteiros primitivos, de forma que um voto não aloca nenhum objeto.
+ *
+ * Cada votante guarda também o índice inverso, com os índices das ideias em que votou e das que
+ * propôs, também como {@link VoterSet}, de forma que a saída de um participante retira os seus
+ * votos e ideias em tempo proporcional à atividade dele, e não ao tamanho da sessão.
+ *
+ * O livro é seguro para acesso concorrente sem um monitor global: o voto reserva atomicamente uma
+ * vaga no contador do votante antes de entrar no conjunto de votantes da ideia, de forma que o
+ * limite de votos nunca é ultrapassado e um mesmo voto nunca é contado duas vezes. O índice
+ * inverso é atualizado depois do conjunto de votantes da ideia; um voto e a sua retirada
+ * concorrentes, do mesmo votante na mesma ideia, podem deixar nele um índice a mais ou a menos.
+ * @author hugo
+ */
+class VoteLedger {
+
+  /**
+   * Votante de cada usuário já visto pelo livro, participante ou não.
+   */
+  private Map<User, Voter> voters;
+  /**
+   * Usuário de cada posição de votante.
+   */
+  private volatile User[] users;
+  /**
+   * Conjunto de votantes de cada ideia, indexado pelo índice da ideia.
+   */
+  private volatile VoterSet[] ideas;
+  /**
+   * Próxima posição de votante livre.
+   */
+  private int nextSlot;
+  /**
+   * Arquivo da sessão encerrada, de onde os votos das ideias são lidos depois do arquivamento.
+   */
+  private volatile IdeaArchive archive;
+
+  /**
+   * Construtor para o livro de votos, que inicia sem participantes nem ideias.
+   */
+  VoteLedger() {
+    voters = new ConcurrentHashMap<>();
+    users = new User[16];
+    ideas = new VoterSet[16];
+  }
+
+  /**
+   * Método para o registro de um participante, que passa a poder votar.
+   *
+   * @param user Participante a registrar.
+   */
+  void register(User user) {
+    Voter voter = voterOf(user);
+    if (!voter.registered) {
+      voter.used = 0;
+      voter.registered = true;
+    }
+  }
+
+  /**
+   * Método para a remoção do registro de um participante, que deixa de poder votar. A posição do
+   * usuário é mantida, pois os votos que ele não retirar continuam nas ideias.
+   *
+   * @param user Participante a remover.
+   */
+  void unregister(User user) {
+    Voter voter = voters.get(user);
+    if (voter != null) {
+      voter.registered = false;
+    }
+  }
+
+  /**
+   * Método para a abertura do conjunto de votantes de uma ideia.
+   *
+   * @param idea Ideia a abrir, com o índice já definido pela sessão.
+   */
+  synchronized void open(Idea idea) {
+    int index = idea.getIndex();
+    VoterSet[] current = ideas;
+    if (index >= current.length) {
+      current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+    }
+    if (current[index] == null) {
+      current[index] = new VoterSet();
+    }
+    // Escrita volátil que publica o conjunto para as demais threads
+    ideas = current;
+  }
+
+  /**
+   * Método para o arquivamento dos votos de uma sessão encerrada: os conjuntos de votantes das
+   * ideias são descartados, e as contagens e os votantes passam a ser lidos do arquivo. Os
+   * registros e os pesos dos usuários são mantidos.
+   *
+   * @param archive Arquivo da sessão, com os votos de todas as ideias.
+   */
+  void archive(IdeaArchive archive) {
+    this.archive = archive;
+    // Escrita volátil depois da do arquivo, de forma que quem não vê mais os conjuntos vê o arquivo
+    ideas = new VoterSet[0];
+  }
+
+  /**
+   * Método para admissão de um voto, este só é aceito se o votante for participante, ainda não
+   * tiver votado na ideia e não tiver alcançado o limite de votos.
+   *
+   * @param idea Ideia votada.
+   * @param user Votante.
+   * @param votingLimit Limite de votos por participante.
+   * @return Verdadeiro se o voto foi aceito.
+   */
+  boolean admit(Idea idea, User user, int votingLimit) {
+    Voter voter = voters.get(user);
+    VoterSet ideaVoters = setOf(idea);
+    if (voter == null || !voter.registered || ideaVoters == null
+        || ideaVoters.contains(voter.slot)) {
+      return false;
+    }
+    if (!voter.reserve(votingLimit)) {
+      return false;
+    }
+    if (!ideaVoters.add(voter.slot)) {
+      // Outro voto concorrente do mesmo votante na mesma ideia venceu, a vaga é devolvida
+      Voter.USED.decrementAndGet(voter);
+      return false;
+    }
+    voter.votes.add(idea.getIndex());
+    return true;
+  }
+
+  /**
+   * Método para a classificação de um voto recusado por {@link #admit(Idea, User, int)}.
+   *
+   * @param idea Ideia votada.
+   * @param user Votante.
+   * @param votingLimit Limite de votos por participante.
+   * @return Motivo da recusa, segundo o estado atual do livro.
+   */
+  VoteRejection rejection(Idea idea, User user, int votingLimit) {
+    Voter voter = voters.get(user);
+    VoterSet ideaVoters = setOf(idea);
+    if (voter == null || !voter.registered) {
+      return VoteRejection.NOT_PARTICIPANT;
+    } else if (ideaVoters == null) {
+      return VoteRejection.INVALID_IDEA;
+    } else if (ideaVoters.contains(voter.slot)) {
+      return VoteRejection.DUPLICATE;
+    }
+    return VoteRejection.LIMIT_REACHED;
+  }
+
+  /**
+   * Método para admissão dos votos de uma cédula. As vagas são reservadas de uma só vez no
+   * contador do votante, e os votos são então admitidos em ordem até esgotá-las; as vagas que
+   * sobrarem são devolvidas.
+   *
+   * @param ideas Ideias votadas.
+   * @param accepted Para cada ideia, se ela é candidata ao voto; ao fim, se o voto foi aceito.
+   * @param user Votante.
+   * @param votingLimit Limite de votos por participante.
+   */
+  void admitAll(Idea[] ideas, boolean[] accepted, User user, int votingLimit) {
+    Voter voter = voters.get(user);
+    boolean eligible = voter != null && voter.registered;
+    int reserved = eligible ? voter.reserve(ideas.length, votingLimit) : 0;
+    int taken = 0;
+    for (int i = 0; i < ideas.length; i++) {
+      if (accepted[i]) {
+        VoterSet ideaVoters = taken < reserved ? setOf(ideas[i]) : null;
+        accepted[i] = ideaVoters != null && ideaVoters.add(voter.slot);
+        if (accepted[i]) {
+          voter.votes.add(ideas[i].getIndex());
+          taken++;
+        }
+      }
+    }
+    if (taken < reserved) {
+      Voter.USED.addAndGet(voter, taken - reserved);
+    }
+  }
+
+  /**
+   * Método para a retirada de um voto, devolvendo-o ao votante.
+   *
+   * @param idea Ideia votada.
+   * @param user Votante.
+   * @return Verdadeiro se o voto existia e foi retirado.
+   */
+  boolean retract(Idea idea, User user) {
+    Voter voter = voters.get(user);
+    VoterSet ideaVoters = setOf(idea);
+    if (voter == null || ideaVoters == null || !ideaVoters.remove(voter.slot)) {
+      return false;
+    }
+    voter.votes.remove(idea.getIndex());
+    if (voter.registered) {
+      Voter.USED.decrementAndGet(voter);
+    }
+    return true;
+  }
+
+  /**
+   * Método para a restauração de um voto já aceito anteriormente, sem verificação das regras de
+   * votação. O voto só é contado no limite do votante se este ainda for participante.
+   *
+   * @param idea Ideia votada.
+   * @param user Votante.
+   * @return Verdadeiro se o voto ainda não estava no livro.
+   */
+  boolean restore(Idea idea, User user) {
+    VoterSet ideaVoters = setOf(idea);
+    if (ideaVoters == null) {
+      return false;
+    }
+    Voter voter = voterOf(user);
+    if (!ideaVoters.add(voter.slot)) {
+      return false;
+    }
+    voter.votes.add(idea.getIndex());
+    if (voter.registered) {
+      Voter.USED.incrementAndGet(voter);
+    }
+    return true;
+  }
+
+  /**
+   * Método para o registro da autoria de uma ideia no índice inverso do autor.
+   *
+   * @param idea Ideia adicionada, com o índice já definido pela sessão.
+   */
+  void author(Idea idea) {
+    voterOf(idea.getAuthor()).authored.add(idea.getIndex());
+  }
+
+  /**
+   * Método para a obtenção das ideias em que um usuário votou, pelo índice inverso.
+   *
+   * @param user Usuário a consultar.
+   * @return Índices das ideias, em ordem crescente.
+   */
+  int[] votedIdeas(User user) {
+    Voter voter = voters.get(user);
+    return voter == null ? new int[0] : voter.votes.toArray();
+  }
+
+  /**
+   * Método para a obtenção das ideias propostas por um usuário, pelo índice inverso.
+   *
+   * @param user Usuário a consultar.
+   * @return Índices das ideias, em ordem crescente.
+   */
+  int[] authoredIdeas(User user) {
+    Voter voter = voters.get(user);
+    return voter == null ? new int[0] : voter.authored.toArray();
+  }
+
+  /**
+   * Método para a definição do peso dos votos de um usuário, usado na votação ponderada.
+   *
+   * @param user Usuário.
+   * @param weight Peso dos votos, não negativo.
+   */
+  void setWeight(User user, int weight) {
+    voterOf(user).weight = weight;
+  }
+
+  /**
+   * Método para a obtenção do peso dos votos de um usuário.
+   *
+   * @param user Usuário a consultar.
+   * @return Peso dos votos, um se não tiver sido definido.
+   */
+  int getWeight(User user) {
+    Voter voter = voters.get(user);
+    return voter == null ? 1 : voter.weight;
+  }
+
+  /**
+   * Método para a obtenção dos pesos diferentes do padrão.
+   *
+   * @return Peso de cada usuário cujo peso foi alterado, em ordem de primeira aparição no livro.
+   */
+  Map<User, Integer> getWeights() {
+    Map<User, Integer> weights = new LinkedHashMap<>();
+    User[] table = users;
+    for (int slot = 0; slot < table.length && table[slot] != null; slot++) {
+      Voter voter = voters.get(table[slot]);
+      if (voter != null && voter.weight != 1) {
+        weights.put(table[slot], voter.weight);
+      }
+    }
+    return weights;
+  }
+
+  /**
+   * Método para a obtenção dos votantes de uma ideia.
+   *
+   * @param idea Ideia a consultar.
+   * @return Arranjo com os votantes, em ordem de primeira aparição no livro.
+   */
+  User[] getVoters(Idea idea) {
+    VoterSet ideaVoters = setOf(idea);
+    if (ideaVoters == null) {
+      IdeaArchive archive = this.archive;
+      return archive == null ? new User[0] : archive.getVoters(idea);
+    }
+    int[] slots = ideaVoters.toArray();
+    User[] table = users;
+    User[] result = new User[slots.length];
+    for (int i = 0; i < slots.length; i++) {
+      result[i] = table[slots[i]];
+    }
+    return result;
+  }
+
+  /**
+   * Método para a obtenção da contagem de votos de uma ideia.
+   *
+   * @param idea Ideia a consultar.
+   * @return Contagem de votos.
+   */
+  int countVotes(Idea idea) {
+    VoterSet ideaVoters = setOf(idea);
+    if (ideaVoters == null) {
+      IdeaArchive archive = this.archive;
+      return archive == null ? 0 : archive.countVotes(idea);
+    }
+    return ideaVoters.size();
+  }
+
+  /**
+   * Método para a leitura das contagens de votos de um intervalo de índices de ideias, sem passar
+   * pelas ideias.
+   *
+   * @param from Primeiro índice, inclusivo.
+   * @param to Último índice, exclusivo.
+   * @param counts Arranjo de destino, indexado pelo índice da ideia.
+   */
+  void countVotes(int from, int to, int[] counts) {
+    VoterSet[] current = ideas;
+    IdeaArchive archive = this.archive;
+    for (int i = from; i < to; i++) {
+      VoterSet ideaVoters = i < current.length ? current[i] : null;
+      if (ideaVoters != null) {
+        counts[i] = ideaVoters.size();
+      } else {
+        counts[i] = archive == null ? 0 : archive.countVotes(i);
+      }
+    }
+  }
+
+  /**
+   * Método para a verificação de que um usuário é participante registrado.
+   *
+   * @param user Usuário a verificar.
+   * @return Verdadeiro se o usuário está registrado.
+   */
+  boolean isRegistered(User user) {
+    Voter voter = voters.get(user);
+    return voter != null && voter.registered;
+  }
+
+  private VoterSet setOf(Idea idea) {
+    int index = idea.getIndex();
+    VoterSet[] current = ideas;
+    return index < current.length ? current[index] : null;
+  }
+
+  /**
+   * Método para a obtenção do votante de um usuário, atribuindo-lhe uma posição se ele ainda não
+   * tiver sido visto pelo livro.
+   *
+   * @param user Usuário.
+   * @return Votante do usuário.
+   */
+  private Voter voterOf(User user) {
+    Voter voter = voters.get(user);
+    if (voter != null) {
+      return voter;
+    }
+    synchronized (this) {
+      voter = voters.get(user);
+      if (voter == null) {
+        int slot = nextSlot++;
+        User[] table = users;
+        if (slot == table.length) {
+          table = Arrays.copyOf(table, slot * 2);
+        }
+        table[slot] = user;
+        users = table;
+        voter = new Voter(slot);
+        voters.put(user, voter);
+      }
+      return voter;
+    }
+  }
+
+  /**
+   * Classe que representa um usuário no livro de votos, com a sua posição na matriz de votos, o
+   * seu contador de votos usados e o seu índice inverso.
+   */
+  private static final class Voter {
+
+    static final AtomicIntegerFieldUpdater<Voter> USED =
+        AtomicIntegerFieldUpdater.newUpdater(Voter.class, "used");
+
+    /**
+     * Posição do usuário na matriz de votos.
+     */
+    final int slot;
+    /**
+     * Votos usados pelo participante.
+     */
+    volatile int used;
+    /**
+     * Se o usuário é participante registrado.
+     */
+    volatile boolean registered;
+    /**
+     * Peso dos votos do usuário.
+     */
+    volatile int weight = 1;
+    /**
+     * Índices das ideias em que o usuário votou.
+     */
+    final VoterSet votes = new VoterSet();
+    /**
+     * Índices das ideias propostas pelo usuário.
+     */
+    final VoterSet authored = new VoterSet();
+
+    Voter(int slot) {
+      this.slot = slot;
+    }
+
+    /**
+     * Método para a reserva atômica de uma vaga no contador de votos, que falha se o limite já
+     * tiver sido alcançado.
+     *
+     * @param votingLimit Limite de votos por participante.
+     * @return Verdadeiro se a vaga foi reservada.
+     */
+    boolean reserve(int votingLimit) {
+      int current;
+      do {
+        current = used;
+        if (current >= votingLimit) {
+          return false;
+        }
+      } while (!USED.compareAndSet(this, current, current + 1));
+      return true;
+    }
+
+    /**
+     * Método para a reserva atômica de até uma quantidade de vagas no contador de votos, limitada
+     * pelas vagas que ainda restam.
+     *
+     * @param wanted Quantidade de vagas desejada.
+     * @param votingLimit Limite de votos por participante.
+     * @return Quantidade de vagas reservadas.
+     */
+    int reserve(int wanted, int votingLimit) {
+      int current;
+      int granted;
+      do {
+        current = used;
+        granted = Math.min(wanted, votingLimit - current);
+        if (granted <= 0) {
+          return 0;
+        }
+      } while (!USED.compareAndSet(this, current, current + granted));
+      return granted;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package main.java;
+
+/**
+ * Classe de enumeração para representar os motivos pelos quais um voto é recusado, registrados
+ * pelas métricas da sessão.
+ * 
+ * @author hugo
+ *
+ */
+public enum VoteRejection {
+
+  /**
+   * A sessão não está na fase de votação, ou foi descarregada pelo registro.
+   */
+  WRONG_PHASE,
+  /**
+   * O votante não é participante da sessão.
+   */
+  NOT_PARTICIPANT,
+  /**
+   * O votante é o autor da ideia.
+   */
+  OWN_IDEA,
+  /**
+   * O votante já votou na ideia, ou ela já está na sua cédula.
+   */
+  DUPLICATE,
+  /**
+   * O votante já usou todos os seus votos.
+   */
+  LIMIT_REACHED,
+  /**
+   * A ideia é nula ou pertence a outra sessão.
+   */
+  INVALID_IDEA,
+  /**
+   * O votante já usou todos os seus votos do período em todas as sessões, veja
+   * {@link UserIndex}.
+   */
+  QUOTA_EXCEEDED
+}
@@ -0,0 +1,164 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * Classe que representa o conjunto de votantes de uma ideia, guardado como posições de votantes
+ * (inteiros densos atribuídos pelo livro de votos) em vez de referências a usuários.
+ *
+ * Enquanto a ideia tem poucos votos, as posições ficam em um arranjo ordenado, que custa 4 bytes
+ * por voto. Quando o arranjo passaria a ocupar mais que um mapa de bits com um bit por votante, o
+ * conjunto passa a ser guardado como mapa de bits, o que é o caso das ideias muito votadas. Assim
+ * nenhum voto aloca objetos, e a contagem é um inteiro lido sem bloqueio.
+ *
+ * O mesmo conjunto guarda os índices de ideias do índice inverso de cada votante no livro.
+ * @author hugo
+ */
+class VoterSet {
+
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * Quantidade de votantes.
+   */
+  private volatile int size;
+  /**
+   * Posições dos votantes em ordem crescente, enquanto o conjunto é esparso.
+   */
+  private int[] slots;
+  /**
+   * Mapa de bits das posições dos votantes, depois que o conjunto se torna denso.
+   */
+  private long[] bits;
+
+  /**
+   * Construtor para o conjunto, que inicia vazio e esparso.
+   */
+  VoterSet() {
+    slots = EMPTY;
+  }
+
+  /**
+   * Método para a obtenção da quantidade de votantes, sem bloqueio.
+   *
+   * @return Quantidade de votantes.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Método para a verificação de que uma posição está no conjunto.
+   *
+   * @param slot Posição do votante.
+   * @return Verdadeiro se o votante está no conjunto.
+   */
+  synchronized boolean contains(int slot) {
+    if (bits != null) {
+      int word = slot >>> 6;
+      return word < bits.length && (bits[word] & (1L << slot)) != 0;
+    }
+    return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+  }
+
+  /**
+   * Método para a adição de uma posição ao conjunto.
+   *
+   * @param slot Posição do votante.
+   * @return Verdadeiro se o votante ainda não estava no conjunto.
+   */
+  synchronized boolean add(int slot) {
+    if (bits == null) {
+      int at = Arrays.binarySearch(slots, 0, size, slot);
+      if (at >= 0) {
+        return false;
+      }
+      at = -at - 1;
+      if (size == slots.length) {
+        int highest = Math.max(slot, size == 0 ? 0 : slots[size - 1]);
+        if (size + 1 > 2 * ((highest >>> 6) + 1)) {
+          // O arranjo passaria a ocupar mais que o mapa de bits equivalente
+          toBits(highest);
+          return add(slot);
+        }
+        slots = Arrays.copyOf(slots, Math.max(2, size * 2));
+      }
+      System.arraycopy(slots, at, slots, at + 1, size - at);
+      slots[at] = slot;
+      size++;
+      return true;
+    }
+    int word = slot >>> 6;
+    if (word >= bits.length) {
+      bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length + (bits.length >> 1)));
+    }
+    long mask = 1L << slot;
+    if ((bits[word] & mask) != 0) {
+      return false;
+    }
+    bits[word] |= mask;
+    size++;
+    return true;
+  }
+
+  /**
+   * Método para a remoção de uma posição do conjunto.
+   *
+   * @param slot Posição do votante.
+   * @return Verdadeiro se o votante estava no conjunto.
+   */
+  synchronized boolean remove(int slot) {
+    if (bits == null) {
+      int at = Arrays.binarySearch(slots, 0, size, slot);
+      if (at < 0) {
+        return false;
+      }
+      System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+      size--;
+      return true;
+    }
+    int word = slot >>> 6;
+    long mask = 1L << slot;
+    if (word >= bits.length || (bits[word] & mask) == 0) {
+      return false;
+    }
+    bits[word] &= ~mask;
+    size--;
+    return true;
+  }
+
+  /**
+   * Método para a obtenção das posições do conjunto.
+   *
+   * @return Arranjo com as posições, em ordem crescente.
+   */
+  synchronized int[] toArray() {
+    if (bits == null) {
+      return Arrays.copyOf(slots, size);
+    }
+    int[] result = new int[size];
+    int filled = 0;
+    for (int word = 0; word < bits.length; word++) {
+      long remaining = bits[word];
+      while (remaining != 0) {
+        result[filled++] = (word << 6) + Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Método para a conversão do arranjo ordenado em mapa de bits.
+   *
+   * @param highest Maior posição que o mapa deve comportar.
+   */
+  private void toBits(int highest) {
+    long[] converted = new long[(highest >>> 6) + 1];
+    for (int i = 0; i < size; i++) {
+      converted[slots[i] >>> 6] |= 1L << slots[i];
+    }
+    bits = converted;
+    slots = null;
+  }
+}
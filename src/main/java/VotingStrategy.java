@@ -0,0 +1,68 @@
+package main.java;
+
+/**
+ * Classe de enumeração para representar os sistemas de votação de uma sessão, que definem como os
+ * votos dos participantes são apurados e ordenados no ranqueamento.
+ * 
+ * @author hugo
+ *
+ */
+public enum VotingStrategy {
+
+  /**
+   * Aprovação: cada participante dá no máximo um voto a cada ideia, até o limite de votos.
+   */
+  APPROVAL {
+    @Override
+    Tally newTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+      return new ApprovalTally(ledger, leaderboard);
+    }
+  },
+  /**
+   * Pontos: cada participante distribui o limite de votos entre as ideias, podendo repetir ideias.
+   */
+  DOT {
+    @Override
+    Tally newTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+      return new DotTally(ledger, leaderboard, votingLimit);
+    }
+  },
+  /**
+   * Ponderado: como a aprovação, mas cada voto vale o peso do votante.
+   */
+  WEIGHTED {
+    @Override
+    Tally newTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+      return new WeightedTally(ledger, leaderboard);
+    }
+  },
+  /**
+   * Contagem de Borda: cada participante ordena ideias, e cada posição vale menos que a anterior.
+   */
+  BORDA {
+    @Override
+    Tally newTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+      return new BordaTally(ledger, leaderboard, votingLimit);
+    }
+  },
+  /**
+   * Segundo turno instantâneo: cada participante ordena ideias, e as menos votadas são eliminadas
+   * uma a uma ao fim da votação.
+   */
+  RANKED_CHOICE {
+    @Override
+    Tally newTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit) {
+      return new RankedChoiceTally(ledger, leaderboard, votingLimit);
+    }
+  };
+
+  /**
+   * Método para a criação da apuração do sistema de votação.
+   * 
+   * @param ledger Livro de votos da sessão.
+   * @param leaderboard Placar da sessão.
+   * @param votingLimit Limite de votos por participante.
+   * @return Apuração vazia.
+   */
+  abstract Tally newTally(VoteLedger ledger, Leaderboard leaderboard, int votingLimit);
+}
@@ -0,0 +1,81 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * Classe que representa a apuração por votos ponderados: os votos seguem as regras da aprovação,
+ * mas cada voto vale o peso do votante, definido antes da votação. A pontuação de cada ideia é a
+ * soma dos pesos dos seus votantes, atualizada a cada voto.
+ * @author hugo
+ */
+class WeightedTally extends ApprovalTally {
+
+  /**
+   * Pontuação de cada ideia, indexada pelo índice da ideia.
+   */
+  private int[] points;
+
+  WeightedTally(VoteLedger ledger, Leaderboard leaderboard) {
+    super(ledger, leaderboard);
+    points = new int[16];
+  }
+
+  @Override
+  public void open(Idea idea) {
+    super.open(idea);
+    synchronized (this) {
+      if (idea.getIndex() >= points.length) {
+        points = Arrays.copyOf(points, Math.max(idea.getIndex() + 1, points.length * 2));
+      }
+    }
+  }
+
+  @Override
+  public boolean vote(Idea idea, User voter, int votingLimit) {
+    if (!ledger.admit(idea, voter, votingLimit)) {
+      return false;
+    }
+    add(idea, ledger.getWeight(voter));
+    leaderboard.refresh(idea);
+    return true;
+  }
+
+  @Override
+  public void voteAll(Idea[] ideas, boolean[] accepted, User voter, int votingLimit) {
+    ledger.admitAll(ideas, accepted, voter, votingLimit);
+    int weight = ledger.getWeight(voter);
+    for (int i = 0; i < ideas.length; i++) {
+      if (accepted[i]) {
+        add(ideas[i], weight);
+      }
+    }
+    leaderboard.refreshAll(ideas, accepted);
+  }
+
+  @Override
+  public boolean withdraw(Idea idea, User voter) {
+    if (!ledger.retract(idea, voter)) {
+      return false;
+    }
+    add(idea, -ledger.getWeight(voter));
+    leaderboard.refresh(idea);
+    return true;
+  }
+
+  @Override
+  public void restore(Idea idea, User voter) {
+    if (ledger.restore(idea, voter)) {
+      add(idea, ledger.getWeight(voter));
+    }
+    leaderboard.refresh(idea);
+  }
+
+  @Override
+  public synchronized int score(Idea idea) {
+    return points[idea.getIndex()];
+  }
+
+  private synchronized void add(Idea idea, int weight) {
+    points[idea.getIndex()] += weight;
+  }
+}
@@ -2,9 +2,14 @@ package test.java;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -145,4 +150,131 @@ public class IdeaTest {
     ideas.get(0).removeVote(users.get(1));
     assertEquals(0, ideas.get(0).countVotes().intValue());
   }
+
+  /**
+   * Teste para a devolução de votos, nele testa-se que a remoção de um voto devolve este ao
+   * votante, que pode então votar em outra ideia sem ultrapassar o limite de votos.
+   */
+  @Test
+  public void removeVoteReleasesLimit() {
+    session.nextPhase(); // VOTING
+
+    // Com o limite de votos alcançado, o voto em outra ideia é recusado
+    ideas.get(1).registerVote(users.get(2));
+    ideas.get(0).registerVote(users.get(2));
+    assertEquals(0, ideas.get(0).countVotes().intValue());
+
+    // Após remover o voto, o votante pode votar novamente
+    ideas.get(1).removeVote(users.get(2));
+    ideas.get(0).registerVote(users.get(2));
+    assertEquals(1, ideas.get(0).countVotes().intValue());
+    assertEquals(0, ideas.get(1).countVotes().intValue());
+  }
+
+  /**
+   * Teste de estresse para a votação concorrente, nele vários participantes votam ao mesmo tempo,
+   * cada um repetidas vezes em todas as ideias, e testa-se que nenhum ultrapassa o limite de votos
+   * nem vota duas vezes na mesma ideia.
+   */
+  @Test
+  public void concurrentRegisterVote() throws InterruptedException {
+    int votersCount = 64;
+    int ideasCount = 32;
+    int votingLimit = 5;
+
+    User host = new User("Host");
+    Session stressSession = new Session(host, "Estresse", votingLimit);
+    stressSession.addParticipant(host);
+    List<User> voters = new ArrayList<>();
+    for (int i = 0; i < votersCount; i++) {
+      User voter = new User("Votante" + i);
+      voters.add(voter);
+      stressSession.addParticipant(voter);
+    }
+    stressSession.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < ideasCount; i++) {
+      stressSession.addIdea(new Idea(host, "Ideia " + i));
+    }
+    stressSession.nextPhase(); // VOTING
+    Idea[] stressIdeas = stressSession.getIdeas();
+
+    // Duas threads por votante competem pelos mesmos votos
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    CountDownLatch start = new CountDownLatch(1);
+    for (User voter : voters) {
+      for (int t = 0; t < 2; t++) {
+        executor.execute(() -> {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int round = 0; round < 3; round++) {
+            for (Idea idea : stressIdeas) {
+              idea.registerVote(voter);
+            }
+          }
+        });
+      }
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    // Cada votante usa exatamente o seu limite de votos, nunca mais que isso
+    int totalVotes = 0;
+    for (Idea idea : stressIdeas) {
+      assertTrue(idea.countVotes() <= votersCount);
+      totalVotes += idea.countVotes();
+    }
+    assertEquals(votersCount * votingLimit, totalVotes);
+  }
+
+  /**
+   * Teste para uma ideia votada por muitos participantes, nele testa-se que os votos continuam
+   * corretos quando o conjunto de votantes da ideia passa a ser guardado de forma densa, com votos
+   * e remoções em posições esparsas.
+   */
+  @Test
+  public void manyVoters() {
+    User host = new User("Host");
+    Session largeSession = new Session(host, "Grande", 1);
+    largeSession.addParticipant(host);
+    List<User> voters = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      User voter = new User("Votante" + i);
+      voters.add(voter);
+      largeSession.addParticipant(voter);
+    }
+    largeSession.nextPhase(); // BRAINSTORM
+    Idea popular = new Idea(host, "Popular");
+    Idea other = new Idea(host, "Outra");
+    largeSession.addIdea(popular);
+    largeSession.addIdea(other);
+    largeSession.nextPhase(); // VOTING
+
+    // Votos em ordem decrescente de entrada, para inserir sempre no início do conjunto
+    for (int i = voters.size() - 1; i >= 0; i--) {
+      popular.registerVote(voters.get(i));
+      popular.registerVote(voters.get(i));
+    }
+    assertEquals(500, popular.countVotes().intValue());
+
+    // Cada terceiro votante remove o voto e usa-o na outra ideia
+    for (int i = 0; i < voters.size(); i += 3) {
+      popular.removeVote(voters.get(i));
+      popular.removeVote(voters.get(i));
+      other.registerVote(voters.get(i));
+    }
+    assertEquals(333, popular.countVotes().intValue());
+    assertEquals(167, other.countVotes().intValue());
+
+    // O limite de votos continua valendo para quem está no conjunto denso
+    other.registerVote(voters.get(1));
+    assertEquals(167, other.countVotes().intValue());
+    popular.removeVote(voters.get(1));
+    other.registerVote(voters.get(1));
+    assertEquals(332, popular.countVotes().intValue());
+    assertEquals(168, other.countVotes().intValue());
+  }
 }
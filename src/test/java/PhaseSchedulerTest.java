@@ -0,0 +1,186 @@
+package test.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.PhaseScheduler;
+import main.java.PhaseTimer;
+import main.java.SessionPhase;
+import main.java.SessionRegistry;
+import main.java.User;
+
+/**
+ * Classe de testes unitários para a classe PhaseScheduler, com um relógio controlado pelos testes.
+ * @author hugo
+ */
+public class PhaseSchedulerTest {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * Relógio dos testes, em milissegundos
+   */
+  AtomicLong clock;
+  /**
+   * Registro das sessões cronometradas
+   */
+  SessionRegistry registry;
+  /**
+   * Duração das fases cronometradas: 10 minutos de brainstorm e 5 de votação
+   */
+  Map<SessionPhase, Long> durations;
+
+  /**
+   * Método de pré-configuração para os testes, que cria o relógio, o registro e as durações.
+   */
+  @Before
+  public void setUp() {
+    clock = new AtomicLong(1_000_000);
+    registry = new SessionRegistry(null, Integer.MAX_VALUE, clock::get);
+    durations = new EnumMap<>(SessionPhase.class);
+    durations.put(SessionPhase.BRAINSTORM, 10 * MINUTE);
+    durations.put(SessionPhase.VOTING, 5 * MINUTE);
+  }
+
+  /**
+   * Teste das fases cronometradas, nele testa-se que a sessão passa de fase exatamente no prazo,
+   * que a fase seguinte é cronometrada a partir do prazo anterior, e que uma sessão sem fase
+   * cronometrada ou fora do registro não é agendada.
+   */
+  @Test
+  public void timedPhases() {
+    PhaseScheduler scheduler = new PhaseScheduler(registry, 100, clock::get);
+    long id = brainstorm();
+    assertNull(scheduler.schedule(registry.create(new User("Bia"), "x", 3), durations));
+    assertNull(scheduler.schedule(99, durations));
+
+    PhaseTimer timer = scheduler.schedule(id, durations);
+    assertEquals(SessionPhase.BRAINSTORM, timer.getPhase());
+    assertEquals(10 * MINUTE, timer.remainingMillis());
+    clock.addAndGet(10 * MINUTE - 1);
+    assertEquals(0, scheduler.advance());
+    assertEquals(SessionPhase.BRAINSTORM, registry.get(id).getPhase());
+
+    // O atraso do avanço não atrasa o prazo da fase seguinte
+    clock.addAndGet(MINUTE + 1);
+    assertEquals(1, scheduler.advance());
+    assertEquals(SessionPhase.VOTING, registry.get(id).getPhase());
+    assertEquals(SessionPhase.VOTING, timer.getPhase());
+    assertEquals(4 * MINUTE, timer.remainingMillis());
+    clock.addAndGet(4 * MINUTE);
+    assertEquals(1, scheduler.advance());
+    assertEquals(SessionPhase.RANKING, registry.get(id).getPhase());
+    assertFalse(timer.isActive());
+    assertEquals(0, scheduler.size());
+  }
+
+  /**
+   * Teste da pausa, extensão e cancelamento, nele testa-se que a pausa guarda o tempo restante,
+   * que a extensão vale com ou sem pausa, que o cancelamento impede a passagem e que uma passagem
+   * manual encerra o temporizador.
+   */
+  @Test
+  public void pauseExtendAndCancel() {
+    PhaseScheduler scheduler = new PhaseScheduler(registry, 100, clock::get);
+    long id = brainstorm();
+    PhaseTimer timer = scheduler.schedule(id, durations);
+
+    clock.addAndGet(4 * MINUTE);
+    scheduler.advance();
+    assertTrue(timer.pause());
+    assertFalse(timer.pause());
+    assertTrue(timer.isPaused());
+    clock.addAndGet(60 * MINUTE);
+    assertEquals(0, scheduler.advance());
+    assertEquals(6 * MINUTE, timer.remainingMillis());
+    assertTrue(timer.extend(MINUTE));
+    assertTrue(timer.resume());
+    assertEquals(7 * MINUTE, timer.remainingMillis());
+    assertTrue(timer.extend(-2 * MINUTE));
+    clock.addAndGet(5 * MINUTE - 100);
+    assertEquals(0, scheduler.advance());
+    clock.addAndGet(100);
+    assertEquals(1, scheduler.advance());
+    assertEquals(SessionPhase.VOTING, registry.get(id).getPhase());
+
+    assertTrue(timer.cancel());
+    assertFalse(timer.cancel());
+    clock.addAndGet(10 * MINUTE);
+    assertEquals(0, scheduler.advance());
+    assertEquals(SessionPhase.VOTING, registry.get(id).getPhase());
+
+    long manual = brainstorm();
+    PhaseTimer ended = scheduler.schedule(manual, durations);
+    registry.nextPhase(manual);
+    clock.addAndGet(10 * MINUTE);
+    assertEquals(0, scheduler.advance());
+    assertEquals(SessionPhase.VOTING, registry.get(manual).getPhase());
+    assertFalse(ended.isActive());
+  }
+
+  /**
+   * Teste de carga com dezenas de milhares de sessões, tiques de 1 milissegundo e prazos de até
+   * dez horas, que passam por todos os níveis da roda e pela lista além deles. A cada avanço do
+   * relógio, todas as sessões com o prazo vencido, e só elas, passaram de fase.
+   */
+  @Test
+  public void manySessions() {
+    PhaseScheduler scheduler = new PhaseScheduler(registry, 1, clock::get);
+    Random random = new Random(42);
+    int count = 20_000;
+    long[] ids = new long[count];
+    long[] deadlines = new long[count];
+    PhaseTimer[] timers = new PhaseTimer[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = brainstorm();
+      long duration = random.nextInt(i % 2 == 0 ? 1000 : 600 * (int) MINUTE);
+      Map<SessionPhase, Long> single = new EnumMap<>(SessionPhase.class);
+      single.put(SessionPhase.BRAINSTORM, duration);
+      // O primeiro prazo possível é o tique seguinte ao da criação do agendador
+      deadlines[i] = Math.max(1_000_001, clock.get() + duration);
+      timers[i] = scheduler.schedule(ids[i], single);
+      if (i % 10 == 0) {
+        timers[i].cancel();
+        deadlines[i] = Long.MAX_VALUE;
+      } else if (i % 10 == 1) {
+        timers[i].extend(30 * MINUTE);
+        deadlines[i] += 30 * MINUTE;
+      }
+      clock.addAndGet(random.nextInt(3));
+    }
+    assertEquals(count - count / 10, scheduler.size());
+
+    int advanced = 0;
+    while (scheduler.size() > 0) {
+      clock.addAndGet(random.nextInt((int) (20 * MINUTE)));
+      advanced += scheduler.advance();
+      long now = clock.get();
+      for (int i = 0; i < count; i += 7) {
+        SessionPhase expected = now >= deadlines[i] ? SessionPhase.VOTING
+            : SessionPhase.BRAINSTORM;
+        assertEquals(expected, registry.get(ids[i]).getPhase());
+      }
+    }
+    assertEquals(count - count / 10, advanced);
+  }
+
+  /**
+   * Método auxiliar que cria uma sessão em brainstorm no registro.
+   */
+  private long brainstorm() {
+    long id = registry.create(new User("Ana"), "Sessão cronometrada", 3);
+    registry.nextPhase(id);
+    return id;
+  }
+}
@@ -0,0 +1,147 @@
+package test.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import main.java.Idea;
+import main.java.SearchIndex;
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Classe de testes unitários para a classe SearchIndex.
+ * @author hugo
+ */
+public class SearchIndexTest {
+
+  /**
+   * Diretório temporário para os arquivos do índice
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Usuários para os testes
+   */
+  User[] users;
+  /**
+   * Sessão em votação, de identificador 1, para os testes
+   */
+  Session session;
+
+  /**
+   * Método de pré-configuração para os testes, que cria uma sessão em votação com ideias e votos.
+   */
+  @Before
+  public void setUp() {
+    users = new User[] {new User("Maria"), new User("João"), new User("Ana")};
+    session = new Session(users[0], "Sessão de teste", 3);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(new Idea(users[0], "Aplicativo de caronas para os funcionários"),
+        new Idea(users[1], "Caronas solidárias: um mural de caronas na recepção"),
+        new Idea(users[2], "Horta comunitária no estacionamento"),
+        new Idea(users[1], "Bicicletário coberto"));
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    ideas[0].registerVote(users[1]);
+    ideas[0].registerVote(users[2]);
+    ideas[2].registerVote(users[0]);
+  }
+
+  /**
+   * Teste para as consultas, nele testa-se a busca por palavra sem diferenciar maiúsculas e
+   * acentos, por prefixo, por autor e por sessão, e as ordens por relevância e por votos.
+   */
+  @Test
+  public void search() {
+    SearchIndex index = new SearchIndex();
+    for (Idea idea : session.getIdeas()) {
+      index.add(1, idea);
+    }
+    index.add(2, new Idea(users[2], "Caronas entre as filiais da empresa na mesma cidade"));
+    assertEquals(5, index.size());
+
+    // A ideia que repete a palavra é a mais relevante
+    SearchIndex.Hit[] hits = index.search("CARONAS", 10, SearchIndex.Order.RELEVANCE);
+    assertEquals(3, hits.length);
+    assertEquals(1, hits[0].getIndex());
+    assertEquals("João", hits[0].getAuthor());
+    assertTrue(hits[0].getScore() > hits[1].getScore());
+
+    hits = index.search("caronas", 10, SearchIndex.Order.VOTES);
+    assertEquals(0, hits[0].getIndex());
+    assertEquals(2, hits[0].getVotes());
+
+    assertEquals(1, index.search("comunitaria", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(1, index.search("bic*", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(1, index.search("hort* estacion*", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(0, index.search("bic* hort*", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(2, index.search("carona* author:ana", 10, SearchIndex.Order.RELEVANCE)[0]
+        .getSession());
+    assertEquals(1, index.search("carona* author:ana", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(2, index.search("caronas session:1", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(4, index.search("session:1", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(1, index.search("caronas", 1, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(0, index.search("", 10, SearchIndex.Order.RELEVANCE).length);
+
+    index.removeSession(2);
+    assertEquals(2, index.search("caronas", 10, SearchIndex.Order.RELEVANCE).length);
+  }
+
+  /**
+   * Teste para a gravação e abertura do índice, nele testa-se que o índice aberto do disco
+   * responde às mesmas consultas, que recebe novas ideias e atualizações de votos sobre o segmento
+   * gravado, e que uma nova gravação descarta as sessões removidas.
+   */
+  @Test
+  public void saveAndOpen() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("ideas.idx");
+    SearchIndex index = SearchIndex.open(file);
+    for (Idea idea : session.getIdeas()) {
+      index.add(1, idea);
+    }
+    index.add(2, new Idea(users[2], "Caronas entre as filiais da empresa na mesma cidade"));
+    index.add(3, new Idea(users[0], null));
+    index.save();
+
+    SearchIndex reopened = SearchIndex.open(file);
+    assertEquals(6, reopened.size());
+    assertEquals(3, reopened.maxSession());
+    SearchIndex.Hit[] expected = index.search("carona*", 10, SearchIndex.Order.RELEVANCE);
+    SearchIndex.Hit[] actual = reopened.search("carona*", 10, SearchIndex.Order.RELEVANCE);
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].getSession(), actual[i].getSession());
+      assertEquals(expected[i].getIndex(), actual[i].getIndex());
+      assertEquals(expected[i].getDescription(), actual[i].getDescription());
+      assertEquals(expected[i].getScore(), actual[i].getScore(), 1e-9);
+    }
+
+    // Novas ideias e votos somam-se ao segmento gravado
+    session.getIdeas()[1].registerVote(users[0]);
+    reopened.updateVotes(1, session);
+    reopened.add(4, new Idea(users[1], "Caronas de bicicleta"));
+    reopened.removeSession(2);
+    assertEquals(1, reopened.search("mural", 10, SearchIndex.Order.VOTES)[0].getVotes());
+    assertEquals(3, reopened.search("carona*", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(1, reopened.search("bicicleta", 10, SearchIndex.Order.RELEVANCE).length);
+    reopened.save();
+
+    SearchIndex merged = SearchIndex.open(file);
+    assertEquals(6, merged.size());
+    assertEquals(3, merged.search("carona*", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(0, merged.search("filiais", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(1, merged.search("session:3", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(1, merged.search("caronas session:1 author:joao", 10,
+        SearchIndex.Order.RELEVANCE)[0].getVotes());
+  }
+}
@@ -0,0 +1,315 @@
+package test.java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.SessionCodec;
+import main.java.SessionPhase;
+import main.java.User;
+import main.java.VotingStrategy;
+
+/**
+ * Classe de testes unitários para a classe SessionCodec.
+ * @author hugo
+ */
+public class SessionCodecTest {
+
+  /**
+   * Usuários para os testes
+   */
+  User[] users;
+  /**
+   * Sessão em votação para os testes
+   */
+  Session session;
+
+  /**
+   * Método de pré-configuração para os testes, que cria uma sessão em votação com ideias e votos.
+   */
+  @Before
+  public void setUp() {
+    users = new User[] {new User("Tester1"), new User("Testador ção"), new User("Tester3")};
+    session = new Session(users[0], "Sessão de teste", 2);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[0], "Ideia 1"));
+    session.addIdea(new Idea(users[1], null));
+    session.addIdea(new Idea(users[2], "Ideia 3"));
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    ideas[0].registerVote(users[1]);
+    ideas[0].registerVote(users[2]);
+    ideas[2].registerVote(users[0]);
+  }
+
+  /**
+   * Teste para a gravação e leitura de uma sessão, nele testa-se que a sessão lida tem o mesmo
+   * estado da gravada e que as regras de votação continuam valendo.
+   */
+  @Test
+  public void roundTrip() throws IOException {
+    Session decoded = SessionCodec.decode(new ByteArrayInputStream(encode(session)));
+
+    assertEquals(session.getOwner(), decoded.getOwner());
+    assertEquals(session.getDescription(), decoded.getDescription());
+    assertEquals(session.getVotingLimit(), decoded.getVotingLimit());
+    assertEquals(SessionPhase.VOTING, decoded.getPhase());
+    assertArrayEquals(session.getParticipants(), decoded.getParticipants());
+    Idea[] ideas = session.getIdeas();
+    Idea[] decodedIdeas = decoded.getIdeas();
+    assertEquals(ideas.length, decodedIdeas.length);
+    for (int i = 0; i < ideas.length; i++) {
+      assertEquals(ideas[i].getAuthor(), decodedIdeas[i].getAuthor());
+      assertEquals(ideas[i].getDescription(), decodedIdeas[i].getDescription());
+      assertEquals(ideas[i].countVotes(), decodedIdeas[i].countVotes());
+    }
+    assertNull(decodedIdeas[1].getDescription());
+
+    // O voto repetido continua sendo recusado
+    decodedIdeas[0].registerVote(users[1]);
+    assertEquals(2, decodedIdeas[0].countVotes().intValue());
+  }
+
+  /**
+   * Teste para a gravação e leitura de uma sessão com sistema de votação por cédulas, nele
+   * testa-se que o sistema, os pesos e as cédulas são preservados, e que a cédula lida continua
+   * sujeita às regras de votação.
+   */
+  @Test
+  public void roundTripBallots() throws IOException {
+    Session borda = new Session(users[0], "Borda", 2);
+    borda.addParticipants(users);
+    borda.setVotingStrategy(VotingStrategy.BORDA);
+    borda.setVoteWeight(users[2], 4);
+    borda.nextPhase(); // BRAINSTORM
+    borda.addIdeas(new Idea(users[0], "Ideia 1"), new Idea(users[1], "Ideia 2"),
+        new Idea(users[2], "Ideia 3"));
+    borda.nextPhase(); // VOTING
+    Idea[] ideas = borda.getIdeas();
+    borda.castBallot(users[0], ideas[2], ideas[1]);
+    borda.castBallot(users[1], ideas[0], ideas[2]);
+    ideas[0].registerVote(users[2]);
+
+    Session decoded = SessionCodec.decode(new ByteArrayInputStream(encode(borda)));
+    assertEquals(VotingStrategy.BORDA, decoded.getVotingStrategy());
+    assertEquals(4, decoded.getVoteWeight(users[2]));
+    Idea[] decodedIdeas = decoded.getIdeas();
+    for (int i = 0; i < ideas.length; i++) {
+      assertEquals(borda.scoreOf(ideas[i]), decoded.scoreOf(decodedIdeas[i]));
+      assertEquals(ideas[i].countVotes(), decodedIdeas[i].countVotes());
+    }
+
+    assertEquals(4, decoded.scoreOf(decodedIdeas[0]));
+    assertEquals(1, decoded.scoreOf(decodedIdeas[1]));
+    assertEquals(3, decoded.scoreOf(decodedIdeas[2]));
+
+    // A cédula lida já está no limite de votos, mas pode ser substituída
+    decodedIdeas[1].registerVote(users[0]);
+    assertEquals(1, decoded.scoreOf(decodedIdeas[1]));
+    decoded.castBallot(users[0], decodedIdeas[1]);
+    assertEquals(2, decoded.scoreOf(decodedIdeas[1]));
+    assertEquals(1, decoded.scoreOf(decodedIdeas[2]));
+  }
+
+  /**
+   * Teste para a gravação e leitura de uma sessão com ideias incorporadas, nele testa-se que a
+   * incorporação e os votos combinados são preservados, e que a ideia lida continua fechada aos
+   * votos.
+   */
+  @Test
+  public void roundTripMerges() throws IOException {
+    Idea[] ideas = session.getIdeas();
+    assertTrue(session.mergeIdea(ideas[2], ideas[0], true));
+
+    Session decoded = SessionCodec.decode(new ByteArrayInputStream(encode(session)));
+    Idea[] decodedIdeas = decoded.getIdeas();
+    assertNull(decodedIdeas[0].getMergedInto());
+    assertSame(decodedIdeas[0], decodedIdeas[2].getMergedInto());
+    assertEquals(0, decodedIdeas[2].countVotes().intValue());
+    assertEquals(2, decodedIdeas[0].countVotes().intValue());
+
+    decodedIdeas[2].registerVote(users[1]);
+    assertEquals(0, decodedIdeas[2].countVotes().intValue());
+  }
+
+  /**
+   * Teste para a gravação e leitura de uma sessão com ideias retiradas, nele testa-se que a saída
+   * do participante, com os seus votos e ideias, é preservada, e que a ideia lida continua fechada
+   * aos votos.
+   */
+  @Test
+  public void roundTripWithdrawals() throws IOException {
+    session.removeParticipant(users[2], true);
+
+    Session decoded = SessionCodec.decode(new ByteArrayInputStream(encode(session)));
+    Idea[] decodedIdeas = decoded.getIdeas();
+    assertEquals(2, decoded.getParticipants().length);
+    assertFalse(decodedIdeas[0].isWithdrawn());
+    assertTrue(decodedIdeas[2].isWithdrawn());
+    assertEquals(1, decodedIdeas[0].countVotes().intValue());
+    assertEquals(0, decodedIdeas[2].countVotes().intValue());
+
+    decodedIdeas[2].registerVote(users[1]);
+    assertEquals(0, decodedIdeas[2].countVotes().intValue());
+  }
+
+  /**
+   * Teste para a leitura em fluxo, nele testa-se que as partes da sessão são entregues em ordem
+   * e que um mesmo usuário é lido como um único objeto.
+   */
+  @Test
+  public void streamingDecode() throws IOException {
+    List<String> parts = new ArrayList<>();
+    List<User> seen = new ArrayList<>();
+    SessionCodec.decode(new ByteArrayInputStream(encode(session)), new SessionCodec.Visitor() {
+      @Override
+      public void header(User owner, String description, int votingLimit, SessionPhase phase) {
+        parts.add("header " + description + " " + votingLimit + " " + phase);
+        seen.add(owner);
+      }
+
+      @Override
+      public void participant(User user) {
+        parts.add("participant " + user.getUsername());
+        seen.add(user);
+      }
+
+      @Override
+      public void idea(User author, String description, User[] voters) {
+        parts.add("idea " + description + " " + voters.length);
+      }
+    });
+
+    assertEquals("header Sessão de teste 2 VOTING", parts.get(0));
+    assertEquals("participant Testador ção", parts.get(2));
+    assertEquals("idea Ideia 1 2", parts.get(4));
+    assertEquals(7, parts.size());
+    assertTrue(seen.get(0) == seen.get(1));
+  }
+
+  /**
+   * Teste para o tamanho do formato, nele testa-se que, depois da primeira referência a cada
+   * usuário, um voto custa poucos bytes.
+   */
+  @Test
+  public void compactVotes() throws IOException {
+    User owner = new User("Owner");
+    Session large = new Session(owner, "Grande", 10);
+    large.addParticipant(owner);
+    User[] voters = new User[100];
+    for (int i = 0; i < voters.length; i++) {
+      voters[i] = new User("Voter" + i);
+      large.addParticipant(voters[i]);
+    }
+    large.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < 50; i++) {
+      large.addIdea(new Idea(owner, "I" + i));
+    }
+    large.nextPhase(); // VOTING
+    int votes = 0;
+    for (int v = 0; v < voters.length; v++) {
+      for (int i = 0; i < 10; i++) {
+        large.getIdea((v + i * 3) % 50).registerVote(voters[v]);
+        votes++;
+      }
+    }
+
+    int withoutVotes = encode(new Session(owner, "Grande", 10)).length;
+    int size = encode(large).length;
+    // Participantes e ideias custam poucos bytes cada, e cada voto no máximo dois
+    assertTrue(size - withoutVotes < voters.length * 12 + 50 * 5 + votes * 2);
+  }
+
+  /**
+   * Teste para a leitura de dados que não estão no formato, nele testa-se que a leitura falha.
+   */
+  @Test
+  public void unknownFormat() {
+    try {
+      SessionCodec.decode(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("desconhecido"));
+    }
+  }
+
+  /**
+   * Teste para a leitura de dados corrompidos, nele testa-se que a leitura de uma gravação
+   * truncada em qualquer ponto, ou com qualquer byte alterado, termina ou falha com IOException,
+   * sem exceções de outros tipos nem alocações do tamanho de uma contagem corrompida.
+   */
+  @Test
+  public void corruptedInput() throws IOException {
+    byte[] valid = encode(session);
+    for (int length = 0; length < valid.length; length++) {
+      try {
+        SessionCodec.decode(new ByteArrayInputStream(Arrays.copyOf(valid, length)));
+        fail("truncada em " + length);
+      } catch (IOException e) {
+        // Esperado
+      }
+    }
+    for (int i = 0; i < valid.length; i++) {
+      for (int value : new int[] {0x00, 0x7F, 0x80, 0xFF}) {
+        byte[] corrupted = valid.clone();
+        corrupted[i] = (byte) value;
+        try {
+          SessionCodec.decode(new ByteArrayInputStream(corrupted));
+        } catch (IOException e) {
+          // Esperado
+        }
+      }
+    }
+  }
+
+  /**
+   * Teste para a leitura de valores inválidos, nele testa-se que uma fase inexistente, uma
+   * referência a um usuário ainda não lido e um texto de tamanho absurdo falham com IOException.
+   */
+  @Test
+  public void invalidValues() {
+    byte[] header = {0x42, 0x52, 0x53, 0x43, 4};
+    assertInvalid(concat(header, new byte[] {0, 1, 1, 0, 2, 9}), "Constante");
+    assertInvalid(concat(header, new byte[] {3}), "Usuário");
+    assertInvalid(concat(header, new byte[] {0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF, (byte) 0xFF, 0x7F}), "Tamanho");
+  }
+
+  private static void assertInvalid(byte[] data, String message) {
+    try {
+      SessionCodec.decode(new ByteArrayInputStream(data));
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+    }
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] result = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, result, first.length, second.length);
+    return result;
+  }
+
+  private static byte[] encode(Session session) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SessionCodec.encode(session, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,381 @@
+package test.java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.SessionJournal;
+import main.java.SessionPhase;
+import main.java.User;
+import main.java.VotingStrategy;
+
+/**
+ * Classe de testes unitários para a classe SessionJournal.
+ * @author hugo
+ */
+public class SessionJournalTest {
+
+  /**
+   * Diretório temporário para os diários
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Usuários para os testes
+   */
+  User[] users;
+  /**
+   * Sessão para os testes
+   */
+  Session session;
+
+  /**
+   * Método de pré-configuração para os testes, que cria os usuários e a sessão.
+   */
+  @Before
+  public void setUp() {
+    users = new User[] {new User("Tester1"), new User("Tester2"), new User("Tester3"),
+        new User("Tester4")};
+    session = new Session(users[0], "Teste", 2);
+  }
+
+  /**
+   * Teste para a recuperação de uma sessão, nele testa-se que todas as alterações registradas
+   * no diário (fases, participantes, ideias, votos e remoções) são reaplicadas na recuperação,
+   * mesmo sem o encerramento do diário.
+   */
+  @Test
+  public void recover() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal.create(directory, session);
+
+    session.addParticipants(users);
+    session.removeParticipant(users[3]);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[0], "Ideia 1"));
+    session.addIdea(new Idea(users[1], "Ideia 2"));
+    session.addIdea(new Idea(users[2], "Ideia 3"));
+    session.setDescription("Teste recuperado");
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    ideas[0].registerVote(users[1]);
+    ideas[2].registerVote(users[1]);
+    ideas[0].registerVote(users[2]);
+    ideas[0].removeVote(users[2]);
+    session.registerVotes(users[0], ideas[1], ideas[2]);
+
+    // Recupera a sessão sem encerrar o diário, como após uma queda
+    Session recovered = SessionJournal.open(directory).getSession();
+    assertSameState(session, recovered);
+
+    // O limite de votos continua valendo após a recuperação
+    Idea[] recoveredIdeas = recovered.getIdeas();
+    recoveredIdeas[1].registerVote(users[1]);
+    assertEquals(1, recoveredIdeas[1].countVotes().intValue());
+    recoveredIdeas[1].registerVote(users[2]);
+    assertEquals(2, recoveredIdeas[1].countVotes().intValue());
+  }
+
+  /**
+   * Teste para as fotografias periódicas, nele testa-se que ao alcançar o intervalo de eventos
+   * uma nova fotografia é gravada e os segmentos antigos são descartados, e que a sessão é
+   * recuperada a partir da última fotografia e dos eventos seguintes.
+   */
+  @Test
+  public void periodicCheckpoint() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal journal = SessionJournal.create(directory, session, 10);
+
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < 20; i++) {
+      session.addIdea(new Idea(users[i % users.length], "Ideia " + i));
+    }
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    ideas[1].registerVote(users[0]);
+    ideas[2].registerVote(users[3]);
+    ideas[4].registerVote(users[1]);
+
+    // O encerramento aguarda as fotografias agendadas, que substituem a fotografia inicial
+    journal.close();
+    assertEquals(1, countFiles(directory, "snapshot-"));
+    assertEquals(1, countFiles(directory, "events-"));
+    assertEquals(0, countFiles(directory, "snapshot-0000000000000000001"));
+    assertSameState(session, SessionJournal.open(directory).getSession());
+  }
+
+  /**
+   * Teste para a recuperação após uma fotografia interrompida, nele testa-se que, sem a nova
+   * fotografia, a sessão é recuperada da anterior e dos eventos dos dois segmentos, e que o diário
+   * recuperado descarta os arquivos antigos.
+   */
+  @Test
+  public void recoverInterruptedCheckpoint() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    Path backup = folder.newFolder("backup").toPath();
+    SessionJournal journal = SessionJournal.create(directory, session);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[0], "Ideia 1"));
+    session.addIdea(new Idea(users[1], "Ideia 2"));
+    journal.sync();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.copy(file, backup.resolve(file.getFileName()));
+      }
+    }
+
+    journal.checkpoint();
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    ideas[0].registerVote(users[2]);
+    ideas[1].registerVote(users[3]);
+    journal.sync();
+
+    // Simula uma queda antes da gravação da segunda fotografia, com os arquivos da primeira
+    Files.delete(directory.resolve(String.format("snapshot-%019d.bin", 2)));
+    try (Stream<Path> files = Files.list(backup)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.copy(file, directory.resolve(file.getFileName()));
+      }
+    }
+    SessionJournal recovered = SessionJournal.open(directory);
+    assertSameState(session, recovered.getSession());
+    assertEquals(1, countFiles(directory, "snapshot-"));
+    assertEquals(1, countFiles(directory, "events-"));
+    recovered.close();
+    assertSameState(session, SessionJournal.open(directory).getSession());
+  }
+
+  /**
+   * Teste para o encerramento do diário, nele testa-se que após o encerramento as alterações da
+   * sessão deixam de ser registradas.
+   */
+  @Test
+  public void close() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal journal = SessionJournal.create(directory, session);
+    session.addParticipant(users[0]);
+    journal.close();
+    session.addParticipant(users[1]);
+
+    Session recovered = SessionJournal.open(directory).getSession();
+    assertEquals(1, recovered.getParticipantCount());
+    assertEquals(SessionPhase.WELCOME, recovered.getPhase());
+  }
+
+  /**
+   * Teste para a recuperação de uma sessão com sistema de votação por cédulas, nele testa-se que
+   * o sistema, os pesos e as cédulas são recuperados tanto dos eventos quanto da fotografia, e que
+   * o ranqueamento recuperado é o mesmo.
+   */
+  @Test
+  public void recoverBallots() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal.create(directory, session);
+
+    session.addParticipants(users);
+    session.setVotingStrategy(VotingStrategy.RANKED_CHOICE);
+    session.setVoteWeight(users[1], 3);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[0], "Ideia 1"));
+    session.addIdea(new Idea(users[1], "Ideia 2"));
+    session.addIdea(new Idea(users[2], "Ideia 3"));
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    session.castBallot(users[0], ideas[2], ideas[1]);
+    session.castBallot(users[1], ideas[0], ideas[2]);
+    ideas[1].registerVote(users[3]);
+    ideas[0].registerVote(users[3]);
+    session.castBallot(users[2], ideas[1]);
+    session.nextPhase(); // RANKING
+
+    SessionJournal fromEvents = SessionJournal.open(directory);
+    Session recovered = fromEvents.getSession();
+    assertSameState(session, recovered);
+    assertEquals(VotingStrategy.RANKED_CHOICE, recovered.getVotingStrategy());
+    assertEquals(3, recovered.getVoteWeight(users[1]));
+    assertEquals(session.rankIdeas().length, recovered.rankIdeas().length);
+    fromEvents.close();
+
+    // A recuperação anterior gravou uma fotografia, de onde a sessão é lida agora
+    recovered = SessionJournal.open(directory).getSession();
+    assertSameState(session, recovered);
+    Idea[] expected = session.rankIdeas();
+    Idea[] actual = recovered.rankIdeas();
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].getDescription(), actual[i].getDescription());
+      assertEquals(session.scoreOf(expected[i]), recovered.scoreOf(actual[i]));
+    }
+  }
+
+  /**
+   * Teste para a recuperação de uma sessão com ideias incorporadas, nele testa-se que as
+   * incorporações são reaplicadas sobre as cédulas, com e sem a combinação dos votos.
+   */
+  @Test
+  public void recoverMerges() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal.create(directory, session);
+
+    session.addParticipants(users);
+    session.setVotingStrategy(VotingStrategy.BORDA);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[0], "Ideia 1"));
+    session.addIdea(new Idea(users[1], "Ideia 2"));
+    session.addIdea(new Idea(users[2], "Ideia 3"));
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    session.castBallot(users[3], ideas[2], ideas[0]);
+    session.castBallot(users[1], ideas[2]);
+    session.mergeIdea(ideas[2], ideas[0], true);
+    session.castBallot(users[0], ideas[1]);
+    session.mergeIdea(ideas[1], ideas[0], false);
+
+    Session recovered = SessionJournal.open(directory).getSession();
+    assertSameState(session, recovered);
+    Idea[] recoveredIdeas = recovered.getIdeas();
+    for (int i = 0; i < ideas.length; i++) {
+      assertEquals(session.scoreOf(ideas[i]), recovered.scoreOf(recoveredIdeas[i]));
+    }
+    assertEquals(recoveredIdeas[0], recoveredIdeas[2].getMergedInto());
+    assertEquals(recoveredIdeas[0], recoveredIdeas[1].getMergedInto());
+  }
+
+  /**
+   * Teste para a recuperação de uma sessão com saídas durante a votação, nele testa-se que os
+   * votos dos participantes que saíram e as ideias retiradas são reaplicados na recuperação.
+   */
+  @Test
+  public void recoverWithdrawals() throws IOException {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal.create(directory, session);
+
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[0], "Ideia 1"));
+    session.addIdea(new Idea(users[1], "Ideia 2"));
+    session.addIdea(new Idea(users[2], "Ideia 3"));
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+    session.registerVotes(users[1], ideas[0], ideas[2]);
+    session.registerVotes(users[2], ideas[0], ideas[1]);
+    session.registerVotes(users[3], ideas[1], ideas[2]);
+    session.removeParticipant(users[3]);
+    session.removeParticipant(users[1], true);
+
+    Session recovered = SessionJournal.open(directory).getSession();
+    assertSameState(session, recovered);
+    Idea[] recoveredIdeas = recovered.getIdeas();
+    assertTrue(recoveredIdeas[1].isWithdrawn());
+    assertEquals(1, recoveredIdeas[0].countVotes().intValue());
+    assertEquals(0, recoveredIdeas[1].countVotes().intValue());
+    assertEquals(0, recoveredIdeas[2].countVotes().intValue());
+  }
+
+  /**
+   * Teste para votos concorrentes com a passagem ao ranqueamento, nele testa-se que nenhum voto é
+   * aplicado depois da passagem, e que a sessão recuperada do diário tem os mesmos votos que a
+   * sessão viva, sem votos registrados após a fase.
+   */
+  @Test
+  public void votesDuringPhaseChange() throws Exception {
+    Path directory = folder.getRoot().toPath().resolve("session");
+    SessionJournal.create(directory, session);
+    User[] voters = new User[64];
+    for (int i = 0; i < voters.length; i++) {
+      voters[i] = new User("Votante" + i);
+    }
+    session.addParticipants(voters);
+    session.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < 10; i++) {
+      session.addIdea(new Idea(voters[i], "Ideia " + i));
+    }
+    session.nextPhase(); // VOTING
+    Idea[] ideas = session.getIdeas();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    CountDownLatch started = new CountDownLatch(4);
+    for (int t = 0; t < 4; t++) {
+      int seed = t;
+      executor.execute(() -> {
+        Random random = new Random(seed);
+        started.countDown();
+        while (session.getPhase() == SessionPhase.VOTING) {
+          User voter = voters[random.nextInt(voters.length)];
+          Idea idea = ideas[random.nextInt(ideas.length)];
+          if (random.nextBoolean()) {
+            idea.registerVote(voter);
+          } else {
+            idea.removeVote(voter);
+          }
+        }
+        // Votos atrasados, que já não podem ser aplicados
+        for (int i = 0; i < 100; i++) {
+          ideas[random.nextInt(ideas.length)].registerVote(voters[random.nextInt(voters.length)]);
+        }
+      });
+    }
+    started.await();
+    Thread.sleep(20);
+    session.nextPhase(); // RANKING
+    int[] counts = new int[ideas.length];
+    for (int i = 0; i < ideas.length; i++) {
+      counts[i] = ideas[i].countVotes();
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+    for (int i = 0; i < ideas.length; i++) {
+      assertEquals(counts[i], ideas[i].countVotes().intValue());
+    }
+    Session recovered = SessionJournal.open(directory).getSession();
+    assertSameState(session, recovered);
+    assertEquals(session.rankIdeas().length, recovered.rankIdeas().length);
+  }
+
+  /**
+   * Método auxiliar que compara o estado de duas sessões.
+   */
+  private static void assertSameState(Session expected, Session actual) {
+    assertEquals(expected.getPhase(), actual.getPhase());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertEquals(expected.getOwner(), actual.getOwner());
+    assertEquals(expected.getVotingLimit(), actual.getVotingLimit());
+    assertArrayEquals(expected.getParticipants(), actual.getParticipants());
+    Idea[] expectedIdeas = expected.getIdeas();
+    Idea[] actualIdeas = actual.getIdeas();
+    assertEquals(expectedIdeas.length, actualIdeas.length);
+    for (int i = 0; i < expectedIdeas.length; i++) {
+      assertEquals(expectedIdeas[i].getDescription(), actualIdeas[i].getDescription());
+      assertEquals(expectedIdeas[i].getAuthor(), actualIdeas[i].getAuthor());
+      assertEquals(expectedIdeas[i].countVotes(), actualIdeas[i].countVotes());
+    }
+  }
+
+  private static long countFiles(Path directory, String prefix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith(prefix)).count();
+    }
+  }
+}
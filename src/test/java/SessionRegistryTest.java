@@ -0,0 +1,428 @@
+package test.java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import main.java.Idea;
+import main.java.SearchIndex;
+import main.java.Session;
+import main.java.SessionPhase;
+import main.java.SessionRegistry;
+import main.java.SessionSubscription;
+import main.java.User;
+import main.java.UserIndex;
+
+/**
+ * Classe de testes unitários para a classe SessionRegistry.
+ * @author hugo
+ */
+public class SessionRegistryTest {
+
+  /**
+   * Diretório temporário para as sessões descarregadas
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Usuários para os testes
+   */
+  User[] users;
+  /**
+   * Relógio controlado pelos testes
+   */
+  AtomicLong clock;
+  /**
+   * Registro para os testes
+   */
+  SessionRegistry registry;
+
+  /**
+   * Método de pré-configuração para os testes, que cria os usuários e o registro.
+   */
+  @Before
+  public void setUp() {
+    users = new User[] {new User("Tester1"), new User("Tester2"), new User("Tester3")};
+    clock = new AtomicLong();
+    Path directory = folder.getRoot().toPath();
+    registry = new SessionRegistry(directory, Integer.MAX_VALUE, clock::get);
+  }
+
+  /**
+   * Teste para a criação, consulta e passagem de fase de sessões pelo identificador.
+   */
+  @Test
+  public void createAndGet() {
+    long first = registry.create(users[0], "Primeira", 2);
+    long second = registry.create(users[1], "Segunda", 3);
+
+    assertTrue(first != second);
+    assertEquals(2, registry.size());
+    assertEquals("Primeira", registry.get(first).getDescription());
+    assertEquals(users[1], registry.get(second).getOwner());
+    assertNull(registry.get(second + 100));
+
+    assertEquals(SessionPhase.BRAINSTORM, registry.nextPhase(first));
+    assertEquals(SessionPhase.BRAINSTORM, registry.get(first).getPhase());
+    assertEquals(SessionPhase.WELCOME, registry.get(second).getPhase());
+    assertNull(registry.nextPhase(second + 100));
+  }
+
+  /**
+   * Teste para a consulta das sessões de um usuário, que acompanha as entradas e saídas dos
+   * participantes.
+   */
+  @Test
+  public void sessionsOf() {
+    long first = registry.create(users[0], "Primeira", 2);
+    long second = registry.create(users[0], "Segunda", 2);
+
+    registry.get(first).addParticipant(users[1]);
+    registry.get(second).addParticipant(users[1]);
+    registry.get(second).addParticipant(users[2]);
+    assertArrayEquals(new long[] {first, second}, registry.sessionsOf(users[1]));
+    assertArrayEquals(new long[] {second}, registry.sessionsOf(users[2]));
+    assertArrayEquals(new long[0], registry.sessionsOf(users[0]));
+
+    registry.get(first).removeParticipant(users[1]);
+    assertArrayEquals(new long[] {second}, registry.sessionsOf(users[1]));
+
+    assertTrue(registry.evict(second));
+    assertFalse(registry.evict(second));
+    assertArrayEquals(new long[0], registry.sessionsOf(users[1]));
+    assertArrayEquals(new long[0], registry.sessionsOf(users[2]));
+    assertEquals(1, registry.size());
+  }
+
+  /**
+   * Teste para o descarregamento das sessões ociosas, nele testa-se que a sessão é recarregada
+   * no próximo acesso com o mesmo conteúdo, e que o índice de participação continua atualizado.
+   */
+  @Test
+  public void evictIdle() {
+    long idle = registry.create(users[0], "Ociosa", 2);
+    Session session = registry.get(idle);
+    session.addParticipant(users[1]);
+    session.addParticipant(users[2]);
+    session.nextPhase();
+    Idea idea = new Idea(users[2], "Ideia");
+    session.addIdea(idea);
+    session.nextPhase();
+    idea.registerVote(users[1]);
+
+    clock.set(1000);
+    long active = registry.create(users[0], "Ativa", 2);
+    assertEquals(1, registry.evictIdle(500));
+    assertEquals(2, registry.size());
+    assertEquals(1, registry.residentCount());
+    assertArrayEquals(new long[] {idle}, registry.sessionsOf(users[1]));
+
+    Session reloaded = registry.get(idle);
+    assertNotSame(session, reloaded);
+    assertEquals(2, registry.residentCount());
+    assertEquals(SessionPhase.VOTING, reloaded.getPhase());
+    assertEquals(Integer.valueOf(1), reloaded.getIdea(0).countVotes());
+
+    reloaded.removeParticipant(users[1]);
+    assertArrayEquals(new long[0], registry.sessionsOf(users[1]));
+    assertEquals(SessionPhase.WELCOME, registry.get(active).getPhase());
+  }
+
+  /**
+   * Teste para o descarte de uma sessão descarregada, que também retira as suas participações.
+   */
+  @Test
+  public void evictOffloaded() {
+    long id = registry.create(users[0], "Descarregada", 2);
+    registry.get(id).addParticipant(users[1]);
+    clock.set(1000);
+    assertEquals(1, registry.evictIdle(0));
+    assertEquals(0, registry.residentCount());
+
+    assertTrue(registry.evict(id));
+    assertArrayEquals(new long[0], registry.sessionsOf(users[1]));
+    assertNull(registry.get(id));
+    assertEquals(0, folder.getRoot().list().length);
+  }
+
+  /**
+   * Teste para o limite de sessões residentes, nele testa-se que a sessão usada há mais tempo é
+   * descarregada quando o limite é excedido.
+   */
+  @Test
+  public void residentLimit() {
+    registry = new SessionRegistry(folder.getRoot().toPath(), 0, clock::get);
+    long id = registry.create(users[0], "Limitada", 2);
+    assertEquals(0, registry.residentCount());
+    assertEquals("Limitada", registry.get(id).getDescription());
+    assertEquals(0, registry.residentCount());
+  }
+
+  /**
+   * Teste para o registro sem diretório de descarga, que descarta as sessões ociosas.
+   */
+  @Test
+  public void evictIdleWithoutDirectory() {
+    registry = new SessionRegistry(null, Integer.MAX_VALUE, clock::get);
+    long id = registry.create(users[0], "Descartada", 2);
+    registry.get(id).addParticipant(users[1]);
+    clock.set(1000);
+
+    assertEquals(1, registry.evictIdle(500));
+    assertEquals(0, registry.size());
+    assertNull(registry.get(id));
+    assertArrayEquals(new long[0], registry.sessionsOf(users[1]));
+  }
+
+  /**
+   * Teste para o índice de busca ligado ao registro, nele testa-se que as ideias das sessões já
+   * registradas, inclusive descarregadas, e as adicionadas depois são indexadas, que os votos são
+   * atualizados no ranqueamento, que as sessões descartadas ficam no índice e que os novos
+   * identificadores não repetem os indexados.
+   */
+  @Test
+  public void searchIndex() {
+    long offloaded = registry.create(users[0], "Descarregada", 2);
+    Session session = registry.get(offloaded);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[1], "Caronas para a sede"));
+    clock.set(1000);
+    assertEquals(1, registry.evictIdle(0));
+
+    SearchIndex index = new SearchIndex();
+    registry.setSearchIndex(index);
+    assertEquals(1, index.search("caronas", 10, SearchIndex.Order.RELEVANCE).length);
+
+    long id = registry.create(users[0], "Residente", 2);
+    session = registry.get(id);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(new Idea(users[2], "Mural de caronas"));
+    session.nextPhase(); // VOTING
+    session.getIdea(0).registerVote(users[1]);
+    assertEquals(0, index.search("mural", 10, SearchIndex.Order.VOTES)[0].getVotes());
+    session.nextPhase(); // RANKING
+    assertEquals(1, index.search("mural", 10, SearchIndex.Order.VOTES)[0].getVotes());
+
+    assertTrue(registry.evict(offloaded));
+    assertEquals(2, index.search("caronas", 10, SearchIndex.Order.RELEVANCE).length);
+    assertEquals(2, index.size());
+
+    SessionRegistry restarted = new SessionRegistry();
+    restarted.setSearchIndex(index);
+    assertEquals(id + 1, restarted.create(users[0], "Nova", 2));
+  }
+
+  /**
+   * Teste para o índice de usuários ligado ao registro, nele testa-se que os votos, ideias e
+   * entradas são somados em todas as sessões, inclusive nas recarregadas, que o limite de votos
+   * vale para o conjunto das sessões, que um voto retirado devolve a vaga e que o limite é
+   * renovado no período seguinte.
+   */
+  @Test
+  public void userIndex() {
+    UserIndex index = new UserIndex(3, 1000, clock::get);
+    registry.setUserIndex(index);
+    Idea[][] ideas = new Idea[2][];
+    long[] ids = new long[2];
+    for (int s = 0; s < 2; s++) {
+      ids[s] = registry.create(users[0], "Sessão " + s, 5);
+      Session session = registry.get(ids[s]);
+      session.addParticipants(users);
+      session.nextPhase(); // BRAINSTORM
+      ideas[s] = new Idea[] {new Idea(users[0], "Ideia A" + s), new Idea(users[0], "Ideia B" + s),
+          new Idea(users[2], "Ideia C" + s)};
+      session.addIdeas(ideas[s]);
+      session.nextPhase(); // VOTING
+    }
+    assertEquals(2, index.sessionsJoined(users[1]));
+    assertEquals(4, index.ideasAuthored(users[0]));
+    assertEquals(2, index.ideasAuthored(users[2]));
+
+    Session first = registry.get(ids[0]);
+    assertArrayEquals(new boolean[] {true, true},
+        first.registerVotes(users[1], ideas[0][0], ideas[0][1]));
+    // As sessões são recarregadas com o índice ligado
+    clock.set(500);
+    assertEquals(2, registry.evictIdle(0));
+    Session second = registry.get(ids[1]);
+    second.getIdea(0).registerVote(users[1]);
+    second.getIdea(1).registerVote(users[1]);
+    assertEquals(0, second.getIdea(1).countVotes().intValue());
+    assertEquals(3, index.votesCast(users[1]));
+    assertEquals(0, index.remainingVotes(users[1]));
+    assertArrayEquals(new boolean[] {false},
+        registry.get(ids[0]).registerVotes(users[1], registry.get(ids[0]).getIdea(2)));
+
+    second.getIdea(0).removeVote(users[1]);
+    assertEquals(1, index.remainingVotes(users[1]));
+    second.getIdea(2).registerVote(users[1]);
+    assertEquals(1, second.getIdea(2).countVotes().intValue());
+    assertEquals(3, index.votesCast(users[1]));
+
+    clock.set(1000);
+    assertEquals(3, index.remainingVotes(users[1]));
+    second.getIdea(1).registerVote(users[1]);
+    assertEquals(1, index.votesInPeriod(users[1]));
+  }
+
+  /**
+   * Teste para votos concorrentes com o descarregamento, nele testa-se que a sessão não é
+   * descarregada durante um uso, e que os votos feitos pelo objeto antigo após o descarregamento
+   * são recusados, de forma que todos os votos aceitos estão na sessão recarregada.
+   */
+  @Test
+  public void votesDuringOffload() throws Exception {
+    User[] voters = new User[500];
+    for (int i = 0; i < voters.length; i++) {
+      voters[i] = new User("Votante" + i);
+    }
+    long id = registry.create(users[0], "Concorrente", 5);
+    registry.withSession(id, session -> {
+      session.addParticipants(users[1]);
+      session.addParticipants(voters);
+      session.nextPhase(); // BRAINSTORM
+      for (int i = 0; i < 20; i++) {
+        session.addIdea(new Idea(users[1], "Ideia " + i));
+      }
+      session.nextPhase(); // VOTING
+      return null;
+    });
+
+    AtomicInteger accepted = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      int thread = t;
+      executor.execute(() -> {
+        for (int i = thread; i < voters.length; i += 4) {
+          User voter = voters[i];
+          for (int v = 0; v < 5; v++) {
+            int index = (i + v) % 20;
+            boolean vote;
+            if (thread % 2 == 0) {
+              vote = registry.withSession(id,
+                  session -> session.registerVotes(voter, session.getIdea(index))[0]);
+            } else {
+              // O objeto obtido pode ser descarregado antes do voto, que então é recusado
+              Session session = registry.get(id);
+              vote = session.registerVotes(voter, session.getIdea(index))[0];
+            }
+            if (vote) {
+              accepted.incrementAndGet();
+            }
+          }
+          // Dá ao descarregamento a chance de encontrar a sessão livre
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    int offloaded = 0;
+    do {
+      offloaded += registry.evictIdle(0);
+    } while (!executor.awaitTermination(0, TimeUnit.MILLISECONDS));
+
+    assertTrue(offloaded > 0);
+    assertTrue(accepted.get() > 0);
+    int total = registry.withSession(id, session -> {
+      int votes = 0;
+      for (Idea idea : session.getIdeas()) {
+        votes += idea.countVotes();
+      }
+      return votes;
+    });
+    assertEquals(accepted.get(), total);
+  }
+
+  /**
+   * Teste para o descarte concorrente com o uso das sessões, nele testa-se que uma ação sobre uma
+   * sessão descartada entre a consulta e o bloqueio não a recarrega, e devolve nulo em vez de
+   * falhar, com e sem diretório de descarga.
+   */
+  @Test
+  public void discardDuringUse() throws Exception {
+    SessionRegistry discarding = new SessionRegistry(null, Integer.MAX_VALUE, clock::get);
+    for (SessionRegistry target : new SessionRegistry[] {discarding, registry}) {
+      long[] ids = new long[200];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = target.create(users[0], "Sessão " + i, 2);
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      List<Future<?>> readers = new ArrayList<>();
+      for (int t = 0; t < 3; t++) {
+        readers.add(executor.submit(() -> {
+          for (int round = 0; round < 20; round++) {
+            for (long id : ids) {
+              String description = target.withSession(id, Session::getDescription);
+              assertTrue(description == null || description.startsWith("Sessão"));
+            }
+          }
+        }));
+      }
+      for (int i = 0; i < ids.length; i += 2) {
+        target.evict(ids[i]);
+      }
+      target.evictIdle(0);
+      for (int i = 1; i < ids.length; i += 2) {
+        target.evict(ids[i]);
+      }
+      executor.shutdown();
+      for (Future<?> reader : readers) {
+        reader.get(30, TimeUnit.SECONDS);
+      }
+      assertEquals(0, target.size());
+      assertNull(target.withSession(ids[0], Session::getDescription));
+    }
+  }
+
+  /**
+   * Teste para a descarga de sessões assinadas e configuradas, nele testa-se que a sessão com
+   * assinaturas não é descarregada, que a cópia é gravada sem deixar arquivo temporário, e que o
+   * intervalo dos retratos e a semelhança mínima das repetições são restaurados na recarga.
+   */
+  @Test
+  public void offloadKeepsConfiguration() {
+    long id = registry.create(users[0], "Configurada", 2);
+    SessionSubscription subscription = registry.withSession(id, session -> {
+      session.setSnapshotInterval(0);
+      session.setDuplicateThreshold(0.5);
+      return session.subscribe(events -> {
+      });
+    });
+    assertEquals(0, registry.evictIdle(0));
+    subscription.cancel();
+    assertEquals(1, registry.evictIdle(0));
+    Path directory = folder.getRoot().toPath();
+    assertTrue(Files.exists(directory.resolve(id + ".session")));
+    assertFalse(Files.exists(directory.resolve(id + ".session.tmp")));
+
+    Session reloaded = registry.get(id);
+    assertEquals(0, reloaded.getSnapshotInterval());
+    assertEquals(0.5, reloaded.getDuplicateThreshold(), 0);
+  }
+}
@@ -1,18 +1,46 @@
 package test.java;
 
 import main.java.Idea;
+import main.java.MetricsRegistry;
 import main.java.Session;
+import main.java.SessionCodec;
+import main.java.SessionEvent;
+import main.java.SessionMetrics;
 import main.java.SessionPhase;
+import main.java.SessionSnapshot;
+import main.java.SessionSubscription;
 import main.java.User;
+import main.java.VoteRejection;
+import main.java.VotingStrategy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Classe de testes unitários para a classe Session.
@@ -20,6 +48,12 @@ import static org.junit.Assert.assertNotEquals;
  */
 public class SessionTest {
 
+  /**
+   * Diretório temporário para os arquivos das sessões arquivadas
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   /**
    * Lista de usuários para os testes
    */
@@ -227,4 +261,873 @@ public class SessionTest {
     assertArrayEquals(expectedArray, session.rankIdeas());
     
   }
+
+  /**
+   * Teste para a prévia do ranqueamento, nele testa-se que durante a votação as ideias mais
+   * votadas podem ser consultadas, em ordem decrescente de votos e com empates desfeitos pela
+   * ordem de adição, e que a prévia acompanha a remoção de votos.
+   */
+  @Test
+  public void topIdeas() {
+    session.addParticipant(users.get(0));
+    session.addParticipant(users.get(1));
+    session.addParticipant(users.get(2));
+    session.addParticipant(users.get(3));
+
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(ideas.get(0));
+    session.addIdea(ideas.get(1));
+    session.addIdea(ideas.get(2));
+    session.addIdea(ideas.get(3));
+
+    // Sem votos, a prévia é vazia
+    assertEquals(0, session.topIdeas(10).length);
+
+    session.nextPhase(); // VOTING
+    ideas.get(2).registerVote(users.get(0));
+    ideas.get(1).registerVote(users.get(0));
+    ideas.get(3).registerVote(users.get(0));
+    ideas.get(3).registerVote(users.get(2));
+
+    // A ideia mais votada vem primeiro e as empatadas seguem a ordem de adição
+    Idea[] expectedArray = {ideas.get(3), ideas.get(1), ideas.get(2)};
+    assertArrayEquals(expectedArray, session.topIdeas(10));
+    expectedArray = new Idea[] {ideas.get(3), ideas.get(1)};
+    assertArrayEquals(expectedArray, session.topIdeas(2));
+
+    // A prévia acompanha a remoção de votos
+    ideas.get(3).removeVote(users.get(0));
+    ideas.get(3).removeVote(users.get(2));
+    expectedArray = new Idea[] {ideas.get(1), ideas.get(2)};
+    assertArrayEquals(expectedArray, session.topIdeas(10));
+  }
+
+  /**
+   * Teste para o ranqueamento parcial e paginado, nele testa-se que as k primeiras ideias e as
+   * páginas consecutivas coincidem com o ranqueamento completo, inclusive quando a fronteira cai no
+   * meio de um grupo de empate grande.
+   */
+  @Test
+  public void rankTopAndPages() {
+    User host = users.get(0);
+    session = new Session(host, "Teste", 2);
+    session.addParticipant(host);
+    List<User> voters = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      User voter = new User("Votante" + i);
+      voters.add(voter);
+      session.addParticipant(voter);
+    }
+    session.nextPhase(); // BRAINSTORM
+    List<Idea> many = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      Idea idea = new Idea(host, "Ideia " + i);
+      many.add(idea);
+      session.addIdea(idea);
+    }
+    session.nextPhase(); // VOTING
+    // Dez ideias com quatro votos e um grupo de quarenta empatadas com um voto, votadas fora da
+    // ordem de adição
+    for (int i = 0; i < voters.size(); i++) {
+      many.get(49 - i).registerVote(voters.get(i));
+      many.get((i * 7) % 10).registerVote(voters.get(i));
+    }
+
+    // Fora da fase de ranqueamento não há resultado
+    assertEquals(0, session.rankTop(5).length);
+    assertEquals(0, session.rankPage(0, 5).length);
+    assertFalse(session.rankPages(5).hasNext());
+
+    session.nextPhase(); // RANKING
+    Idea[] ranking = session.rankIdeas();
+    assertEquals(50, ranking.length);
+    assertArrayEquals(Arrays.copyOf(ranking, 5), session.rankTop(5));
+    assertArrayEquals(ranking, session.rankTop(100));
+    assertEquals(0, session.rankTop(0).length);
+
+    // Empates em ordem de adição
+    for (int i = 1; i < ranking.length; i++) {
+      int previous = ranking[i - 1].countVotes();
+      int current = ranking[i].countVotes();
+      assertTrue(previous > current
+          || (previous == current && many.indexOf(ranking[i - 1]) < many.indexOf(ranking[i])));
+    }
+
+    // Páginas consecutivas formam o ranqueamento completo
+    List<Idea> paged = new ArrayList<>();
+    for (int offset = 0; ; offset += 7) {
+      Idea[] page = session.rankPage(offset, 7);
+      if (page.length == 0) {
+        break;
+      }
+      paged.addAll(Arrays.asList(page));
+    }
+    assertArrayEquals(ranking, paged.toArray(new Idea[0]));
+    paged.clear();
+    for (Iterator<Idea[]> pages = session.rankPages(7); pages.hasNext(); ) {
+      paged.addAll(Arrays.asList(pages.next()));
+    }
+    assertArrayEquals(ranking, paged.toArray(new Idea[0]));
+    assertArrayEquals(Arrays.copyOfRange(ranking, 13, 29), session.rankPage(13, 16));
+    assertEquals(0, session.rankPage(50, 10).length);
+  }
+
+  /**
+   * Teste para o ranqueamento com apuração paralela, nele testa-se que o resultado é idêntico ao
+   * do ranqueamento sequencial, tanto em sessões grandes quanto nas pequenas, que não são
+   * paralelizadas.
+   */
+  @Test
+  public void rankIdeasParallel() {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      User host = users.get(0);
+      session = new Session(host, "Grande", 10);
+      session.addParticipant(host);
+      List<User> voters = new ArrayList<>();
+      for (int i = 0; i < 500; i++) {
+        User voter = new User("Votante" + i);
+        voters.add(voter);
+        session.addParticipant(voter);
+      }
+      session.nextPhase(); // BRAINSTORM
+      for (int i = 0; i < 40000; i++) {
+        session.addIdea(new Idea(host, "Ideia " + i));
+      }
+      session.nextPhase(); // VOTING
+      Random random = new Random(42);
+      for (User voter : voters) {
+        for (int v = 0; v < 10; v++) {
+          // Metade dos votos concentrada em poucas ideias, para haver contagens altas e empates
+          int bound = random.nextBoolean() ? 20 : 40000;
+          session.getIdea(random.nextInt(bound)).registerVote(voter);
+        }
+      }
+      assertEquals(0, session.rankIdeas(pool).length);
+
+      session.nextPhase(); // RANKING
+      Idea[] ranking = session.rankIdeas();
+      assertTrue(ranking.length > 2000);
+      assertArrayEquals(ranking, session.rankIdeas(pool));
+
+      // Sessões pequenas seguem pelo placar, com o mesmo resultado
+      session = new Session(host, "Pequena", 10);
+      session.addParticipant(host);
+      session.addParticipant(voters.get(0));
+      session.nextPhase(); // BRAINSTORM
+      Idea first = new Idea(host, "Primeira");
+      Idea second = new Idea(host, "Segunda");
+      session.addIdea(first);
+      session.addIdea(second);
+      session.nextPhase(); // VOTING
+      second.registerVote(voters.get(0));
+      session.nextPhase(); // RANKING
+      assertArrayEquals(new Idea[] {second}, session.rankIdeas(pool));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Teste para a posição de uma ideia no ranqueamento, nele testa-se que ideias empatadas
+   * compartilham a posição e que ideias sem votos ou de outra sessão não têm posição.
+   */
+  @Test
+  public void rankOf() {
+    session.addParticipant(users.get(0));
+    session.addParticipant(users.get(1));
+    session.addParticipant(users.get(2));
+    session.addParticipant(users.get(3));
+
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(ideas.get(0));
+    session.addIdea(ideas.get(1));
+    session.addIdea(ideas.get(2));
+
+    session.nextPhase(); // VOTING
+    ideas.get(2).registerVote(users.get(0));
+    ideas.get(2).registerVote(users.get(1));
+    ideas.get(0).registerVote(users.get(1));
+    ideas.get(1).registerVote(users.get(2));
+
+    assertEquals(1, session.rankOf(ideas.get(2)));
+    assertEquals(2, session.rankOf(ideas.get(0)));
+    assertEquals(2, session.rankOf(ideas.get(1)));
+
+    // Ideias sem votos ou de outra sessão não têm posição
+    ideas.get(1).removeVote(users.get(2));
+    assertEquals(0, session.rankOf(ideas.get(1)));
+    assertEquals(0, session.rankOf(ideas.get(3)));
+  }
+
+  /**
+   * Teste para as vistas somente leitura de ideias e participantes, nele testa-se que as vistas
+   * acompanham as alterações da sessão sem cópia e que não podem ser alteradas.
+   */
+  @Test
+  public void views() {
+    Collection<User> participantsView = session.getParticipantsView();
+    List<Idea> ideasView = session.getIdeasView();
+
+    // As vistas acompanham as alterações da sessão
+    session.addParticipant(users.get(0));
+    session.addParticipant(users.get(1));
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(ideas.get(0));
+    session.addIdea(ideas.get(1));
+    assertEquals(2, participantsView.size());
+    assertEquals(2, session.getParticipantCount());
+    assertEquals(2, ideasView.size());
+    assertEquals(2, session.getIdeaCount());
+    assertEquals(ideas.get(1), session.getIdea(1));
+    assertArrayEquals(session.getIdeas(), ideasView.toArray());
+    assertArrayEquals(session.getParticipants(), participantsView.toArray());
+
+    // As vistas não podem ser alteradas
+    try {
+      ideasView.add(ideas.get(2));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertEquals(2, session.getIdeaCount());
+    }
+    try {
+      participantsView.remove(users.get(0));
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertEquals(2, session.getParticipantCount());
+    }
+  }
+
+  /**
+   * Teste para a adição de participantes e ideias em lote, nele testa-se que cada item do lote é
+   * aceito ou recusado pelas mesmas regras da adição individual, e que o lote inteiro é recusado
+   * fora da fase correspondente.
+   */
+  @Test
+  public void addInBatches() {
+    // Usuários repetidos no lote são recusados
+    boolean[] accepted = session.addParticipants(users.get(0), users.get(1), users.get(0));
+    assertArrayEquals(new boolean[] {true, true, false}, accepted);
+    assertEquals(2, session.getParticipantCount());
+
+    // Ideias fora da fase de brainstorm são recusadas
+    accepted = session.addIdeas(ideas.get(0), ideas.get(1));
+    assertArrayEquals(new boolean[] {false, false}, accepted);
+
+    // Ideias de quem não participa e ideias repetidas são recusadas
+    session.nextPhase(); // BRAINSTORM
+    accepted = session.addIdeas(ideas.get(0), ideas.get(2), ideas.get(1), ideas.get(0));
+    assertArrayEquals(new boolean[] {true, false, true, false}, accepted);
+    assertArrayEquals(new Idea[] {ideas.get(0), ideas.get(1)}, session.getIdeas());
+
+    // Participantes fora da fase de acolhimento são recusados
+    accepted = session.addParticipants(users.get(2));
+    assertArrayEquals(new boolean[] {false}, accepted);
+  }
+
+  /**
+   * Teste para o registro de uma cédula, nele testa-se que os votos são aceitos em ordem pelas
+   * regras do voto individual até o limite de votos do participante.
+   */
+  @Test
+  public void registerVotes() {
+    session.addParticipants(users.get(0), users.get(1), users.get(2));
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.get(0), ideas.get(1), ideas.get(2), ideas.get(3));
+
+    // A cédula é recusada fora da fase de votação
+    assertFalse(session.registerVotes(users.get(0), ideas.get(1))[0]);
+
+    // A cédula de quem não participa é recusada
+    session.nextPhase(); // VOTING
+    assertFalse(session.registerVotes(users.get(3), ideas.get(1))[0]);
+
+    // Votos na própria ideia, repetidos ou além do limite são recusados
+    ideas.get(2).registerVote(users.get(0));
+    boolean[] accepted = session.registerVotes(users.get(0),
+        ideas.get(0), ideas.get(1), ideas.get(1), ideas.get(2), ideas.get(3));
+    assertArrayEquals(new boolean[] {false, true, false, false, true}, accepted);
+    assertEquals(1, ideas.get(1).countVotes().intValue());
+    assertEquals(1, ideas.get(3).countVotes().intValue());
+
+    accepted = session.registerVotes(users.get(1), ideas.get(0), ideas.get(2));
+    assertArrayEquals(new boolean[] {true, true}, accepted);
+    assertArrayEquals(new Idea[] {ideas.get(2), ideas.get(0), ideas.get(1), ideas.get(3)},
+        session.topIdeas(10));
+
+    // O limite de votos vale entre cédulas e votos individuais
+    accepted = session.registerVotes(users.get(0), ideas.get(0));
+    assertArrayEquals(new boolean[] {false}, accepted);
+  }
+
+  /**
+   * Teste para os sistemas de votação por pontos e ponderado, nele testa-se que no primeiro um
+   * participante pode dar vários pontos à mesma ideia até o limite, e que no segundo cada voto vale
+   * o peso do votante, definido antes da votação.
+   */
+  @Test
+  public void dotAndWeightedVoting() {
+    session.addParticipants(users.toArray(new User[0]));
+    session.setVotingStrategy(VotingStrategy.DOT);
+    assertEquals(VotingStrategy.DOT, session.getVotingStrategy());
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.toArray(new Idea[0]));
+    session.nextPhase(); // VOTING
+    session.setVotingStrategy(VotingStrategy.APPROVAL);
+    assertEquals(VotingStrategy.DOT, session.getVotingStrategy());
+
+    for (int i = 0; i < 3; i++) {
+      ideas.get(2).registerVote(users.get(0));
+    }
+    ideas.get(1).registerVote(users.get(0));
+    assertEquals(3, ideas.get(2).countVotes().intValue());
+    assertEquals(0, ideas.get(1).countVotes().intValue());
+    ideas.get(2).removeVote(users.get(0));
+    ideas.get(1).registerVote(users.get(0));
+    ideas.get(1).registerVote(users.get(3));
+    ideas.get(0).registerVote(users.get(3));
+    session.nextPhase(); // RANKING
+    assertArrayEquals(new Idea[] {ideas.get(1), ideas.get(2), ideas.get(0)}, session.rankIdeas());
+
+    User host = users.get(0);
+    Session weighted = new Session(host, "Ponderada", 2);
+    weighted.addParticipants(users.toArray(new User[0]));
+    weighted.setVotingStrategy(VotingStrategy.WEIGHTED);
+    weighted.setVoteWeight(users.get(3), 5);
+    weighted.setVoteWeight(users.get(2), Session.MAX_VOTE_WEIGHT + 1);
+    weighted.nextPhase(); // BRAINSTORM
+    Idea first = new Idea(host, "Primeira");
+    Idea second = new Idea(users.get(1), "Segunda");
+    weighted.addIdeas(first, second);
+    weighted.nextPhase(); // VOTING
+    weighted.setVoteWeight(users.get(1), 10);
+    assertEquals(1, weighted.getVoteWeight(users.get(1)));
+    assertEquals(1, weighted.getVoteWeight(users.get(2)));
+
+    first.registerVote(users.get(1));
+    first.registerVote(users.get(2));
+    second.registerVote(users.get(3));
+    assertArrayEquals(new boolean[] {false}, weighted.castBallot(users.get(2), second));
+    assertEquals(2, first.countVotes().intValue());
+    assertEquals(2, weighted.scoreOf(first));
+    assertEquals(5, weighted.scoreOf(second));
+    weighted.nextPhase(); // RANKING
+    assertArrayEquals(new Idea[] {second, first}, weighted.rankIdeas());
+  }
+
+  /**
+   * Teste para a contagem de Borda, nele testa-se que cada posição da cédula vale menos que a
+   * anterior, que a cédula ignora ideias repetidas, próprias e além do limite, e que uma nova
+   * cédula substitui a anterior do votante.
+   */
+  @Test
+  public void bordaCount() {
+    session.addParticipants(users.toArray(new User[0]));
+    session.setVotingStrategy(VotingStrategy.BORDA);
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.toArray(new Idea[0]));
+    session.nextPhase(); // VOTING
+    Idea i1 = ideas.get(0);
+    Idea i2 = ideas.get(1);
+    Idea i3 = ideas.get(2);
+    Idea i4 = ideas.get(3);
+
+    assertArrayEquals(new boolean[] {true, true, true},
+        session.castBallot(users.get(0), i2, i3, i4));
+    assertArrayEquals(new boolean[] {true, false, true, true, false},
+        session.castBallot(users.get(3), i4, i4, i1, i2, i3));
+    assertArrayEquals(new boolean[] {false, true}, session.castBallot(users.get(1), i2, i1));
+    assertEquals(5, session.scoreOf(i1));
+    assertEquals(4, session.scoreOf(i2));
+    assertEquals(2, session.scoreOf(i3));
+    assertEquals(4, session.scoreOf(i4));
+
+    session.castBallot(users.get(0), i3);
+    assertEquals(1, session.scoreOf(i2));
+    assertEquals(3, session.scoreOf(i3));
+    assertEquals(2, i1.countVotes().intValue());
+    session.nextPhase(); // RANKING
+    assertArrayEquals(new Idea[] {i1, i3, i4, i2}, session.rankIdeas());
+  }
+
+  /**
+   * Teste para o segundo turno instantâneo, nele testa-se que durante a votação as ideias são
+   * ordenadas pelas primeiras preferências e que no ranqueamento a ideia com menos cédulas é
+   * eliminada a cada rodada, transferindo as suas cédulas, o que pode mudar a vencedora.
+   */
+  @Test
+  public void rankedChoice() {
+    User host = users.get(0);
+    User[] voters = new User[9];
+    for (int i = 0; i < voters.length; i++) {
+      voters[i] = new User("Votante" + i);
+    }
+    session.addParticipant(host);
+    session.addParticipants(voters);
+    session.setVotingStrategy(VotingStrategy.RANKED_CHOICE);
+    session.nextPhase(); // BRAINSTORM
+    Idea a = new Idea(host, "A");
+    Idea b = new Idea(host, "B");
+    Idea c = new Idea(host, "C");
+    Idea d = new Idea(host, "D");
+    session.addIdeas(a, b, c, d);
+    session.nextPhase(); // VOTING
+
+    for (int i = 0; i < 4; i++) {
+      session.castBallot(voters[i], a);
+    }
+    session.castBallot(voters[4], b, c);
+    // Votos individuais entram no fim da cédula do votante
+    b.registerVote(voters[5]);
+    d.registerVote(voters[5]);
+    c.registerVote(voters[5]);
+    d.removeVote(voters[5]);
+    for (int i = 6; i < 9; i++) {
+      session.castBallot(voters[i], c, a);
+    }
+    assertEquals(4, session.scoreOf(a));
+    assertEquals(2, session.scoreOf(b));
+    assertEquals(3, session.scoreOf(c));
+    assertArrayEquals(new Idea[] {a, c, b}, session.topIdeas(4));
+    assertEquals(5, c.countVotes().intValue());
+
+    session.nextPhase(); // RANKING
+    assertArrayEquals(new Idea[] {c, a, b}, session.rankIdeas());
+    assertArrayEquals(new Idea[] {c}, session.rankTop(1));
+    assertEquals(1, session.rankOf(c));
+    assertEquals(0, session.rankOf(d));
+  }
+
+  /**
+   * Teste para a assinatura das alterações da sessão, nele testa-se que os eventos de fase,
+   * participantes, ideias e votos chegam em ordem, e que após o cancelamento não chegam mais.
+   */
+  @Test
+  public void subscribe() throws InterruptedException {
+    BlockingQueue<SessionEvent> received = new LinkedBlockingQueue<>();
+    SessionSubscription subscription =
+        session.subscribe(received::addAll, Runnable::run, false);
+
+    session.addParticipant(users.get(0));
+    session.addParticipant(users.get(1));
+    session.nextPhase(); // BRAINSTORM
+    session.addIdea(ideas.get(1));
+    session.nextPhase(); // VOTING
+    ideas.get(1).registerVote(users.get(0));
+    ideas.get(1).removeVote(users.get(0));
+    session.removeParticipant(users.get(1));
+
+    SessionEvent.Type[] expected = {SessionEvent.Type.PARTICIPANT_JOINED,
+        SessionEvent.Type.PARTICIPANT_JOINED, SessionEvent.Type.PHASE, SessionEvent.Type.IDEA,
+        SessionEvent.Type.PHASE, SessionEvent.Type.VOTE, SessionEvent.Type.UNVOTE,
+        SessionEvent.Type.PARTICIPANT_LEFT};
+    for (SessionEvent.Type type : expected) {
+      SessionEvent event = received.poll(10, TimeUnit.SECONDS);
+      assertEquals(type, event.getType());
+      assertTrue(event.getSession() == session);
+    }
+
+    subscription.cancel();
+    assertTrue(subscription.isCancelled());
+    session.nextPhase(); // RANKING
+    assertEquals(null, received.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Teste para a entrega a um assinante lento, nele testa-se que os votos acumulados são agrupados
+   * por ideia no lote seguinte, e que um atraso maior que o registro de eventos é substituído por
+   * um único evento de ressincronização.
+   */
+  @Test
+  public void subscribeSlowListener() throws InterruptedException {
+    session.addParticipants(users.toArray(new User[0]));
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.toArray(new Idea[0]));
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlockingQueue<List<SessionEvent>> batches = new LinkedBlockingQueue<>();
+    session.subscribe(batch -> {
+      batches.add(batch);
+      blocked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    session.nextPhase(); // VOTING
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100; i++) {
+      ideas.get(0).registerVote(users.get(3));
+      ideas.get(0).removeVote(users.get(3));
+      ideas.get(1).registerVote(users.get(3));
+      ideas.get(1).removeVote(users.get(3));
+    }
+    ideas.get(0).registerVote(users.get(3));
+    release.countDown();
+
+    assertEquals(SessionEvent.Type.PHASE, batches.poll(10, TimeUnit.SECONDS).get(0).getType());
+    List<SessionEvent> coalesced = batches.poll(10, TimeUnit.SECONDS);
+    assertEquals(2, coalesced.size());
+    assertEquals(SessionEvent.Type.VOTES, coalesced.get(0).getType());
+    assertTrue(coalesced.get(0).getIdea() == ideas.get(1));
+    assertTrue(coalesced.get(1).getIdea() == ideas.get(0));
+
+    // Um atraso maior que o registro de eventos
+    CountDownLatch blockedAgain = new CountDownLatch(1);
+    CountDownLatch releaseAgain = new CountDownLatch(1);
+    BlockingQueue<List<SessionEvent>> lagging = new LinkedBlockingQueue<>();
+    session.subscribe(batch -> {
+      lagging.add(batch);
+      blockedAgain.countDown();
+      try {
+        releaseAgain.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, ForkJoinPool.commonPool(), false);
+    ideas.get(2).registerVote(users.get(0));
+    assertTrue(blockedAgain.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 10_000; i++) {
+      ideas.get(1).registerVote(users.get(0));
+      ideas.get(1).removeVote(users.get(0));
+    }
+    releaseAgain.countDown();
+    assertEquals(SessionEvent.Type.VOTE, lagging.poll(10, TimeUnit.SECONDS).get(0).getType());
+    List<SessionEvent> resync = lagging.poll(10, TimeUnit.SECONDS);
+    assertEquals(1, resync.size());
+    assertEquals(SessionEvent.Type.RESYNC, resync.get(0).getType());
+  }
+
+  /**
+   * Teste das métricas da sessão, nele testa-se que, após a ligação a um registro de métricas, os
+   * votos aceitos, recusados por motivo e retirados, as ideias e as latências são registrados, e
+   * que a exportação no formato do Prometheus mantém os totais globais após o desligamento.
+   */
+  @Test
+  public void metrics() {
+    assertNull(session.getMetrics());
+    MetricsRegistry registry = new MetricsRegistry();
+    SessionMetrics metrics = registry.attach("s1", session);
+    assertSame(metrics, session.getMetrics());
+
+    Idea extra = new Idea(users.get(0), "Ideia 5 para teste");
+    session.addParticipants(users.get(0), users.get(1), users.get(2));
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.get(0), ideas.get(1), ideas.get(2), ideas.get(3), extra);
+    ideas.get(0).registerVote(users.get(1));
+    session.nextPhase(); // VOTING
+    ideas.get(0).registerVote(users.get(0));
+    ideas.get(0).registerVote(users.get(3));
+    ideas.get(0).registerVote(users.get(1));
+    ideas.get(0).registerVote(users.get(1));
+    session.registerVotes(users.get(2), ideas.get(0), ideas.get(1), ideas.get(3), extra);
+    ideas.get(0).removeVote(users.get(1));
+    session.nextPhase(); // RANKING
+    session.rankIdeas();
+
+    assertEquals(4, metrics.getAcceptedVotes());
+    for (VoteRejection reason : new VoteRejection[] {VoteRejection.WRONG_PHASE,
+        VoteRejection.OWN_IDEA, VoteRejection.NOT_PARTICIPANT, VoteRejection.DUPLICATE,
+        VoteRejection.LIMIT_REACHED}) {
+      assertEquals(reason.toString(), 1, metrics.getRejectedVotes(reason));
+    }
+    assertEquals(0, metrics.getRejectedVotes(VoteRejection.INVALID_IDEA));
+    assertEquals(1, metrics.getWithdrawnVotes());
+    assertEquals(5, metrics.getAddedIdeas());
+    assertEquals(6, metrics.getLatency(SessionMetrics.Operation.VOTE).count());
+    assertEquals(1, metrics.getLatency(SessionMetrics.Operation.ADD_IDEA).count());
+    assertEquals(1, metrics.getLatency(SessionMetrics.Operation.RANK_IDEAS).count());
+
+    String text = registry.toPrometheus();
+    assertTrue(text, text.contains("\nbrainstorm_votes_total 4\n"));
+    assertTrue(text,
+        text.contains("brainstorm_votes_rejected_total{reason=\"limit_reached\"} 1\n"));
+    assertTrue(text,
+        text.contains("brainstorm_operation_duration_seconds_count{operation=\"vote\"} 6"));
+    assertTrue(text, text.contains(
+        "brainstorm_operation_duration_seconds_bucket{operation=\"vote\",le=\"+Inf\"} 6"));
+    assertTrue(text, text.contains("brainstorm_session_votes_total{session=\"s1\"} 4\n"));
+
+    registry.detach("s1", session);
+    assertNull(session.getMetrics());
+    text = registry.toPrometheus();
+    assertTrue(text, text.contains("\nbrainstorm_votes_total 4\n"));
+    assertFalse(text, text.contains("session=\"s1\""));
+  }
+
+  /**
+   * Teste da detecção de ideias repetidas, nele testa-se que as ideias semelhantes, mesmo com
+   * diferenças de maiúsculas, acentos e pontuação, são apontadas na adição, e que a incorporação
+   * combina os votos, devolve os excedentes e fecha a ideia incorporada aos votos.
+   */
+  @Test
+  public void duplicates() {
+    session.setDuplicateThreshold(0.7);
+    assertEquals(0.7, session.getDuplicateThreshold(), 0);
+    session.addParticipants(users.get(0), users.get(1), users.get(2), users.get(3));
+    session.nextPhase(); // BRAINSTORM
+    Idea original = new Idea(users.get(0), "Criar um aplicativo de caronas para os funcionários");
+    Idea restated = new Idea(users.get(1), "Criar um aplicativo de caronas para funcionários!");
+    Idea shouted = new Idea(users.get(2), "CRIAR UM APLICATIVO DE CARONAS PARA OS FUNCIONARIOS");
+    Idea other = new Idea(users.get(3), "Horta comunitária no estacionamento");
+    session.addIdeas(original, restated, shouted, other);
+
+    assertNull(original.getDuplicateOf());
+    assertSame(original, restated.getDuplicateOf());
+    assertSame(original, shouted.getDuplicateOf());
+    assertNull(other.getDuplicateOf());
+    assertArrayEquals(new Idea[] {shouted, restated}, session.findDuplicates(original));
+
+    session.nextPhase(); // VOTING
+    original.registerVote(users.get(1));
+    restated.registerVote(users.get(0));
+    restated.registerVote(users.get(2));
+    restated.registerVote(users.get(3));
+    shouted.registerVote(users.get(1));
+    assertFalse(session.mergeIdea(restated, restated, true));
+    assertTrue(session.mergeIdea(restated, original, true));
+    assertFalse(session.mergeIdea(shouted, restated, true));
+    assertTrue(session.mergeIdea(shouted, original, false));
+
+    assertSame(original, restated.getMergedInto());
+    assertEquals(0, restated.countVotes().intValue());
+    assertEquals(0, shouted.countVotes().intValue());
+    // O voto do autor da ideia e o voto repetido não são combinados
+    assertEquals(3, original.countVotes().intValue());
+    restated.registerVote(users.get(1));
+    assertEquals(0, restated.countVotes().intValue());
+    assertEquals(0, session.findDuplicates(original).length);
+  }
+
+  /**
+   * Teste para a saída de participantes durante a votação, nele testa-se que os votos do
+   * participante são retirados e devolvidos ao placar, que as ideias retiradas perdem os votos de
+   * todos e deixam de aceitá-los, que as cédulas também são retiradas e que no ranqueamento os
+   * votos são mantidos.
+   */
+  @Test
+  public void removeParticipantWithVotes() {
+    session.addParticipants(users.get(0), users.get(1), users.get(2), users.get(3));
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.get(0), ideas.get(1), ideas.get(2), ideas.get(3));
+    session.nextPhase(); // VOTING
+    session.registerVotes(users.get(1), ideas.get(0), ideas.get(2));
+    session.registerVotes(users.get(2), ideas.get(0), ideas.get(1), ideas.get(3));
+    session.registerVotes(users.get(3), ideas.get(0), ideas.get(1), ideas.get(2));
+
+    session.removeParticipant(users.get(1));
+    assertEquals(2, ideas.get(0).countVotes().intValue());
+    assertEquals(1, ideas.get(2).countVotes().intValue());
+    // As ideias do participante continuam na sessão, com os votos recebidos
+    assertEquals(2, ideas.get(1).countVotes().intValue());
+    ideas.get(0).registerVote(users.get(1));
+    assertEquals(2, ideas.get(0).countVotes().intValue());
+
+    session.removeParticipant(users.get(2), true);
+    assertTrue(ideas.get(2).isWithdrawn());
+    assertEquals(0, ideas.get(2).countVotes().intValue());
+    assertEquals(0, ideas.get(3).countVotes().intValue());
+    ideas.get(2).registerVote(users.get(0));
+    assertEquals(0, ideas.get(2).countVotes().intValue());
+    // O voto retirado da ideia é devolvido ao votante
+    ideas.get(3).registerVote(users.get(3));
+    assertArrayEquals(new Idea[] {ideas.get(0), ideas.get(1), ideas.get(3)},
+        session.topIdeas(4));
+
+    session.nextPhase(); // RANKING
+    session.removeParticipant(users.get(3));
+    assertEquals(1, ideas.get(0).countVotes().intValue());
+    assertArrayEquals(new Idea[] {ideas.get(0), ideas.get(1), ideas.get(3)},
+        session.rankIdeas());
+
+    Session borda = new Session(users.get(0), "Borda", 2);
+    borda.addParticipants(users.get(0), users.get(1));
+    borda.setVotingStrategy(VotingStrategy.BORDA);
+    borda.nextPhase(); // BRAINSTORM
+    Idea a = new Idea(users.get(0), "A");
+    Idea b = new Idea(users.get(0), "B");
+    borda.addIdeas(a, b);
+    borda.nextPhase(); // VOTING
+    borda.castBallot(users.get(1), b, a);
+    assertEquals(1, a.countVotes().intValue());
+    borda.removeParticipant(users.get(1));
+    assertEquals(0, borda.scoreOf(a));
+    assertEquals(0, borda.scoreOf(b));
+    assertEquals(0, borda.topIdeas(2).length);
+  }
+
+  /**
+   * Teste dos retratos da sessão, nele testa-se que um retrato não muda com as alterações
+   * seguintes da sessão, que os retratos seguintes refletem cada alteração e compartilham as
+   * ideias, e que o ranqueamento do retrato é o da sessão.
+   */
+  @Test
+  public void snapshots() {
+    session.setSnapshotInterval(0);
+    assertEquals(0, session.getSnapshotInterval());
+    SessionSnapshot empty = session.snapshot();
+    assertEquals(SessionPhase.WELCOME, empty.getPhase());
+    session.addParticipants(users.get(0), users.get(1), users.get(2), users.get(3));
+    assertEquals(0, empty.getParticipantCount());
+    assertEquals(users, session.snapshot().getParticipants());
+    session.nextPhase(); // BRAINSTORM
+    session.addIdeas(ideas.get(0), ideas.get(1), ideas.get(2), ideas.get(3));
+
+    session.nextPhase(); // VOTING
+    SessionSnapshot before = session.snapshot();
+    assertSame(before, session.snapshot());
+    ideas.get(1).registerVote(users.get(0));
+    ideas.get(1).registerVote(users.get(2));
+    ideas.get(3).registerVote(users.get(0));
+    session.removeParticipant(users.get(3));
+    SessionSnapshot after = session.snapshot();
+    assertEquals(0, before.scoreOf(ideas.get(1)));
+    assertEquals(4, before.getParticipantCount());
+    assertEquals(0, before.rankIdeas().length);
+    assertEquals(2, after.scoreOf(ideas.get(1)));
+    assertEquals(3, after.getParticipantCount());
+    assertEquals(ideas, after.getIdeas());
+    assertEquals(0, after.scoreOf(new Idea(users.get(0), "Fora da sessão")));
+    assertArrayEquals(new Idea[] {ideas.get(1), ideas.get(3)}, after.rankIdeas());
+    assertArrayEquals(new Idea[] {ideas.get(1)}, after.rankTop(1));
+
+    session.nextPhase(); // RANKING
+    assertArrayEquals(session.rankIdeas(), session.snapshot().rankIdeas());
+    assertEquals(SessionPhase.VOTING, after.getPhase());
+
+    // Sem publicação, o retrato é montado a cada chamada
+    session.setSnapshotInterval(-1);
+    assertEquals(-1, session.getSnapshotInterval());
+    assertNotSame(session.snapshot(), session.snapshot());
+    assertArrayEquals(session.rankIdeas(), session.snapshot().rankIdeas());
+  }
+
+  /**
+   * Teste dos retratos com votos concorrentes, nele cada votante registra dois votos de uma só vez
+   * enquanto outra thread lê retratos publicados por intervalo, e nenhum retrato pode conter um
+   * número ímpar de votos, isto é, um lote aplicado pela metade.
+   */
+  @Test
+  public void snapshotsWithConcurrentVotes() throws InterruptedException {
+    User[] voters = new User[200];
+    for (int i = 0; i < voters.length; i++) {
+      voters[i] = new User("Votante " + i);
+    }
+    session.addParticipants(voters);
+    session.addParticipant(users.get(0));
+    session.nextPhase(); // BRAINSTORM
+    Idea[] many = new Idea[1000];
+    for (int i = 0; i < many.length; i++) {
+      many[i] = new Idea(users.get(0), "Ideia " + i);
+    }
+    session.addIdeas(many);
+    session.nextPhase(); // VOTING
+    session.setSnapshotInterval(1);
+
+    CountDownLatch done = new CountDownLatch(1);
+    Thread writer = new Thread(() -> {
+      Random random = new Random(7);
+      for (User voter : voters) {
+        int first = random.nextInt(many.length);
+        session.registerVotes(voter, many[first], many[(first + 1) % many.length]);
+      }
+      done.countDown();
+    });
+    writer.start();
+    int read = 0;
+    do {
+      SessionSnapshot snapshot = session.snapshot();
+      int total = 0;
+      for (Idea idea : snapshot.getIdeas()) {
+        total += snapshot.scoreOf(idea);
+      }
+      assertEquals(0, total % 2);
+      read++;
+    } while (!done.await(0, TimeUnit.MILLISECONDS));
+    writer.join();
+    assertTrue(read > 0);
+    Thread.sleep(2);
+    int total = 0;
+    for (Idea idea : session.snapshot().getIdeas()) {
+      total += session.snapshot().scoreOf(idea);
+    }
+    assertEquals(2 * voters.length, total);
+  }
+
+  /**
+   * Teste do arquivamento da sessão encerrada, em memória direta na aprovação e em arquivo
+   * mapeado no segundo turno instantâneo. Nele testa-se que só a sessão no ranqueamento é
+   * arquivada, uma única vez, e que o texto, o autor, os votos, o ranqueamento e a codificação da
+   * sessão continuam iguais, inclusive para textos com caracteres fora do ASCII e nulos.
+   */
+  @Test
+  public void archive() throws IOException {
+    session.addParticipants(users.get(0), users.get(1), users.get(2), users.get(3));
+    session.nextPhase(); // BRAINSTORM
+    Idea accented = new Idea(users.get(3), "Ideia com acentuação, \u20ac e \ud83d\udca1");
+    Idea empty = new Idea(users.get(2), null);
+    session.addIdeas(ideas.get(0), ideas.get(1), ideas.get(2), accented, empty);
+    session.nextPhase(); // VOTING
+    ideas.get(1).registerVote(users.get(0));
+    ideas.get(1).registerVote(users.get(3));
+    accented.registerVote(users.get(0));
+    accented.registerVote(users.get(1));
+    ideas.get(2).registerVote(users.get(3));
+    assertFalse(session.archive());
+
+    session.nextPhase(); // RANKING
+    session.removeParticipant(users.get(1));
+    Idea[] ranking = session.rankIdeas();
+    byte[] encoded = encode(session);
+    assertFalse(session.isArchived());
+    assertTrue(session.archive());
+    assertTrue(session.isArchived());
+    assertFalse(session.archive());
+    assertEquals("Ideia com acentuação, \u20ac e \ud83d\udca1", accented.getDescription());
+    assertSame(users.get(3), accented.getAuthor());
+    assertNull(empty.getDescription());
+    assertSame(users.get(2), empty.getAuthor());
+    assertEquals("Ideia 2 para teste", ideas.get(1).getDescription());
+    assertEquals(2, ideas.get(1).countVotes().intValue());
+    assertEquals(1, session.scoreOf(ideas.get(2)));
+    assertArrayEquals(ranking, session.rankIdeas());
+    assertArrayEquals(ranking, session.rankIdeas(ForkJoinPool.commonPool()));
+    assertEquals(1, session.rankOf(ideas.get(1)));
+    assertArrayEquals(encoded, encode(session));
+    // Depois do arquivamento a sessão continua encerrada
+    ideas.get(0).registerVote(users.get(2));
+    assertEquals(0, ideas.get(0).countVotes().intValue());
+    ideas.get(1).removeVote(users.get(0));
+    assertEquals(2, ideas.get(1).countVotes().intValue());
+
+    Session ballots = new Session(users.get(0), "Cédulas", 3);
+    ballots.addParticipants(users.get(0), users.get(1), users.get(2));
+    ballots.setVotingStrategy(VotingStrategy.RANKED_CHOICE);
+    ballots.nextPhase(); // BRAINSTORM
+    Idea a = new Idea(users.get(0), "A");
+    Idea b = new Idea(users.get(0), "B");
+    Idea c = new Idea(users.get(0), "C");
+    ballots.addIdeas(a, b, c);
+    ballots.nextPhase(); // VOTING
+    ballots.castBallot(users.get(1), a, c);
+    ballots.castBallot(users.get(2), c, b);
+    ballots.nextPhase(); // RANKING
+    ranking = ballots.rankIdeas();
+    encoded = encode(ballots);
+    Path file = folder.getRoot().toPath().resolve("ballots.bin");
+    assertTrue(ballots.archive(file));
+    assertTrue(file.toFile().length() > 0);
+    assertEquals("C", c.getDescription());
+    assertEquals(2, c.countVotes().intValue());
+    assertArrayEquals(ranking, ballots.rankIdeas());
+    assertArrayEquals(encoded, encode(ballots));
+  }
+
+  private static byte[] encode(Session session) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    SessionCodec.encode(session, output);
+    return output.toByteArray();
+  }
 }
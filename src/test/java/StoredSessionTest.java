@@ -0,0 +1,229 @@
+package test.java;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import main.java.Idea;
+import main.java.Session;
+import main.java.SessionPhase;
+import main.java.StoredSession;
+import main.java.User;
+import main.java.VotingStrategy;
+
+/**
+ * Classe de testes unitários para a classe StoredSession.
+ * @author hugo
+ */
+public class StoredSessionTest {
+
+  /**
+   * Diretório temporário para os arquivos das sessões
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Participantes da sessão
+   */
+  User[] users;
+  /**
+   * Sessão em votação com 3000 ideias, mais de duas páginas, e votos aleatórios
+   */
+  Session session;
+
+  /**
+   * Método de pré-configuração para os testes, que cria a sessão em votação com os votos.
+   */
+  @Before
+  public void setUp() {
+    users = new User[50];
+    for (int i = 0; i < users.length; i++) {
+      users[i] = new User("Participante " + i);
+    }
+    session = new Session(users[0], "Sessão gravada", 5);
+    session.addParticipants(users);
+    session.nextPhase(); // BRAINSTORM
+    Idea[] ideas = new Idea[3000];
+    for (int i = 0; i < ideas.length; i++) {
+      ideas[i] = new Idea(users[i % users.length], "Ideia número " + i);
+    }
+    session.addIdeas(ideas);
+    session.nextPhase(); // VOTING
+    Random random = new Random(3);
+    for (User user : users) {
+      for (int v = 0; v < 5; v++) {
+        ideas[random.nextInt(ideas.length)].registerVote(user);
+      }
+    }
+  }
+
+  /**
+   * Teste da leitura de uma sessão encerrada, nele testa-se que o cabeçalho, os participantes, as
+   * ideias e o ranqueamento lidos são iguais aos da sessão, e que as páginas usadas ficam no
+   * cache enquanto as demais são montadas de novo.
+   */
+  @Test
+  public void readRanking() throws IOException {
+    session.removeParticipant(users[49]);
+    session.nextPhase(); // RANKING
+    Path file = folder.getRoot().toPath().resolve("ranking.bin");
+    StoredSession.write(session, file);
+    StoredSession stored = StoredSession.open(file, 1);
+
+    assertEquals(users[0], stored.getOwner());
+    assertEquals("Sessão gravada", stored.getDescription());
+    assertEquals(5, stored.getVotingLimit());
+    assertEquals(SessionPhase.RANKING, stored.getPhase());
+    assertEquals(VotingStrategy.APPROVAL, stored.getVotingStrategy());
+    assertEquals(49, stored.getParticipantCount());
+    assertArrayEquals(session.getParticipants(), stored.getParticipants());
+    assertEquals("Participante 7", stored.getParticipants()[7].getUsername());
+
+    Idea[] ranking = session.rankIdeas();
+    Idea[] top = stored.rankTop(3);
+    assertEquals(3, top.length);
+    for (int i = 0; i < top.length; i++) {
+      assertEquals(ranking[i].getDescription(), top[i].getDescription());
+      assertEquals(ranking[i].getIndex(), top[i].getIndex());
+      assertEquals(session.scoreOf(ranking[i]), stored.scoreOf(top[i]));
+      assertEquals(ranking[i].countVotes(), top[i].countVotes());
+    }
+    Idea[] all = stored.rankIdeas();
+    assertEquals(ranking.length, all.length);
+    for (int i = 0; i < all.length; i++) {
+      assertEquals(ranking[i].getIndex(), all[i].getIndex());
+    }
+    assertEquals(ranking[ranking.length - 1].getIndex(),
+        stored.rankPage(ranking.length - 1, 10)[0].getIndex());
+    assertEquals(0, stored.rankPage(ranking.length, 10).length);
+    assertEquals(0, stored.scoreOf(session.getIdea(0)));
+
+    Idea[] ideas = stored.getIdeas();
+    assertEquals(3000, ideas.length);
+    for (int i = 0; i < ideas.length; i++) {
+      Idea original = session.getIdea(i);
+      assertEquals(original.getDescription(), ideas[i].getDescription());
+      assertEquals(original.getAuthor(), ideas[i].getAuthor());
+      assertEquals(original.countVotes(), ideas[i].countVotes());
+      assertNull(ideas[i].getSession());
+    }
+    // Com uma página no cache, a ideia da página usada é a mesma, e a de outra é montada de novo
+    Idea first = stored.getIdea(0);
+    assertEquals(1, stored.getIdea(1).getIndex());
+    assertSame(first, stored.getIdea(0));
+    stored.getIdea(2999);
+    assertNotSame(first, stored.getIdea(0));
+    try {
+      stored.getIdea(3000);
+      fail();
+    } catch (IndexOutOfBoundsException e) {
+      assertTrue(e.getMessage().contains("3000"));
+    }
+  }
+
+  /**
+   * Teste da gravação fora do ranqueamento e do arquivo de uma sessão arquivada, nele testa-se
+   * que a sessão em votação não tem ranqueamento gravado, que o arquivo gravado pelo arquivamento
+   * é lido da mesma forma, e que arquivos inválidos e caches vazios são recusados.
+   */
+  @Test
+  public void writeInAnyPhase() throws IOException {
+    Path voting = folder.getRoot().toPath().resolve("voting.bin");
+    StoredSession.write(session, voting);
+    StoredSession stored = StoredSession.open(voting);
+    assertEquals(SessionPhase.VOTING, stored.getPhase());
+    assertEquals(0, stored.rankIdeas().length);
+    assertEquals(session.getIdea(10).countVotes(), stored.getIdea(10).countVotes());
+
+    session.nextPhase(); // RANKING
+    Path archived = folder.getRoot().toPath().resolve("archived.bin");
+    assertTrue(session.archive(archived));
+    stored = StoredSession.open(archived);
+    assertEquals(session.rankIdeas()[0].getIndex(), stored.rankTop(1)[0].getIndex());
+    assertEquals("Ideia número 2999", stored.getIdea(2999).getDescription());
+
+    Path invalid = folder.getRoot().toPath().resolve("invalid.bin");
+    Files.write(invalid, new byte[100]);
+    try {
+      StoredSession.open(invalid);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("desconhecido"));
+    }
+    try {
+      StoredSession.open(voting, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("inválida"));
+    }
+  }
+
+  /**
+   * Teste da gravação durante a votação, com votos concorrentes, nele testa-se que cada arquivo
+   * gravado é lido com os textos intactos e com as contagens de um mesmo instante, que não
+   * diminuem de uma gravação para a seguinte, e que a última gravação tem todos os votos.
+   */
+  @Test
+  public void writeWhileVoting() throws Exception {
+    User[] voters = new User[200];
+    for (int i = 0; i < voters.length; i++) {
+      voters[i] = new User("Votante " + i);
+    }
+    Session voting = new Session(users[0], "Votação concorrente", 50);
+    voting.addParticipants(users[1]);
+    voting.addParticipants(voters);
+    voting.nextPhase(); // BRAINSTORM
+    for (int i = 0; i < 100; i++) {
+      voting.addIdea(new Idea(users[1], "Ideia número " + i));
+    }
+    voting.nextPhase(); // VOTING
+    Idea[] ideas = voting.getIdeas();
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    for (int t = 0; t < 2; t++) {
+      int thread = t;
+      executor.execute(() -> {
+        for (int i = thread; i < voters.length; i += 2) {
+          for (Idea idea : ideas) {
+            idea.registerVote(voters[i]);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    Path file = folder.getRoot().toPath().resolve("voting.bin");
+    int previous = 0;
+    boolean done;
+    do {
+      done = executor.awaitTermination(0, TimeUnit.MILLISECONDS);
+      StoredSession.write(voting, file);
+      Idea[] stored = StoredSession.open(file).getIdeas();
+      int total = 0;
+      for (int i = 0; i < stored.length; i++) {
+        assertEquals("Ideia número " + i, stored[i].getDescription());
+        total += stored[i].countVotes();
+      }
+      assertTrue(total >= previous);
+      previous = total;
+    } while (!done);
+    assertEquals(voters.length * 50, previous);
+  }
+}
@@ -0,0 +1,56 @@
+package test.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import main.java.Session;
+import main.java.User;
+
+/**
+ * Classe de testes unitários para a classe User.
+ * @author hugo
+ */
+public class UserTest {
+
+  /**
+   * Teste para a identidade dos usuários, nele testa-se que cada novo usuário recebe um
+   * identificador próprio e que usuários com o mesmo identificador são o mesmo usuário, mesmo que
+   * sejam objetos diferentes.
+   */
+  @Test
+  public void identity() {
+    // Usuários novos, mesmo que com o mesmo nome, são diferentes
+    User first = new User("Tester");
+    User second = new User("Tester");
+    assertNotEquals(first.getId(), second.getId());
+    assertNotEquals(first, second);
+
+    // Um usuário recriado com o mesmo identificador é igual ao original
+    User copy = new User(first.getId(), "Tester renomeado");
+    assertEquals(first, copy);
+    assertEquals(first.hashCode(), copy.hashCode());
+
+    // Identificadores gerados depois de um identificador explícito não colidem com ele
+    User loaded = new User(second.getId() + 1000, "Carregado");
+    assertTrue(new User("Novo").getId() > loaded.getId());
+  }
+
+  /**
+   * Teste para a participação de usuários com a mesma identidade, nele testa-se que a sessão
+   * reconhece como participante um usuário recriado com o mesmo identificador.
+   */
+  @Test
+  public void participation() {
+    User user = new User("Tester");
+    Session session = new Session(user, "Teste", 3);
+    session.addParticipant(user);
+
+    User copy = new User(user.getId(), "Tester");
+    assertTrue(session.isParticipant(copy));
+    session.addParticipant(copy);
+    assertEquals(1, session.getParticipantCount());
+  }
+}